@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates many SkeletonInterpolators in one pass, for instance for a crowd of characters that
+ * each play a clip. interpolate first calculates all interpolated configs into one shared float
+ * buffer, optionally in parallel on the common fork-join pool, and only then copies the configs to
+ * the target VJoints of the interpolators. The buffer stays available afterwards, see getOutput and
+ * getOutputOffset.
+ * <p>
+ * An interpolator should occur at most once in a batch, since it keeps its own interpolation
+ * cursor. Interpolators evaluated in parallel must have separate targets.
+ */
+public class BatchSkeletonInterpolator
+{
+    /** default minimum number of interpolators for which a batch is evaluated in parallel */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16;
+
+    private static final int GRAIN = 8; // number of interpolators evaluated by one fork-join task
+
+    private float[] output = new float[0];
+    private int[] outputOffsets = new int[0];
+    private boolean parallel = true;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Enables or disables evaluation on the common fork-join pool, for batches of at least
+     * parallelThreshold interpolators.
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    public void setParallelThreshold(int parallelThreshold)
+    {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Interpolates interpolators[k] at times[k], for k = 0 .. count-1, and sets their target parts.
+     * The targets of interpolators without configs are not changed.
+     */
+    public void interpolate(SkeletonInterpolator[] interpolators, double[] times, int count)
+    {
+        interpolateConfigs(interpolators, times, count);
+        if (parallel && count >= parallelThreshold)
+        {
+            ForkJoinPool.commonPool().invoke(new BatchTask(interpolators, times, 0, count, false));
+        }
+        else
+        {
+            setTargetParts(interpolators, 0, count);
+        }
+    }
+
+    /**
+     * Interpolates interpolators[k] at times[k], for k = 0 .. count-1, into the output buffer only;
+     * the targets are not changed. The output of an interpolator without configs is not written.
+     */
+    public void interpolateConfigs(SkeletonInterpolator[] interpolators, double[] times, int count)
+    {
+        if (outputOffsets.length < count + 1) outputOffsets = new int[count + 1];
+        int size = 0;
+        for (int k = 0; k < count; k++)
+        {
+            outputOffsets[k] = size;
+            size += interpolators[k].getConfigSize();
+        }
+        outputOffsets[count] = size;
+        if (output.length < size) output = new float[size];
+
+        if (parallel && count >= parallelThreshold)
+        {
+            ForkJoinPool.commonPool().invoke(new BatchTask(interpolators, times, 0, count, true));
+        }
+        else
+        {
+            interpolateConfigs(interpolators, times, 0, count);
+        }
+    }
+
+    private void interpolateConfigs(SkeletonInterpolator[] interpolators, double[] times, int from, int to)
+    {
+        for (int k = from; k < to; k++)
+        {
+            if (interpolators[k].size() == 0) continue;
+            interpolators[k].interpolateConfig(times[k], output, outputOffsets[k]);
+        }
+    }
+
+    private void setTargetParts(SkeletonInterpolator[] interpolators, int from, int to)
+    {
+        for (int k = from; k < to; k++)
+        {
+            if (interpolators[k].size() == 0) continue; // leaves the targets alone, like interpolateTargetParts
+            interpolators[k].setTargetParts(output, outputOffsets[k]);
+        }
+    }
+
+    /**
+     * Returns the buffer with the configs of the last evaluated batch
+     */
+    public float[] getOutput()
+    {
+        return output;
+    }
+
+    /**
+     * Returns the offset in getOutput() of the config of interpolator k of the last evaluated batch
+     */
+    public int getOutputOffset(int k)
+    {
+        return outputOffsets[k];
+    }
+
+    /*
+     * Interpolates or sets the target parts for interpolators[from] .. interpolators[to-1],
+     * splitting in halves down to GRAIN interpolators.
+     */
+    private final class BatchTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final SkeletonInterpolator[] interpolators;
+        private final double[] times;
+        private final int from, to;
+        private final boolean interpolate;
+
+        BatchTask(SkeletonInterpolator[] interpolators, double[] times, int from, int to, boolean interpolate)
+        {
+            this.interpolators = interpolators;
+            this.times = times;
+            this.from = from;
+            this.to = to;
+            this.interpolate = interpolate;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= GRAIN)
+            {
+                if (interpolate)
+                {
+                    interpolateConfigs(interpolators, times, from, to);
+                }
+                else
+                {
+                    setTargetParts(interpolators, from, to);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(interpolators, times, from, mid, interpolate), new BatchTask(interpolators, times, mid, to,
+                    interpolate));
+        }
+    }
+}
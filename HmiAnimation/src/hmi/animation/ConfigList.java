@@ -24,16 +24,37 @@ package hmi.animation;
 
 import hmi.math.Quat4f;
 import hmi.math.Vec3f;
+import hmi.xml.NumberScanner;
 import hmi.xml.XMLFormatting;
 import hmi.xml.XMLStructureAdapter;
 import hmi.xml.XMLTokenizer;
 
 import java.io.IOException;
-import java.util.StringTokenizer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A ConfigList defines a sequence of configurations of type float[] plus
  * corresponding timestamps of type double.
+ * <p>
+ * By default every config is a separate float[]. A ConfigList can also be packed,
+ * keeping all configs in a single float[] with stride configSize, or be backed by
+ * a (memory mapped) FloatBuffer. getConfig(i) then copies config i into a separate
+ * array, which from then on holds config i, so calling getConfig for every frame
+ * gradually turns a packed list back into one array per config. The index based
+ * accessors, getConfig(i, dst, dstOffset), getConfigValue and
+ * getConfigData/getConfigOffset, read packed configs in place; getConfigData does
+ * detach a memory mapped config. Adding a config unpacks the whole list.
+ * <p>
+ * Detaching a config stores the new array without synchronization. A packed or
+ * mapped ConfigList that is read by several threads should therefore only be read
+ * with getConfig(i, dst, dstOffset) and getConfigValue, unless each thread has its
+ * own copy (see copy()).
  */
 public class ConfigList extends XMLStructureAdapter implements Cloneable
 {
@@ -49,6 +70,16 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
                                                    // be > 0
     private int configSize; // length of a configList element, in number of
                             // floats.
+    private float[] packedConfigs; // when non-null, a null configList[i] is stored in
+                                   // packedConfigs, at offset i * configSize
+    private FloatBuffer mappedConfigs; // when non-null, a null configList[i] is still
+                                       // to be read from mappedConfigs
+
+    /** content of at least this many characters is decoded in parallel, if it has one config per line */
+    private static final int PARALLEL_DECODE_THRESHOLD = 256 * 1024;
+
+    /** approximate number of characters decoded by one parallel decoding task */
+    private static final int DECODE_CHUNK_SIZE = 64 * 1024;
 
     /**
      * Constructor
@@ -63,6 +94,51 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         this.configSize = configSize;
     }
 
+    /**
+     * Creates a ConfigList of size configs that is backed by the specified buffers, typically
+     * regions of a memory mapped file. The time values are copied, whereas a config is copied from
+     * the configs buffer only when it is accessed for the first time. The configs buffer must
+     * contain size * configSize floats, starting at its position, and must not be modified while
+     * this ConfigList uses it.
+     */
+    public ConfigList(int configSize, DoubleBuffer times, FloatBuffer configs, int size)
+    {
+        if (times.remaining() < size || configs.remaining() < (long) size * configSize)
+        {
+            throw new IllegalArgumentException("ConfigList: buffers too small for " + size + " configs of size " + configSize);
+        }
+        arraySize = Math.max(DEFAULTARRAYSIZE, size);
+        time = new double[arraySize];
+        times.duplicate().get(time, 0, size);
+        configList = new float[arraySize][];
+        listSize = size;
+        this.configSize = configSize;
+        mappedConfigs = configs.slice();
+    }
+
+    /**
+     * Creates a packed ConfigList of size configs, with times[i] the time of config i, and config i
+     * stored in configs[i * configSize] .. configs[(i+1) * configSize - 1]. The arrays are not
+     * copied. Times must be in non-decreasing order.
+     */
+    public ConfigList(int configSize, double[] times, float[] configs, int size)
+    {
+        if (times.length < size || configs.length < (long) size * configSize)
+        {
+            throw new IllegalArgumentException("ConfigList: arrays too small for " + size + " configs of size " + configSize);
+        }
+        arraySize = Math.max(1, times.length);
+        time = (times.length == 0) ? new double[arraySize] : times;
+        configList = new float[arraySize][];
+        listSize = size;
+        this.configSize = configSize;
+        packedConfigs = configs;
+    }
+
+    /**
+     * Returns a copy of this ConfigList, with the same kind of storage. A memory mapped buffer is
+     * shared with the copy, since it is never written.
+     */
     public ConfigList copy()
     {
         ConfigList c = new ConfigList(configSize);
@@ -72,12 +148,10 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         c.configList = new float[arraySize][];
         for (int i = 0; i < listSize; i++)
         {
-            c.configList[i] = new float[configSize];
-            for (int j = 0; j < configSize; j++)
-            {
-                c.configList[i][j] = configList[i][j];
-            }
+            if (configList[i] != null) c.configList[i] = configList[i].clone();
         }
+        if (packedConfigs != null) c.packedConfigs = packedConfigs.clone();
+        c.mappedConfigs = mappedConfigs;
         return c;
     }
 
@@ -113,28 +187,42 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
 
     public void mirrorRotation(int index)
     {
+        float q[] = Quat4f.getQuat4f();
         for (int i = 0; i < listSize; i++)
         {
-            float[] config = configList[i];
-            float q[] = Quat4f.getQuat4f();
-            Quat4f.set(q, 0, config, index);
-            Quat4f.set(config, index, q[Quat4f.s], q[Quat4f.x], -q[Quat4f.y], -q[Quat4f.z]);
+            float[] config = getConfigData(i);
+            int offset = getConfigOffset(i) + index;
+            Quat4f.set(q, 0, config, offset);
+            Quat4f.set(config, offset, q[Quat4f.s], q[Quat4f.x], -q[Quat4f.y], -q[Quat4f.z]);
         }
     }
 
     public void mirrorTranslation(int index)
     {
+        float v[] = Vec3f.getVec3f();
         for (int i = 0; i < listSize; i++)
         {
-            float[] config = configList[i];
-            float v[] = Vec3f.getVec3f();
-            Vec3f.set(v, 0, config, index);
-            Vec3f.set(config, index, -v[Vec3f.X], v[Vec3f.Y], v[Vec3f.Z]);
+            float[] config = getConfigData(i);
+            int offset = getConfigOffset(i) + index;
+            Vec3f.set(v, 0, config, offset);
+            Vec3f.set(config, offset, -v[Vec3f.X], v[Vec3f.Y], v[Vec3f.Z]);
         }
     }
 
     public ConfigList subConfigList(int start, int end)
     {
+        if (packedConfigs != null)
+        {
+            int size = end - start;
+            double[] subTimes = new double[Math.max(1, size)];
+            System.arraycopy(time, start, subTimes, 0, size);
+            float[] subConfigs = new float[size * configSize];
+            for (int i = 0; i < size; i++)
+            {
+                getConfig(start + i, subConfigs, i * configSize);
+            }
+            return new ConfigList(configSize, subTimes, subConfigs, size);
+        }
         ConfigList cl = new ConfigList(configSize);
         for (int i = start; i < end; i++)
         {
@@ -148,7 +236,136 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
      */
     public float[] getConfig(int i)
     {
-        return configList[i];
+        float[] c = configList[i];
+        if (c == null && i < listSize && (packedConfigs != null || mappedConfigs != null))
+        {
+            c = detachConfig(i);
+        }
+        return c;
+    }
+
+    /**
+     * Copies config i into dst, starting at dstOffset
+     */
+    public void getConfig(int i, float[] dst, int dstOffset)
+    {
+        float[] c = configList[i];
+        if (c != null)
+        {
+            System.arraycopy(c, 0, dst, dstOffset, c.length);
+        }
+        else if (packedConfigs != null)
+        {
+            System.arraycopy(packedConfigs, i * configSize, dst, dstOffset, configSize);
+        }
+        else
+        {
+            int offset = i * configSize;
+            for (int j = 0; j < configSize; j++)
+            {
+                dst[dstOffset + j] = mappedConfigs.get(offset + j);
+            }
+        }
+    }
+
+    /**
+     * Returns element j of config i
+     */
+    public float getConfigValue(int i, int j)
+    {
+        float[] c = configList[i];
+        if (c != null) return c[j];
+        if (packedConfigs != null) return packedConfigs[i * configSize + j];
+        return mappedConfigs.get(i * configSize + j);
+    }
+
+    /**
+     * Returns the array that holds config i, starting at getConfigOffset(i). For a packed
+     * ConfigList this is the shared array of all configs, so, unlike getConfig(i), it does not copy
+     * config i. Changes to the returned array at config i are changes to this ConfigList.
+     */
+    public float[] getConfigData(int i)
+    {
+        float[] c = configList[i];
+        if (c != null) return c;
+        if (packedConfigs != null) return packedConfigs;
+        return detachConfig(i); // a memory mapped config is copied the first time it is used
+    }
+
+    /**
+     * Returns the offset of config i in getConfigData(i)
+     */
+    public int getConfigOffset(int i)
+    {
+        return (packedConfigs != null && configList[i] == null) ? i * configSize : 0;
+    }
+
+    /*
+     * Copies config i from packedConfigs or mappedConfigs into a separate array, which holds config i
+     * from now on. A mapped config is read with absolute gets only, so that concurrent readers do
+     * not disturb each other.
+     */
+    private float[] detachConfig(int i)
+    {
+        float[] c = new float[configSize];
+        getConfig(i, c, 0);
+        configList[i] = c;
+        return c;
+    }
+
+    /*
+     * Detaches all configs that are still packed or mapped, and releases the packed array or
+     * buffer.
+     */
+    private void unpack()
+    {
+        for (int i = 0; i < listSize; i++)
+        {
+            getConfig(i);
+        }
+        packedConfigs = null;
+        mappedConfigs = null;
+    }
+
+    /**
+     * Moves all configs into a single float[], with stride configSize. Arrays obtained from
+     * getConfig before packing are no longer part of this ConfigList. All configs must have length
+     * configSize.
+     */
+    public void pack()
+    {
+        float[] packed = new float[listSize * configSize];
+        for (int i = 0; i < listSize; i++)
+        {
+            float[] c = configList[i];
+            if (c != null && c.length != configSize)
+            {
+                throw new IllegalStateException("ConfigList.pack: config " + i + " has length " + c.length + ", expected "
+                        + configSize);
+            }
+            getConfig(i, packed, i * configSize);
+            configList[i] = null;
+        }
+        packedConfigs = packed;
+        mappedConfigs = null;
+    }
+
+    /**
+     * Returns true if all configs that have not been obtained by getConfig are stored in a single
+     * float[], see pack()
+     */
+    public boolean isPacked()
+    {
+        return packedConfigs != null;
+    }
+
+    /**
+     * Returns true if this ConfigList still refers to a buffer from which some configs have not been
+     * copied yet.
+     */
+    public boolean isMapped()
+    {
+        return mappedConfigs != null;
     }
 
     public double getStartTime()
@@ -168,6 +385,7 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
      */
     public void addConfig(double t, float[] conf)
     {
+        if (packedConfigs != null || mappedConfigs != null) unpack(); // inserting shifts indices
         ensureArraySize(listSize + 1);
         int pos = findInsertIndex(t);
         for (int p = listSize; p > pos; p--)
@@ -283,8 +501,10 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         {
             appendNewLine(buf, fmt);
             buf.append(Double.toString(time[i]));
-            float[] c = configList[i];
-            for (int j = 0; j < c.length; j++)
+            float[] c = getConfigData(i);
+            int offset = getConfigOffset(i);
+            int end = (c == packedConfigs) ? offset + configSize : c.length;
+            for (int j = offset; j < end; j++)
             {
                 buf.append(' ');
                 buf.append(Float.toString(c[j]));
@@ -304,40 +524,207 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         decodeContent(data);
     }
 
+    /**
+     * Decodes a String of time values, each followed by configSize floats. Large Strings are decoded
+     * in parallel, see decodeContent(String, boolean).
+     */
     public void decodeContent(String data)
     {
-        StringTokenizer tokenizer = new StringTokenizer(data);
-        double t;
-        float[] conf;
-        while (tokenizer.hasMoreTokens())
+        decodeContent(data, data.length() >= PARALLEL_DECODE_THRESHOLD);
+    }
+
+    /**
+     * Decodes a String of time values, each followed by configSize floats. If parallel is true, and
+     * data has one config per line (as written by appendContent), data is split at line boundaries
+     * and decoded on the common fork-join pool; otherwise it is decoded on the calling thread. When
+     * this list is empty and the time values are in order, the result is a packed ConfigList.
+     */
+    public void decodeContent(String data, boolean parallel)
+    {
+        char[] chars = data.toCharArray();
+        if (parallel && decodeContentParallel(chars))
+        {
+            return;
+        }
+        NumberScanner scanner = new NumberScanner(chars, 0, chars.length);
+        double[] times = new double[DEFAULTARRAYSIZE];
+        float[] values = new float[DEFAULTARRAYSIZE * configSize];
+        int count = 0;
+        while (scanner.hasNext())
+        {
+            if (count == times.length)
+            {
+                times = Arrays.copyOf(times, 2 * count);
+                values = Arrays.copyOf(values, 2 * count * configSize);
+            }
+            times[count] = scanner.nextDouble();
+            int offset = count * configSize;
+            for (int i = 0; i < configSize; i++)
+            {
+                values[offset + i] = scanner.nextFloat();
+            }
+            count++;
+        }
+        addDecodedConfigs(times, values, count);
+    }
+
+    /*
+     * Adds count decoded configs, config i at time times[i] with its floats in values, starting at
+     * i * configSize. The arrays become the packed storage if this list is empty and the times are
+     * in order.
+     */
+    private void addDecodedConfigs(double[] times, float[] values, int count)
+    {
+        boolean ordered = true;
+        for (int i = 1; i < count && ordered; i++)
+        {
+            ordered = times[i - 1] <= times[i];
+        }
+        if (listSize == 0 && ordered)
+        {
+            arraySize = Math.max(1, count);
+            time = (times.length == arraySize) ? times : Arrays.copyOf(times, arraySize);
+            configList = new float[arraySize][];
+            packedConfigs = (values.length == count * configSize) ? values : Arrays.copyOf(values, count * configSize);
+            mappedConfigs = null;
+            listSize = count;
+            return;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            addConfig(times[i], Arrays.copyOfRange(values, i * configSize, (i + 1) * configSize));
+        }
+    }
+
+    /*
+     * Decodes chars in chunks of whole lines, on the common fork-join pool. Returns false, without
+     * adding any configs, if some line does not contain exactly one config.
+     */
+    private boolean decodeContentParallel(char[] chars)
+    {
+        List<DecodeChunk> chunks = new ArrayList<DecodeChunk>();
+        int start = 0;
+        while (start < chars.length)
         {
-            t = Double.parseDouble(tokenizer.nextToken());
+            int end = Math.min(chars.length, start + DECODE_CHUNK_SIZE);
+            while (end < chars.length && chars[end - 1] != '\n')
+            {
+                end++;
+            }
+            chunks.add(new DecodeChunk(chars, start, end, configSize));
+            start = end;
+        }
+        if (chunks.isEmpty()) return true;
+        ForkJoinPool.commonPool().invoke(new DecodeChunksTask(chunks, 0, chunks.size()));
+        int total = 0;
+        for (DecodeChunk chunk : chunks)
+        {
+            if (!chunk.aligned) return false;
+            total += chunk.count;
+        }
+        double[] times = new double[total];
+        float[] values = new float[total * configSize];
+        int count = 0;
+        for (DecodeChunk chunk : chunks)
+        {
+            System.arraycopy(chunk.times, 0, times, count, chunk.count);
+            System.arraycopy(chunk.values, 0, values, count * configSize, chunk.count * configSize);
+            count += chunk.count;
+        }
+        addDecodedConfigs(times, values, count);
+        return true;
+    }
 
-            // performance test
-            // t = 0;
-            // tokenizer.nextToken();
+    /*
+     * Decoding result for chars[start] .. chars[end-1], which should contain one config per (non-empty) line.
+     */
+    private static final class DecodeChunk
+    {
+        final char[] chars;
+        final int start, end, configSize;
+        double[] times = new double[16];
+        float[] values;
+        int count = 0;
+        boolean aligned = true;
+
+        DecodeChunk(char[] chars, int start, int end, int configSize)
+        {
+            this.chars = chars;
+            this.start = start;
+            this.end = end;
+            this.configSize = configSize;
+            values = new float[16 * configSize];
+        }
 
-            conf = new float[configSize];
-            for (int i = 0; i < configSize; i++)
+        void decode()
+        {
+            NumberScanner scanner = new NumberScanner(chars, start, start);
+            int lineStart = start;
+            try
             {
+                while (lineStart < end)
+                {
+                    int lineEnd = lineStart;
+                    while (lineEnd < end && chars[lineEnd] != '\n')
+                    {
+                        lineEnd++;
+                    }
+                    scanner.reset(chars, lineStart, lineEnd);
+                    lineStart = lineEnd + 1;
+                    if (!scanner.hasNext()) continue;
+                    if (count == times.length)
+                    {
+                        times = Arrays.copyOf(times, 2 * count);
+                        values = Arrays.copyOf(values, 2 * count * configSize);
+                    }
+                    times[count] = scanner.nextDouble();
+                    int offset = count * configSize;
+                    for (int i = 0; i < configSize; i++)
+                    {
+                        values[offset + i] = scanner.nextFloat();
+                    }
+                    if (scanner.hasNext())
+                    {
+                        aligned = false;
+                        return;
+                    }
+                    count++;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                aligned = false; // a config that spans lines; the sequential decoder reports real errors
+            }
+        }
+    }
 
-                conf[i] = (float) Double.parseDouble(tokenizer.nextToken());
-                // performance test
-                // tokenizer.nextToken();
+    /*
+     * Decodes chunks[from] .. chunks[to-1], splitting in halves until a single chunk remains.
+     */
+    private static final class DecodeChunksTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final List<DecodeChunk> chunks;
+        private final int from, to;
+
+        DecodeChunksTask(List<DecodeChunk> chunks, int from, int to)
+        {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= 1)
+            {
+                if (from < to) chunks.get(from).decode();
+                return;
             }
-            addConfig(t, conf);
-        }
-
-        /*
-         * implementation based on String.split, this is even slower, at least
-         * on very big Strings int index = 0; String splitData[] =
-         * data.split("[\\s]+"); if(splitData[0].length()==0)index++; double t;
-         * float[] conf; while (index<splitData.length) { t =
-         * Double.parseDouble(splitData[index]); index++; conf = new
-         * float[configSize]; for (int i=0; i<configSize; i++) { conf[i] =
-         * (float) Double.parseDouble(splitData[index]); index++; } addConfig(t,
-         * conf); }
-         */
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecodeChunksTask(chunks, from, mid), new DecodeChunksTask(chunks, mid, to));
+        }
     }
 
     /*
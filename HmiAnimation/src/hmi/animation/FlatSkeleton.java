@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import hmi.math.Mat4f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A flat, array based, view of a VJoint tree, for calculating global matrices incrementally. The
+ * joints are stored in depth-first order, so that every joint comes after its parent, together with
+ * an array of parent indices, and all local and global matrices are kept in two contiguous float
+ * arrays, 16 floats per joint. update() recalculates the global matrix only for joints whose local
+ * matrix or ancestor changed since the previous update; it also copies the result to the global
+ * matrix of the VJoint, so code that uses VJoint.getGlobalMatrix() keeps working.
+ * <p>
+ * The joints are set as usual, via setRotation, setTranslation etc. The view must be rebuilt, by
+ * calling compile(), after joints have been added to or removed from the tree.
+ */
+public class FlatSkeleton
+{
+    private final VJoint root;
+    private VJoint[] joints;
+    private int[] parentIndices; // -1 for the root
+    private float[] localMatrices;
+    private float[] globalMatrices;
+    private int[] localMatrixVersions; // VJoint local matrix versions at the last update
+    private boolean[] changed; // global matrix changed during the current/last update
+    private final float[] parentMatrix = Mat4f.getIdentity(); // global matrix of the root's parent
+    private boolean fullUpdate;
+    private int updateCount;
+
+    /**
+     * Creates a flat view of the VJoint tree rooted at root
+     */
+    public FlatSkeleton(VJoint root)
+    {
+        this.root = root;
+        compile();
+    }
+
+    /**
+     * (Re)builds the flat view from the current VJoint tree. The next update recalculates all
+     * matrices.
+     */
+    public void compile()
+    {
+        List<VJoint> jointList = new ArrayList<VJoint>();
+        List<Integer> parentList = new ArrayList<Integer>();
+        addJoints(root, -1, jointList, parentList);
+        int n = jointList.size();
+        joints = jointList.toArray(new VJoint[n]);
+        parentIndices = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            parentIndices[i] = parentList.get(i);
+        }
+        localMatrices = new float[16 * n];
+        globalMatrices = new float[16 * n];
+        localMatrixVersions = new int[n];
+        changed = new boolean[n];
+        fullUpdate = true;
+    }
+
+    private static void addJoints(VJoint joint, int parentIndex, List<VJoint> jointList, List<Integer> parentList)
+    {
+        int index = jointList.size();
+        jointList.add(joint);
+        parentList.add(parentIndex);
+        for (VJoint child : joint.getChildren())
+        {
+            addJoints(child, index, jointList, parentList);
+        }
+    }
+
+    /**
+     * Equivalent to update(Mat4f.ID)
+     */
+    public void update()
+    {
+        update(Mat4f.ID);
+    }
+
+    /**
+     * Brings the global matrices up to date, in the same way as root.calculateMatrices(parentGlobalMatrix),
+     * but recalculates only global matrices of joints with a changed local matrix, and of their
+     * descendants.
+     */
+    public void update(float[] parentGlobalMatrix)
+    {
+        boolean parentChanged = fullUpdate || !equals(parentMatrix, 0, parentGlobalMatrix);
+        if (parentChanged) System.arraycopy(parentGlobalMatrix, 0, parentMatrix, 0, 16);
+        int count = 0;
+        for (int i = 0; i < joints.length; i++)
+        {
+            VJoint joint = joints[i];
+            int offset = 16 * i;
+            boolean localChanged = fullUpdate;
+            if (fullUpdate || !joint.hasValidLocalMatrix() || joint.getLocalMatrixVersion() != localMatrixVersions[i])
+            {
+                float[] localMatrix = joint.getLocalMatrix();
+                localMatrixVersions[i] = joint.getLocalMatrixVersion();
+                // a joint that is set to its current transform, or that has shared buffers, is not really changed
+                if (fullUpdate || !equals(localMatrices, offset, localMatrix))
+                {
+                    System.arraycopy(localMatrix, 0, localMatrices, offset, 16);
+                    localChanged = true;
+                }
+            }
+            int parentIndex = parentIndices[i];
+            boolean globalChanged = localChanged || ((parentIndex < 0) ? parentChanged : changed[parentIndex]);
+            changed[i] = globalChanged;
+            if (globalChanged)
+            {
+                if (parentIndex < 0)
+                {
+                    Mat4f.mul(globalMatrices, offset, parentMatrix, 0, localMatrices, offset);
+                }
+                else
+                {
+                    Mat4f.mul(globalMatrices, offset, globalMatrices, 16 * parentIndex, localMatrices, offset);
+                }
+                System.arraycopy(globalMatrices, offset, joint.getGlobalMatrix(), 0, 16);
+                count++;
+            }
+        }
+        fullUpdate = false;
+        updateCount = count;
+    }
+
+    private static boolean equals(float[] a, int aIndex, float[] b)
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            if (a[aIndex + i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of joints whose global matrix was recalculated by the last update
+     */
+    public int getUpdateCount()
+    {
+        return updateCount;
+    }
+
+    /**
+     * Returns the number of joints
+     */
+    public int size()
+    {
+        return joints.length;
+    }
+
+    /**
+     * Returns joint i, in depth-first order; joint 0 is the root.
+     */
+    public VJoint getJoint(int i)
+    {
+        return joints[i];
+    }
+
+    /**
+     * Returns the index of the specified joint, or -1 if it is not part of this skeleton.
+     */
+    public int getIndex(VJoint joint)
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            if (joints[i] == joint) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the parent of joint i, or -1 for the root. The parent index is always
+     * smaller than i.
+     */
+    public int getParentIndex(int i)
+    {
+        return parentIndices[i];
+    }
+
+    /**
+     * Returns all local matrices, the one of joint i starting at 16 * i. Valid after update().
+     */
+    public float[] getLocalMatrices()
+    {
+        return localMatrices;
+    }
+
+    /**
+     * Returns all global matrices, the one of joint i starting at 16 * i. Valid after update().
+     */
+    public float[] getGlobalMatrices()
+    {
+        return globalMatrices;
+    }
+}
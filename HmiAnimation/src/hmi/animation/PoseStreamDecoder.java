@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the header and frame packets written by a PoseStreamEncoder. Delta frames are only
+ * applied when the previous frame of the same stream was decoded; after a lost packet, frames are
+ * dropped until the next key frame.
+ */
+public class PoseStreamDecoder
+{
+    private String[] partIds = null;
+
+    private String configType = null;
+
+    private int configSize = 0;
+
+    private short streamId;
+
+    private float[] config = null;
+
+    private double time;
+
+    private int lastSequence;
+
+    private boolean synced = false; // true if config is valid for lastSequence
+
+    private int droppedFrames = 0;
+
+    /**
+     * Decodes one header or frame packet, starting at the current position of buf. Returns true if
+     * a frame was decoded, that is, if getConfig() and getTime() now describe a new pose.
+     * @throws IllegalArgumentException for data that is not a PoseStreamEncoder packet
+     */
+    public boolean decode(ByteBuffer buf)
+    {
+        byte type = buf.get();
+        if (type == PoseStreamEncoder.HEADER)
+        {
+            decodeHeader(buf);
+            return false;
+        }
+        if (type != PoseStreamEncoder.FRAME)
+        {
+            throw new IllegalArgumentException("Not a pose stream packet, type " + type);
+        }
+        byte flags = buf.get();
+        short id = buf.getShort();
+        int sequence = buf.getInt();
+        double t = buf.getDouble();
+        boolean key = (flags & PoseStreamEncoder.KEY_FRAME) != 0;
+        if (config == null || id != streamId || !(key || (synced && sequence == lastSequence + 1)))
+        {
+            droppedFrames++;
+            synced = false;
+            buf.position(buf.limit());
+            return false;
+        }
+        if (key)
+        {
+            for (int i = 0; i < configSize; i++)
+            {
+                config[i] = buf.getFloat();
+            }
+        }
+        else
+        {
+            int maskPos = buf.position();
+            int maskSize = (configSize + 7) / 8;
+            buf.position(maskPos + maskSize);
+            for (int b = 0; b < maskSize; b++)
+            {
+                int mask = buf.get(maskPos + b) & 0xff;
+                while (mask != 0)
+                {
+                    int bit = Integer.numberOfTrailingZeros(mask);
+                    config[b * 8 + bit] += buf.getFloat();
+                    mask &= mask - 1;
+                }
+            }
+        }
+        time = t;
+        lastSequence = sequence;
+        synced = true;
+        return true;
+    }
+
+    private void decodeHeader(ByteBuffer buf)
+    {
+        byte version = buf.get();
+        if (version != PoseStreamEncoder.VERSION)
+        {
+            throw new IllegalArgumentException("Unsupported pose stream version " + version);
+        }
+        short id = buf.getShort();
+        String type = getString(buf);
+        int size = buf.getInt();
+        String[] ids = new String[buf.getShort()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = getString(buf);
+        }
+        if (config != null && id == streamId && size == configSize)
+        {
+            return; // repeated header of the current stream
+        }
+        streamId = id;
+        configType = type;
+        configSize = size;
+        partIds = ids;
+        config = new float[size];
+        synced = false;
+    }
+
+    private static String getString(ByteBuffer buf)
+    {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * True if a header has been decoded
+     */
+    public boolean hasHeader()
+    {
+        return config != null;
+    }
+
+    public String[] getPartIds()
+    {
+        return partIds;
+    }
+
+    public String getConfigType()
+    {
+        return configType;
+    }
+
+    public int getConfigSize()
+    {
+        return configSize;
+    }
+
+    /**
+     * The config of the last decoded frame. The array is reused (updated in place) by following frames,
+     * until a header for a different stream arrives.
+     */
+    public float[] getConfig()
+    {
+        return config;
+    }
+
+    /**
+     * The time of the last decoded frame
+     */
+    public double getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Number of frames that could not be decoded because the header or the previous frame was missing.
+     */
+    public int getDroppedFrames()
+    {
+        return droppedFrames;
+    }
+
+    /**
+     * Creates a SkeletonPose that shares its config with this decoder, so that it follows the decoded frames.
+     * Returns null if no header has been decoded yet.
+     */
+    public SkeletonPose createSkeletonPose()
+    {
+        if (config == null) return null;
+        return new SkeletonPose(partIds, config, configType);
+    }
+}
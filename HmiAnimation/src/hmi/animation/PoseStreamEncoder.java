@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Encodes a stream of poses (SkeletonPose configs, or the frames of a ConfigList) into compact binary
+ * packets, to be decoded by a PoseStreamDecoder. Meant for sending poses at frame rate over a
+ * (binary) middleware, instead of formatting and parsing the floats as text every frame.
+ * 
+ * A header packet describes the stream: partIds, configType and configSize. It needs to be sent once,
+ * and again whenever a new receiver may have joined (e.g. periodically over UDP). Frame packets then
+ * contain the time and either all floats of the config (key frames), or only the floats that changed
+ * since the previous frame, as float32 deltas. A key frame is sent every keyFrameInterval frames, so
+ * that a receiver can recover from lost packets.
+ * 
+ * Packet layout (big endian):
+ * <ul>
+ * <li>header: 'H', version, streamId (short), configType (short length + UTF-8), configSize (int),
+ * number of parts (short), partIds (each short length + UTF-8)</li>
+ * <li>frame: 'F', flags (KEY_FRAME or 0), streamId (short), sequence number (int), time (double), then
+ * for a key frame configSize floats, otherwise a bit mask of (configSize+7)/8 bytes marking the
+ * changed floats followed by one float delta for each set bit</li>
+ * </ul>
+ * 
+ * The streamId lets a decoder tell streams on the same channel apart. When several senders may share a
+ * channel, give each encoder a distinct id; by default a random id is chosen.
+ */
+public class PoseStreamEncoder
+{
+    static final byte HEADER = 'H';
+
+    static final byte FRAME = 'F';
+
+    static final byte VERSION = 1;
+
+    static final byte KEY_FRAME = 1;
+
+    private static final Random streamIdGenerator = new Random();
+
+    private final short streamId;
+
+    private final String[] partIds;
+
+    private final String configType;
+
+    private final int configSize;
+
+    private final float[] reference; // the config as the decoder has it after the previous frame
+
+    private int sequence = 0;
+
+    private int framesSinceKey = 0;
+
+    private boolean needKeyFrame = true;
+
+    private int keyFrameInterval = 60;
+
+    private float tolerance = 0f;
+
+    /**
+     * Creates an encoder for poses with the specified partIds, configType (e.g. "T1R" or "R") and
+     * configSize (number of floats in a config), with the specified streamId.
+     */
+    public PoseStreamEncoder(String[] partIds, String configType, int configSize, short streamId)
+    {
+        this.partIds = partIds;
+        this.configType = configType;
+        this.configSize = configSize;
+        this.streamId = streamId;
+        reference = new float[configSize];
+    }
+
+    /**
+     * Creates an encoder for poses with the specified partIds, configType (e.g. "T1R" or "R") and
+     * configSize (number of floats in a config), with a random streamId.
+     */
+    public PoseStreamEncoder(String[] partIds, String configType, int configSize)
+    {
+        this(partIds, configType, configSize, randomStreamId());
+    }
+
+    /**
+     * Creates an encoder for the configs of the specified pose, with the specified streamId
+     */
+    public PoseStreamEncoder(SkeletonPose pose, short streamId)
+    {
+        this(pose.getPartIds(), pose.getConfigType(), pose.getConfigSize(), streamId);
+    }
+
+    /**
+     * Creates an encoder for the configs of the specified pose, with a random streamId
+     */
+    public PoseStreamEncoder(SkeletonPose pose)
+    {
+        this(pose, randomStreamId());
+    }
+
+    /**
+     * Creates an encoder for the (interpolated) configs of the specified SkeletonInterpolator, with the specified streamId
+     */
+    public PoseStreamEncoder(SkeletonInterpolator ski, short streamId)
+    {
+        this(ski.getPartIds(), ski.getConfigType(), ski.getConfigSize(), streamId);
+    }
+
+    /**
+     * Creates an encoder for the (interpolated) configs of the specified SkeletonInterpolator, with a random streamId
+     */
+    public PoseStreamEncoder(SkeletonInterpolator ski)
+    {
+        this(ski, randomStreamId());
+    }
+
+    private static short randomStreamId()
+    {
+        synchronized (streamIdGenerator)
+        {
+            return (short) streamIdGenerator.nextInt();
+        }
+    }
+
+    public short getStreamId()
+    {
+        return streamId;
+    }
+
+    /**
+     * Sets the number of frames after which a new key frame is sent, default 60. With an interval
+     * &lt;= 1 all frames are key frames.
+     */
+    public void setKeyFrameInterval(int keyFrameInterval)
+    {
+        this.keyFrameInterval = keyFrameInterval;
+    }
+
+    /**
+     * Sets the maximum difference (default 0) for a float to be considered unchanged, and left out
+     * of a delta frame. Differences never accumulate: the next delta is relative to the value the
+     * decoder has.
+     */
+    public void setTolerance(float tolerance)
+    {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Makes the next frame a key frame, for instance after a new receiver connected.
+     */
+    public void requestKeyFrame()
+    {
+        needKeyFrame = true;
+    }
+
+    public int getConfigSize()
+    {
+        return configSize;
+    }
+
+    /**
+     * The number of bytes needed for the header packet
+     */
+    public int getHeaderSize()
+    {
+        int size = 1 + 1 + 2 + 2 + configType.getBytes(StandardCharsets.UTF_8).length + 4 + 2;
+        for (String id : partIds)
+        {
+            size += 2 + id.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * The maximum number of bytes needed for a frame packet
+     */
+    public int getMaxFrameSize()
+    {
+        return 1 + 1 + 2 + 4 + 8 + (configSize + 7) / 8 + 4 * configSize;
+    }
+
+    /**
+     * Writes the header packet at the current position of buf.
+     */
+    public void encodeHeader(ByteBuffer buf)
+    {
+        buf.put(HEADER).put(VERSION).putShort(streamId);
+        putString(buf, configType);
+        buf.putInt(configSize);
+        buf.putShort((short) partIds.length);
+        for (String id : partIds)
+        {
+            putString(buf, id);
+        }
+    }
+
+    /**
+     * Writes a frame packet for the specified pose at the current position of buf.
+     */
+    public void encodeFrame(ByteBuffer buf, double time, SkeletonPose pose)
+    {
+        encodeFrame(buf, time, pose.getConfig());
+    }
+
+    /**
+     * Writes a frame packet for config at the current position of buf. buf should have at least
+     * getMaxFrameSize() bytes remaining.
+     */
+    public void encodeFrame(ByteBuffer buf, double time, float[] config)
+    {
+        boolean key = needKeyFrame || framesSinceKey + 1 >= keyFrameInterval;
+        buf.put(FRAME).put(key ? KEY_FRAME : 0).putShort(streamId).putInt(sequence++).putDouble(time);
+        if (key)
+        {
+            for (int i = 0; i < configSize; i++)
+            {
+                buf.putFloat(config[i]);
+            }
+            System.arraycopy(config, 0, reference, 0, configSize);
+            needKeyFrame = false;
+            framesSinceKey = 0;
+            return;
+        }
+        framesSinceKey++;
+        int maskPos = buf.position();
+        int maskSize = (configSize + 7) / 8;
+        int dataPos = maskPos + maskSize;
+        for (int b = 0; b < maskSize; b++)
+        {
+            int mask = 0;
+            int end = Math.min(configSize, b * 8 + 8);
+            for (int i = b * 8; i < end; i++)
+            {
+                float delta = config[i] - reference[i];
+                if (delta > tolerance || delta < -tolerance)
+                {
+                    mask |= 1 << (i & 7);
+                    buf.putFloat(dataPos, delta);
+                    dataPos += 4;
+                    reference[i] += delta;
+                }
+            }
+            buf.put(maskPos + b, (byte) mask);
+        }
+        buf.position(dataPos);
+    }
+
+    private static void putString(ByteBuffer buf, String s)
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+}
@@ -26,8 +26,23 @@ import hmi.xml.XMLFormatting;
 import hmi.xml.XMLStructureAdapter;
 import hmi.xml.XMLTokenizer;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Set;
@@ -51,6 +66,12 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     private static final String[] empty_PartIds = new String[0];
 
+    /** First four bytes of a binary encoded SkeletonInterpolator: "HSKI" */
+    public static final int BINARY_MAGIC = 0x48534B49;
+
+    /** Version of the binary encoding written by writeBinary */
+    public static final int BINARY_VERSION = 1;
+
     private String[] partIds = empty_PartIds;
 
     private ConfigList configs;
@@ -75,7 +96,9 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     private double lowerTime, upperTime, interval;
 
-    private float[] lowerConfig, upperConfig;
+    private float[] lowerConfig, upperConfig; // arrays holding the configs at lowerIndex and upperIndex
+
+    private int lowerOffset, upperOffset; // starting at these offsets, see ConfigList.getConfigData
 
     private float[] buf = new float[4]; // temp copy buffer for Vec3f and Quat4f elements
 
@@ -354,7 +377,8 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
         for (int j = 0; j < configs.size(); j++)
         {
-            float src[] = configs.getConfig(j);
+            float src[] = configs.getConfigData(j);
+            int srcOffset = configs.getConfigOffset(j);
             float dst[] = new float[configSize];
             int newConfigIndex = 0;
             index = 0;
@@ -362,7 +386,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
             {
                 if (joints.contains(partIds[i]))
                 {
-                    System.arraycopy(src, index, dst, newConfigIndex, getWidth(i));
+                    System.arraycopy(src, srcOffset + index, dst, newConfigIndex, getWidth(i));
                     newConfigIndex += getWidth(i);
                 }
                 index += getWidth(i);
@@ -402,45 +426,67 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     public float[] getInterpolatedConfig(double t, float[] conf)
     {
         if (configs.size() == 0) return null;
-        if (conf == null) conf = new float[configs.getConfig(0).length];
+        if (conf == null) conf = new float[configs.getConfigSize()];
         float alpha = getInterpolationConfigs(t); // sets lowerConfig and upperConfig
-        interpolateConfigs(conf, alpha, lowerConfig, upperConfig);
+        interpolateConfigs(conf, 0, alpha, lowerConfig, lowerOffset, upperConfig, upperOffset);
         return conf;
     }
 
+    /**
+     * Calculates the interpolated config for time t into conf, starting at confOffset, without
+     * touching the target. Nothing is written when this interpolator has no configs.
+     */
+    public void interpolateConfig(double t, float[] conf, int confOffset)
+    {
+        if (configs.size() == 0) return;
+        float alpha = getInterpolationConfigs(t); // sets lowerConfig and upperConfig
+        interpolateConfigs(conf, confOffset, alpha, lowerConfig, lowerOffset, upperConfig, upperOffset);
+    }
+
     private void interpolateConfigs(float[] conf, float alpha, float[] lowerConfig, float[] upperConfig)
+    {
+        interpolateConfigs(conf, 0, alpha, lowerConfig, 0, upperConfig, 0);
+    }
+
+    private void interpolateConfigs(float[] conf, int confOffset, float alpha, float[] lowerConfig, int lowerOffset,
+            float[] upperConfig, int upperOffset)
     {
         int index = 0;
         if (hasRootTranslation && partIds.length > 0)
         {
-            Vec3f.interpolate(conf, 0, lowerConfig, 0, upperConfig, 0, alpha);
+            Vec3f.interpolate(conf, confOffset, lowerConfig, lowerOffset, upperConfig, upperOffset, alpha);
             index += 3;
         }
         for (int i = 0; i < partIds.length; i++)
         {
             if (hasTranslation)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, confOffset + index, lowerConfig, lowerOffset + index, upperConfig, upperOffset
+                        + index, alpha);
                 index += 3;
             }
             if (hasRotation)
             {
-                Quat4f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Quat4f.interpolate(conf, confOffset + index, lowerConfig, lowerOffset + index, upperConfig, upperOffset
+                        + index, alpha);
                 index += 4;
             }
             if (hasScale)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, confOffset + index, lowerConfig, lowerOffset + index, upperConfig, upperOffset
+                        + index, alpha);
                 index += 3;
             }
             if (hasVelocity)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, confOffset + index, lowerConfig, lowerOffset + index, upperConfig, upperOffset
+                        + index, alpha);
                 index += 3;
             }
             if (hasAngularVelocity)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, confOffset + index, lowerConfig, lowerOffset + index, upperConfig, upperOffset
+                        + index, alpha);
                 index += 3;
             }
         }
@@ -466,45 +512,67 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
      */
     public void setTargetParts(int c)
     {
-        float config[] = getConfig(c);
-        int index = 0;
+        setTargetParts(configs.getConfigData(c), configs.getConfigOffset(c));
+    }
+    
+    /**
+     * Sets the target parts to a config in conf, starting at confOffset, for instance as calculated
+     * by interpolateConfig. Target parts that are null are skipped.
+     */
+    public void setTargetParts(float[] conf, int confOffset)
+    {
+        if (targetParts == null) return;
+        int index = confOffset;
         if (hasRootTranslation)
         {
-            targetParts[0].setTranslation(config, index);
+            if (targetParts.length > 0 && targetParts[0] != null) targetParts[0].setTranslation(conf, index);
             index += 3;
         }
         for (int i = 0; i < targetParts.length; i++)
         {
+            VObject part = targetParts[i];
             if (hasTranslation)
             {
-                targetParts[i].setTranslation(config, index);
+                if (part != null) part.setTranslation(conf, index);
                 index += 3;
             }
             if (hasRotation)
             {
-                targetParts[i].setRotation(config, index);
+                if (part != null) part.setRotation(conf, index);
                 index += 4;
             }
             if (hasScale)
             {
-                targetParts[i].setScale(config, index);
+                if (part != null) part.setScale(conf, index);
                 index += 3;
             }
+            if (hasVelocity) index += 3;
+            if (hasAngularVelocity) index += 3;
         }
     }
-    
+
+    /*
+     * A copy of config i; unlike getConfig(i), this does not detach config i from a packed or mapped ConfigList.
+     */
+    private float[] copyConfig(int i)
+    {
+        float[] config = new float[configs.getConfigSize()];
+        configs.getConfig(i, config, 0);
+        return config;
+    }
+
     /**
      * start = true if the given values are meant for the first frame of the SkeletonInterpolator, false if for the final frame
      */
     public void setHumanoidRootTranslation(float[] translation, boolean start) {
-    	float[] refFrame = start ? this.getConfig(0) : this.getConfig(this.size()-1); 
+    	float[] refFrame = start ? copyConfig(0) : copyConfig(this.size()-1); 
     	
     	float[] refTranslation = new float[3];
     	Vec3f.set(refTranslation, refFrame[Vec3f.X], refFrame[Vec3f.Y], refFrame[Vec3f.Z]);
     	Vec3f.sub(translation, refTranslation);
     	ConfigList newConfig = new ConfigList(this.getConfigSize());
     	for (int i = 0; i < this.getConfigList().size(); i++) {
-            float[] config = this.getConfig(i);
+            float[] config = copyConfig(i);
             
             double time = this.getTime(i);
             config[Vec3f.X] = config[Vec3f.X] + translation[Vec3f.X];
@@ -521,7 +589,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
      * start = true if the given values are meant for the first frame of the SkeletonInterpolator, false if for the final frame
      */
     public void setHumanoidRootRotation(float[] rotation, boolean start) {
-    	float[] refFrame = start ? this.getConfig(0) : this.getConfig(this.size()-1);
+    	float[] refFrame = start ? copyConfig(0) : copyConfig(this.size()-1);
     	
     	float[] refRotation = new float[4];
     	Quat4f.set(refRotation, refFrame[Quat4f.S + 3], refFrame[Quat4f.X + 3], refFrame[Quat4f.Y + 3], refFrame[Quat4f.Z + 3]);
@@ -534,7 +602,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     	ConfigList newConfig = new ConfigList(this.getConfigSize());
     	for (int i = 0; i < this.getConfigList().size(); i++) {
-            float[] config = this.getConfig(i);
+            float[] config = copyConfig(i);
             
             double time = this.getTime(i);
             
@@ -556,7 +624,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     public void mirrorYAxis() {
     	ConfigList newConfig = new ConfigList(this.getConfigSize());
     	for (int i = 0; i < this.getConfigList().size(); i++) {
-            float[] config = this.getConfig(i);
+            float[] config = copyConfig(i);
             
             double time = this.getTime(i);
             
@@ -582,36 +650,54 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         if (targetParts == null) return;
         if (configs.size() == 0) return;
         float alpha = getInterpolationConfigs(time); // sets lowerConfig and upperConfig
+        float[] lower = lowerConfig;
+        float[] upper = upperConfig;
+        int lo = lowerOffset;
+        int uo = upperOffset;
         int index = 0;
         if (hasRootTranslation)
         {
-            Vec3f.interpolate(buf, 0, lowerConfig, 0, upperConfig, 0, alpha);
-            targetParts[0].setTranslation(buf);
+            if (targetParts.length > 0 && targetParts[0] != null)
+            {
+                Vec3f.interpolate(buf, 0, lower, lo, upper, uo, alpha);
+                targetParts[0].setTranslation(buf);
+            }
             index += 3;
         }
         for (int i = 0; i < targetParts.length; i++)
         {
-            // can happen if the SkeletonInterpolator contains joints that are not in the target
-            if (targetParts[i] == null) continue;
-
+            // a part can be null if the SkeletonInterpolator contains joints that are not in the target;
+            // its values are skipped, so that the following parts use their own values in the config
+            VObject part = targetParts[i];
             if (hasTranslation)
             {
-                Vec3f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
-                targetParts[i].setTranslation(buf);
+                if (part != null)
+                {
+                    Vec3f.interpolate(buf, 0, lower, lo + index, upper, uo + index, alpha);
+                    part.setTranslation(buf);
+                }
                 index += 3;
             }
             if (hasRotation)
             {
-                Quat4f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
-                targetParts[i].setRotation(buf);
+                if (part != null)
+                {
+                    Quat4f.interpolate(buf, 0, lower, lo + index, upper, uo + index, alpha);
+                    part.setRotation(buf);
+                }
                 index += 4;
             }
             if (hasScale)
             {
-                Vec3f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
-                targetParts[i].setScale(buf);
+                if (part != null)
+                {
+                    Vec3f.interpolate(buf, 0, lower, lo + index, upper, uo + index, alpha);
+                    part.setScale(buf);
+                }
                 index += 3;
             }
+            if (hasVelocity) index += 3;
+            if (hasAngularVelocity) index += 3;
         }
     }
 
@@ -706,8 +792,10 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         lowerTime = configs.getTime(lowerIndex);
         upperTime = configs.getTime(upperIndex);
 
-        lowerConfig = configs.getConfig(lowerIndex);
-        upperConfig = configs.getConfig(upperIndex);
+        lowerConfig = configs.getConfigData(lowerIndex);
+        lowerOffset = configs.getConfigOffset(lowerIndex);
+        upperConfig = configs.getConfigData(upperIndex);
+        upperOffset = configs.getConfigOffset(upperIndex);
 
         interval = upperTime - lowerTime;
         float alpha = (interval <= 0.0f) ? 0.0f : (float) ((t - lowerTime) / interval);
@@ -905,9 +993,10 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     {
         for (int i = 0; i < configs.size(); i++)
         {
-            float[] conf = configs.getConfig(i);
-            int startIndex = (hasRootTranslation) ? 3 : 0;
-            for (int ri = startIndex; ri < configSize; ri += stride)
+            float[] conf = configs.getConfigData(i);
+            int offset = configs.getConfigOffset(i);
+            int startIndex = offset + ((hasRootTranslation) ? 3 : 0);
+            for (int ri = startIndex; ri < offset + configSize; ri += stride)
             {
                 Quat4f.setFromAxisAngle4f(conf, ri, conf, ri);
             }
@@ -918,9 +1007,10 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     {
         for (int i = 0; i < configs.size(); i++)
         {
-            float[] conf = configs.getConfig(i);
-            int startIndex = (hasRootTranslation) ? 3 : 0;
-            for (int ri = startIndex; ri < configSize; ri += stride)
+            float[] conf = configs.getConfigData(i);
+            int offset = configs.getConfigOffset(i);
+            int startIndex = offset + ((hasRootTranslation) ? 3 : 0);
+            for (int ri = startIndex; ri < offset + configSize; ri += stride)
             {
                 Quat4f.setFromXYZW(conf, ri, conf, ri);
             }
@@ -1030,6 +1120,218 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         return new SkeletonInterpolator(tk);
     }
 
+    /**
+     * Writes this SkeletonInterpolator in binary form to the specified file, see
+     * writeBinary(OutputStream).
+     */
+    public void writeBinary(File file) throws IOException
+    {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file)))
+        {
+            writeBinary(out);
+        }
+    }
+
+    /**
+     * Writes this SkeletonInterpolator in binary form. The encoding consists of a header, followed by
+     * all time values as one contiguous block of doubles and all configs as one contiguous block of
+     * floats, in little endian byte order:
+     * <ul>
+     * <li>int magic (BINARY_MAGIC), short version, short reserved (0)
+     * <li>configType, rotationEncoding, and each of the partIds, preceded by an int part count, as
+     * short length + UTF-8 bytes (length -1 for a null rotationEncoding)
+     * <li>int configSize, int number of configs
+     * <li>zero padding up to a multiple of 8 bytes
+     * <li>double[size] times, float[size * configSize] configs
+     * </ul>
+     * Configs are written as they are kept in memory, so rotations are always quaternions;
+     * rotationEncoding is written only to preserve the attribute.
+     */
+    public void writeBinary(OutputStream out) throws IOException
+    {
+        byte[][] strings = new byte[2 + partIds.length][];
+        strings[0] = encodeBinaryString(configType);
+        strings[1] = encodeBinaryString(rotationEncoding);
+        for (int i = 0; i < partIds.length; i++)
+        {
+            strings[2 + i] = encodeBinaryString(partIds[i]);
+        }
+        int headerSize = 4 + 2 + 2 + 4 + 4 + 4;
+        for (byte[] str : strings)
+        {
+            headerSize += 2 + ((str == null) ? 0 : str.length);
+        }
+        headerSize = (headerSize + 7) & ~7;
+
+        int size = size();
+        int confSize = (size == 0) ? configSize : configs.getConfigSize();
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(BINARY_MAGIC);
+        header.putShort((short) BINARY_VERSION);
+        header.putShort((short) 0);
+        putBinaryString(header, strings[0]);
+        putBinaryString(header, strings[1]);
+        header.putInt(partIds.length);
+        for (int i = 0; i < partIds.length; i++)
+        {
+            putBinaryString(header, strings[2 + i]);
+        }
+        header.putInt(confSize);
+        header.putInt(size);
+        out.write(header.array()); // zero padded by allocate
+
+        ByteBuffer times = ByteBuffer.allocate(8 * size).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++)
+        {
+            times.putDouble(configs.getTime(i));
+        }
+        out.write(times.array());
+        ByteBuffer frame = ByteBuffer.allocate(4 * confSize).order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer frameFloats = frame.asFloatBuffer();
+        float[] config = new float[confSize]; // copied through, so packed or mapped configs stay in place
+        for (int i = 0; i < size; i++)
+        {
+            configs.getConfig(i, config, 0);
+            frameFloats.clear();
+            frameFloats.put(config);
+            out.write(frame.array());
+        }
+        out.flush();
+    }
+
+    private static byte[] encodeBinaryString(String str)
+    {
+        return (str == null) ? null : str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBinaryString(ByteBuffer buf, byte[] str)
+    {
+        if (str == null)
+        {
+            buf.putShort((short) -1);
+        }
+        else
+        {
+            buf.putShort((short) str.length);
+            buf.put(str);
+        }
+    }
+
+    private static String readBinaryString(ByteBuffer buf)
+    {
+        short len = buf.getShort();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a binary encoded SkeletonInterpolator, as written by writeBinary, from a file. The file
+     * is memory mapped, and the ConfigList of the result is backed by the mapped region, so that
+     * only configs that are actually used are copied onto the heap.
+     */
+    public static SkeletonInterpolator readBinary(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+        {
+            // the mapping stays valid after the channel is closed
+            return readBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a binary encoded SkeletonInterpolator from a resource file. Resources that are plain
+     * files are memory mapped, see readBinary(File); others, such as resources inside a jar, are read
+     * into a heap buffer.
+     */
+    public static SkeletonInterpolator readBinary(Resources resources, String fileName) throws IOException
+    {
+        URL url = resources.getURL(fileName);
+        if (url == null) throw new IOException("SkeletonInterpolator: binary resource " + fileName + " not found");
+        if ("file".equals(url.getProtocol()))
+        {
+            try
+            {
+                return readBinary(new File(url.toURI()));
+            }
+            catch (URISyntaxException e)
+            {
+                logger.debug("Cannot map {}, reading it as a stream", url);
+            }
+        }
+        try (InputStream in = url.openStream())
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(chunk)) >= 0)
+            {
+                bytes.write(chunk, 0, n);
+            }
+            return readBinary(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+
+    /**
+     * Reads a binary encoded SkeletonInterpolator, as written by writeBinary, from the position of
+     * the specified buffer. The ConfigList of the result refers to the buffer, which therefore must
+     * not be modified afterwards.
+     */
+    public static SkeletonInterpolator readBinary(ByteBuffer buffer) throws IOException
+    {
+        ByteBuffer buf = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try
+        {
+            int magic = buf.getInt();
+            if (magic != BINARY_MAGIC)
+            {
+                throw new IOException("SkeletonInterpolator: not a binary SkeletonInterpolator encoding");
+            }
+            int version = buf.getShort();
+            if (version != BINARY_VERSION)
+            {
+                throw new IOException("SkeletonInterpolator: unsupported binary encoding version " + version);
+            }
+            buf.getShort(); // reserved
+            String configType = readBinaryString(buf);
+            String rotationEncoding = readBinaryString(buf);
+            int partCount = buf.getInt();
+            if (partCount < 0) throw new IOException("SkeletonInterpolator: corrupt binary encoding, part count " + partCount);
+            String[] partIds = new String[partCount];
+            for (int i = 0; i < partCount; i++)
+            {
+                partIds[i] = readBinaryString(buf);
+            }
+            int configSize = buf.getInt();
+            int size = buf.getInt();
+            buf.position((buf.position() + 7) & ~7);
+            if (configSize < 0 || size < 0 || buf.remaining() < 8L * size + 4L * size * configSize)
+            {
+                throw new IOException("SkeletonInterpolator: truncated binary encoding");
+            }
+            ByteBuffer times = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+            times.limit(8 * size);
+            buf.position(buf.position() + 8 * size);
+            ByteBuffer data = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+            data.limit(4 * size * configSize);
+
+            ConfigList configs = new ConfigList(configSize, times.asDoubleBuffer(), data.asFloatBuffer(), size);
+            SkeletonInterpolator ski = new SkeletonInterpolator(partIds, configs, configType);
+            ski.rotationEncoding = rotationEncoding;
+            if (size > 0 && ski.configSize != configSize)
+            {
+                throw new IOException("SkeletonInterpolator: binary config size " + configSize + " does not match encoding "
+                        + configType + " for " + partCount + " parts");
+            }
+            return ski;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("SkeletonInterpolator: truncated binary encoding", e);
+        }
+    }
+
     /*
      * The XML Stag for XML encoding
      */
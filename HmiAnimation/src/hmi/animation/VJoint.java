@@ -66,6 +66,7 @@ public class VJoint implements VObject
     final private float[] localMatrix = Mat4f.getIdentity();
     final private float[] globalMatrix = Mat4f.getIdentity();
     private boolean validLocalMatrix = false; // "dirty bit" for localMatrix.
+    private int localMatrixVersion = 0; // incremented whenever localMatrix is (re)calculated or set, see FlatSkeleton
     private boolean hasSharedBuffers = false; // denotes whether the translation
                                               // and/or rotation
     // array should be considered a shared array, because getTranslationBuffer
@@ -1160,10 +1161,27 @@ public class VJoint implements VObject
                 logger.error("VJoint.getLocalMatrix: unknown scaling type: " + scalingType);
             }
             validLocalMatrix = true;
+            localMatrixVersion++;
         }
         return localMatrix;
     }
 
+    /*
+     * Returns true when getLocalMatrix() would return the local matrix without recalculating it
+     */
+    boolean hasValidLocalMatrix()
+    {
+        return validLocalMatrix && !hasSharedBuffers;
+    }
+
+    /*
+     * Returns a number that changes whenever the local matrix is recalculated or set.
+     */
+    int getLocalMatrixVersion()
+    {
+        return localMatrixVersion;
+    }
+
     /**
      * Sets the local 4X4 transform matrix, and decomposes it into a rotation, translation, and scaling. Note: this is NOT the preferred way for
      * setting the transform: it is slow, due to the polar decomposition, needed to extract the rotation and scaling. The preferred way is to set
@@ -1187,6 +1205,7 @@ public class VJoint implements VObject
     private void decomposeLocalMatrix()
     {
         validLocalMatrix = true;
+        localMatrixVersion++;
         if (!Mat4f.isAffine(localMatrix))
         {
             scalingType = Mat3f.ScalingType.SKEW;
@@ -1240,6 +1259,7 @@ public class VJoint implements VObject
     public final void setLocalMatrix(float[] matrix4f)
     {
         Mat4f.set(localMatrix, matrix4f);
+        localMatrixVersion++;
     }
 
     /**
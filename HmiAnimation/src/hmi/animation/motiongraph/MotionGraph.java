@@ -21,19 +21,28 @@ package hmi.animation.motiongraph;
 import hmi.animation.SkeletonInterpolator;
 import hmi.animation.motiongraph.alignment.Alignment;
 import hmi.animation.motiongraph.alignment.IAlignment;
+import hmi.animation.motiongraph.alignment.NopAlignment;
 import hmi.animation.motiongraph.blending.Blend;
 import hmi.animation.motiongraph.blending.IBlend;
+import hmi.animation.motiongraph.metrics.DistanceMatrix;
 import hmi.animation.motiongraph.metrics.Equals;
 import hmi.animation.motiongraph.metrics.IDistance;
 import hmi.animation.motiongraph.metrics.IEquals;
 import hmi.animation.motiongraph.metrics.JointAngles;
+import hmi.animation.motiongraph.metrics.PoseIndex;
 import hmi.animation.motiongraph.split.DefaultSplit;
 import hmi.animation.motiongraph.split.ISplit;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -89,6 +98,20 @@ public final class MotionGraph implements IMotionGraph {
     private final Random r = new Random();
     private Node currentNode;
 
+    /**
+     * Distances used by {@link #createBlends()}; store it next to the graph and pass it to
+     * {@link Builder#distances(DistanceMatrix)} to reuse its entries when rebuilding the graph with more motions.
+     */
+    @Getter
+    private DistanceMatrix distanceMatrix;
+    private final Map<SkeletonInterpolator, Integer> matrixRows = new IdentityHashMap<>();
+    private final Map<SkeletonInterpolator, Integer> matrixColumns = new IdentityHashMap<>();
+
+    /**
+     * Index of the first frame of every edge, built on first use by {@link #next(float[])}.
+     */
+    private PoseIndex<Edge> poseIndex;
+
     public Node getNode(int id)
     {
         for(Node n:nodes)
@@ -122,6 +145,24 @@ public final class MotionGraph implements IMotionGraph {
     }
     
     public MotionGraph(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending, ISplit split) {
+        this(motions, align, metric, blending, split, null, 0);
+    }
+
+    /**
+     * @param previousDistances distances of an earlier graph, entries of unchanged motions are reused; may be null
+     */
+    public MotionGraph(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending, ISplit split,
+            DistanceMatrix previousDistances) {
+        this(motions, align, metric, blending, split, previousDistances, 0);
+    }
+
+    /**
+     * @param previousDistances distances of an earlier graph, entries of unchanged motions are reused; may be null
+     * @param transitionCandidates if larger than 0, only the transitionCandidates ends of which the pose is closest
+     * to a start are compared with it, see {@link Builder#transitionCandidates(int)}
+     */
+    public MotionGraph(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending, ISplit split,
+            DistanceMatrix previousDistances, int transitionCandidates) {
         edges = new LinkedList<>();
         nodes = new LinkedList<>();
         if (motions == null || motions.isEmpty()) {
@@ -144,7 +185,7 @@ public final class MotionGraph implements IMotionGraph {
         this.metric = metric;
         this.blending = blending;
         
-        this.init(motions, split);
+        this.init(motions, split, previousDistances, transitionCandidates);
     }
 
     /**
@@ -152,7 +193,8 @@ public final class MotionGraph implements IMotionGraph {
      * <p>
      * @param motions
      */
-    private void init(List<SkeletonInterpolator> motions, ISplit split) {
+    private void init(List<SkeletonInterpolator> motions, ISplit split, DistanceMatrix previousDistances,
+            int transitionCandidates) {
 
         for (SkeletonInterpolator sp : motions) {
 
@@ -187,7 +229,7 @@ public final class MotionGraph implements IMotionGraph {
 
         this.connectMotions();
         this.split(split);
-        this.createBlends();
+        this.createBlends(previousDistances, transitionCandidates);
         this.prune();
         System.out.println("NODES AFTER: " + nodes.size());
         System.out.println("EDGES AFTER: " + edges.size());
@@ -272,6 +314,7 @@ public final class MotionGraph implements IMotionGraph {
             edges.removeAll(n.getOutgoingEdges());
         }
         this.nodes.removeAll(nodes);
+        poseIndex = null;
     }
     /**
      * Returns next motion to be displayed.
@@ -307,6 +350,76 @@ public final class MotionGraph implements IMotionGraph {
 
     }
 
+    /**
+     * Returns next motion to be displayed, continuing towards pose (a feature of {@link #getPoseIndex()}): the
+     * outgoing edge of the current node of which the last frame is closest to pose. Without current node, this is the
+     * edge of which the first frame is closest to pose.
+     * <p>
+     * @return Skeletoninterpolator next.
+     */
+    public SkeletonInterpolator next(float[] pose) {
+        PoseIndex<Edge> index = getPoseIndex();
+        Edge currentEdge = null;
+        if (currentNode == null) {
+            List<PoseIndex.Neighbour<Edge>> nearest = index.nearest(pose, 1);
+            if (!nearest.isEmpty()) {
+                currentEdge = nearest.get(0).getItem();
+            }
+        } else {
+            float minDistance = Float.POSITIVE_INFINITY;
+            float[] feature = null;
+            for (Edge edge : currentNode.getOutgoingEdges()) {
+                SkeletonInterpolator motion = edge.getMotion();
+                feature = index.getFeature(motion, motion.size() - 1, feature);
+                float distance = index.distance(pose, feature);
+                if (currentEdge == null || distance < minDistance) {
+                    currentEdge = edge;
+                    minDistance = distance;
+                }
+            }
+        }
+        if (currentEdge == null) {
+            currentNode = null;
+            return null;
+        }
+        currentEdge.played++;
+        currentNode = currentEdge.getEndNode().hasNext() ? currentEdge.getEndNode() : null;
+        return currentEdge.getMotion();
+    }
+
+    /**
+     * Index of the first frame of every edge, with the joints of all motions.
+     */
+    public PoseIndex<Edge> getPoseIndex() {
+        if (poseIndex == null) {
+            List<SkeletonInterpolator> motions = new ArrayList<>();
+            for (Edge edge : edges) {
+                motions.add(edge.getMotion());
+            }
+            poseIndex = createPoseIndex(motions);
+            for (Edge edge : edges) {
+                if (edge.getMotion().size() > 0) {
+                    poseIndex.add(edge, edge.getMotion(), 0);
+                }
+            }
+        }
+        return poseIndex;
+    }
+
+    /**
+     * Creates an empty PoseIndex over the joints of motions. Root translations are only part of the pose if motions
+     * are not aligned.
+     */
+    private <T> PoseIndex<T> createPoseIndex(List<SkeletonInterpolator> motions) {
+        Set<String> partIds = new LinkedHashSet<>();
+        for (SkeletonInterpolator motion : motions) {
+            for (String partId : motion.getPartIds()) {
+                partIds.add(partId);
+            }
+        }
+        return new PoseIndex<T>(partIds.toArray(new String[partIds.size()]), align instanceof NopAlignment);
+    }
+
     /**
      * Reconnect all Motions that have been cut in xml-format. Will not be needed in final implementation
      */
@@ -330,8 +443,15 @@ public final class MotionGraph implements IMotionGraph {
 
     /**
      * Connect all Motions that are similar enough with blends.
+     * <p>
+     * The distances of all start and end motions are computed up front in a {@link DistanceMatrix}. Splitting a motion
+     * for a blend keeps its compared frames, so the parts inherit the matrix row or column of the motion; motions
+     * without one are compared with the metric directly.
+     * <p>
+     * With transitionCandidates larger than 0, every start is only compared with the transitionCandidates ends of
+     * which the pose is closest, found with a {@link PoseIndex}, without distance matrix.
      */
-    private void createBlends() {
+    private void createBlends(DistanceMatrix previousDistances, int transitionCandidates) {
         List<Node> starts = new LinkedList<>();
         for (Node node : nodes) {
             if (!node.getIncomingEdges().isEmpty()) {
@@ -345,24 +465,118 @@ public final class MotionGraph implements IMotionGraph {
             }
         }
 
+        Map<Node, Set<Node>> candidates = null;
+        if (transitionCandidates > 0) {
+            candidates = findTransitionCandidates(starts, ends, transitionCandidates);
+        } else {
+            computeDistanceMatrix(starts, ends, previousDistances);
+        }
+
         for (Node start : starts) {
             for (Node end : ends) {
                 if (start == end) {
                     //motions already connected
                     continue;
                 }
+                if (candidates != null && !candidates.get(start).contains(end)) {
+                    continue;
+                }
 
                 if (start.getIncomingEdges().get(0).getMotion().size() >= DEFAULT_BLENDING_FRAMES
                         && end.getOutgoingEdges().get(0).getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
 
-                    if (metric.distance(start.getIncomingEdges().get(0).getMotion(),
-                            end.getOutgoingEdges().get(0).getMotion(), DEFAULT_BLENDING_FRAMES) <= DEFAULT_THRESHOLD) {
+                    if (distance(start.getIncomingEdges().get(0).getMotion(),
+                            end.getOutgoingEdges().get(0).getMotion()) <= DEFAULT_THRESHOLD) {
                         createBlending(start.getIncomingEdges().get(0), end.getOutgoingEdges().get(0));
                     }
                 }
             }
 
         }
+        matrixRows.clear();
+        matrixColumns.clear();
+    }
+
+    /**
+     * Computes the distances of all start and end motions in {@link #distanceMatrix}.
+     */
+    private void computeDistanceMatrix(List<Node> starts, List<Node> ends, DistanceMatrix previousDistances) {
+        List<SkeletonInterpolator> startMotions = new ArrayList<>();
+        for (Node start : starts) {
+            SkeletonInterpolator motion = start.getIncomingEdges().get(0).getMotion();
+            if (!matrixRows.containsKey(motion)) {
+                matrixRows.put(motion, startMotions.size());
+                startMotions.add(motion);
+            }
+        }
+        List<SkeletonInterpolator> endMotions = new ArrayList<>();
+        for (Node end : ends) {
+            SkeletonInterpolator motion = end.getOutgoingEdges().get(0).getMotion();
+            if (!matrixColumns.containsKey(motion)) {
+                matrixColumns.put(motion, endMotions.size());
+                endMotions.add(motion);
+            }
+        }
+        distanceMatrix = DistanceMatrix.compute(metric, startMotions, endMotions, DEFAULT_BLENDING_FRAMES, previousDistances);
+    }
+
+    /**
+     * For every start, finds the k ends of which the first frame is closest to the frame of the start where blending
+     * would begin.
+     */
+    private Map<Node, Set<Node>> findTransitionCandidates(List<Node> starts, List<Node> ends, int k) {
+        List<SkeletonInterpolator> motions = new ArrayList<>();
+        for (Node start : starts) {
+            motions.add(start.getIncomingEdges().get(0).getMotion());
+        }
+        for (Node end : ends) {
+            motions.add(end.getOutgoingEdges().get(0).getMotion());
+        }
+        PoseIndex<Node> index = createPoseIndex(motions);
+        for (Node end : ends) {
+            SkeletonInterpolator motion = end.getOutgoingEdges().get(0).getMotion();
+            if (motion.size() >= DEFAULT_BLENDING_FRAMES) {
+                index.add(end, motion, 0);
+            }
+        }
+
+        Map<Node, Set<Node>> candidates = new HashMap<>();
+        float[] feature = null;
+        for (Node start : starts) {
+            Set<Node> startCandidates = new HashSet<>();
+            SkeletonInterpolator motion = start.getIncomingEdges().get(0).getMotion();
+            if (motion.size() >= DEFAULT_BLENDING_FRAMES) {
+                feature = index.getFeature(motion, motion.size() - DEFAULT_BLENDING_FRAMES, feature);
+                for (PoseIndex.Neighbour<Node> neighbour : index.nearest(feature, k)) {
+                    startCandidates.add(neighbour.getItem());
+                }
+            }
+            candidates.put(start, startCandidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * Distance between the last frames of start and the first frames of end, from the distance matrix if possible.
+     */
+    private double distance(SkeletonInterpolator start, SkeletonInterpolator end) {
+        Integer row = matrixRows.get(start);
+        Integer column = matrixColumns.get(end);
+        if (row != null && column != null) {
+            return distanceMatrix.get(row, column);
+        }
+        return metric.distance(start, end, DEFAULT_BLENDING_FRAMES);
+    }
+
+    /**
+     * Lets part use the matrix row or column of motion, if part has all compared frames of motion.
+     */
+    private static void inherit(Map<SkeletonInterpolator, Integer> matrixIndex, SkeletonInterpolator motion,
+            SkeletonInterpolator part) {
+        Integer index = matrixIndex.get(motion);
+        if (index != null && part.size() >= DEFAULT_BLENDING_FRAMES) {
+            matrixIndex.put(part, index);
+        }
     }
 
     /**
@@ -390,6 +604,8 @@ public final class MotionGraph implements IMotionGraph {
 
             SkeletonInterpolator split1 = first.getMotion().subSkeletonInterpolator(0, first.getMotion().size() - DEFAULT_BLENDING_FRAMES);//could be length 0
             Edge firstMotionPart1 = new Edge(split1);
+            inherit(matrixRows, first.getMotion(), blendStart);
+            inherit(matrixColumns, first.getMotion(), split1);
 
             first.getStartNode().addOutgoingEdge(firstMotionPart1);
             first.getEndNode().addIncomingEdge(firstMotionPart2);
@@ -412,6 +628,8 @@ public final class MotionGraph implements IMotionGraph {
 
             SkeletonInterpolator split2 = second.getMotion().subSkeletonInterpolator(DEFAULT_BLENDING_FRAMES);//could be length 0
             Edge secondMotionPart2 = new Edge(split2);
+            inherit(matrixColumns, second.getMotion(), blendEnd);
+            inherit(matrixRows, second.getMotion(), split2);
 
             second.getStartNode().addOutgoingEdge(secondMotionPart1);
             second.getEndNode().addIncomingEdge(secondMotionPart2);
@@ -462,6 +680,8 @@ public final class MotionGraph implements IMotionGraph {
         private List<SkeletonInterpolator> motions = null;
         private Collection<Edge> edges;
         private Collection<Node> nodes;
+        private DistanceMatrix distances;
+        private int transitionCandidates;
         
         public Builder(Collection<Edge> edges, Collection<Node> nodes)
         {
@@ -484,7 +704,8 @@ public final class MotionGraph implements IMotionGraph {
             }
             else
             {
-                return new MotionGraph(this.motions, this.align, this.metric, this.blending, this.split);
+                return new MotionGraph(this.motions, this.align, this.metric, this.blending, this.split, this.distances,
+                        this.transitionCandidates);
             }
         }
 
@@ -508,5 +729,23 @@ public final class MotionGraph implements IMotionGraph {
             return this;
         }
 
+        /**
+         * Distances of an earlier graph; entries of motions that did not change are reused.
+         */
+        public Builder distances(DistanceMatrix distances) {
+            this.distances = distances;
+            return this;
+        }
+
+        /**
+         * Only compare every start with the k ends of which the pose is closest, instead of with all ends. This makes
+         * building the graph scale with k instead of with the number of motions, but may miss transitions of which
+         * the first frames are not among the k closest. No distance matrix is computed.
+         */
+        public Builder transitionCandidates(int k) {
+            this.transitionCandidates = k;
+            return this;
+        }
+
     }
 }
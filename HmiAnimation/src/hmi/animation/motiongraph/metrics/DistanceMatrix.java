@@ -0,0 +1,590 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import hmi.animation.ConfigList;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.Alignment;
+import hmi.animation.motiongraph.alignment.IAlignment;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.animation.motiongraph.alignment.PositionAlignment;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Distances between the end of a list of start motions (the rows) and the beginning of a list of end motions (the
+ * columns). Entry (row, column) is {@code metric.distance(starts.get(row), ends.get(column), frames)}, or NaN when
+ * one of the motions is shorter than {@code frames}.
+ * <p>
+ * For {@link JointAngles} with {@link NopAlignment}, {@link PositionAlignment} or {@link Alignment} on motions with
+ * configType "R" or "T1R", the compared windows (the last frames of every start motion, the first frames of every end
+ * motion) are extracted once into packed arrays of joint rotation logarithms, indexed by a joint index shared by all
+ * motions, so that comparing a pair of motions allocates nothing. Other metrics are called for every pair. Pairs are
+ * computed on a fork-join pool, so the metric must be thread-safe.
+ * <p>
+ * Rows and columns are keyed by a hash of their compared window. Passing a previously computed matrix (for instance,
+ * one stored next to the motiongraph with {@link hmi.animation.motiongraph.xml.DistanceMatrixXML}) to
+ * {@link #compute(IDistance, List, List, int, DistanceMatrix)} reuses all entries of which both windows are
+ * unchanged, so adding motions only computes the rows and columns of the new motions.
+ */
+public final class DistanceMatrix {
+
+    /**
+     * Key of the rows and columns of motions that are shorter than the compared frames.
+     */
+    public static final String NO_KEY = "-";
+
+    /**
+     * Number of pairs computed by a single fork-join task.
+     */
+    private static final int PAIRS_PER_TASK = 16;
+
+    private final String metricId;
+    private final int frames;
+    private final String[] rowKeys;
+    private final String[] columnKeys;
+    private final float[] distances;
+    private int nrOfReusedEntries;
+
+    /**
+     * Creates a matrix from stored values.
+     *
+     * @param metricId identifies the metric and alignment the distances were computed with
+     * @param frames number of compared frames
+     * @param rowKeys window keys of the start motions
+     * @param columnKeys window keys of the end motions
+     * @param distances row-major distances, rowKeys.length * columnKeys.length values
+     */
+    public DistanceMatrix(String metricId, int frames, String[] rowKeys, String[] columnKeys, float[] distances) {
+        if (distances.length != rowKeys.length * columnKeys.length) {
+            throw new IllegalArgumentException("Expected " + rowKeys.length * columnKeys.length + " distances, got "
+                    + distances.length);
+        }
+        this.metricId = metricId;
+        this.frames = frames;
+        this.rowKeys = rowKeys;
+        this.columnKeys = columnKeys;
+        this.distances = distances;
+    }
+
+    /**
+     * Computes all distances on the common fork-join pool.
+     */
+    public static DistanceMatrix compute(IDistance metric, List<SkeletonInterpolator> starts,
+            List<SkeletonInterpolator> ends, int frames) {
+        return compute(metric, starts, ends, frames, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the distances on the common fork-join pool, reusing the entries of previous (may be null) of which
+     * both windows are unchanged.
+     */
+    public static DistanceMatrix compute(IDistance metric, List<SkeletonInterpolator> starts,
+            List<SkeletonInterpolator> ends, int frames, DistanceMatrix previous) {
+        return compute(metric, starts, ends, frames, previous, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the distances on pool, reusing the entries of previous (may be null) of which both windows are
+     * unchanged.
+     */
+    public static DistanceMatrix compute(IDistance metric, List<SkeletonInterpolator> starts,
+            List<SkeletonInterpolator> ends, int frames, DistanceMatrix previous, ForkJoinPool pool) {
+        List<SkeletonInterpolator> rows = new ArrayList<>(starts);
+        List<SkeletonInterpolator> columns = new ArrayList<>(ends);
+        String[] rowKeys = new String[rows.size()];
+        for (int i = 0; i < rowKeys.length; i++) {
+            SkeletonInterpolator motion = rows.get(i);
+            rowKeys[i] = motion.size() >= frames ? windowKey(motion, motion.size() - frames, frames) : NO_KEY;
+        }
+        String[] columnKeys = new String[columns.size()];
+        for (int i = 0; i < columnKeys.length; i++) {
+            SkeletonInterpolator motion = columns.get(i);
+            columnKeys[i] = motion.size() >= frames ? windowKey(motion, 0, frames) : NO_KEY;
+        }
+
+        DistanceMatrix matrix = new DistanceMatrix(getMetricId(metric), frames, rowKeys, columnKeys,
+                new float[rowKeys.length * columnKeys.length]);
+        int[] pairs = matrix.reuse(previous);
+        if (pairs.length > 0) {
+            PairDistance pairDistance = createPairDistance(metric, rows, columns, frames, matrix.neededRows(pairs),
+                    matrix.neededColumns(pairs));
+            pool.invoke(new DistanceTask(pairDistance, matrix.distances, columnKeys.length, pairs, 0, pairs.length));
+        }
+        return matrix;
+    }
+
+    /**
+     * Identifies metric, and its alignment in case of {@link JointAngles}; entries are only reused from a matrix with
+     * the same metric id.
+     */
+    public static String getMetricId(IDistance metric) {
+        if (metric instanceof JointAngles) {
+            return metric.getClass().getName() + "/" + ((JointAngles) metric).getAlign().getClass().getName();
+        }
+        return metric.getClass().getName();
+    }
+
+    /**
+     * Hash of the configType, partIds and the configs of frames [from, from + frames) of motion.
+     */
+    static String windowKey(SkeletonInterpolator motion, int from, int frames) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, motion.getConfigType());
+        for (String partId : motion.getPartIds()) {
+            hash = hash(hash, partId);
+        }
+        ConfigList configs = motion.getConfigList();
+        for (int f = from; f < from + frames; f++) {
+            for (int j = 0; j < configs.getConfigSize(); j++) {
+                hash = hash(hash, Float.floatToIntBits(configs.getConfigValue(f, j)));
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = hash(hash, value.charAt(i));
+        }
+        return hash(hash, 0);
+    }
+
+    private static long hash(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Copies the entries of previous of which both keys are known, sets the entries of motions that are too short to
+     * NaN and returns the (row-major) indices of the remaining entries.
+     */
+    private int[] reuse(DistanceMatrix previous) {
+        Map<String, Integer> previousRows = new HashMap<>();
+        Map<String, Integer> previousColumns = new HashMap<>();
+        if (previous != null && previous.frames == frames && previous.metricId.equals(metricId)) {
+            for (int i = 0; i < previous.rowKeys.length; i++) {
+                previousRows.put(previous.rowKeys[i], i);
+            }
+            for (int i = 0; i < previous.columnKeys.length; i++) {
+                previousColumns.put(previous.columnKeys[i], i);
+            }
+        }
+
+        int[] pairs = new int[distances.length];
+        int nrOfPairs = 0;
+        for (int row = 0; row < rowKeys.length; row++) {
+            Integer previousRow = previousRows.get(rowKeys[row]);
+            for (int column = 0; column < columnKeys.length; column++) {
+                int index = row * columnKeys.length + column;
+                Integer previousColumn = previousColumns.get(columnKeys[column]);
+                if (rowKeys[row].equals(NO_KEY) || columnKeys[column].equals(NO_KEY)) {
+                    distances[index] = Float.NaN;
+                } else if (previousRow != null && previousColumn != null) {
+                    distances[index] = previous.get(previousRow, previousColumn);
+                    nrOfReusedEntries++;
+                } else {
+                    pairs[nrOfPairs++] = index;
+                }
+            }
+        }
+        int[] result = new int[nrOfPairs];
+        System.arraycopy(pairs, 0, result, 0, nrOfPairs);
+        return result;
+    }
+
+    /**
+     * Distance between the end of start motion row and the beginning of end motion column.
+     */
+    public float get(int row, int column) {
+        return distances[row * columnKeys.length + column];
+    }
+
+    public String getMetricId() {
+        return metricId;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getNrOfRows() {
+        return rowKeys.length;
+    }
+
+    public int getNrOfColumns() {
+        return columnKeys.length;
+    }
+
+    public String getRowKey(int row) {
+        return rowKeys[row];
+    }
+
+    public String getColumnKey(int column) {
+        return columnKeys[column];
+    }
+
+    /**
+     * Number of entries copied from the previous matrix by compute.
+     */
+    public int getNrOfReusedEntries() {
+        return nrOfReusedEntries;
+    }
+
+    private boolean[] neededRows(int[] pairs) {
+        boolean[] needed = new boolean[rowKeys.length];
+        for (int index : pairs) {
+            needed[index / columnKeys.length] = true;
+        }
+        return needed;
+    }
+
+    private boolean[] neededColumns(int[] pairs) {
+        boolean[] needed = new boolean[columnKeys.length];
+        for (int index : pairs) {
+            needed[index % columnKeys.length] = true;
+        }
+        return needed;
+    }
+
+    private static PairDistance createPairDistance(IDistance metric, List<SkeletonInterpolator> rows,
+            List<SkeletonInterpolator> columns, int frames, boolean[] neededRows, boolean[] neededColumns) {
+        if (metric instanceof JointAngles) {
+            IAlignment align = ((JointAngles) metric).getAlign();
+            RootAlignment rootAlignment = null;
+            if (align.getClass() == NopAlignment.class) {
+                rootAlignment = RootAlignment.None;
+            } else if (align.getClass() == PositionAlignment.class) {
+                rootAlignment = RootAlignment.Position;
+            } else if (align.getClass() == Alignment.class) {
+                rootAlignment = RootAlignment.PositionAndYaw;
+            }
+            if (rootAlignment != null && isPackable(rows, rootAlignment) && isPackable(columns, rootAlignment)) {
+                return new PackedJointAngles((JointAngles) metric, rootAlignment, rows, columns, frames, neededRows,
+                        neededColumns);
+            }
+        }
+        return new MetricDistance(metric, rows, columns, frames);
+    }
+
+    private static boolean isPackable(List<SkeletonInterpolator> motions, RootAlignment rootAlignment) {
+        for (SkeletonInterpolator motion : motions) {
+            String configType = motion.getConfigType();
+            boolean rootTransform = configType.equals(SkeletonInterpolator.ROOT_TRANSFORM + SkeletonInterpolator.ROTATION);
+            if (!rootTransform && (rootAlignment != RootAlignment.None || !configType.equals(SkeletonInterpolator.ROTATION))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * How the root of the end motion is aligned to the start motion.
+     */
+    private enum RootAlignment {
+        None, Position, PositionAndYaw
+    }
+
+    /**
+     * Computes the distance of a single pair.
+     */
+    private abstract static class PairDistance {
+
+        /**
+         * Scratch space for a task, passed to every distance call of the task.
+         */
+        abstract float[] createScratch();
+
+        abstract float distance(int row, int column, float[] scratch);
+    }
+
+    /**
+     * Calls the metric for every pair.
+     */
+    private static final class MetricDistance extends PairDistance {
+
+        private final IDistance metric;
+        private final List<SkeletonInterpolator> rows;
+        private final List<SkeletonInterpolator> columns;
+        private final int frames;
+
+        MetricDistance(IDistance metric, List<SkeletonInterpolator> rows, List<SkeletonInterpolator> columns, int frames) {
+            this.metric = metric;
+            this.rows = rows;
+            this.columns = columns;
+            this.frames = frames;
+        }
+
+        @Override
+        float[] createScratch() {
+            return null;
+        }
+
+        @Override
+        float distance(int row, int column, float[] scratch) {
+            return (float) metric.distance(rows.get(row), columns.get(column), frames);
+        }
+    }
+
+    /**
+     * Compared frames of a motion, with the rotation logarithms of its joints stored per frame in slot order.
+     */
+    private static final class Window {
+
+        /**
+         * Shared joint index per slot.
+         */
+        final int[] joints;
+        /**
+         * Slot per shared joint index, -1 for joints that are not in this motion; set by {@link #indexSlots(int)}.
+         */
+        int[] slots;
+        /**
+         * frames * joints.length * 3 rotation logarithms.
+         */
+        final float[] logs;
+        /**
+         * frames * 3 root translations, null without root transform.
+         */
+        final float[] translations;
+        /**
+         * frames * 3 roll, pitch and yaw of the root rotation, null without root transform.
+         */
+        final float[] rollPitchYaws;
+        /**
+         * Slot of the root rotation (the rotation of the first partId), -1 if there is none.
+         */
+        final int rootSlot;
+
+        Window(SkeletonInterpolator motion, int from, int frames, Map<String, Integer> jointIndex) {
+            String[] partIds = motion.getPartIds();
+            boolean rootTransform = motion.getConfigType().contains(SkeletonInterpolator.ROOT_TRANSFORM);
+            int offset = rootTransform ? 3 : 0;
+
+            // a later duplicate partId replaces an earlier one, as in JointAngles
+            Map<Integer, Integer> parts = new LinkedHashMap<>();
+            for (int part = 0; part < partIds.length; part++) {
+                Integer joint = jointIndex.get(partIds[part]);
+                if (joint == null) {
+                    joint = jointIndex.size();
+                    jointIndex.put(partIds[part], joint);
+                }
+                parts.put(joint, part);
+            }
+            joints = new int[parts.size()];
+            int[] slotParts = new int[parts.size()];
+            int slot = 0;
+            int root = -1;
+            for (Map.Entry<Integer, Integer> entry : parts.entrySet()) {
+                joints[slot] = entry.getKey();
+                slotParts[slot] = entry.getValue();
+                if (rootTransform && slotParts[slot] == 0) {
+                    root = slot;
+                }
+                slot++;
+            }
+            rootSlot = root;
+
+            logs = new float[frames * joints.length * 3];
+            translations = rootTransform ? new float[frames * 3] : null;
+            rollPitchYaws = rootTransform ? new float[frames * 3] : null;
+            float[] q = new float[4];
+            float[] v = new float[3];
+            for (int f = 0; f < frames; f++) {
+                float[] config = motion.getConfig(from + f);
+                for (slot = 0; slot < joints.length; slot++) {
+                    System.arraycopy(config, offset + slotParts[slot] * 4, q, 0, 4);
+                    Quat4f.log(v, q);
+                    System.arraycopy(v, 0, logs, (f * joints.length + slot) * 3, 3);
+                }
+                if (rootTransform) {
+                    System.arraycopy(config, 0, translations, f * 3, 3);
+                    System.arraycopy(config, 3, q, 0, 4);
+                    Quat4f.getRollPitchYaw(q, v);
+                    System.arraycopy(v, 0, rollPitchYaws, f * 3, 3);
+                }
+            }
+        }
+
+        /**
+         * Fills slots, once all windows have added their joints to the shared joint index.
+         */
+        void indexSlots(int nrOfJoints) {
+            slots = new int[nrOfJoints];
+            for (int i = 0; i < nrOfJoints; i++) {
+                slots[i] = -1;
+            }
+            for (int slot = 0; slot < joints.length; slot++) {
+                slots[joints[slot]] = slot;
+            }
+        }
+    }
+
+    /**
+     * {@link JointAngles} on packed windows; only the windows of the pairs to compute are extracted.
+     */
+    private static final class PackedJointAngles extends PairDistance {
+
+        private final RootAlignment rootAlignment;
+        private final int frames;
+        private final Window[] rows;
+        private final Window[] columns;
+        /**
+         * Weight per shared joint index.
+         */
+        private final float[] weights;
+
+        PackedJointAngles(JointAngles metric, RootAlignment rootAlignment, List<SkeletonInterpolator> rowMotions,
+                List<SkeletonInterpolator> columnMotions, int frames, boolean[] neededRows, boolean[] neededColumns) {
+            this.rootAlignment = rootAlignment;
+            this.frames = frames;
+            Map<String, Integer> jointIndex = new HashMap<>();
+            rows = new Window[rowMotions.size()];
+            for (int i = 0; i < rows.length; i++) {
+                SkeletonInterpolator motion = rowMotions.get(i);
+                if (neededRows[i]) {
+                    rows[i] = new Window(motion, motion.size() - frames, frames, jointIndex);
+                }
+            }
+            columns = new Window[columnMotions.size()];
+            for (int i = 0; i < columns.length; i++) {
+                SkeletonInterpolator motion = columnMotions.get(i);
+                if (neededColumns[i]) {
+                    columns[i] = new Window(motion, 0, frames, jointIndex);
+                }
+            }
+            for (Window window : columns) {
+                if (window != null) {
+                    window.indexSlots(jointIndex.size());
+                }
+            }
+            weights = new float[jointIndex.size()];
+            for (Map.Entry<String, Integer> entry : jointIndex.entrySet()) {
+                weights[entry.getValue()] = metric.getWeight(entry.getKey());
+            }
+        }
+
+        @Override
+        float[] createScratch() {
+            return new float[4];
+        }
+
+        /**
+         * Same sum as {@link JointAngles#distance(SkeletonInterpolator, SkeletonInterpolator, int)}: frame i of the
+         * start window is compared to frame i of the aligned end window.
+         */
+        @Override
+        float distance(int row, int column, float[] scratch) {
+            Window start = rows[row];
+            Window end = columns[column];
+            boolean rootTranslation = start.translations != null && end.translations != null;
+            boolean alignYaw = rootAlignment == RootAlignment.PositionAndYaw && end.rootSlot >= 0;
+            int startJoints = start.joints.length;
+            int endJoints = end.joints.length;
+            float totalDist = 0;
+            for (int f = 0; f < frames; f++) {
+                double dist = 0;
+                if (rootTranslation) {
+                    for (int k = 0; k < 3; k++) {
+                        float endTranslation = end.translations[f * 3 + k];
+                        if (rootAlignment != RootAlignment.None) {
+                            endTranslation = endTranslation - end.translations[k] + start.translations[k];
+                        }
+                        float diff = start.translations[f * 3 + k] - endTranslation;
+                        dist += diff * diff;
+                    }
+                }
+                if (alignYaw) {
+                    int rpy = f * 3;
+                    float yaw = end.rollPitchYaws[rpy + 2] - end.rollPitchYaws[2] + start.rollPitchYaws[2];
+                    Quat4f.setFromRollPitchYaw(scratch, end.rollPitchYaws[rpy], end.rollPitchYaws[rpy + 1], yaw);
+                    Quat4f.log(scratch, scratch); // aligned root rotation logarithm in scratch[0..2]
+                }
+                for (int startSlot = 0; startSlot < startJoints; startSlot++) {
+                    int joint = start.joints[startSlot];
+                    int endSlot = end.slots[joint];
+                    if (endSlot < 0) {
+                        continue;
+                    }
+                    float[] endLogs = end.logs;
+                    int e = (f * endJoints + endSlot) * 3;
+                    if (alignYaw && endSlot == end.rootSlot) {
+                        endLogs = scratch;
+                        e = 0;
+                    }
+                    int s = (f * startJoints + startSlot) * 3;
+                    float dx = start.logs[s] - endLogs[e];
+                    float dy = start.logs[s + 1] - endLogs[e + 1];
+                    float dz = start.logs[s + 2] - endLogs[e + 2];
+                    dist += weights[joint] * (double) (dx * dx + dy * dy + dz * dz);
+                }
+                totalDist += dist;
+            }
+            return totalDist;
+        }
+    }
+
+    /**
+     * Computes the distances of pairs [from, to), splitting in halves down to {@link #PAIRS_PER_TASK} pairs.
+     */
+    private static final class DistanceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final PairDistance pairDistance;
+        private final float[] distances;
+        private final int nrOfColumns;
+        private final int[] pairs;
+        private final int from;
+        private final int to;
+
+        DistanceTask(PairDistance pairDistance, float[] distances, int nrOfColumns, int[] pairs, int from, int to) {
+            this.pairDistance = pairDistance;
+            this.distances = distances;
+            this.nrOfColumns = nrOfColumns;
+            this.pairs = pairs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAIRS_PER_TASK) {
+                float[] scratch = pairDistance.createScratch();
+                for (int i = from; i < to; i++) {
+                    int index = pairs[i];
+                    distances[index] = pairDistance.distance(index / nrOfColumns, index % nrOfColumns, scratch);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DistanceTask(pairDistance, distances, nrOfColumns, pairs, from, mid),
+                        new DistanceTask(pairDistance, distances, nrOfColumns, pairs, mid, to));
+            }
+        }
+    }
+}
@@ -62,6 +62,21 @@ public final class JointAngles implements IDistance {
         this.align = align;
     }
 
+    /**
+     * Alignment used to align motions, used by {@link DistanceMatrix} to pick its packed implementation.
+     */
+    IAlignment getAlign() {
+        return align;
+    }
+
+    /**
+     * Weight of the joint with the given partId, 1 for joints without a weight.
+     */
+    float getWeight(String partId) {
+        Float weight = weights.get(partId);
+        return weight != null ? weight : 1;
+    }
+
     /**
      * {@inheritDoc} This implementation calls
      * {@link #distance(SkeletonInterpolator, SkeletonInterpolator, int)} with
@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import hmi.animation.SkeletonInterpolator;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * KD-tree over pose features, answering "the k frames closest to this pose" in logarithmic time (for well spread
+ * poses) instead of comparing against every frame.
+ * <p>
+ * The feature of a frame holds the root translation (optional) and, for each joint of the index, the logarithm of its
+ * rotation scaled by the square root of its {@link JointAngles} weight. For two motions with the same joints (and
+ * both with or both without root translation), the squared euclidean distance between two features is therefore the
+ * per-frame distance of {@link JointAngles} without alignment. Joints that a motion does not have are set to the
+ * identity rotation (and a missing root translation to zero), whereas {@link JointAngles} skips them; for motions
+ * with different joints the feature distance is then an upper bound of the {@link JointAngles} distance. As the
+ * index does not align poses either, it is meant to select candidates that are then compared with the actual
+ * metric.
+ * <p>
+ * Add frames with {@link #add(Object, SkeletonInterpolator, int)}; the tree is (re)built on the first query after
+ * adding.
+ *
+ * @param <T> item stored with every frame
+ */
+public final class PoseIndex<T> {
+
+    private final Map<String, Integer> joints = new HashMap<>();
+    private final float[] weights;
+    private final boolean rootTranslation;
+    private final int offset;
+    private final int dimension;
+
+    private final List<T> items = new ArrayList<>();
+    private int[] frames = new int[16];
+    private float[] features = new float[0];
+    private int size;
+
+    /**
+     * Tree order of the entries: the entry at the middle of a range splits the range on splitDimensions[middle].
+     */
+    private int[] tree = new int[0];
+    private int[] splitDimensions = new int[0];
+    private boolean built = true;
+
+    /**
+     * Creates an index over the given joints.
+     *
+     * @param partIds joints in the feature
+     * @param rootTranslation whether the root translation of "T1R" motions is part of the feature
+     */
+    public PoseIndex(String[] partIds, boolean rootTranslation) {
+        WeightMap weightMap = WeightMap.getDefaultInstance();
+        this.rootTranslation = rootTranslation;
+        offset = rootTranslation ? 3 : 0;
+        for (String partId : partIds) {
+            if (!joints.containsKey(partId)) {
+                joints.put(partId, joints.size());
+            }
+        }
+        weights = new float[joints.size()];
+        for (Map.Entry<String, Integer> joint : joints.entrySet()) {
+            Float weight = weightMap.get(joint.getKey());
+            weights[joint.getValue()] = (float) Math.sqrt(weight != null ? weight : 1);
+        }
+        dimension = offset + 3 * joints.size();
+    }
+
+    /**
+     * Length of the features.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of frames in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the feature of frame of motion into feature (allocated if null), and returns it.
+     */
+    public float[] getFeature(SkeletonInterpolator motion, int frame, float[] feature) {
+        if (feature == null) {
+            feature = new float[dimension];
+        } else {
+            Arrays.fill(feature, 0, dimension, 0);
+        }
+        float[] config = motion.getConfig(frame);
+        String configType = motion.getConfigType();
+        int index = 0;
+        if (configType.contains(SkeletonInterpolator.ROOT_TRANSFORM)) {
+            if (rootTranslation) {
+                System.arraycopy(config, 0, feature, 0, 3);
+            }
+            index = 3;
+        }
+        if (configType.contains(SkeletonInterpolator.ROTATION)) {
+            float[] q = new float[4];
+            float[] v = new float[3];
+            String[] partIds = motion.getPartIds();
+            for (int part = 0; part < partIds.length; part++) {
+                Integer joint = joints.get(partIds[part]);
+                if (joint != null) {
+                    System.arraycopy(config, index + part * 4, q, 0, 4);
+                    Quat4f.log(v, q);
+                    int f = offset + joint * 3;
+                    feature[f] = weights[joint] * v[0];
+                    feature[f + 1] = weights[joint] * v[1];
+                    feature[f + 2] = weights[joint] * v[2];
+                }
+            }
+        }
+        return feature;
+    }
+
+    /**
+     * Adds frame of motion, with item.
+     */
+    public void add(T item, SkeletonInterpolator motion, int frame) {
+        add(item, frame, getFeature(motion, frame, null));
+    }
+
+    /**
+     * Adds a feature (of length {@link #getDimension()}), with item and frame.
+     */
+    public void add(T item, int frame, float[] feature) {
+        if (size == frames.length) {
+            frames = Arrays.copyOf(frames, size * 2);
+        }
+        if ((size + 1) * dimension > features.length) {
+            features = Arrays.copyOf(features, Math.max(16, size * 2) * dimension);
+        }
+        items.add(item);
+        frames[size] = frame;
+        System.arraycopy(feature, 0, features, size * dimension, dimension);
+        size++;
+        built = false;
+    }
+
+    /**
+     * Finds the k entries closest to frame of motion, closest first.
+     */
+    public List<Neighbour<T>> nearest(SkeletonInterpolator motion, int frame, int k) {
+        return nearest(getFeature(motion, frame, null), k);
+    }
+
+    /**
+     * Finds the k entries closest to feature, closest first. The result is empty for k &lt;= 0.
+     */
+    public List<Neighbour<T>> nearest(float[] feature, int k) {
+        if (k <= 0 || size == 0) {
+            return new ArrayList<>();
+        }
+        if (!built) {
+            build();
+        }
+        Search search = new Search(feature, Math.min(k, size));
+        search(search, 0, size);
+        List<Neighbour<T>> result = new ArrayList<>(search.count);
+        for (int i = 0; i < search.count; i++) {
+            int entry = search.entries[i];
+            result.add(new Neighbour<T>(items.get(entry), frames[entry], search.distances[i]));
+        }
+        return result;
+    }
+
+    private void build() {
+        tree = new int[size];
+        splitDimensions = new int[size];
+        for (int i = 0; i < size; i++) {
+            tree[i] = i;
+        }
+        build(0, size);
+        built = true;
+    }
+
+    /**
+     * Orders tree[from, to) such that its middle entry splits it on the dimension with the largest spread.
+     */
+    private void build(int from, int to) {
+        if (to - from <= 1) {
+            return;
+        }
+        int splitDimension = 0;
+        float maxSpread = -1;
+        for (int d = 0; d < dimension; d++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                float value = features[tree[i] * dimension + d];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > maxSpread) {
+                maxSpread = max - min;
+                splitDimension = d;
+            }
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, splitDimension);
+        splitDimensions[middle] = splitDimension;
+        build(from, middle);
+        build(middle + 1, to);
+    }
+
+    /**
+     * Quickselect: puts the k-th smallest entry of tree[left, right] on dimension d at k.
+     */
+    private void select(int left, int right, int k, int d) {
+        while (left < right) {
+            float pivot = features[tree[(left + right) >>> 1] * dimension + d];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (features[tree[i] * dimension + d] < pivot) {
+                    i++;
+                }
+                while (features[tree[j] * dimension + d] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(Search search, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int entry = tree[middle];
+        search.offer(entry, distance(search.feature, entry, search.bound()));
+
+        int d = splitDimensions[middle];
+        float diff = search.feature[d] - features[entry * dimension + d];
+        if (diff < 0) {
+            search(search, from, middle);
+            if (diff * diff < search.bound()) {
+                search(search, middle + 1, to);
+            }
+        } else {
+            search(search, middle + 1, to);
+            if (diff * diff < search.bound()) {
+                search(search, from, middle);
+            }
+        }
+    }
+
+    /**
+     * Squared distance of two features.
+     */
+    public float distance(float[] feature1, float[] feature2) {
+        float dist = 0;
+        for (int d = 0; d < dimension; d++) {
+            float diff = feature1[d] - feature2[d];
+            dist += diff * diff;
+        }
+        return dist;
+    }
+
+    /**
+     * Squared distance of feature to entry, or a value of at least bound once the distance exceeds bound.
+     */
+    private float distance(float[] feature, int entry, float bound) {
+        int e = entry * dimension;
+        float dist = 0;
+        for (int d = 0; d < dimension && dist < bound; d++) {
+            float diff = feature[d] - features[e + d];
+            dist += diff * diff;
+        }
+        return dist;
+    }
+
+    /**
+     * The k best entries found so far, sorted by distance.
+     */
+    private static final class Search {
+
+        final float[] feature;
+        final int[] entries;
+        final float[] distances;
+        int count;
+
+        Search(float[] feature, int k) {
+            this.feature = feature;
+            entries = new int[k];
+            distances = new float[k];
+        }
+
+        float bound() {
+            return count < entries.length ? Float.POSITIVE_INFINITY : distances[count - 1];
+        }
+
+        void offer(int entry, float distance) {
+            if (entries.length == 0 || distance >= bound()) {
+                return;
+            }
+            int i = count < entries.length ? count++ : count - 1;
+            while (i > 0 && distances[i - 1] > distance) {
+                entries[i] = entries[i - 1];
+                distances[i] = distances[i - 1];
+                i--;
+            }
+            entries[i] = entry;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * An entry of the index found by a query.
+     *
+     * @param <T> item type
+     */
+    public static final class Neighbour<T> {
+
+        private final T item;
+        private final int frame;
+        private final float distance;
+
+        Neighbour(T item, int frame, float distance) {
+            this.item = item;
+            this.frame = frame;
+            this.distance = distance;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public int getFrame() {
+            return frame;
+        }
+
+        /**
+         * Squared feature distance, the unaligned {@link JointAngles} distance of the two frames.
+         */
+        public float getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.xml;
+
+import hmi.animation.motiongraph.metrics.DistanceMatrix;
+import hmi.xml.XMLFormatting;
+import hmi.xml.XMLStructureAdapter;
+import hmi.xml.XMLTokenizer;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import lombok.Getter;
+
+/**
+ * Load/store the distance matrix of a motiongraph, typically next to the motiongraph xml, so that a graph with
+ * added motions can be rebuilt with {@link hmi.animation.motiongraph.MotionGraph.Builder#distances(DistanceMatrix)}.
+ */
+public class DistanceMatrixXML extends XMLStructureAdapter
+{
+    @Getter
+    private DistanceMatrix distanceMatrix;
+
+    private String metric;
+    private int frames;
+    private String[] rows;
+    private String[] columns;
+
+    public DistanceMatrixXML()
+    {
+
+    }
+
+    public DistanceMatrixXML(DistanceMatrix distanceMatrix)
+    {
+        this.distanceMatrix = distanceMatrix;
+    }
+
+    @Override
+    public void decodeAttributes(HashMap<String, String> attrMap, XMLTokenizer tokenizer)
+    {
+        metric = getRequiredAttribute("metric", attrMap, tokenizer);
+        frames = getRequiredIntAttribute("frames", attrMap, tokenizer);
+        rows = decodeStringArray(getOptionalAttribute("rows", attrMap, ""));
+        columns = decodeStringArray(getOptionalAttribute("columns", attrMap, ""));
+    }
+
+    @Override
+    public void decodeContent(XMLTokenizer tokenizer) throws IOException
+    {
+        float[] distances = decodeFloatArray(tokenizer.takeCharData());
+        distanceMatrix = new DistanceMatrix(metric, frames, rows, columns, distances);
+    }
+
+    @Override
+    public StringBuilder appendAttributeString(StringBuilder buf, XMLFormatting fmt)
+    {
+        String[] rowKeys = new String[distanceMatrix.getNrOfRows()];
+        for (int i = 0; i < rowKeys.length; i++)
+        {
+            rowKeys[i] = distanceMatrix.getRowKey(i);
+        }
+        String[] columnKeys = new String[distanceMatrix.getNrOfColumns()];
+        for (int i = 0; i < columnKeys.length; i++)
+        {
+            columnKeys[i] = distanceMatrix.getColumnKey(i);
+        }
+        appendAttribute(buf, "metric", distanceMatrix.getMetricId());
+        appendAttribute(buf, "frames", distanceMatrix.getFrames());
+        appendAttribute(buf, "rows", rowKeys, ' ', fmt, 8);
+        appendAttribute(buf, "columns", columnKeys, ' ', fmt, 8);
+        return super.appendAttributeString(buf, fmt);
+    }
+
+    @Override
+    public StringBuilder appendContent(StringBuilder buf, XMLFormatting fmt)
+    {
+        float[] row = new float[distanceMatrix.getNrOfColumns()];
+        for (int r = 0; r < distanceMatrix.getNrOfRows(); r++)
+        {
+            for (int c = 0; c < row.length; c++)
+            {
+                row[c] = distanceMatrix.get(r, c);
+            }
+            appendNewLine(buf, fmt);
+            appendFloats(buf, row, ' ', fmt, row.length);
+        }
+        return buf;
+    }
+
+    private static final String XMLTAG = "distancematrix";
+
+    /**
+     * The XML Stag for XML encoding -- use this static method when you want to see if a given
+     * String equals the xml tag for this class
+     */
+    public static String xmlTag()
+    {
+        return XMLTAG;
+    }
+
+    /**
+     * The XML Stag for XML encoding -- use this method to find out the run-time xml tag of an
+     * object
+     */
+    @Override
+    public String getXMLTag()
+    {
+        return XMLTAG;
+    }
+}
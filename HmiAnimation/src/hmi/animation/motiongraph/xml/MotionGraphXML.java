@@ -143,6 +143,7 @@ public class MotionGraphXML extends XMLStructureAdapter
         MotionGraphXML mgXML = new MotionGraphXML(new MotionGraph.Builder(motions).align(new NopAlignment()).getInstance());
         System.out.println("motiongraph construction duration: " + (System.currentTimeMillis() - time)+" ms ");        
         mgXML.writeXML(new File("motiongraph_notpruned.xml"));
+        new DistanceMatrixXML(mgXML.getMotionGraph().getDistanceMatrix()).writeXML(new File("motiongraph_distances.xml"));
         GraphUtils.pruneSinkSCCs(mgXML.getMotionGraph(), 10);
         mgXML.writeXML(new File("motiongraph.xml"));
 
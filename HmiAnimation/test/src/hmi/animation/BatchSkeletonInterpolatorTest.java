@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import static hmi.testutil.math.Quat4fTestUtil.assertQuat4fRotationEquivalent;
+import static hmi.testutil.math.Vec3fTestUtil.assertVec3fEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import hmi.math.Quat4f;
+import hmi.math.Vec3f;
+import hmi.testutil.animation.HanimBody;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the BatchSkeletonInterpolator
+ */
+public class BatchSkeletonInterpolatorTest
+{
+    private static final float PRECISION = 0.0001f;
+    private static final String[] PARTS = new String[] { Hanim.HumanoidRoot, Hanim.skullbase, Hanim.l_shoulder };
+
+    private SkeletonInterpolator createInterpolator()
+    {
+        return createInterpolator(PARTS);
+    }
+
+    private SkeletonInterpolator createInterpolator(String[] parts)
+    {
+        ConfigList cl = new ConfigList(3 + 4 * parts.length);
+        for (int f = 0; f < 10; f++)
+        {
+            float[] config = new float[cl.getConfigSize()];
+            Vec3f.set(config, 0, f, 2 * f, 0);
+            for (int i = 0; i < parts.length; i++)
+            {
+                Quat4f.setFromAxisAngle4f(config, 3 + 4 * i, 1, i, 0, 0.2f * f);
+            }
+            cl.addConfig(0.1 * f, config);
+        }
+        SkeletonInterpolator ski = new SkeletonInterpolator(parts, cl, "T1R");
+        ski.setTarget(HanimBody.getLOA1HanimBody());
+        return ski;
+    }
+
+    private void assertSameTargets(SkeletonInterpolator expected, SkeletonInterpolator actual)
+    {
+        float[] q1 = Quat4f.getQuat4f(), q2 = Quat4f.getQuat4f();
+        float[] v1 = Vec3f.getVec3f(), v2 = Vec3f.getVec3f();
+        expected.getTargetParts()[0].getTranslation(v1);
+        actual.getTargetParts()[0].getTranslation(v2);
+        assertVec3fEquals(v1, v2, PRECISION);
+        for (int i = 0; i < expected.getTargetParts().length; i++)
+        {
+            if (expected.getTargetParts()[i] == null) continue;
+            expected.getTargetParts()[i].getRotation(q1);
+            actual.getTargetParts()[i].getRotation(q2);
+            assertQuat4fRotationEquivalent(q1, q2, PRECISION);
+        }
+    }
+
+    private void testBatch(int count, boolean parallel)
+    {
+        SkeletonInterpolator[] skis = new SkeletonInterpolator[count];
+        SkeletonInterpolator[] expected = new SkeletonInterpolator[count];
+        double[] times = new double[count];
+        for (int k = 0; k < count; k++)
+        {
+            skis[k] = createInterpolator();
+            expected[k] = createInterpolator();
+            times[k] = 0.037 * k;
+        }
+        BatchSkeletonInterpolator batch = new BatchSkeletonInterpolator();
+        batch.setParallel(parallel);
+        batch.setParallelThreshold(2);
+        batch.interpolate(skis, times, count);
+        for (int k = 0; k < count; k++)
+        {
+            expected[k].time(times[k]);
+            assertSameTargets(expected[k], skis[k]);
+            float[] conf = expected[k].getInterpolatedConfig(times[k], null);
+            float[] batchConf = new float[conf.length];
+            System.arraycopy(batch.getOutput(), batch.getOutputOffset(k), batchConf, 0, conf.length);
+            assertArrayEquals(conf, batchConf, PRECISION);
+        }
+    }
+
+    @Test
+    public void testSequential()
+    {
+        testBatch(20, false);
+    }
+
+    @Test
+    public void testParallel()
+    {
+        testBatch(50, true);
+    }
+
+    @Test
+    public void testInterpolateConfigsLeavesTarget()
+    {
+        SkeletonInterpolator ski = createInterpolator();
+        float[] q = Quat4f.getQuat4f();
+        ski.getTargetParts()[1].getRotation(q);
+        BatchSkeletonInterpolator batch = new BatchSkeletonInterpolator();
+        batch.interpolateConfigs(new SkeletonInterpolator[] { ski }, new double[] { 0.55 }, 1);
+        float[] q2 = Quat4f.getQuat4f();
+        ski.getTargetParts()[1].getRotation(q2);
+        assertQuat4fRotationEquivalent(q, q2, PRECISION);
+        assertEquals(5.5f, batch.getOutput()[0], PRECISION);
+    }
+
+    @Test
+    public void testTargetMissingJoint()
+    {
+        String[] parts = new String[] { Hanim.HumanoidRoot, "not_in_target", Hanim.l_shoulder };
+        SkeletonInterpolator expected = createInterpolator(parts);
+        SkeletonInterpolator ski = createInterpolator(parts);
+        assertNull(ski.getTargetParts()[1]);
+        double time = 0.55;
+        expected.time(time);
+        BatchSkeletonInterpolator batch = new BatchSkeletonInterpolator();
+        batch.interpolate(new SkeletonInterpolator[] { ski }, new double[] { time }, 1);
+        assertSameTargets(expected, ski);
+
+        // the part following the missing joint gets its own rotation, not that of the missing joint
+        float[] conf = expected.getInterpolatedConfig(time, null);
+        float[] q = Quat4f.getQuat4f();
+        expected.getTargetParts()[2].getRotation(q);
+        assertQuat4fRotationEquivalent(conf, 3 + 4 * 2, q, 0, PRECISION);
+    }
+
+    @Test
+    public void testEmptyInterpolator()
+    {
+        SkeletonInterpolator empty = new SkeletonInterpolator(PARTS, new ConfigList(3 + 4 * PARTS.length), "T1R");
+        empty.setTarget(HanimBody.getLOA1HanimBody());
+        float[] q = Quat4f.getQuat4f();
+        empty.getTargetParts()[1].getRotation(q);
+        SkeletonInterpolator ski = createInterpolator();
+        SkeletonInterpolator expected = createInterpolator();
+        expected.time(0.55);
+
+        BatchSkeletonInterpolator batch = new BatchSkeletonInterpolator();
+        batch.setParallel(false);
+        batch.interpolate(new SkeletonInterpolator[] { empty, ski }, new double[] { 0.55, 0.55 }, 2);
+        float[] q2 = Quat4f.getQuat4f();
+        empty.getTargetParts()[1].getRotation(q2);
+        assertArrayEquals(q, q2, 0);
+        assertSameTargets(expected, ski);
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.StringTokenizer;
+
+/**
+ * Compares ConfigList.decodeContent, sequential and parallel, with the StringTokenizer based
+ * decoding it used before, on the content of a SkeletonInterpolator file or on a generated clip of
+ * several megabytes.
+ * 
+ * Usage: ConfigListBenchmark [skeletonInterpolatorFile]
+ */
+public class ConfigListBenchmark
+{
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws IOException
+    {
+        String content;
+        int configSize;
+        if (args.length > 0)
+        {
+            String xml = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+            SkeletonInterpolator ski = new SkeletonInterpolator(new hmi.xml.XMLTokenizer(xml));
+            content = xml.substring(xml.indexOf('>') + 1, xml.lastIndexOf('<'));
+            configSize = ski.getConfigSize();
+        }
+        else
+        {
+            configSize = 3 + 4 * 60; // T1R, 60 joints
+            content = createClip(configSize, 6000);
+        }
+        System.out.printf("Content: %.1f MB, config size %d%n", content.length() / (1024.0 * 1024.0), configSize);
+
+        for (int warmup = 0; warmup < 3; warmup++)
+        {
+            decodeTokenizer(content, configSize);
+            new ConfigList(configSize).decodeContent(content, false);
+            new ConfigList(configSize).decodeContent(content, true);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++)
+        {
+            decodeTokenizer(content, configSize);
+        }
+        report("StringTokenizer", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++)
+        {
+            new ConfigList(configSize).decodeContent(content, false);
+        }
+        report("NumberScanner", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++)
+        {
+            new ConfigList(configSize).decodeContent(content, true);
+        }
+        report("NumberScanner, parallel", start);
+    }
+
+    private static void report(String name, long start)
+    {
+        System.out.printf("%-24s %8.1f ms%n", name, (System.nanoTime() - start) / (RUNS * 1e6));
+    }
+
+    private static String createClip(int configSize, int frames)
+    {
+        StringBuilder buf = new StringBuilder();
+        for (int f = 0; f < frames; f++)
+        {
+            buf.append("\n").append(f / 120.0);
+            for (int i = 0; i < configSize; i++)
+            {
+                buf.append(' ').append((float) Math.sin(f * 0.01 + i));
+            }
+        }
+        return buf.toString();
+    }
+
+    /** ConfigList.decodeContent as it was before the NumberScanner */
+    private static ConfigList decodeTokenizer(String data, int configSize)
+    {
+        ConfigList cl = new ConfigList(configSize);
+        StringTokenizer tokenizer = new StringTokenizer(data);
+        while (tokenizer.hasMoreTokens())
+        {
+            double t = Double.parseDouble(tokenizer.nextToken());
+            float[] conf = new float[configSize];
+            for (int i = 0; i < configSize; i++)
+            {
+                conf[i] = (float) Double.parseDouble(tokenizer.nextToken());
+            }
+            cl.addConfig(t, conf);
+        }
+        return cl;
+    }
+}
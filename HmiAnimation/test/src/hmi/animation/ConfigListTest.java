@@ -195,4 +195,137 @@ public class ConfigListTest
         assertEquals(c4[7], clistDecoded.getConfig(4)[7], CONFIG_PRECISION);
 
     }
+
+    private String createContent(int frames, String separator)
+    {
+        StringBuilder buf = new StringBuilder();
+        for (int f = 0; f < frames; f++)
+        {
+            buf.append(f * 0.04);
+            for (int i = 0; i < 8; i++)
+            {
+                buf.append(i == 4 ? separator : " ").append(f + i * 0.125f);
+            }
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    @Test
+    public void testDecodeContentParallel()
+    {
+        String content = createContent(20000, " ");
+        ConfigList sequential = new ConfigList(8);
+        sequential.decodeContent(content, false);
+        ConfigList parallel = new ConfigList(8);
+        parallel.decodeContent(content, true);
+        assertEquals(20000, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++)
+        {
+            assertEquals(sequential.getTime(i), parallel.getTime(i), 0);
+            assertArrayEquals(sequential.getConfig(i), parallel.getConfig(i), 0f);
+        }
+        assertEquals(19999 + 7 * 0.125f, parallel.getConfig(19999)[7], CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testDecodeContentParallelConfigsSpanningLines()
+    {
+        String content = createContent(20000, "\n");
+        ConfigList parallel = new ConfigList(8);
+        parallel.decodeContent(content, true);
+        assertEquals(20000, parallel.size());
+        assertEquals(19999 * 0.04, parallel.getTime(19999), CONFIG_PRECISION);
+        assertEquals(19999 + 7 * 0.125f, parallel.getConfig(19999)[7], CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testDecodeEmptyContent()
+    {
+        ConfigList parallel = new ConfigList(8);
+        parallel.decodeContent("", true);
+        assertEquals(0, parallel.size());
+        ConfigList sequential = new ConfigList(8);
+        sequential.decodeContent("", false);
+        assertEquals(0, sequential.size());
+    }
+
+    @Test
+    public void testPack()
+    {
+        clist.addConfig(0.1, c0);
+        clist.addConfig(0.2, c1);
+        clist.addConfig(0.3, c2);
+        clist.pack();
+        assertTrue(clist.isPacked());
+        assertEquals(3, clist.size());
+        assertEquals(c1[3], clist.getConfigValue(1, 3), 0);
+        assertSame(clist.getConfigData(0), clist.getConfigData(2));
+        assertEquals(16, clist.getConfigOffset(2));
+        float[] dst = new float[10];
+        clist.getConfig(2, dst, 2);
+        assertEquals(c2[7], dst[9], 0);
+
+        float[] detached = clist.getConfig(1);
+        assertArrayEquals(c1, detached, 0);
+        assertNotSame(c1, detached);
+        assertSame(detached, clist.getConfig(1));
+        assertSame(detached, clist.getConfigData(1));
+        assertEquals(0, clist.getConfigOffset(1));
+        detached[0] = 42f;
+        assertEquals(42f, clist.getConfigValue(1, 0), 0);
+        assertTrue(clist.isPacked());
+    }
+
+    @Test
+    public void testAddConfigUnpacks()
+    {
+        clist.addConfig(0.1, c0);
+        clist.addConfig(0.3, c2);
+        clist.pack();
+        clist.getConfigData(1)[clist.getConfigOffset(1)] = 42f;
+        clist.addConfig(0.2, c1);
+        assertFalse(clist.isPacked());
+        assertEquals(3, clist.size());
+        assertArrayEquals(c0, clist.getConfig(0), 0);
+        assertSame(c1, clist.getConfig(1));
+        assertEquals(42f, clist.getConfig(2)[0], 0);
+    }
+
+    @Test
+    public void testPackedCopyAndSubConfigList()
+    {
+        clist.addConfig(0.1, c0);
+        clist.addConfig(0.2, c1);
+        clist.addConfig(0.3, c2);
+        clist.addConfig(0.4, c3);
+        clist.pack();
+        ConfigList copy = clist.copy();
+        assertTrue(copy.isPacked());
+        copy.getConfigData(0)[0] = 42f;
+        assertEquals(c0[0], clist.getConfigValue(0, 0), 0);
+
+        ConfigList sub = clist.subConfigList(1, 3);
+        assertTrue(sub.isPacked());
+        assertEquals(2, sub.size());
+        assertEquals(0.2, sub.getTime(0), 0);
+        assertArrayEquals(c2, sub.getConfig(1), 0);
+    }
+
+    @Test
+    public void testDecodeContentIsPacked()
+    {
+        ConfigList cl = new ConfigList(2);
+        cl.decodeContent("0.0 1 2\n0.1 3 4\n0.2 5 6", false);
+        assertTrue(cl.isPacked());
+        assertEquals(3, cl.size());
+        assertEquals(5f, cl.getConfigValue(2, 0), 0);
+
+        ConfigList unordered = new ConfigList(2);
+        unordered.decodeContent("0.2 5 6\n0.0 1 2\n0.1 3 4", false);
+        assertFalse(unordered.isPacked());
+        assertEquals(0.0, unordered.getTime(0), 0);
+        assertArrayEquals(new float[] { 5f, 6f }, unordered.getConfig(2), 0);
+    }
 }
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import hmi.testutil.animation.HanimBody;
+
+import java.util.List;
+
+/**
+ * Compares VJoint.calculateMatrices with FlatSkeleton.update on an LOA2 H-Anim body, when only the
+ * head and one hand move, and when all joints move.
+ */
+public class FlatSkeletonBenchmark
+{
+    private static final int STEPS = 20000;
+
+    public static void main(String[] args)
+    {
+        VJoint body = HanimBody.getLOA2HanimBody();
+        List<VJoint> allJoints = body.getParts();
+        VJoint[] fewJoints = new VJoint[] { body.getPart(Hanim.skullbase), body.getPart(Hanim.vc4), body.getPart(Hanim.r_wrist),
+                body.getPart(Hanim.r_index1), body.getPart(Hanim.r_index2) };
+        VJoint[] manyJoints = allJoints.toArray(new VJoint[allJoints.size()]);
+        FlatSkeleton skeleton = new FlatSkeleton(body);
+        System.out.printf("%d joints%n", allJoints.size());
+
+        for (int warmup = 0; warmup < 3; warmup++)
+        {
+            runRecursive(body, fewJoints);
+            runFlat(skeleton, fewJoints);
+            runRecursive(body, manyJoints);
+            runFlat(skeleton, manyJoints);
+        }
+        report("few moving, calculateMatrices", runRecursive(body, fewJoints));
+        report("few moving, FlatSkeleton", runFlat(skeleton, fewJoints));
+        report("all moving, calculateMatrices", runRecursive(body, manyJoints));
+        report("all moving, FlatSkeleton", runFlat(skeleton, manyJoints));
+    }
+
+    private static void report(String name, long nanos)
+    {
+        System.out.printf("%-32s %8.2f us per update%n", name, nanos / (STEPS * 1e3));
+    }
+
+    private static void move(VJoint[] joints, int step)
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            joints[i].setAxisAngle(1, 0, 0, (float) Math.sin(step * 0.01 + i) * 0.1f);
+        }
+    }
+
+    private static long runRecursive(VJoint body, VJoint[] moving)
+    {
+        long start = System.nanoTime();
+        for (int step = 0; step < STEPS; step++)
+        {
+            move(moving, step);
+            body.calculateMatrices();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runFlat(FlatSkeleton skeleton, VJoint[] moving)
+    {
+        long start = System.nanoTime();
+        for (int step = 0; step < STEPS; step++)
+        {
+            move(moving, step);
+            skeleton.update();
+        }
+        return System.nanoTime() - start;
+    }
+}
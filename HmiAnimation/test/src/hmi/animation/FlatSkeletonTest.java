@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hmi.math.Mat4f;
+import hmi.testutil.animation.HanimBody;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for FlatSkeleton
+ */
+public class FlatSkeletonTest
+{
+    private static final float PRECISION = 0.0001f;
+    private VJoint body;
+    private VJoint reference;
+    private FlatSkeleton skeleton;
+
+    @Before
+    public void setup()
+    {
+        body = HanimBody.getLOA1HanimBody();
+        reference = HanimBody.getLOA1HanimBody();
+        skeleton = new FlatSkeleton(body);
+    }
+
+    private void setRotation(String joint, float ax, float ay, float az, float angle)
+    {
+        body.getPart(joint).setAxisAngle(ax, ay, az, angle);
+        reference.getPart(joint).setAxisAngle(ax, ay, az, angle);
+    }
+
+    private void assertMatchesReference(float[] parentMatrix)
+    {
+        reference.calculateMatrices(parentMatrix);
+        for (int i = 0; i < skeleton.size(); i++)
+        {
+            VJoint joint = skeleton.getJoint(i);
+            float[] expected = reference.getPart(joint.getSid()).getGlobalMatrix();
+            assertTrue(joint.getSid(), Mat4f.epsilonEquals(expected, joint.getGlobalMatrix(), PRECISION));
+            float[] flat = new float[16];
+            System.arraycopy(skeleton.getGlobalMatrices(), 16 * i, flat, 0, 16);
+            assertTrue(joint.getSid(), Mat4f.epsilonEquals(expected, flat, PRECISION));
+        }
+    }
+
+    @Test
+    public void testOrder()
+    {
+        assertEquals(body, skeleton.getJoint(0));
+        assertEquals(-1, skeleton.getParentIndex(0));
+        assertEquals(body.getParts().size(), skeleton.size());
+        for (int i = 1; i < skeleton.size(); i++)
+        {
+            int parent = skeleton.getParentIndex(i);
+            assertTrue(parent < i);
+            assertEquals(skeleton.getJoint(parent), skeleton.getJoint(i).getParent());
+        }
+        assertEquals(3, skeleton.getIndex(skeleton.getJoint(3)));
+        assertEquals(-1, skeleton.getIndex(new VJoint()));
+    }
+
+    @Test
+    public void testFirstUpdate()
+    {
+        setRotation(Hanim.l_shoulder, 1, 0, 0, 0.5f);
+        skeleton.update();
+        assertEquals(skeleton.size(), skeleton.getUpdateCount());
+        assertMatchesReference(Mat4f.ID);
+    }
+
+    @Test
+    public void testOnlyChangedSubtreeIsUpdated()
+    {
+        skeleton.update();
+        setRotation(Hanim.l_elbow, 0, 1, 0, 0.3f);
+        skeleton.update();
+        int expected = body.getPart(Hanim.l_elbow).getParts().size();
+        assertEquals(expected, skeleton.getUpdateCount());
+        assertMatchesReference(Mat4f.ID);
+
+        skeleton.update();
+        assertEquals(0, skeleton.getUpdateCount());
+    }
+
+    @Test
+    public void testSettingSameTransformIsNoChange()
+    {
+        skeleton.update();
+        setRotation(Hanim.skullbase, 0, 1, 0, 0f);
+        skeleton.update();
+        assertEquals(0, skeleton.getUpdateCount());
+    }
+
+    @Test
+    public void testParentMatrix()
+    {
+        float[] parentMatrix = Mat4f.getIdentity();
+        Mat4f.setTranslation(parentMatrix, new float[] { 1, 2, 3 });
+        skeleton.update(parentMatrix);
+        assertMatchesReference(parentMatrix);
+        skeleton.update(parentMatrix);
+        assertEquals(0, skeleton.getUpdateCount());
+        parentMatrix[Mat4f.M03] = 5f;
+        skeleton.update(parentMatrix);
+        assertEquals(skeleton.size(), skeleton.getUpdateCount());
+        assertMatchesReference(parentMatrix);
+    }
+
+    @Test
+    public void testSharedBuffer()
+    {
+        skeleton.update();
+        float[] rotation = body.getPart(Hanim.r_shoulder).getRotationBuffer();
+        hmi.math.Quat4f.setFromAxisAngle4f(rotation, 0, 0, 1, 0.7f);
+        reference.getPart(Hanim.r_shoulder).setAxisAngle(0, 0, 1, 0.7f);
+        skeleton.update();
+        assertMatchesReference(Mat4f.ID);
+        skeleton.update();
+        assertEquals(0, skeleton.getUpdateCount());
+    }
+
+    @Test
+    public void testCompileAfterAddingJoint()
+    {
+        skeleton.update();
+        VJoint extra = new VJoint("extra", "extra");
+        extra.setTranslation(0, 1, 0);
+        body.getPart(Hanim.skullbase).addChild(extra);
+        skeleton.compile();
+        skeleton.update();
+        float[] expected = Mat4f.getMat4f();
+        Mat4f.mul(expected, body.getPart(Hanim.skullbase).getGlobalMatrix(), extra.getLocalMatrix());
+        assertTrue(Mat4f.epsilonEquals(expected, extra.getGlobalMatrix(), PRECISION));
+    }
+}
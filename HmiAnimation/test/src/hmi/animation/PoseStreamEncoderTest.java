@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the PoseStreamEncoder and PoseStreamDecoder
+ */
+public class PoseStreamEncoderTest
+{
+    private static final float PRECISION = 0.00001f;
+
+    private final String[] partIds = new String[] { "HumanoidRoot", "l_shoulder", "r_shoulder" };
+
+    private PoseStreamEncoder encoder;
+
+    private PoseStreamDecoder decoder;
+
+    private ByteBuffer buf;
+
+    @Before
+    public void setup()
+    {
+        encoder = new PoseStreamEncoder(partIds, "T1R", 15);
+        decoder = new PoseStreamDecoder();
+        buf = ByteBuffer.allocate(Math.max(encoder.getHeaderSize(), encoder.getMaxFrameSize()));
+    }
+
+    private boolean sendHeader()
+    {
+        buf.clear();
+        encoder.encodeHeader(buf);
+        assertEquals(encoder.getHeaderSize(), buf.position());
+        buf.flip();
+        return decoder.decode(buf);
+    }
+
+    private boolean sendFrame(double time, float[] config)
+    {
+        buf.clear();
+        encoder.encodeFrame(buf, time, config);
+        buf.flip();
+        return decoder.decode(buf);
+    }
+
+    private float[] config(float offset)
+    {
+        float[] c = new float[15];
+        for (int i = 0; i < c.length; i++)
+        {
+            c[i] = offset + i * 0.1f;
+        }
+        return c;
+    }
+
+    @Test
+    public void testHeader()
+    {
+        assertFalse(sendHeader());
+        assertTrue(decoder.hasHeader());
+        assertArrayEquals(partIds, decoder.getPartIds());
+        assertEquals("T1R", decoder.getConfigType());
+        assertEquals(15, decoder.getConfigSize());
+    }
+
+    @Test
+    public void testFrames()
+    {
+        sendHeader();
+        float[] c = config(1);
+        assertTrue(sendFrame(0.5, c));
+        assertEquals(0.5, decoder.getTime(), PRECISION);
+        assertArrayEquals(c, decoder.getConfig(), PRECISION);
+
+        c[3] = 7.25f;
+        c[14] = -2f;
+        int keySize = buf.limit();
+        assertTrue(sendFrame(0.6, c));
+        assertTrue(buf.limit() < keySize);
+        assertEquals(0.6, decoder.getTime(), PRECISION);
+        assertArrayEquals(c, decoder.getConfig(), PRECISION);
+
+        for (int f = 0; f < 100; f++)
+        {
+            c = config(f * 0.01f);
+            assertTrue(sendFrame(f, c));
+            assertArrayEquals(c, decoder.getConfig(), PRECISION);
+        }
+        assertEquals(0, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void testStreamId()
+    {
+        PoseStreamEncoder other = new PoseStreamEncoder(partIds, "T1R", 15, (short) 2);
+        encoder = new PoseStreamEncoder(partIds, "T1R", 15, (short) 1);
+        assertEquals(1, encoder.getStreamId());
+        sendHeader();
+        assertTrue(sendFrame(0.0, config(1f)));
+
+        // a frame of another stream on the same channel is not mixed in
+        buf.clear();
+        other.encodeFrame(buf, 0.1, config(2f));
+        buf.flip();
+        assertFalse(decoder.decode(buf));
+        assertEquals(1, decoder.getDroppedFrames());
+        assertArrayEquals(config(1f), decoder.getConfig(), PRECISION);
+    }
+
+    @Test
+    public void testFrameWithoutHeader()
+    {
+        assertFalse(sendFrame(0, config(1)));
+        assertEquals(1, decoder.getDroppedFrames());
+    }
+
+    @Test
+    public void testLostFrame()
+    {
+        encoder.setKeyFrameInterval(3);
+        sendHeader();
+        assertTrue(sendFrame(0, config(1)));
+        buf.clear();
+        encoder.encodeFrame(buf, 1, config(2)); // lost
+        assertFalse(sendFrame(2, config(3)));
+        assertTrue(sendFrame(3, config(4))); // key frame
+        assertArrayEquals(config(4), decoder.getConfig(), PRECISION);
+    }
+
+    @Test
+    public void testSkeletonPose()
+    {
+        sendHeader();
+        SkeletonPose pose = decoder.createSkeletonPose();
+        sendFrame(0, config(1));
+        assertArrayEquals(config(1), pose.getConfig(), PRECISION);
+        assertEquals("T1R", pose.getConfigType());
+    }
+}
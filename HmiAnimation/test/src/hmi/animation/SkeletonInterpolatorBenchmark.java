@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation;
+
+import hmi.testutil.animation.HanimBody;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures SkeletonInterpolator playback of a long, generated T1R clip on 1, 10 and 100 H-Anim
+ * bodies (or the specified numbers of bodies): with the clip's ConfigList stored per config and
+ * packed, and with a BatchSkeletonInterpolator, sequentially and in parallel.
+ * 
+ * Usage: SkeletonInterpolatorBenchmark [characters...]
+ */
+public class SkeletonInterpolatorBenchmark
+{
+    private static final int FRAMES = 30000; // clip length at 120 Hz: 250 seconds
+    private static final int STEPS = 2000;
+    private static final double STEP = 1.0 / 60.0;
+
+    public static void main(String[] args)
+    {
+        VJoint body = HanimBody.getLOA1HanimBody();
+        List<String> ids = new ArrayList<String>();
+        for (VJoint joint : body.getParts())
+        {
+            if (joint.getSid() != null) ids.add(joint.getSid());
+        }
+        String[] partIds = ids.toArray(new String[ids.size()]);
+        ConfigList clip = createClip(3 + 4 * partIds.length);
+        ConfigList packedClip = clip.copy();
+        packedClip.pack();
+        BatchSkeletonInterpolator sequential = new BatchSkeletonInterpolator();
+        sequential.setParallel(false);
+        BatchSkeletonInterpolator parallel = new BatchSkeletonInterpolator();
+        parallel.setParallelThreshold(1);
+
+        String[] counts = (args.length > 0) ? args : new String[] { "1", "10", "100" };
+        for (String count : counts)
+        {
+            int characters = Integer.parseInt(count);
+            System.out.printf("%d characters, %d joints, %d frames%n", characters, partIds.length, FRAMES);
+            for (int warmup = 0; warmup < 3; warmup++)
+            {
+                run(createInterpolators(partIds, clip, characters));
+                run(createInterpolators(partIds, packedClip, characters));
+                run(createInterpolators(partIds, packedClip, characters), sequential);
+                run(createInterpolators(partIds, packedClip, characters), parallel);
+            }
+            report("float[] per config", run(createInterpolators(partIds, clip, characters)), characters);
+            report("packed", run(createInterpolators(partIds, packedClip, characters)), characters);
+            report("batch", run(createInterpolators(partIds, packedClip, characters), sequential), characters);
+            report("batch, parallel", run(createInterpolators(partIds, packedClip, characters), parallel), characters);
+        }
+    }
+
+    private static void report(String name, long nanos, int characters)
+    {
+        System.out.printf("%-20s %8.4f ms per step, %6.2f us per character%n", name, nanos / (STEPS * 1e6), nanos
+                / (STEPS * 1e3 * characters));
+    }
+
+    private static ConfigList createClip(int configSize)
+    {
+        ConfigList clip = new ConfigList(configSize);
+        float[] q = new float[4];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            float[] config = new float[configSize];
+            config[0] = (float) Math.sin(f * 0.001);
+            config[1] = 1f;
+            for (int i = 3; i < configSize; i += 4)
+            {
+                hmi.math.Quat4f.setFromAxisAngle4f(q, 0.3f, 1f, 0.2f, (float) Math.sin(f * 0.01 + i));
+                System.arraycopy(q, 0, config, i, 4);
+            }
+            clip.addConfig(f / 120.0, config);
+        }
+        return clip;
+    }
+
+    private static SkeletonInterpolator[] createInterpolators(String[] partIds, ConfigList clip, int characters)
+    {
+        SkeletonInterpolator[] skis = new SkeletonInterpolator[characters];
+        for (int c = 0; c < characters; c++)
+        {
+            skis[c] = new SkeletonInterpolator(partIds, clip, "T1R");
+            skis[c].setTarget(HanimBody.getLOA1HanimBody());
+        }
+        return skis;
+    }
+
+    private static long run(SkeletonInterpolator[] skis)
+    {
+        long start = System.nanoTime();
+        for (int step = 0; step < STEPS; step++)
+        {
+            for (int c = 0; c < skis.length; c++)
+            {
+                // characters play the clip at different offsets, so that they touch different configs
+                skis[c].time((c * 1.37 + step * STEP) % (FRAMES / 120.0));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long run(SkeletonInterpolator[] skis, BatchSkeletonInterpolator batch)
+    {
+        double[] times = new double[skis.length];
+        long start = System.nanoTime();
+        for (int step = 0; step < STEPS; step++)
+        {
+            for (int c = 0; c < skis.length; c++)
+            {
+                times[c] = (c * 1.37 + step * STEP) % (FRAMES / 120.0);
+            }
+            batch.interpolate(skis, times, skis.length);
+        }
+        return System.nanoTime() - start;
+    }
+}
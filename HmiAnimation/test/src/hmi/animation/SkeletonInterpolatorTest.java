@@ -656,4 +656,115 @@ public class SkeletonInterpolatorTest
         assertVec3fEquals(vExpected, conf, 0.2f);
         assertQuat4fRotationEquivalent(qExpected, 0, conf, 3, 0.05f);        
     }
+
+    private void assertSkeletonInterpolatorEquals(SkeletonInterpolator expected, SkeletonInterpolator actual)
+    {
+        assertArrayEquals(expected.getPartIds(), actual.getPartIds());
+        assertEquals(expected.getConfigType(), actual.getConfigType());
+        assertEquals(expected.getConfigSize(), actual.getConfigSize());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.getTime(i), actual.getTime(i), 0);
+            assertArrayEquals(expected.getConfig(i), actual.getConfig(i), 0);
+        }
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException
+    {
+        init1();
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { Hanim.HumanoidRoot, Hanim.skullbase }, clist1, "T1R");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ski.writeBinary(out);
+        SkeletonInterpolator read = SkeletonInterpolator.readBinary(java.nio.ByteBuffer.wrap(out.toByteArray()));
+        assertTrue(read.getConfigList().isMapped());
+        assertSkeletonInterpolatorEquals(ski, read);
+
+        read.setTarget(HanimBody.getLOA1HanimBody());
+        read.time(t3);
+        read.getConfigList().addConfig(1, new float[11]);
+        assertFalse(read.getConfigList().isMapped());
+        assertEquals(9, read.size());
+        assertArrayEquals(c7, read.getConfig(7), 0);
+    }
+
+    @Test
+    public void testBinaryFile() throws IOException
+    {
+        init1();
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { "Root", "Joint1" }, clist1, "T1R");
+        File file = File.createTempFile("ski", ".bin");
+        try
+        {
+            ski.writeBinary(file);
+            assertSkeletonInterpolatorEquals(ski, SkeletonInterpolator.readBinary(file));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBinaryKeepsPackedConfigs() throws IOException
+    {
+        init1();
+        clist1.pack();
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { Hanim.HumanoidRoot, Hanim.skullbase }, clist1, "T1R");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ski.writeBinary(out);
+        for (int i = 0; i < clist1.size(); i++)
+        {
+            assertEquals(i * clist1.getConfigSize(), clist1.getConfigOffset(i));
+        }
+        assertSkeletonInterpolatorEquals(ski, SkeletonInterpolator.readBinary(java.nio.ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void testPackedConfigsAreNotDetached()
+    {
+        init1();
+        clist1.pack();
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { Hanim.HumanoidRoot, Hanim.skullbase }, clist1, "T1R");
+        VJoint vHuman = HanimBody.getLOA1HanimBody();
+        ski.setTarget(vHuman);
+        ski.setTargetParts(7);
+        float t[] = new float[3];
+        vHuman.getPart(Hanim.HumanoidRoot).getTranslation(t);
+        assertArrayEquals(new float[] { 7f, 8f, 9f }, t, 0);
+        assertArrayEquals(c7, ski.getInterpolatedConfig(t7, null), 0.001f);
+        ski.mirrorYAxis();
+        for (int i = 0; i < clist1.size(); i++)
+        {
+            assertEquals(i * clist1.getConfigSize(), clist1.getConfigOffset(i));
+        }
+    }
+
+    @Test
+    public void testBinaryEmpty() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { "Root" }, new ConfigList(3), "R");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ski.writeBinary(out);
+        SkeletonInterpolator read = SkeletonInterpolator.readBinary(java.nio.ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(0, read.size());
+        assertArrayEquals(new String[] { "Root" }, read.getPartIds());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryTruncated() throws IOException
+    {
+        init1();
+        SkeletonInterpolator ski = new SkeletonInterpolator(new String[] { "Root", "Joint1" }, clist1, "T1R");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ski.writeBinary(out);
+        SkeletonInterpolator.readBinary(java.nio.ByteBuffer.wrap(out.toByteArray(), 0, out.size() - 4));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryNotBinary() throws IOException
+    {
+        SkeletonInterpolator.readBinary(java.nio.ByteBuffer.wrap("<SkeletonInterpolator>".getBytes("UTF-8")));
+    }
 }
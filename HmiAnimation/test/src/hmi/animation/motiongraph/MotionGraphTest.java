@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hmi.animation.ConfigList;
+import hmi.animation.Hanim;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.animation.motiongraph.blending.Blend;
+import hmi.animation.motiongraph.metrics.JointAngles;
+import hmi.animation.motiongraph.split.ISplit;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for building a MotionGraph, with and without transition candidate pruning
+ */
+public class MotionGraphTest
+{
+    private static final String[] JOINTS = { Hanim.vc7 };
+
+    /** the vc7 rotation angle of every motion; the angles of the motions differ by increasing amounts */
+    private static final float[] ANGLES = { 0.2f, 0.3f, 0.45f, 0.65f, 0.9f, 1.2f, 1.55f, 1.95f };
+
+    private static final int MOTION_SIZE = 300;
+
+    /** every motion drifts a little, so that no motion ends exactly where another one starts */
+    private static final float DRIFT = 1e-5f;
+
+    private static final int CANDIDATES = 3;
+
+    private final JointAngles metric = new JointAngles(new NopAlignment());
+
+    private final List<SkeletonInterpolator> motions = new ArrayList<>();
+
+    public MotionGraphTest()
+    {
+        for (float angle : ANGLES)
+        {
+            ConfigList configs = new ConfigList(3 + 4 * JOINTS.length);
+            for (int f = 0; f < MOTION_SIZE; f++)
+            {
+                float[] config = new float[configs.getConfigSize()];
+                Quat4f.setFromAxisAngle4f(config, 3, 1, 0, 0, angle + f * DRIFT);
+                configs.addConfig(f / 30d, config);
+            }
+            motions.add(new SkeletonInterpolator(JOINTS, configs, "T1R"));
+        }
+    }
+
+    private MotionGraph build(int transitionCandidates)
+    {
+        return new MotionGraph.Builder(motions).align(new NopAlignment()).metric(metric)
+                .blending(new Blend(new NopAlignment())).split(new ISplit()
+                {
+                    @Override
+                    public List<SkeletonInterpolator> split(SkeletonInterpolator motion)
+                    {
+                        return Arrays.asList(motion);
+                    }
+                }).transitionCandidates(transitionCandidates).getInstance();
+    }
+
+    /** the index in ANGLES of the motion of which edge is a part */
+    private static int motionOf(Edge edge)
+    {
+        float[] q = edge.getMotion().getConfig(0);
+        float angle = 2 * (float) Math.atan2(q[4], q[3]);
+        int nearest = 0;
+        for (int m = 1; m < ANGLES.length; m++)
+        {
+            if (Math.abs(ANGLES[m] - angle) < Math.abs(ANGLES[nearest] - angle))
+            {
+                nearest = m;
+            }
+        }
+        return nearest;
+    }
+
+    private static Edge motionEdge(List<Edge> edges)
+    {
+        for (Edge edge : edges)
+        {
+            if (!edge.isBlend())
+            {
+                return edge;
+            }
+        }
+        return null;
+    }
+
+    /** the transitions of graph, as (start motion, end motion) pairs */
+    private static Set<List<Integer>> getTransitions(MotionGraph graph)
+    {
+        Set<List<Integer>> transitions = new HashSet<>();
+        for (Edge edge : graph.getEdges())
+        {
+            if (edge.isBlend())
+            {
+                Edge from = motionEdge(edge.getStartNode().getIncomingEdges());
+                Edge to = motionEdge(edge.getEndNode().getOutgoingEdges());
+                assertNotNull(from);
+                assertNotNull(to);
+                transitions.add(Arrays.asList(motionOf(from), motionOf(to)));
+            }
+        }
+        return transitions;
+    }
+
+    @Test
+    public void testTransitionCandidates()
+    {
+        MotionGraph full = build(0);
+        MotionGraph pruned = build(CANDIDATES);
+        assertNotNull(full.getDistanceMatrix());
+        assertNull(pruned.getDistanceMatrix());
+        Set<List<Integer>> fullTransitions = getTransitions(full);
+        Set<List<Integer>> prunedTransitions = getTransitions(pruned);
+
+        // pruning only leaves out transitions
+        assertTrue(fullTransitions.containsAll(prunedTransitions));
+        assertTrue(prunedTransitions.size() < fullTransitions.size());
+
+        // but keeps the best transitions of every motion; the closest candidate of a motion is the motion itself,
+        // so the other CANDIDATES - 1 candidates are its best transitions to other motions
+        for (int start = 0; start < motions.size(); start++)
+        {
+            final SkeletonInterpolator startMotion = motions.get(start);
+            List<Integer> ends = new ArrayList<>();
+            for (List<Integer> transition : fullTransitions)
+            {
+                if (transition.get(0) == start && transition.get(1) != start)
+                {
+                    ends.add(transition.get(1));
+                }
+            }
+            double[] distances = new double[motions.size()];
+            for (int end : ends)
+            {
+                distances[end] = metric.distance(startMotion, motions.get(end), MotionGraph.DEFAULT_BLENDING_FRAMES);
+            }
+            for (int i = 0; i < CANDIDATES - 1 && !ends.isEmpty(); i++)
+            {
+                int best = ends.get(0);
+                for (int end : ends)
+                {
+                    if (distances[end] < distances[best])
+                    {
+                        best = end;
+                    }
+                }
+                assertTrue("missing transition " + start + " -> " + best,
+                        prunedTransitions.contains(Arrays.asList(start, best)));
+                ends.remove(Integer.valueOf(best));
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutTransitionCandidates()
+    {
+        MotionGraph graph = new MotionGraph(motions, new NopAlignment(), metric, new Blend(new NopAlignment()), new ISplit()
+        {
+            @Override
+            public List<SkeletonInterpolator> split(SkeletonInterpolator motion)
+            {
+                return Arrays.asList(motion);
+            }
+        }, null);
+        assertEquals(getTransitions(build(0)), getTransitions(graph));
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import hmi.animation.ConfigList;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.VJoint;
+import hmi.animation.motiongraph.MotionGraph;
+import hmi.animation.motiongraph.alignment.Alignment;
+import hmi.math.Quat4f;
+import hmi.testutil.animation.HanimBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the motiongraph distances of generated T1R H-Anim clips (40, or the specified number of clips), compared
+ * pair by pair with JointAngles and with a DistanceMatrix, and the DistanceMatrix update after adding one clip.
+ * 
+ * Usage: DistanceMatrixBenchmark [clips]
+ */
+public class DistanceMatrixBenchmark
+{
+    private static final int FRAMES = MotionGraph.DEFAULT_BLENDING_FRAMES;
+    private static final int CLIP_FRAMES = 300;
+
+    public static void main(String[] args)
+    {
+        VJoint body = HanimBody.getLOA1HanimBody();
+        List<String> ids = new ArrayList<String>();
+        for (VJoint joint : body.getParts())
+        {
+            if (joint.getSid() != null) ids.add(joint.getSid());
+        }
+        String[] partIds = ids.toArray(new String[ids.size()]);
+        int nrOfClips = (args.length > 0) ? Integer.parseInt(args[0]) : 40;
+        Random random = new Random(1);
+        List<SkeletonInterpolator> clips = new ArrayList<SkeletonInterpolator>();
+        for (int i = 0; i < nrOfClips; i++)
+        {
+            clips.add(createClip(partIds, random));
+        }
+        JointAngles metric = new JointAngles(new Alignment());
+        System.out.printf("%d clips, %d joints, %d compared frames%n", nrOfClips, partIds.length, FRAMES);
+
+        long pairs = 0;
+        long matrix = 0;
+        for (int run = 0; run < 4; run++)
+        {
+            long time = System.nanoTime();
+            double sum = 0;
+            for (SkeletonInterpolator start : clips)
+            {
+                for (SkeletonInterpolator end : clips)
+                {
+                    sum += metric.distance(start, end, FRAMES);
+                }
+            }
+            pairs = System.nanoTime() - time;
+            time = System.nanoTime();
+            DistanceMatrix distances = DistanceMatrix.compute(metric, clips, clips, FRAMES);
+            matrix = System.nanoTime() - time;
+            if (Double.isNaN(sum) || distances.getNrOfRows() != nrOfClips) throw new IllegalStateException();
+        }
+        System.out.printf("%-30s %10.2f ms%n", "JointAngles per pair", pairs / 1e6);
+        System.out.printf("%-30s %10.2f ms%n", "DistanceMatrix", matrix / 1e6);
+
+        DistanceMatrix previous = DistanceMatrix.compute(metric, clips, clips, FRAMES);
+        clips.add(createClip(partIds, random));
+        long update = 0;
+        DistanceMatrix updated = null;
+        for (int run = 0; run < 4; run++)
+        {
+            long time = System.nanoTime();
+            updated = DistanceMatrix.compute(metric, clips, clips, FRAMES, previous);
+            update = System.nanoTime() - time;
+        }
+        System.out.printf("%-30s %10.2f ms, %d of %d entries reused%n", "DistanceMatrix, one clip added", update / 1e6,
+                updated.getNrOfReusedEntries(), clips.size() * clips.size());
+    }
+
+    private static SkeletonInterpolator createClip(String[] partIds, Random random)
+    {
+        int configSize = 3 + 4 * partIds.length;
+        ConfigList configs = new ConfigList(configSize);
+        float[] q = new float[4];
+        for (int f = 0; f < CLIP_FRAMES; f++)
+        {
+            float[] config = new float[configSize];
+            config[0] = random.nextFloat();
+            config[1] = 1f;
+            config[2] = random.nextFloat();
+            for (int part = 0; part < partIds.length; part++)
+            {
+                Quat4f.setFromRollPitchYaw(q, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+                System.arraycopy(q, 0, config, 3 + part * 4, 4);
+            }
+            configs.addConfig(f / 120d, config);
+        }
+        return new SkeletonInterpolator(partIds, configs, "T1R");
+    }
+}
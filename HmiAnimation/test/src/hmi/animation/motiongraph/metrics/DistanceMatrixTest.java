@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hmi.animation.ConfigList;
+import hmi.animation.Hanim;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.Alignment;
+import hmi.animation.motiongraph.alignment.IAlignment;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.animation.motiongraph.alignment.PositionAlignment;
+import hmi.animation.motiongraph.xml.DistanceMatrixXML;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the DistanceMatrix
+ */
+public class DistanceMatrixTest
+{
+    private static final int FRAMES = 10;
+    private static final String[] JOINTS = { Hanim.HumanoidRoot, Hanim.l_hip, Hanim.r_hip, Hanim.l_knee, Hanim.skullbase,
+            "custom" };
+    private final Random random = new Random(42);
+
+    private SkeletonInterpolator createMotion(String configType, String[] partIds, int size)
+    {
+        boolean rootTransform = configType.equals("T1R");
+        int configSize = partIds.length * 4 + (rootTransform ? 3 : 0);
+        ConfigList configs = new ConfigList(configSize);
+        float[] q = new float[4];
+        for (int f = 0; f < size; f++)
+        {
+            float[] config = new float[configSize];
+            int offset = 0;
+            if (rootTransform)
+            {
+                for (int i = 0; i < 3; i++)
+                {
+                    config[i] = random.nextFloat() * 2 - 1;
+                }
+                offset = 3;
+            }
+            for (int part = 0; part < partIds.length; part++)
+            {
+                Quat4f.setFromRollPitchYaw(q, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 6 - 3);
+                System.arraycopy(q, 0, config, offset + part * 4, 4);
+            }
+            configs.addConfig(f / 30d, config);
+        }
+        return new SkeletonInterpolator(partIds, configs, configType);
+    }
+
+    private List<SkeletonInterpolator> createMotions(boolean mixed)
+    {
+        List<SkeletonInterpolator> motions = new ArrayList<>();
+        motions.add(createMotion("T1R", JOINTS, 15));
+        motions.add(createMotion("T1R", new String[] { Hanim.HumanoidRoot, Hanim.r_hip, "custom" }, 12));
+        motions.add(createMotion("T1R", new String[] { Hanim.HumanoidRoot, Hanim.l_knee, Hanim.l_hip, Hanim.r_elbow }, 20));
+        motions.add(createMotion("T1R", JOINTS, FRAMES - 1));
+        if (mixed)
+        {
+            motions.add(createMotion("R", new String[] { Hanim.l_hip, Hanim.r_hip, Hanim.l_knee }, 11));
+        }
+        return motions;
+    }
+
+    private void assertMatchesMetric(IDistance metric, List<SkeletonInterpolator> motions, DistanceMatrix matrix)
+    {
+        assertEquals(motions.size(), matrix.getNrOfRows());
+        assertEquals(motions.size(), matrix.getNrOfColumns());
+        for (int row = 0; row < motions.size(); row++)
+        {
+            for (int column = 0; column < motions.size(); column++)
+            {
+                if (motions.get(row).size() < FRAMES || motions.get(column).size() < FRAMES)
+                {
+                    assertTrue(Float.isNaN(matrix.get(row, column)));
+                }
+                else
+                {
+                    double expected = metric.distance(motions.get(row), motions.get(column), FRAMES);
+                    assertEquals(expected, matrix.get(row, column), 1e-4 * Math.max(1, expected));
+                }
+            }
+        }
+    }
+
+    private void assertMatchesJointAngles(IAlignment align, boolean mixed)
+    {
+        List<SkeletonInterpolator> motions = createMotions(mixed);
+        JointAngles metric = new JointAngles(align);
+        assertMatchesMetric(metric, motions, DistanceMatrix.compute(metric, motions, motions, FRAMES));
+    }
+
+    @Test
+    public void testNopAlignment()
+    {
+        assertMatchesJointAngles(new NopAlignment(), true);
+    }
+
+    @Test
+    public void testPositionAlignment()
+    {
+        assertMatchesJointAngles(new PositionAlignment(), false);
+    }
+
+    @Test
+    public void testAlignment()
+    {
+        assertMatchesJointAngles(new Alignment(), false);
+    }
+
+    @Test
+    public void testOtherMetric()
+    {
+        List<SkeletonInterpolator> motions = createMotions(false);
+        IDistance metric = new IDistance()
+        {
+            @Override
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end)
+            {
+                return distance(start, end, FRAMES);
+            }
+
+            @Override
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end, int startFrame, int endFrame)
+            {
+                return start.getConfig(start.size() - startFrame)[0] - end.getConfig(endFrame)[0];
+            }
+
+            @Override
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end, int frames)
+            {
+                return distance(start, end, frames, 0);
+            }
+        };
+        assertMatchesMetric(metric, motions, DistanceMatrix.compute(metric, motions, motions, FRAMES));
+    }
+
+    @Test
+    public void testReuse()
+    {
+        List<SkeletonInterpolator> motions = createMotions(false);
+        JointAngles metric = new JointAngles(new Alignment());
+        DistanceMatrix previous = DistanceMatrix.compute(metric, motions, motions, FRAMES);
+        assertEquals(0, previous.getNrOfReusedEntries());
+
+        motions.add(1, createMotion("T1R", JOINTS, 13));
+        DistanceMatrix matrix = DistanceMatrix.compute(metric, motions, motions, FRAMES, previous);
+        assertEquals(3 * 3, matrix.getNrOfReusedEntries());
+        assertMatchesMetric(metric, motions, matrix);
+
+        DistanceMatrix otherMetric = DistanceMatrix.compute(new JointAngles(new NopAlignment()), motions, motions, FRAMES,
+                previous);
+        assertEquals(0, otherMetric.getNrOfReusedEntries());
+    }
+
+    @Test
+    public void testXML()
+    {
+        List<SkeletonInterpolator> motions = createMotions(false);
+        DistanceMatrix matrix = DistanceMatrix.compute(new JointAngles(new Alignment()), motions, motions, FRAMES);
+        String xml = new DistanceMatrixXML(matrix).toXMLString();
+
+        DistanceMatrixXML matrixXML = new DistanceMatrixXML();
+        matrixXML.readXML(xml);
+        DistanceMatrix read = matrixXML.getDistanceMatrix();
+        assertEquals(matrix.getMetricId(), read.getMetricId());
+        assertEquals(FRAMES, read.getFrames());
+        assertEquals(matrix.getNrOfRows(), read.getNrOfRows());
+        assertEquals(matrix.getNrOfColumns(), read.getNrOfColumns());
+        for (int row = 0; row < matrix.getNrOfRows(); row++)
+        {
+            assertEquals(matrix.getRowKey(row), read.getRowKey(row));
+            for (int column = 0; column < matrix.getNrOfColumns(); column++)
+            {
+                assertEquals(matrix.get(row, column), read.get(row, column), 0);
+            }
+        }
+        for (int column = 0; column < matrix.getNrOfColumns(); column++)
+        {
+            assertEquals(matrix.getColumnKey(column), read.getColumnKey(column));
+        }
+    }
+}
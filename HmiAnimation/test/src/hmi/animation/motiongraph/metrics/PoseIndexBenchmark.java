@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import hmi.animation.ConfigList;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.VJoint;
+import hmi.math.Quat4f;
+import hmi.testutil.animation.HanimBody;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures finding the 5 poses closest to a query pose (a slightly changed frame) among all frames of generated T1R H-Anim clips (40, or the
+ * specified number of clips of 300 frames), with a PoseIndex and by comparing against every frame.
+ * 
+ * Usage: PoseIndexBenchmark [clips]
+ */
+public class PoseIndexBenchmark
+{
+    private static final int CLIP_FRAMES = 300;
+    private static final int QUERIES = 1000;
+    private static final int K = 5;
+
+    public static void main(String[] args)
+    {
+        VJoint body = HanimBody.getLOA1HanimBody();
+        List<String> ids = new ArrayList<String>();
+        for (VJoint joint : body.getParts())
+        {
+            if (joint.getSid() != null) ids.add(joint.getSid());
+        }
+        String[] partIds = ids.toArray(new String[ids.size()]);
+        int nrOfClips = (args.length > 0) ? Integer.parseInt(args[0]) : 40;
+        Random random = new Random(1);
+
+        PoseIndex<Integer> index = new PoseIndex<Integer>(partIds, false);
+        List<float[]> features = new ArrayList<float[]>();
+        for (int i = 0; i < nrOfClips; i++)
+        {
+            SkeletonInterpolator clip = createClip(partIds, random);
+            for (int f = 0; f < clip.size(); f++)
+            {
+                index.add(i, clip, f);
+                features.add(index.getFeature(clip, f, null));
+            }
+        }
+        List<float[]> queries = new ArrayList<float[]>();
+        for (int i = 0; i < QUERIES; i++)
+        {
+            float[] query = features.get(random.nextInt(features.size())).clone();
+            for (int d = 0; d < query.length; d++)
+            {
+                query[d] += (random.nextFloat() - 0.5f) * 0.05f;
+            }
+            queries.add(query);
+        }
+        System.out.printf("%d frames, %d dimensions, %d queries for the %d closest%n", index.size(), index.getDimension(),
+                QUERIES, K);
+
+        long time = System.nanoTime();
+        index.nearest(queries.get(0), K);
+        System.out.printf("%-20s %10.2f ms%n", "build", (System.nanoTime() - time) / 1e6);
+
+        long indexed = 0;
+        long linear = 0;
+        for (int run = 0; run < 4; run++)
+        {
+            time = System.nanoTime();
+            float sum = 0;
+            for (float[] query : queries)
+            {
+                sum += index.nearest(query, K).get(K - 1).getDistance();
+            }
+            indexed = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            float linearSum = 0;
+            for (float[] query : queries)
+            {
+                float[] best = new float[K];
+                Arrays.fill(best, Float.POSITIVE_INFINITY);
+                for (float[] feature : features)
+                {
+                    float distance = index.distance(query, feature);
+                    for (int i = 0; i < K; i++)
+                    {
+                        if (distance < best[i])
+                        {
+                            System.arraycopy(best, i, best, i + 1, K - 1 - i);
+                            best[i] = distance;
+                            break;
+                        }
+                    }
+                }
+                linearSum += best[K - 1];
+            }
+            linear = System.nanoTime() - time;
+            if (sum != linearSum) throw new IllegalStateException(sum + " != " + linearSum);
+        }
+        System.out.printf("%-20s %10.2f us per query%n", "PoseIndex", indexed / (QUERIES * 1e3));
+        System.out.printf("%-20s %10.2f us per query%n", "linear", linear / (QUERIES * 1e3));
+    }
+
+    private static SkeletonInterpolator createClip(String[] partIds, Random random)
+    {
+        int configSize = 3 + 4 * partIds.length;
+        ConfigList configs = new ConfigList(configSize);
+        float[] q = new float[4];
+        float[] angles = new float[3 * partIds.length];
+        for (int f = 0; f < CLIP_FRAMES; f++)
+        {
+            float[] config = new float[configSize];
+            for (int part = 0; part < partIds.length; part++)
+            {
+                for (int a = 0; a < 3; a++)
+                {
+                    angles[part * 3 + a] += (random.nextFloat() - 0.5f) * 0.05f;
+                }
+                Quat4f.setFromRollPitchYaw(q, angles[part * 3], angles[part * 3 + 1], angles[part * 3 + 2]);
+                System.arraycopy(q, 0, config, 3 + part * 4, 4);
+            }
+            configs.addConfig(f / 120d, config);
+        }
+        return new SkeletonInterpolator(partIds, configs, "T1R");
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.animation.motiongraph.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import hmi.animation.ConfigList;
+import hmi.animation.Hanim;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.Edge;
+import hmi.animation.motiongraph.MotionGraph;
+import hmi.animation.motiongraph.Node;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the PoseIndex
+ */
+public class PoseIndexTest
+{
+    private static final String[] JOINTS = { Hanim.HumanoidRoot, Hanim.l_hip, Hanim.r_hip, Hanim.l_knee, Hanim.skullbase };
+    private final Random random = new Random(7);
+
+    private SkeletonInterpolator createMotion(String[] partIds, int size)
+    {
+        int configSize = 3 + partIds.length * 4;
+        ConfigList configs = new ConfigList(configSize);
+        float[] q = new float[4];
+        for (int f = 0; f < size; f++)
+        {
+            float[] config = new float[configSize];
+            for (int i = 0; i < 3; i++)
+            {
+                config[i] = random.nextFloat() * 2 - 1;
+            }
+            for (int part = 0; part < partIds.length; part++)
+            {
+                Quat4f.setFromRollPitchYaw(q, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+                System.arraycopy(q, 0, config, 3 + part * 4, 4);
+            }
+            configs.addConfig(f / 30d, config);
+        }
+        return new SkeletonInterpolator(partIds, configs, "T1R");
+    }
+
+    @Test
+    public void testFeatureDistanceIsJointAnglesDistance()
+    {
+        PoseIndex<Integer> index = new PoseIndex<>(JOINTS, true);
+        JointAngles metric = new JointAngles(new NopAlignment());
+        SkeletonInterpolator motion1 = createMotion(JOINTS, 5);
+        SkeletonInterpolator motion2 = createMotion(JOINTS, 5);
+        for (int f = 0; f < 5; f++)
+        {
+            float expected = (float) metric.distance(motion1, motion2, 5 - f, f);
+            float distance = index.distance(index.getFeature(motion1, f, null), index.getFeature(motion2, f, null));
+            assertEquals(expected, distance, 1e-4f * Math.max(1, expected));
+        }
+    }
+
+    @Test
+    public void testNearest()
+    {
+        PoseIndex<Integer> index = new PoseIndex<>(JOINTS, true);
+        List<float[]> features = new ArrayList<>();
+        for (int m = 0; m < 20; m++)
+        {
+            SkeletonInterpolator motion = createMotion(m % 2 == 0 ? JOINTS : Arrays.copyOf(JOINTS, 3), 50);
+            for (int f = 0; f < motion.size(); f++)
+            {
+                index.add(m, motion, f);
+                features.add(index.getFeature(motion, f, null));
+            }
+        }
+        assertEquals(1000, index.size());
+
+        for (int query = 0; query < 20; query++)
+        {
+            float[] pose = index.getFeature(createMotion(JOINTS, 1), 0, null);
+            float[] distances = new float[features.size()];
+            for (int i = 0; i < distances.length; i++)
+            {
+                distances[i] = index.distance(pose, features.get(i));
+            }
+            Arrays.sort(distances);
+
+            List<PoseIndex.Neighbour<Integer>> nearest = index.nearest(pose, 5);
+            assertEquals(5, nearest.size());
+            for (int i = 0; i < nearest.size(); i++)
+            {
+                assertEquals(distances[i], nearest.get(i).getDistance(), 0);
+                float[] feature = features.get(nearest.get(i).getItem() * 50 + nearest.get(i).getFrame());
+                assertEquals(distances[i], index.distance(pose, feature), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testNearestOfIndexedPose()
+    {
+        PoseIndex<String> index = new PoseIndex<>(JOINTS, false);
+        SkeletonInterpolator motion = createMotion(JOINTS, 100);
+        for (int f = 0; f < motion.size(); f++)
+        {
+            index.add("motion", motion, f);
+        }
+        index.add("other", createMotion(JOINTS, 1), 0);
+        assertEquals(42, index.nearest(motion, 42, 1).get(0).getFrame());
+        assertEquals(0, index.nearest(motion, 42, 1).get(0).getDistance(), 0);
+        assertEquals(101, index.nearest(motion, 42, 200).size());
+    }
+
+    @Test
+    public void testNearestWithoutNeighbours()
+    {
+        PoseIndex<String> index = new PoseIndex<>(JOINTS, false);
+        SkeletonInterpolator motion = createMotion(JOINTS, 10);
+        assertTrue(index.nearest(motion, 0, 1).isEmpty());
+        for (int f = 0; f < motion.size(); f++)
+        {
+            index.add("motion", motion, f);
+        }
+        assertTrue(index.nearest(motion, 3, 0).isEmpty());
+        assertTrue(index.nearest(motion, 3, -1).isEmpty());
+        assertEquals(1, index.nearest(motion, 3, 1).size());
+    }
+
+    @Test
+    public void testMotionGraphNextTowardsPose()
+    {
+        SkeletonInterpolator motion1 = createMotion(JOINTS, 10);
+        SkeletonInterpolator motion2 = createMotion(JOINTS, 10);
+        Node start = new Node();
+        Node end = new Node();
+        Edge edge1 = new Edge(start, end, motion1);
+        Edge edge2 = new Edge(start, end, motion2);
+        Edge back = new Edge(end, start, createMotion(JOINTS, 10));
+        start.addOutgoingEdge(edge1);
+        start.addOutgoingEdge(edge2);
+        end.addIncomingEdge(edge1);
+        end.addIncomingEdge(edge2);
+        end.addOutgoingEdge(back);
+        start.addIncomingEdge(back);
+        MotionGraph graph = new MotionGraph.Builder(Arrays.asList(edge1, edge2, back), Arrays.asList(start, end)).align(
+                new NopAlignment()).getInstance();
+
+        PoseIndex<Edge> index = graph.getPoseIndex();
+        assertEquals(3, index.size());
+        assertSame(motion2, graph.next(index.getFeature(motion2, 0, null)));
+        assertSame(back.getMotion(), graph.next(index.getFeature(motion1, 9, null)));
+        assertSame(motion1, graph.next(index.getFeature(motion1, 9, null)));
+    }
+}
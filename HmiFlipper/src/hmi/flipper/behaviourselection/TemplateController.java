@@ -9,11 +9,20 @@ import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.behaviourselection.template.TemplateState;
 import hmi.flipper.behaviourselection.template.effects.Effect;
 import hmi.flipper.behaviourselection.template.effects.Update;
+import hmi.flipper.defaultInformationstate.ChangeSet;
 import hmi.flipper.defaultInformationstate.DefaultRecord;
 import hmi.flipper.exceptions.TemplateRunException;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -49,6 +58,10 @@ public class TemplateController
     /* A list of classes which contain user-specified functions */
     private ArrayList<Object> functionClasses = new ArrayList<Object>();
 
+    /* The user-specified functions that have been looked up, by name, as handles taking the String[] of arguments */
+    private HashMap<String,MethodHandle> functions = new HashMap<String,MethodHandle>();
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(void.class, String[].class);
+
     /* A list with all Templates it knows */
     protected ArrayList<Template> templates = new ArrayList<Template>();
 
@@ -57,6 +70,24 @@ public class TemplateController
 
     protected DefaultRecord internalIS;
 
+    /* If true, only the Templates that read a changed part of the InformationState are checked in each cycle */
+    private boolean incremental = false;
+    /* The writes to the InformationState since the previous cycle (only used if incremental) */
+    private ChangeSet changes = new ChangeSet();
+    /* The InformationState of the previous cycle, the dependencies and the TemplateStates of all Templates in that cycle */
+    private DefaultRecord previousIS = null;
+    private TemplateDependencies dependencies = null;
+    private TemplateState[] previousStates = null;
+
+    /* The pool on which the Templates are checked in parallel (NULL to check them on the caller's thread) */
+    private ForkJoinPool checkingPool = null;
+    /* The minimal number of Templates that is checked by a single task */
+    private static final int TEMPLATES_PER_TASK = 64;
+
+    /* The number of Templates that were checked, and that were skipped because their input did not change */
+    private long nrOfCheckedTemplates = 0;
+    private long nrOfSkippedTemplates = 0;
+
     /**
      * Creates a new TemplateController
      */
@@ -90,6 +121,7 @@ public class TemplateController
             ArrayList<Template> lijst = templateParser.parseFile(templateFile); 
             if( lijst != null ) templates.addAll(lijst);
             else return false;
+            dependencies = null;
         }catch( ParserConfigurationException e ) {
             e.printStackTrace();
             return false;
@@ -125,9 +157,27 @@ public class TemplateController
         ArrayList<TemplateState> templatesToPrepare = new ArrayList<TemplateState>();
         ArrayList<TemplateState> templatesToRun = new ArrayList<TemplateState>();
 
-        /* Check all Templates */
-        for( Template template : templates ) {
-            TemplateState state = template.checkTemplate(is);
+        /* Check all Templates (or, if incremental, only the ones that read a changed part of the InformationState) */
+        boolean[] affected = getAffectedTemplates(is);
+        TemplateState[] states = new TemplateState[templates.size()];
+        if( checkingPool != null && states.length >= 2*TEMPLATES_PER_TASK ) {
+            checkingPool.invoke(new CheckTask(is, affected, states, 0, states.length));
+        } else {
+            checkTemplates(is, affected, states, 0, states.length);
+        }
+        for( int t=0; t<states.length; t++ ) {
+            if( affected == null || affected[t] ) {
+                nrOfCheckedTemplates++;
+            } else {
+                nrOfSkippedTemplates++;
+            }
+        }
+        if( affected != null ) {
+            previousStates = states;
+        }
+
+        /* Divide the TemplateStates over the lists, in the order of the Templates */
+        for( TemplateState state : states ) {
             if( state.isComparesSatisfied() && state.isIndicatorsSatisfied() ) {
                 if( state.isTriggersSatisfied() ) {
                     if( state.getEffects().size() > 0 && state.getBehaviour() == null ) {
@@ -235,6 +285,175 @@ public class TemplateController
         }
     }
 
+    /**
+     * Determines the TemplateStates of the Templates from .. to-1, by checking the affected Templates (all if affected is NULL),
+     * and reusing the previous TemplateStates of the others.
+     */
+    private void checkTemplates( DefaultRecord is, boolean[] affected, TemplateState[] states, int from, int to )
+    {
+        for( int t=from; t<to; t++ ) {
+            Template template = templates.get(t);
+            if( affected == null || affected[t] ) {
+                states[t] = template.checkTemplate(is);
+            } else {
+                /* The Preconditions have the same results as in the previous cycle; if they are all satisfied, 
+                 * the Effects and Behaviour are collected again (skipped Templates have no choice-blocks) */
+                TemplateState state = previousStates[t];
+                if( state.getNrOfMissingPreconditions() == 0 ) {
+                    state = template.reuseState(state);
+                }
+                states[t] = state;
+            }
+        }
+    }
+
+    /**
+     * Checks the Templates from .. to-1, splitting in halves down to TEMPLATES_PER_TASK Templates.
+     */
+    private class CheckTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final DefaultRecord is;
+        private final boolean[] affected;
+        private final TemplateState[] states;
+        private final int from, to;
+
+        CheckTask( DefaultRecord is, boolean[] affected, TemplateState[] states, int from, int to )
+        {
+            this.is = is;
+            this.affected = affected;
+            this.states = states;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if( to - from >= 2*TEMPLATES_PER_TASK ) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CheckTask(is, affected, states, from, mid), new CheckTask(is, affected, states, mid, to));
+                return;
+            }
+            checkTemplates(is, affected, states, from, to);
+        }
+    }
+
+    /**
+     * Sets the pool on which the Templates are checked in parallel. Checking the Preconditions of a Template only reads
+     * the InformationState, and all Templates are checked before any Effect is applied, so the Templates are all checked 
+     * against the same state of the InformationState (provided that other threads do not write to it during checkTemplates, 
+     * which is also required when checking sequentially). The resulting TemplateStates are processed in the order of the 
+     * Templates, so the selected Templates are the same as when checking sequentially.
+     * 
+     * @param pool - the pool to use, for example ForkJoinPool.commonPool(), or NULL to check the Templates on the 
+     *        caller's thread (the default)
+     */
+    public void setCheckingPool( ForkJoinPool pool )
+    {
+        checkingPool = pool;
+    }
+
+    /**
+     * @return the pool on which the Templates are checked, or NULL if they are checked on the caller's thread
+     */
+    public ForkJoinPool getCheckingPool()
+    {
+        return checkingPool;
+    }
+
+    /**
+     * Returns for every Template whether it has to be checked in this cycle, or NULL if all Templates have to be checked.
+     * The first cycle with a new InformationState or a new list of Templates checks all Templates.
+     */
+    private boolean[] getAffectedTemplates( DefaultRecord is )
+    {
+        if( !incremental ) {
+            return null;
+        }
+        if( is != previousIS ) {
+            if( previousIS != null ) {
+                previousIS.removeChangeSet(changes);
+            }
+            is.addChangeSet(changes);
+            previousIS = is;
+            previousStates = null;
+        }
+        ChangeSet currentChanges = changes.take();
+        if( dependencies == null || dependencies.size() != templates.size() ) {
+            dependencies = new TemplateDependencies(templates);
+            previousStates = null;
+        }
+        if( previousStates == null ) {
+            boolean[] affected = new boolean[templates.size()];
+            for( int t=0; t<affected.length; t++ ) {
+                affected[t] = true;
+            }
+            return affected;
+        }
+        return dependencies.getAffected(currentChanges);
+    }
+
+    /**
+     * Sets whether the Templates are checked incrementally. If so, the TemplateController keeps track of the 
+     * InformationState-variables that are read by the Preconditions of each Template, records all writes to the 
+     * InformationState, and in each cycle only checks the Templates that read a variable that has been written since 
+     * the previous cycle. The other Templates keep the results of their previous check.
+     * Templates with choice-blocks are checked in every cycle, so their random choices are made in every cycle, 
+     * just as without incremental checking.
+     * 
+     * Only writes through the set- and remove-methods of the InformationState itself are recorded. Code that modifies
+     * a substructure (a Record or List) of the InformationState directly should call markChanged() on the InformationState.
+     * 
+     * @param incremental - true to check Templates incrementally, false to check all Templates in each cycle (the default)
+     */
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+        if( !incremental ) {
+            if( previousIS != null ) {
+                previousIS.removeChangeSet(changes);
+            }
+            previousIS = null;
+            previousStates = null;
+            dependencies = null;
+            changes.take();
+        }
+    }
+
+    /**
+     * @return true if the Templates are checked incrementally
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * @return the number of Templates whose Preconditions were checked since the last resetCounters()
+     */
+    public long getNrOfCheckedTemplates()
+    {
+        return nrOfCheckedTemplates;
+    }
+
+    /**
+     * @return the number of Templates that were skipped because their input did not change, since the last resetCounters()
+     */
+    public long getNrOfSkippedTemplates()
+    {
+        return nrOfSkippedTemplates;
+    }
+
+    /**
+     * Resets the number of checked and skipped Templates.
+     */
+    public void resetCounters()
+    {
+        nrOfCheckedTemplates = 0;
+        nrOfSkippedTemplates = 0;
+    }
+
     /**
      * Update the list of recently executed Behaviours, based on the given TemplateState
      * @param state
@@ -332,6 +551,42 @@ public class TemplateController
         functionClasses.add(obj);
     }
 
+    /**
+     * Returns the user-specified function with the given name: the first public method with this name of the 
+     * classes in the list of function classes, as a MethodHandle of type (String[])void.
+     * A function is looked up only once; later calls return the same MethodHandle.
+     * 
+     * @param name - the name of the function
+     * @return the MethodHandle of the function, or NULL if there is no function with the given name.
+     * @throws TemplateRunException if the method can not be called with a String[] of arguments
+     */
+    public MethodHandle getFunction( String name ) throws TemplateRunException
+    {
+        MethodHandle function = functions.get(name);
+        if( function != null ) {
+            return function;
+        }
+        for( Object object : functionClasses ) {
+            for( Method method : object.getClass().getMethods() ) {
+                if( method.getName().equals(name) ) {
+                    try {
+                        function = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+                        if( !Modifier.isStatic(method.getModifiers()) ) {
+                            function = function.bindTo(object);
+                        }
+                        function = function.asType(FUNCTION_TYPE);
+                    }catch( Exception e ) {
+                        e.printStackTrace();
+                        throw new TemplateRunException("Error while calling function '"+name+"'.");
+                    }
+                    functions.put(name, function);
+                    return function;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * @return the list of classes tha contain user-specified functions.
      */
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.behaviourselection;
+
+import hmi.flipper.behaviourselection.template.Template;
+import hmi.flipper.defaultInformationstate.ChangeSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * TemplateDependencies knows which parts of the InformationState are read by the Preconditions of each Template,
+ * and determines which Templates have to be checked again after a number of writes (a ChangeSet).
+ *
+ * A Template that reads the key 'a.b' depends on writes to 'a', 'a.b', and everything below 'a.b'.
+ * Templates with choice-blocks are checked in every cycle, so that their random choices are made just as in a full check.
+ */
+
+class TemplateDependencies
+{
+    /* For every key, the indices of the Templates that read this key */
+    private HashMap<String,ArrayList<Integer>> readers = new HashMap<String,ArrayList<Integer>>();
+    /* For every key, the indices of the Templates that read a key below this key */
+    private HashMap<String,ArrayList<Integer>> readersBelow = new HashMap<String,ArrayList<Integer>>();
+    /* The Templates that have to be checked in every cycle */
+    private boolean[] always;
+
+    /**
+     * Creates the dependencies of the given list of Templates.
+     * @param templates
+     */
+    TemplateDependencies( ArrayList<Template> templates )
+    {
+        always = new boolean[templates.size()];
+        ArrayList<String> paths = new ArrayList<String>();
+        HashSet<String> keys = new HashSet<String>();
+        for( int t=0; t<templates.size(); t++ ) {
+            paths.clear();
+            keys.clear();
+            if( templates.get(t).hasChoices() || !templates.get(t).addPaths(paths) ) {
+                always[t] = true;
+                continue;
+            }
+            for( String path : paths ) {
+                ChangeSet.addKeys(path, keys);
+            }
+            for( String key : keys ) {
+                if( key.length() == 0 ) {
+                    always[t] = true;
+                    break;
+                }
+            }
+            if( always[t] ) {
+                continue;
+            }
+            for( String key : keys ) {
+                add(readers, key, t);
+                int dot = key.indexOf('.');
+                while( dot != -1 ) {
+                    add(readersBelow, key.substring(0, dot), t);
+                    dot = key.indexOf('.', dot+1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns for every Template whether it has to be checked again after the given changes.
+     *
+     * @param changes - the writes since the previous check
+     * @return for every Template, true if it reads a changed part of the InformationState
+     */
+    boolean[] getAffected( ChangeSet changes )
+    {
+        boolean[] affected = always.clone();
+        if( changes.isAllChanged() ) {
+            for( int t=0; t<affected.length; t++ ) {
+                affected[t] = true;
+            }
+            return affected;
+        }
+        for( String key : changes.getKeys() ) {
+            int dot = key.indexOf('.');
+            while( dot != -1 ) {
+                mark(readers.get(key.substring(0, dot)), affected);
+                dot = key.indexOf('.', dot+1);
+            }
+            mark(readers.get(key), affected);
+            mark(readersBelow.get(key), affected);
+        }
+        return affected;
+    }
+
+    /**
+     * @return the number of Templates this TemplateDependencies was created for
+     */
+    int size()
+    {
+        return always.length;
+    }
+
+    private static void add( HashMap<String,ArrayList<Integer>> map, String key, int t )
+    {
+        ArrayList<Integer> list = map.get(key);
+        if( list == null ) {
+            list = new ArrayList<Integer>();
+            map.put(key, list);
+        }
+        if( list.isEmpty() || list.get(list.size()-1) != t ) {
+            list.add(t);
+        }
+    }
+
+    private static void mark( ArrayList<Integer> list, boolean[] affected )
+    {
+        if( list != null ) {
+            for( int t : list ) {
+                affected[t] = true;
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import hmi.flipper.defaultInformationstate.DefaultRecord;
 import hmi.flipper.exceptions.TemplateParseException;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Random;
 
 import org.slf4j.Logger;
@@ -195,6 +196,14 @@ public class Template
         optional = options;
     }
 
+    /**
+     * @return true if this Template has choice-blocks, of which the outcome is chosen randomly
+     */
+    public boolean hasChoices()
+    {
+        return optional != null && !optional.isEmpty();
+    }
+
     /**
      * @return the id
      */
@@ -263,6 +272,53 @@ public class Template
         /* Create a new TemplateState */
         resultState = new TemplateState(this,comparesSatisfied,indicatorsSatisfied,
                 triggersSatisfied,(compares.size()+indicators.size()+triggers.size()),nrMissing);
+        addEffectsAndBehaviour(resultState);
+        return resultState;
+    }
+
+    /**
+     * Creates a new TemplateState with the same Precondition-results as the given (earlier) TemplateState of this Template,
+     * without checking the Preconditions again. This can be used if the InformationState-variables that are read by the 
+     * Preconditions have not changed since the given TemplateState was created.
+     * The Effects and the Behaviour are determined again, so the choice-blocks are chosen anew.
+     * 
+     * @param state - an earlier TemplateState of this Template
+     * @return the new TemplateState
+     */
+    public TemplateState reuseState( TemplateState state )
+    {
+        TemplateState resultState = new TemplateState(this,state.isComparesSatisfied(),state.isIndicatorsSatisfied(),
+                state.isTriggersSatisfied(),state.getTotalNrOfPreconditions(),state.getNrOfMissingPreconditions());
+        addEffectsAndBehaviour(resultState);
+        return resultState;
+    }
+
+    /**
+     * Adds the IS-paths that are read by the Preconditions of this Template to the given collection.
+     * 
+     * @param paths - the collection to add the paths to
+     * @return  - true if the Preconditions only depend on the added paths
+     *          - false if they may also depend on other parts of the InformationState
+     */
+    public boolean addPaths( Collection<String> paths )
+    {
+        boolean complete = true;
+        for( Precondition c : compares ) {
+            if( !c.addPaths(paths) ) complete = false;
+        }
+        for( Precondition c : indicators ) {
+            if( !c.addPaths(paths) ) complete = false;
+        }
+        for( Precondition c : triggers ) {
+            if( !c.addPaths(paths) ) complete = false;
+        }
+        return complete;
+    }
+
+    /* Determines the Effects and Behaviour of the given TemplateState, based on the number of missing Preconditions */
+    private void addEffectsAndBehaviour( TemplateState resultState )
+    {
+        int nrMissing = resultState.getNrOfMissingPreconditions();
 
         /* Determine which choice-blocks are chosen, and make a list of all Effects that have to be executed. */
         ArrayList<Effect> currEffects = new ArrayList<Effect>();
@@ -300,8 +356,6 @@ public class Template
         if( currBehaviour != null ) {
             resultState.setBehaviour(currBehaviour);
         }
-
-        return resultState;
     }
 
     /**
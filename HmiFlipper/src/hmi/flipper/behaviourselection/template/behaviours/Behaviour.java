@@ -120,7 +120,7 @@ public class Behaviour
     public void execute( Record is ) throws TemplateRunException
     {
         ArrayList<Value> values = prepareValues(is, argValues);
-        behaviour.execute(new ArrayList<String>(argNames), new ArrayList<Value>(values));
+        behaviour.execute(new ArrayList<String>(argNames), values);
     }
 
     /**
@@ -133,7 +133,7 @@ public class Behaviour
     public void prepare( Record is ) throws TemplateRunException
     {
         ArrayList<Value> values = prepareValues(is, argValues);
-        behaviour.prepare(new ArrayList<String>(argNames), new ArrayList<Value>(values));
+        behaviour.prepare(new ArrayList<String>(argNames), values);
     }
 
     /**
@@ -144,7 +144,7 @@ public class Behaviour
      * @throws TemplateRunException
      */
     private ArrayList<Value> prepareValues(Record is, ArrayList<AbstractValue> values) throws TemplateRunException{
-    	ArrayList<Value> retVals = new ArrayList<Value>();
+    	ArrayList<Value> retVals = new ArrayList<Value>(values.size());
 
         for( AbstractValue av : values) {
             retVals.add(av.getValue(is));
@@ -13,9 +13,9 @@ import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
 import hmi.flipper.informationstate.Record;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -65,10 +65,9 @@ public class Function extends Effect
     }
 
     /**
-     * Given the current InformationState, and the TemplateController, retrieve a list of classes which
-     * contain user-specified functions from the TemplateController, search these classes for a method
-     * with the correct name and number of arguments, and execute this function the the current values
-     * of the arguments.
+     * Given the current InformationState, and the TemplateController, retrieve the user-specified function 
+     * with the correct name from the TemplateController (which searches its list of classes with user-specified functions
+     * only once for each name), and execute this function with the current values of the arguments.
      * 
      * @param is - the current InformationState
      * @param controller - the TemplateController than manages the Template containing this Update.
@@ -76,47 +75,31 @@ public class Function extends Effect
      */
     public void apply( Record is, TemplateController tc ) throws TemplateRunException
     {
-        /* Get a list of all classes containing user-specified functions */
-        ArrayList<Object> functionClasses = tc.getFunctionClasses();
-
-        for( Object object : functionClasses ) {
-            Class<?> c = object.getClass();
-
-            for( Method method : c.getMethods() ) {
-                /* Check all methods of all classes */
-                if( method.getName().equals(name) ) {
-                    /* Make a list with the current values of the arguments */
-                    ArrayList<Value> argValues = new ArrayList<Value>();
-                    for( AbstractValue av : arguments ) {
-                    	Value tmpVal = av.getValue(is);
-                    	if(tmpVal != null){
-                    		argValues.add(tmpVal);
-                    	}
-                    }
-                    String[] args = new String[argValues.size()];
-                    for( int i=0; i<argValues.size(); i++ ) {
-                        args[i] = argValues.get(i).toString();
-                    }
-
-                    /* Execute the function with the current values of the arguments */
-                    try {
-                    	Object a = (Object)args;
-                        method.invoke(object, a);
-                        return;
-                    }catch( IllegalAccessException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }catch( InvocationTargetException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }catch( IllegalArgumentException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }
-                }
+        MethodHandle function = tc.getFunction(name);
+        if( function == null ) {
+            throw new TemplateRunException("Could not find function '"+name+"'.");
+        }
+
+        /* Make a list with the current values of the arguments */
+        String[] args = new String[arguments.size()];
+        int nrOfArgs = 0;
+        for( AbstractValue av : arguments ) {
+            Value tmpVal = av.getValue(is);
+            if(tmpVal != null){
+                args[nrOfArgs++] = tmpVal.toString();
             }
         }
-        throw new TemplateRunException("Could not find function '"+name+"'.");
+        if( nrOfArgs < args.length ) {
+            args = Arrays.copyOf(args, nrOfArgs);
+        }
+
+        /* Execute the function with the current values of the arguments */
+        try {
+            function.invokeExact(args);
+        }catch( Throwable e ) {
+            e.printStackTrace();
+            throw new TemplateRunException("Error while calling function '"+name+"'.");
+        }
     }
 
     /**
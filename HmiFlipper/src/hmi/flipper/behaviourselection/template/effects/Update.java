@@ -11,6 +11,9 @@ import hmi.flipper.behaviourselection.TemplateController;
 import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.behaviourselection.template.value.AbstractValue;
 import hmi.flipper.behaviourselection.template.value.Value;
+import hmi.flipper.defaultInformationstate.DefaultList;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.defaultInformationstate.ISPath;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
 import hmi.flipper.informationstate.Item;
@@ -36,6 +39,8 @@ public class Update extends Effect
 {
     /* The name of the IS-value to modify. */
     private String name;
+    /* The compiled path of the IS-value to modify, for determining its current type */
+    private ISPath typePath;
     /* The new value */
     private AbstractValue abstractValue;
 
@@ -49,6 +54,7 @@ public class Update extends Effect
     public Update( String name, String valueString ) throws TemplateParseException
     {
         this.name = name;
+        this.typePath = new ISPath(name.replaceAll(DefaultList.ADDFIRST, DefaultList.FIRST).replaceAll(DefaultList.ADDLAST, DefaultList.LAST));
         if( valueString != null && valueString.length() > 0 ) {
             try {
                 this.abstractValue = new AbstractValue(valueString);
@@ -81,7 +87,13 @@ public class Update extends Effect
                 //throw new TemplateRunException("Error calculating new Value of '"+name+"'.");
             }
 
-            Item.Type type = is.getTypeOfPath(name, is);
+            Item.Type type;
+            if( is instanceof DefaultRecord ) {
+                Item item = typePath.getValue(is, is);
+                type = (item == null) ? null : item.getType();
+            } else {
+                type = is.getTypeOfPath(name, is);
+            }
             if( type == null ) {
                 if( value.getType() == Value.Type.Double ) {
                     is.set(name, value.getDoubleValue());
@@ -23,6 +23,8 @@ import hmi.flipper.behaviourselection.template.value.AbstractValue;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.informationstate.Record;
 
+import java.util.Collection;
+
 /**
  * This is an abstract class of a Compare. Depending on what kind of comparison has to be made, a different subclass should be used.
  * 
@@ -76,6 +78,16 @@ public abstract class Compare extends Precondition
      */
     public abstract boolean isValid( Record is );
 
+    /**
+     * Adds the IS-paths referenced by the values of this Compare to the given collection.
+     */
+    public boolean addPaths( Collection<String> paths )
+    {
+        if( abstractValue1 != null ) abstractValue1.addPaths(paths);
+        if( abstractValue2 != null ) abstractValue2.addPaths(paths);
+        return true;
+    }
+
     /**
      * Given the DOM Compare-Element, returns the Precondition that fits the XML.
      * This class will look at the type of comparator and calls the corresponding subclass.
@@ -13,6 +13,8 @@ import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.informationstate.Record;
 
+import java.util.Collection;
+
 /**
  * An ICompare is a Compare that is used in an Indicator. It contains a normal Compare, and a modifier (which modifiers the Indicator's proof-value). 
  * 
@@ -52,6 +54,17 @@ public class ICompare
         return compare.isValid(is);
     }
 
+    /**
+     * Adds the IS-paths that are read by the Compare to the given collection.
+     * 
+     * @param paths
+     * @return true if the Compare only depends on the added paths
+     */
+    public boolean addPaths( Collection<String> paths )
+    {
+        return compare.addPaths(paths);
+    }
+
     /**
      * Returns the modifier.
      * @return
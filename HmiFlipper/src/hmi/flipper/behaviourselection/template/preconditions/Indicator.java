@@ -6,6 +6,7 @@
 package hmi.flipper.behaviourselection.template.preconditions;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -139,6 +140,22 @@ public class Indicator extends Precondition
         }
     }
 
+    /**
+     * Adds the IS-paths referenced by the start-value, the end-value and all Compares of this Indicator to the given collection.
+     */
+    public boolean addPaths( Collection<String> paths )
+    {
+        boolean complete = true;
+        abstractStartValue.addPaths(paths);
+        abstractEndValue.addPaths(paths);
+        for( ICompare compare : indicatorCompares ) {
+            if( !compare.addPaths(paths) ) {
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
     /**
      * Given the current proof-value and a modifier, calculate the new proof-value and return this.
      * 
@@ -7,6 +7,8 @@ package hmi.flipper.behaviourselection.template.preconditions;
 
 import hmi.flipper.informationstate.Record;
 
+import java.util.Collection;
+
 /**
  * This interface defines a Precondition of a template. This can either be a Compare or an Indicator.
  * 
@@ -25,4 +27,17 @@ public abstract class Precondition
      *          - false if the precondition is not valid, or if an error occurred.
      */
     public abstract boolean isValid( Record is );
+
+    /**
+     * Adds the IS-paths that are read by this Precondition to the given collection.
+     * 
+     * @param paths - the collection to add the paths to
+     * @return  - true if the result of isValid() only depends on the added paths
+     *          - false if it may also depend on other parts of the InformationState, 
+     *            in which case the Precondition has to be checked in every cycle
+     */
+    public boolean addPaths( Collection<String> paths )
+    {
+        return false;
+    }
 }
@@ -7,11 +7,14 @@ package hmi.flipper.behaviourselection.template.value;
 
 import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.behaviourselection.template.value.Value.ExportType;
+import hmi.flipper.defaultInformationstate.ISPath;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
 import hmi.flipper.informationstate.Item;
 import hmi.flipper.informationstate.Record;
 
+import java.util.Collection;
+
 /**
  * An AbstractValue is a description of a value (the value-string from the XML), rather than the value itself.
  * If this is an atomic value (an Integer, a Double or a String), then the real Value can be calculated immediately.
@@ -42,6 +45,10 @@ public class AbstractValue
     private String valueString2;
     private Value value2;
 
+    /* The compiled IS-paths of the first and second value, if these are IS-references */
+    private ISPath path;
+    private ISPath path2;
+
     /* If there are 2 components, this stores the mathematical operator (+-/*) */
     private String operator;
 	private ExportType exportType;
@@ -125,6 +132,66 @@ public class AbstractValue
             }
             numberOfComponents = 1;
         }
+
+        /* Compile the IS-references once, rather than at every getValue */
+        if( value == null ) {
+            path = compilePath(this.valueString);
+        }
+        if( numberOfComponents == 2 && value2 == null ) {
+            path2 = compilePath(this.valueString2);
+        }
+    }
+
+    /**
+     * Returns the IS-path within the given String-representation of a value: the part starting with the $-sign,
+     * or NULL if there is no $-sign.
+     * 
+     * @param str - the String-representation of the value
+     * @return the IS-path, or NULL
+     */
+    public static String getPath( String str )
+    {
+        /* Determine the start-index and the end-index of the IS-reference, and create the IS-path */
+        int startindex = str.indexOf("$");
+        if( startindex == -1 ) {
+            return null;
+        }
+        int endindex = -1;
+        for( int i=startindex+1; i<str.length(); i++ ) {
+            char ch = str.charAt(i);
+            if( !(Character.isLetter(ch) || Character.isDigit(ch) || ch == '_' || ch == '.' || ch == '='|| ch == ':' || ch == '[' || ch == ']') ) {
+                endindex = i;
+            }
+        }
+        if( endindex == -1 ) {
+            endindex = str.length();
+        }
+        return str.substring(startindex,endindex);
+    }
+
+    /* Compiles the IS-path within the given String-representation of a value, or returns NULL if there is no $-sign */
+    private static ISPath compilePath( String str )
+    {
+        String p = getPath(str);
+        return p == null ? null : new ISPath(p);
+    }
+
+    /**
+     * Adds the IS-paths referenced by this AbstractValue to the given collection.
+     * 
+     * @param paths - the collection to add the paths to
+     */
+    public void addPaths( Collection<String> paths )
+    {
+        if( !parseValue ) {
+            return;
+        }
+        if( value == null && getPath(valueString) != null ) {
+            paths.add(getPath(valueString));
+        }
+        if( numberOfComponents == 2 && value2 == null && getPath(valueString2) != null ) {
+            paths.add(getPath(valueString2));
+        }
     }
 
     /**
@@ -196,25 +263,29 @@ public class AbstractValue
      */
     public Value getDynamicValue( String str, Record is ) throws TemplateRunException
     {
-        /* Determine the start-index and the end-index of the IS-reference, and create the IS-path */
-        int startindex = str.indexOf("$");
-        if( startindex == -1 ) {
+        String path = getPath(str);
+        if( path == null ) {
             throw new TemplateRunException("Missing $-sign in referenced value ("+str+").");
         }
-        int endindex = -1;
-        for( int i=startindex+1; i<str.length(); i++ ) {
-            char ch = str.charAt(i);
-            if( !(Character.isLetter(ch) || Character.isDigit(ch) || ch == '_' || ch == '.' || ch == '='|| ch == ':' || ch == '[' || ch == ']') ) {
-                endindex = i;
-            }
-        }
-        if( endindex == -1 ) {
-            endindex = str.length();
-        }
-        String path = str.substring(startindex,endindex);
 
         /* Use the reference-path, get the InformationState-Item of the corresponding IS-variable */
-        Item item = is.getValueOfPath(path, is);
+        return toValue(is.getValueOfPath(path, is));
+    }
+
+    /**
+     * Using the given compiled IS-path and the current InformationState, calculate the current Value
+     * 
+     * @param path - the compiled IS-path
+     * @param is - the current InformationState
+     * @return Value
+     */
+    public Value getDynamicValue( ISPath path, Record is )
+    {
+        return toValue(path.getValue(is, is));
+    }
+
+    private Value toValue( Item item )
+    {
         if( item == null ) {
             return null;
         } else {
@@ -239,6 +310,8 @@ public class AbstractValue
              * If not, then get the variable from the IS. */
             if( value != null ) {
                 return value;
+            } else if( path != null ) {
+                return getDynamicValue(path,is);
             } else {
                 return getDynamicValue(valueString,is);
             }
@@ -248,6 +321,8 @@ public class AbstractValue
             Value v1;
             if( value != null ) {
                 v1 = value;
+            } else if( path != null ) {
+                v1 = getDynamicValue(path,is);
             } else {
                 v1 = getDynamicValue(valueString,is);
             }
@@ -256,6 +331,8 @@ public class AbstractValue
             Value v2;
             if( value2 != null ) {
                 v2 = value2;
+            } else if( path2 != null ) {
+                v2 = getDynamicValue(path2,is);
             } else {
                 v2 = getDynamicValue(valueString2,is);
             }
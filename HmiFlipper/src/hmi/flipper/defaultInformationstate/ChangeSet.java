@@ -0,0 +1,161 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.defaultInformationstate;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * A ChangeSet keeps track of which parts of an InformationState have been written since it was last taken.
+ * Every written path is stored as a key: the path without the $-sign, cut off before the first list-position
+ * (such as '_last', '2' or '_select[...]'), since a write to one element of a list may move all other elements.
+ * So a write to '$dialog.moves._addlast.id' is stored as 'dialog.moves'.
+ *
+ * A ChangeSet is filled by a DefaultRecord (see DefaultRecord.addChangeSet()), and is used by the TemplateController
+ * to only check the Templates that read a changed part of the InformationState.
+ */
+
+public class ChangeSet
+{
+    /* The keys of the paths that have been written */
+    private HashSet<String> keys = new HashSet<String>();
+    /* True if an unknown part of the InformationState may have changed */
+    private boolean allChanged = false;
+
+    /**
+     * Creates a new, empty, ChangeSet
+     */
+    public ChangeSet()
+    {
+    }
+
+    /**
+     * Records a write to the given path.
+     * @param path - the path of the written variable
+     */
+    public synchronized void add( String path )
+    {
+        String key = getKey(path);
+        if( key.length() == 0 ) {
+            allChanged = true;
+        } else {
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Records that an unknown part of the InformationState may have changed.
+     */
+    public synchronized void addAll()
+    {
+        allChanged = true;
+    }
+
+    /**
+     * @return true if nothing has been written
+     */
+    public synchronized boolean isEmpty()
+    {
+        return !allChanged && keys.isEmpty();
+    }
+
+    /**
+     * @return true if an unknown part of the InformationState may have changed
+     */
+    public synchronized boolean isAllChanged()
+    {
+        return allChanged;
+    }
+
+    /**
+     * @return the keys of the paths that have been written
+     */
+    public synchronized HashSet<String> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * Returns a ChangeSet with the current contents of this ChangeSet, and empties this ChangeSet.
+     * @return the taken changes
+     */
+    public synchronized ChangeSet take()
+    {
+        ChangeSet taken = new ChangeSet();
+        taken.keys = keys;
+        taken.allChanged = allChanged;
+        keys = new HashSet<String>();
+        allChanged = false;
+        return taken;
+    }
+
+    /**
+     * Returns the key of the given path: the path without the $-sign, up to the first list-position.
+     * An empty String is returned if the path starts with a list-position.
+     *
+     * @param path - the path of a variable
+     * @return the key of the path
+     */
+    public static String getKey( String path )
+    {
+        int start = (path.length() > 0 && path.charAt(0) == '$') ? 1 : 0;
+        int end = start;
+        while( end < path.length() ) {
+            int dot = path.indexOf('.', end);
+            if( dot == -1 ) dot = path.length();
+            if( isListPosition(path.substring(end, dot)) ) {
+                break;
+            }
+            end = dot+1;
+        }
+        if( end > path.length() ) end = path.length();
+        if( end > start && path.charAt(end-1) == '.' ) end--;
+        return path.substring(start, end);
+    }
+
+    /**
+     * Adds the keys of all parts of the InformationState that are read when the given path is looked up:
+     * the key of the path itself, and the keys of the ROOT-references in its '_select[...]'-positions.
+     *
+     * @param path - the path of a variable
+     * @param result - the collection to add the keys to
+     */
+    public static void addKeys( String path, Collection<String> result )
+    {
+        result.add(getKey(path));
+        int index = path.indexOf("_select[");
+        while( index != -1 ) {
+            int close = path.indexOf(']', index);
+            if( close == -1 ) {
+                break;
+            }
+            int is = path.indexOf('=', index);
+            if( is != -1 && is < close && path.startsWith("ROOT.", is+1) ) {
+                result.add(getKey(path.substring(is+6, close)));
+            }
+            index = path.indexOf("_select[", close);
+        }
+    }
+
+    /* Checks if the given path-component selects an element of a list rather than a variable of a record */
+    private static boolean isListPosition( String component )
+    {
+        String c = component.toLowerCase();
+        if( c.equals(DefaultList.FIRST) || c.equals(DefaultList.LAST) || c.equals(DefaultList.ADDFIRST)
+                || c.equals(DefaultList.ADDLAST) || c.startsWith("_select[") ) {
+            return true;
+        }
+        if( c.length() == 0 ) {
+            return false;
+        }
+        for( int i=0; i<c.length(); i++ ) {
+            if( !Character.isDigit(c.charAt(i)) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -9,6 +9,7 @@ import hmi.flipper.informationstate.*;
 import hmi.flipper.informationstate.Item.Type;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -44,6 +45,9 @@ public class DefaultRecord implements Serializable, Record
     /* This record, programmed as a HashMap where the key is the name of the variable, and the value the Item-object of the value. */
     private HashMap<String,Item> is = new HashMap<String,Item>();
 
+    /* The ChangeSets in which the writes to this record are recorded (NULL if no changes are tracked) */
+    private transient ArrayList<ChangeSet> changeSets = null;
+
     /**
      * Creates a new InformationState
      */
@@ -130,6 +134,7 @@ public class DefaultRecord implements Serializable, Record
         		is.put(path, new DefaultItem(value));
         	}
         }
+        markChanged(path);
     }
 
     /**
@@ -305,6 +310,51 @@ public class DefaultRecord implements Serializable, Record
         } else {
             is.remove(name);
         }
+        markChanged(path);
+    }
+
+    /**
+     * Adds a ChangeSet in which all following writes (set and remove) to this record will be recorded.
+     * Only writes through this record are recorded, so code that modifies a substructure of this record
+     * directly should call markChanged() with the path of that substructure.
+     *
+     * @param changeSet - the ChangeSet to record the writes in
+     */
+    public void addChangeSet( ChangeSet changeSet )
+    {
+        if( changeSets == null ) {
+            changeSets = new ArrayList<ChangeSet>();
+        }
+        if( !changeSets.contains(changeSet) ) {
+            changeSets.add(changeSet);
+        }
+    }
+
+    /**
+     * Stops recording writes in the given ChangeSet.
+     * @param changeSet - the ChangeSet to remove
+     */
+    public void removeChangeSet( ChangeSet changeSet )
+    {
+        if( changeSets != null ) {
+            changeSets.remove(changeSet);
+            if( changeSets.isEmpty() ) {
+                changeSets = null;
+            }
+        }
+    }
+
+    /**
+     * Records a write to the variable with the given path in the ChangeSets of this record.
+     * @param path - the path of the changed variable
+     */
+    public void markChanged( String path )
+    {
+        if( changeSets != null ) {
+            for( ChangeSet changeSet : changeSets ) {
+                changeSet.add(path);
+            }
+        }
     }
 
     /**
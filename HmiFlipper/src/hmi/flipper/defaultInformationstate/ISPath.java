@@ -0,0 +1,285 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.defaultInformationstate;
+
+import hmi.flipper.informationstate.Item;
+import hmi.flipper.informationstate.List;
+import hmi.flipper.informationstate.Record;
+
+import java.util.HashMap;
+
+/**
+ * An ISPath is a path to an InformationState variable, such as '$userturn.intention' or '$agent.moves._last.type',
+ * that has been split into its steps once, when a template is parsed, rather than every time it is resolved.
+ * 
+ * Whether a step selects a variable of a Record or an element of a List depends on the contents of the InformationState,
+ * so every step knows both its Record interpretation (a name) and its List interpretation (_first, _last, an index, or a
+ * _select[sub=value] selector). Resolving a path gives the same Item as Record.getValueOfPath(path, rootIS), and walks
+ * DefaultRecords, DefaultLists and DefaultItems directly. For other implementations, it falls back to their getValueOfPath
+ * methods, with the remaining path.
+ */
+
+public class ISPath
+{
+    /* The kinds of List positions */
+    private enum Position {First, Last, Index, Select, Invalid, None};
+
+    /* The original path */
+    private String path;
+
+    /* The first step, for the path as a whole */
+    private Step first;
+
+    /**
+     * Compiles the given path.
+     * 
+     * @param path - the path of the variable, with or without a leading $-sign
+     */
+    public ISPath( String path )
+    {
+        this.path = path;
+        first = Step.compile(path, new HashMap<String,Step>());
+    }
+
+    /**
+     * Returns the Item at the place of this path in the given Record, just like record.getValueOfPath(path, rootIS).
+     * 
+     * @param record - the Record to search
+     * @param rootIS - the root InformationState, used by _select[sub=ROOT.path] selectors
+     * @return the Item at the wanted place, or NULL if it does not exist.
+     */
+    public Item getValue( Record record, Record rootIS )
+    {
+        return getRecordValue(first, record, rootIS);
+    }
+
+    /**
+     * Returns the path this ISPath was compiled from.
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+
+    /* Resolves step in a Record, like DefaultRecord.getValueOfPath */
+    private static Item getRecordValue( Step step, Record record, Record rootIS )
+    {
+        if( !(record instanceof DefaultRecord) ) {
+            return record.getValueOfPath(step.rest, rootIS);
+        }
+        Item i = ((DefaultRecord)record).getItem(step.name);
+        if( i == null ) {
+            return null;
+        }
+        return getItemValue(step.recordNext, i, rootIS);
+    }
+
+    /* Resolves step, possibly null, in an Item, like DefaultItem.getValueOfPath */
+    private static Item getItemValue( Step step, Item item, Record rootIS )
+    {
+        if( !(item instanceof DefaultItem) ) {
+            return item.getValueOfPath(step == null ? null : step.rest, rootIS);
+        }
+        Item.Type type = item.getType();
+        if( type == Item.Type.String || type == Item.Type.Integer || type == Item.Type.Double ) {
+            return item;
+        }
+        if( type == Item.Type.Record ) {
+            return step == null ? item : getRecordValue(step, item.getRecord(), rootIS);
+        }
+        if( type == Item.Type.List ) {
+            return step == null ? item : getListValue(step, item.getList(), rootIS);
+        }
+        return null;
+    }
+
+    /* Resolves step in a List, like DefaultList.getValueOfPath */
+    private static Item getListValue( Step step, List list, Record rootIS )
+    {
+        if( !(list instanceof DefaultList) ) {
+            return list.getValueOfPath(step.rest, rootIS);
+        }
+        DefaultList defaultList = (DefaultList)list;
+        if( defaultList.size() == 0 ) {
+            return null;
+        }
+        int index = -1;
+        switch( step.position ) {
+            case First:
+                index = 0;
+                break;
+            case Last:
+                index = defaultList.size()-1;
+                break;
+            case Index:
+                index = step.index;
+                break;
+            case Select:
+                index = select(step, defaultList, rootIS);
+                break;
+            case Invalid:
+                System.err.println(step.error);
+                return null;
+            default:
+                break;
+        }
+        if( index != -1 ) {
+            /* Like DefaultList, the element is searched without the root InformationState */
+            return getItemValue(step.listNext, defaultList.getItem(index), null);
+        } else {
+            return null;
+        }
+    }
+
+    /* Returns the index of the last element for which the selector's sub path has the selector's value, or -1 */
+    private static int select( Step step, DefaultList list, Record rootIS )
+    {
+        String val = step.selectValue;
+        if( step.selectRootPath != null ) {
+            if( rootIS != null ) {
+                Item valItem = step.selectRootPath.getValue(rootIS, rootIS);
+                if( valItem != null && (valItem.getType() == Item.Type.Double || valItem.getType() == Item.Type.Integer || valItem.getType() == Item.Type.String) ) {
+                    val = valItem.getValue().toString();
+                } else {
+                    val = "notfound";
+                }
+            } else {
+                System.out.println("List.getValueOfPath's rootIS is null, unable to parse list selector: "+step.selectPosition);
+            }
+        }
+        int index = -1;
+        for( int listIndex = 0; listIndex < list.size(); listIndex++ ) {
+            if( getItemValue(step.selectSub, list.getItem(listIndex), rootIS).getValue().toString().equals(val) ) index = listIndex;
+        }
+        return index;
+    }
+
+    /*
+     * A step of a path: the remaining path at some level, with its interpretation as a Record variable and as a List position.
+     * The next steps are NULL when there is no remaining path. Both interpretations usually lead to the same remaining path,
+     * so steps are shared by remaining path.
+     */
+    private static class Step
+    {
+        /* The remaining path, for other implementations than the default ones */
+        private String rest;
+
+        /* Record interpretation: the name, and the next step */
+        private String name;
+        private Step recordNext;
+
+        /* List interpretation */
+        private Position position = Position.None;
+        private int index;
+        private String selectPosition;
+        private Step selectSub;
+        private String selectValue;
+        private ISPath selectRootPath;
+        private String error;
+        private Step listNext;
+
+        private Step( String rest )
+        {
+            this.rest = rest;
+        }
+
+        private static Step compile( String rest, HashMap<String,Step> steps )
+        {
+            Step step = steps.get(rest);
+            if( step == null ) {
+                step = new Step(rest);
+                steps.put(rest, step);
+                step.compileRecordStep(steps);
+                step.compileListStep(steps);
+            }
+            return step;
+        }
+
+        /* Splits like DefaultRecord.getValueOfPath */
+        private void compileRecordStep( HashMap<String,Step> steps )
+        {
+            String p = rest;
+            if( p.length() > 0 && p.charAt(0) == '$' ) {
+                p = p.substring(1);
+            }
+            int dot = p.indexOf('.');
+            if( dot >= 0 ) {
+                name = p.substring(0, dot);
+                recordNext = compile(p.substring(dot+1), steps);
+            } else {
+                name = p;
+            }
+        }
+
+        /* Splits like DefaultList.getValueOfPath */
+        private void compileListStep( HashMap<String,Step> steps )
+        {
+            String p = rest;
+            String pos;
+            String valuePath;
+            if( p.contains(".") && !p.startsWith("_select[") ) {
+                pos = p.substring(0, p.indexOf("."));
+                valuePath = p.substring(p.indexOf(".")+1);
+            } else if( !p.contains(".") ) {
+                pos = p;
+                valuePath = null;
+            } else {
+                int close = p.indexOf("]");
+                if( p.indexOf(".",close) > 0 ) {
+                    pos = p.substring(0, p.indexOf(".",close));
+                    valuePath = p.substring(p.indexOf(".",close)+1);
+                } else {
+                    pos = p;
+                    valuePath = null;
+                }
+            }
+            if( valuePath != null ) {
+                listNext = compile(valuePath, steps);
+            }
+
+            String lowerPos = pos.toLowerCase();
+            if( lowerPos.equals(DefaultList.FIRST) ) {
+                position = Position.First;
+            } else if( lowerPos.equals(DefaultList.LAST) ) {
+                position = Position.Last;
+            } else if( lowerPos.startsWith("_select[") ) {
+                if( !lowerPos.endsWith("]") ) {
+                    position = Position.Invalid;
+                    error = "Problems parsing list-index (missing parenthesis): " + p;
+                    return;
+                }
+                String[] selector = pos.substring(8,pos.length()-1).split("=");
+                if( (selector.length != 2 ) || (selector[0].length()==0) || (selector[1].length()==0) ) {
+                    position = Position.Invalid;
+                    error = pos.substring(8,pos.length()-1) + "\n" + "Problems parsing list-index (selector not correct): " + p;
+                    return;
+                }
+                position = Position.Select;
+                selectPosition = pos;
+                selectSub = compile(selector[0], steps);
+                selectValue = selector[1];
+                if( selectValue.startsWith("ROOT.") ) {
+                    selectRootPath = new ISPath("$"+selectValue.substring(5));
+                }
+            } else {
+                int pos2Index = pos.indexOf(".");
+                if( pos2Index == -1 ) pos2Index = pos.length();
+                try {
+                    index = Integer.parseInt(pos.substring(0,pos2Index));
+                    position = Position.Index;
+                } catch( NumberFormatException e ) {
+                    position = Position.None;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.behaviourselection;
+
+import hmi.flipper.behaviourselection.template.Template;
+import hmi.flipper.behaviourselection.template.effects.Update;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareEquals;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareGreaterThan;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareNotEquals;
+import hmi.flipper.defaultInformationstate.DefaultList;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the time per cycle of TemplateController.checkTemplates, on synthetic sets of 100 to 10,000 Templates,
+ * when checking all Templates on the caller's thread, on a ForkJoinPool, and incrementally.
+ * Every Template has 3 Compares on variables, records and lists of an InformationState with 1000 variables,
+ * and an Update; in every cycle 1 variable is written.
+ * Usage: TemplateCheckingBenchmark [nrOfCycles]
+ */
+public final class TemplateCheckingBenchmark
+{
+    private static final int NR_OF_VARIABLES = 1000;
+
+    private TemplateCheckingBenchmark()
+    {
+    }
+
+    private static DefaultRecord createIS()
+    {
+        DefaultRecord is = new DefaultRecord();
+        for( int i=0; i<NR_OF_VARIABLES; i++ ) {
+            is.set("$v"+i, i % 10);
+            is.set("$r"+(i % 100)+".x"+i, i);
+        }
+        DefaultList list = new DefaultList();
+        for( int i=0; i<10; i++ ) {
+            DefaultRecord item = new DefaultRecord();
+            item.set("id", "i"+i);
+            item.set("value", i);
+            list.addItemEnd(item);
+        }
+        is.set("$list", list);
+        return is;
+    }
+
+    private static TemplateController createController( int nrOfTemplates, ForkJoinPool pool, boolean incremental ) 
+            throws TemplateParseException
+    {
+        TemplateController tc = new TemplateController();
+        Random random = new Random(nrOfTemplates);
+        for( int t=0; t<nrOfTemplates; t++ ) {
+            int i = random.nextInt(NR_OF_VARIABLES);
+            Template template = new Template("t"+t, "t"+t, null);
+            template.addCompare(new CompareEquals("$v"+i, ""+random.nextInt(10)));
+            template.addCompare(new CompareGreaterThan("$r"+(i % 100)+".x"+i, ""+random.nextInt(NR_OF_VARIABLES)));
+            template.addCompare(new CompareNotEquals("$list._select[id=i"+random.nextInt(10)+"].value", "-1"));
+            template.addEffect(new Update("$out"+(t % 100), "$v"+i+"+1"));
+            tc.templates.add(template);
+        }
+        tc.setCheckingPool(pool);
+        tc.setIncremental(incremental);
+        return tc;
+    }
+
+    private static void run( String name, int nrOfTemplates, int nrOfCycles, ForkJoinPool pool, boolean incremental ) 
+            throws TemplateParseException
+    {
+        DefaultRecord is = createIS();
+        TemplateController tc = createController(nrOfTemplates, pool, incremental);
+        Random random = new Random(1);
+        for( int c=0; c<nrOfCycles/10; c++ ) {
+            tc.checkTemplates(is);
+        }
+        tc.resetCounters();
+        long start = System.nanoTime();
+        for( int c=0; c<nrOfCycles; c++ ) {
+            is.set("$v"+random.nextInt(NR_OF_VARIABLES), random.nextInt(10));
+            tc.checkTemplates(is);
+        }
+        double ms = (System.nanoTime()-start)/1e6/nrOfCycles;
+        System.out.printf("%6d templates, %-22s %9.3f ms/cycle  (checked %d, skipped %d)%n", nrOfTemplates, name, ms, 
+                tc.getNrOfCheckedTemplates(), tc.getNrOfSkippedTemplates());
+    }
+
+    public static void main( String[] args ) throws TemplateParseException
+    {
+        int nrOfCycles = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("parallelism: " + pool.getParallelism());
+        int[] sizes = { 100, 1000, 10000 };
+        for( int size : sizes ) {
+            run("sequential", size, nrOfCycles, null, false);
+            run("parallel", size, nrOfCycles, pool, false);
+            run("incremental", size, nrOfCycles, null, true);
+            run("incremental, parallel", size, nrOfCycles, pool, true);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.behaviourselection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hmi.flipper.behaviourselection.template.Template;
+import hmi.flipper.behaviourselection.template.effects.Update;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareEquals;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareGreaterThan;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests the incremental checking of Templates in the TemplateController.
+ */
+public class TemplateControllerTest
+{
+    private static Template template( String id, String value1, String value2, String name, String value ) throws TemplateParseException
+    {
+        Template t = new Template(id, id, null);
+        t.addCompare(new CompareEquals(value1, value2));
+        t.addEffect(new Update(name, value));
+        return t;
+    }
+
+    private static ArrayList<Template> templates() throws TemplateParseException
+    {
+        ArrayList<Template> templates = new ArrayList<Template>();
+        templates.add(template("t1", "$a", "1", "$b", "$b+1"));
+        templates.add(template("t2", "$c", "1", "$e", "2"));
+        templates.add(template("t3", "$b", "3", "$r.x", "$a"));
+        templates.add(template("t4", "$r.x", "2", "$l._addlast", "$c"));
+        templates.add(template("t5", "$l._last", "1", "$a", "0"));
+        templates.add(template("t6", "$items._select[id=ROOT.target].v", "1", "$c", "0"));
+        Template t7 = new Template("t7", "t7", null);
+        t7.addCompare(new CompareGreaterThan("$b", "5"));
+        t7.addEffect(new Update("$b", "0"));
+        templates.add(t7);
+        return templates;
+    }
+
+    private static TemplateController controller( boolean incremental ) throws TemplateParseException
+    {
+        TemplateController tc = new TemplateController();
+        tc.templates.addAll(templates());
+        tc.setIncremental(incremental);
+        return tc;
+    }
+
+    @Test
+    public void testSkipping() throws TemplateParseException
+    {
+        TemplateController tc = controller(true);
+        DefaultRecord is = new DefaultRecord();
+        is.set("$a", 1);
+        is.set("$b", 0);
+
+        tc.checkTemplates(is);
+        assertEquals(7, tc.getNrOfCheckedTemplates());
+        assertEquals(0, tc.getNrOfSkippedTemplates());
+        assertEquals(Integer.valueOf(1), is.getInteger("b"));
+
+        /* Only $b changed, so only t1 (which is still satisfied) is updated again, t3 and t7 are checked */
+        tc.resetCounters();
+        tc.checkTemplates(is);
+        assertEquals(2, tc.getNrOfCheckedTemplates());
+        assertEquals(5, tc.getNrOfSkippedTemplates());
+        assertEquals(Integer.valueOf(2), is.getInteger("b"));
+
+        /* A write to $c only affects t2 (and the templates reading $b) */
+        tc.resetCounters();
+        is.set("$c", 1);
+        tc.checkTemplates(is);
+        assertEquals(3, tc.getNrOfCheckedTemplates());
+        assertEquals(Integer.valueOf(2), is.getInteger("e"));
+    }
+
+    @Test
+    public void testSameResults() throws TemplateParseException
+    {
+        TemplateController incremental = controller(true);
+        checkSameResults(controller(false), incremental);
+        assertTrue(incremental.getNrOfSkippedTemplates() > 0);
+    }
+
+    @Test
+    public void testParallel() throws TemplateParseException
+    {
+        /* Enough Templates to be divided over several tasks */
+        TemplateController[] controllers = { controller(false), controller(false), controller(false), controller(true) };
+        for( TemplateController tc : controllers ) {
+            for( int i=0; i<40; i++ ) {
+                tc.templates.addAll(templates());
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        controllers[1].setCheckingPool(pool);
+        controllers[3].setCheckingPool(pool);
+        checkSameResults(controllers[0], controllers[1]);
+        checkSameResults(controllers[2], controllers[3]);
+        pool.shutdown();
+    }
+
+    /* Applies the same random writes to 2 InformationStates, checks the Templates of each controller in every cycle, 
+     * and compares the resulting InformationStates */
+    private void checkSameResults( TemplateController expected, TemplateController actual )
+    {
+        int nrOfTemplates = expected.templates.size();
+        DefaultRecord is1 = new DefaultRecord();
+        DefaultRecord is2 = new DefaultRecord();
+        DefaultRecord item = new DefaultRecord();
+        item.set("id", "p");
+        item.set("v", 1);
+        is1.set("$items._addlast", item);
+        is2.set("$items._addlast", item);
+
+        String[] names = { "$a", "$b", "$c", "$r.x", "$l._addlast", "$target" };
+        Random random = new Random(42);
+        for( int i=0; i<500; i++ ) {
+            if( random.nextInt(3) == 0 ) {
+                int n = random.nextInt(names.length);
+                Object value = (n == names.length-1) ? (random.nextBoolean() ? "p" : "q") : (Object)random.nextInt(4);
+                is1.set(names[n], value);
+                is2.set(names[n], value);
+            }
+            assertTrue(expected.checkTemplates(is1));
+            assertTrue(actual.checkTemplates(is2));
+            assertEquals("cycle "+i, is1.toString(), is2.toString());
+        }
+        assertEquals(500*nrOfTemplates, actual.getNrOfCheckedTemplates()+actual.getNrOfSkippedTemplates());
+        assertEquals(500*nrOfTemplates, expected.getNrOfCheckedTemplates()+expected.getNrOfSkippedTemplates());
+    }
+
+    @Test
+    public void testChoicesAreNotSkipped() throws TemplateParseException
+    {
+        TemplateController tc = new TemplateController();
+        tc.templates.add(template("t1", "$a", "1", "$b", "2"));
+        Template t2 = new Template("t2", "t2", null);
+        t2.addCompare(new CompareEquals("$a", "1"));
+        Template.Choice choice = new Template.Choice("1");
+        choice.addEffect(new Update("$n", "$n+1"));
+        ArrayList<Template.Choice> option = new ArrayList<Template.Choice>();
+        option.add(choice);
+        ArrayList<ArrayList<Template.Choice>> options = new ArrayList<ArrayList<Template.Choice>>();
+        options.add(option);
+        t2.addOptions(options);
+        tc.templates.add(t2);
+        tc.setIncremental(true);
+
+        DefaultRecord is = new DefaultRecord();
+        is.set("$a", 1);
+        is.set("$n", 0);
+        for( int i=0; i<3; i++ ) {
+            tc.checkTemplates(is);
+        }
+        /* t1 is only checked in the first cycle, t2 with its choice-block in every cycle */
+        assertEquals(4, tc.getNrOfCheckedTemplates());
+        assertEquals(2, tc.getNrOfSkippedTemplates());
+        assertEquals(Integer.valueOf(3), is.getInteger("n"));
+    }
+}
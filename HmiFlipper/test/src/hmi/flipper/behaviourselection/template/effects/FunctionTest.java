@@ -0,0 +1,99 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.behaviourselection.template.effects;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import hmi.flipper.behaviourselection.TemplateController;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.exceptions.TemplateRunException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the calling of user-specified functions by a Function effect.
+ */
+public class FunctionTest
+{
+    public static class Functions
+    {
+        public String[] lastArgs;
+        public static String[] lastStaticArgs;
+
+        public void remember( String[] args )
+        {
+            lastArgs = args;
+        }
+
+        public static int rememberStatic( String... args )
+        {
+            lastStaticArgs = args;
+            return args.length;
+        }
+
+        public void noArgs()
+        {
+        }
+    }
+
+    private TemplateController tc;
+    private Functions functions;
+    private DefaultRecord is;
+
+    @Before
+    public void setup()
+    {
+        tc = new TemplateController();
+        functions = new Functions();
+        tc.addFunction(functions);
+        is = new DefaultRecord();
+        is.set("$user.name", "Alice");
+        is.set("$user.age", 42);
+    }
+
+    @Test
+    public void testInstanceFunction() throws TemplateParseException, TemplateRunException
+    {
+        Function f = new Function("remember");
+        f.addArg("$user.name");
+        f.addArg("$user.unknown");
+        f.addArg("$user.age");
+        f.addArg("hello");
+        f.apply(is, tc);
+        assertArrayEquals(new String[]{"Alice","42","hello"}, functions.lastArgs);
+
+        is.set("$user.name", "Bob");
+        f.apply(is, tc);
+        assertArrayEquals(new String[]{"Bob","42","hello"}, functions.lastArgs);
+        assertSame(tc.getFunction("remember"), tc.getFunction("remember"));
+    }
+
+    @Test
+    public void testStaticFunction() throws TemplateParseException, TemplateRunException
+    {
+        Function f = new Function("rememberStatic");
+        f.addArg("$user.age");
+        f.apply(is, tc);
+        assertArrayEquals(new String[]{"42"}, Functions.lastStaticArgs);
+    }
+
+    @Test(expected = TemplateRunException.class)
+    public void testUnknownFunction() throws TemplateRunException
+    {
+        assertNull(tc.getFunction("unknown"));
+        new Function("unknown").apply(is, tc);
+    }
+
+    @Test(expected = TemplateRunException.class)
+    public void testWrongSignature() throws TemplateRunException
+    {
+        new Function("noArgs").apply(is, tc);
+    }
+}
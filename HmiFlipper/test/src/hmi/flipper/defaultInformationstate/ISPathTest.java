@@ -0,0 +1,84 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.defaultInformationstate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import hmi.flipper.informationstate.Item;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that compiled ISPaths resolve to the same Items as the string based getValueOfPath.
+ */
+public class ISPathTest
+{
+    private DefaultRecord is;
+
+    @Before
+    public void setup()
+    {
+        is = new DefaultRecord();
+        is.set("$user.name", "Alice");
+        is.set("$user.age", Integer.valueOf(42));
+        is.set("$agent.target", "b");
+        DefaultList list = new DefaultList();
+        String[] ids = { "a", "b", "c" };
+        for( int i=0; i<ids.length; i++ ) {
+            DefaultRecord r = new DefaultRecord();
+            r.set("id", ids[i]);
+            r.set("score", Double.valueOf(i));
+            list.addItemEnd(r);
+        }
+        is.set("$dialog.moves", list);
+    }
+
+    private void check( String path )
+    {
+        Item expected = is.getValueOfPath(path, is);
+        Item actual = new ISPath(path).getValue(is, is);
+        assertSame(path, expected, actual);
+    }
+
+    @Test
+    public void testRecordPaths()
+    {
+        check("$user.name");
+        check("$user.age");
+        check("$user");
+        check("$user.unknown");
+        check("$unknown.name");
+        assertEquals("Alice", new ISPath("$user.name").getValue(is, is).getString());
+    }
+
+    @Test
+    public void testListPaths()
+    {
+        check("$dialog.moves._first");
+        check("$dialog.moves._last.id");
+        check("$dialog.moves.1.score");
+        check("$dialog.moves._select[id=c].score");
+        check("$dialog.moves._select[id=x]");
+        check("$dialog.moves._select[id=ROOT.agent.target].id");
+        assertEquals("b", new ISPath("$dialog.moves._select[id=ROOT.agent.target].id").getValue(is, is).getString());
+    }
+
+    @Test
+    public void testReuse()
+    {
+        ISPath path = new ISPath("$dialog.moves._last.id");
+        assertEquals("c", path.getValue(is, is).getString());
+        ((DefaultList)is.getValueOfPath("$dialog.moves", is).getList()).addItemEnd(new DefaultRecord());
+        assertNull(path.getValue(is, is));
+        is.getValueOfPath("$dialog.moves._last", is).getRecord().set("id", "d");
+        assertNotNull(path.getValue(is, is));
+        assertEquals("d", path.getValue(is, is).getString());
+    }
+}
@@ -93,7 +93,7 @@ public class FloatArray extends ColladaElement
         floats = new float[count];
         if (count > 0)
         {
-            decodeFloatArray(tokenizer.takeCharData(), floats);
+            tokenizer.takeFloatCharData(floats);
         }
         getCollada().addFloatArray(getId(), floats);
     }
@@ -87,7 +87,7 @@ public class IntArray extends ColladaElement {
    @Override
    public void decodeContent(XMLTokenizer tokenizer) throws IOException {
       ints = new int[count];
-      decodeIntArray(tokenizer.takeCharData(), ints);
+      tokenizer.takeIntCharData(ints);
       getCollada().addIntArray(getId(), ints);
    }
 
@@ -58,7 +58,7 @@ public class VCount extends ColladaElement {
 
    @Override
    public void decodeContent(XMLTokenizer tokenizer) throws IOException {
-      counts = decodeIntArray(tokenizer.takeCharData());
+      counts = tokenizer.takeIntArrayCharData();
    }
 
 
@@ -20,8 +20,10 @@ package hmi.graphics.opengl;
 
 import hmi.animation.VJoint;
 import hmi.graphics.scenegraph.VertexAttribute;
+import hmi.math.DualQuat;
 import hmi.math.Mat4f;
 import java.util.Arrays;
+import java.util.HashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +34,17 @@ import org.slf4j.LoggerFactory;
 public class GLSkinnedMesh extends GLBasicMesh
 {
 
+    /**
+     * SkinningMode enumerates the skinning methods: linear blending of joint matrices, or blending of joint dual quaternions.
+     */
+    public enum SkinningMode
+    {
+        LinearBlend, DualQuaternion
+    };
+
     // nrOfVertices: inherited from GLBasicMesh
 
     private float[] vertexCoordBaseData; // unmodified vertex coords for the morph base mesh
-    private float[][] vertexCoordMorphData; // unmodified vertex coords for all morph targes
     private float[] vertexCoordMorphed; // unmodified vertex coordinates or result of morph
     private float[] vertexCoordCurrent; // current, i.e. modified, vertex coordinates
     private int vertexCoordAttrIndex;
@@ -69,15 +78,50 @@ public class GLSkinnedMesh extends GLBasicMesh
     float[][] directionVectors; // directionVectors[fapnr] is a Vec3f float array specifying the direction vector for FAP number fafnr.
 
     private float[][] fapDirectionVectors; // references Vec3f vectors that define the (semi-static) FAP directional vectors.
-    private float[][] fapDisplacements; // references Vec3f vectors that define the current FAP displacement vectors.
+    private float[] fapDisplacements; // the current FAP displacement vectors, 3 floats per FAP.
     private float[] fapAmplitudes;
 
     private String[] morphTargets = null;
     private int nrOfMorphTargets = -1;
+    private HashMap<String, Integer> morphTargetIndex; // maps morph target names to their index
+
+    // Morph targets are stored as sparse deltas, relative to vertexCoordBaseData:
+    // morph target t moves vertices morphVertex[morphOffset[t]], .. , morphVertex[morphOffset[t+1]-1],
+    // by the corresponding (dx, dy, dz) vectors in morphDelta.
+    private int[] morphOffset;
+    private int[] morphVertex;
+    private float[] morphDelta;
+    private int[] morphedTargets; // targets that have been added to vertexCoordMorphed, since it was last equal to the base mesh
+    private int nrOfMorphedTargets;
+    private boolean[] morphed; // morphed[t] iff t occurs in morphedTargets
 
     private hmi.graphics.opengl.scenegraph.GLNodeMarker[] jointMarkers; // objects (typical spheres) that are used to mark the positions of the
                                                                         // joints.
 
+    private SkinningData skinningData = new SkinningData(); // flat copies/references of the data above, used for deform()
+    private SkinningEngine skinningEngine = DEFAULT_SKINNING_ENGINE;
+    private SkinningMode skinningMode = SkinningMode.LinearBlend;
+
+    private static final SkinningEngine DEFAULT_SKINNING_ENGINE = new ParallelSkinningEngine();
+
+    // Change tracking: deform() re-skins only the vertices influenced by changed joints, FAPs, or morph targets.
+    private boolean changeTracking = true;
+    private boolean fullDeformNeeded = true; // set when data has been replaced, or when change tracking is off
+    private float[] previousJointMatrices; // copies of the jointMatrices used for the last deform, 16 floats per joint.
+    private int[] changedJoints;
+    private int nrOfChangedJoints;
+    private int[] changedFaps;
+    private int nrOfChangedFaps;
+    private boolean[] fapChanged; // fapChanged[f] iff f occurs in changedFaps
+
+    // A partial deform that would re-skin more than this fraction of the vertices is replaced by a full deform
+    private static final float PARTIAL_DEFORM_LIMIT = 0.5f;
+
+    private int fullDeformCount;
+    private int partialDeformCount;
+    private int skippedDeformCount;
+    private int lastSkinnedVertexCount;
+
     private static Logger logger = LoggerFactory.getLogger(GLSkinnedMesh.class.getName());
 
     /**
@@ -111,11 +155,12 @@ public class GLSkinnedMesh extends GLBasicMesh
         this.fapDirectionVectors = fapDirectionVectors;
         int nrOfFaps = fapDirectionVectors.length;
         fapAmplitudes = new float[nrOfFaps];
-        fapDisplacements = new float[nrOfFaps][];
-        for (int fi = 0; fi < nrOfFaps; fi++)
-        {
-            fapDisplacements[fi] = new float[3];
-        }
+        fapDisplacements = new float[3 * nrOfFaps];
+        skinningData.fapDisplacements = fapDisplacements;
+        changedFaps = new int[nrOfFaps];
+        fapChanged = new boolean[nrOfFaps];
+        nrOfChangedFaps = 0;
+        fullDeformNeeded = true;
     }
 
     /**
@@ -123,7 +168,10 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void setUseFaps(boolean useFaps)
     {
+        if (this.useFaps != useFaps)
+            fullDeformNeeded = true;
         this.useFaps = useFaps;
+        skinningData.useFaps = useFaps;
     }
 
     /**
@@ -132,7 +180,18 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void setFapAmplitudes(float[] amplitudes)
     {
-        System.arraycopy(amplitudes, 0, fapAmplitudes, 0, fapAmplitudes.length);
+        for (int fi = 0; fi < fapAmplitudes.length; fi++)
+        {
+            if (fapAmplitudes[fi] != amplitudes[fi])
+            {
+                fapAmplitudes[fi] = amplitudes[fi];
+                if (!fapChanged[fi])
+                {
+                    fapChanged[fi] = true;
+                    changedFaps[nrOfChangedFaps++] = fi;
+                }
+            }
+        }
     }
 
 
@@ -143,6 +202,11 @@ public class GLSkinnedMesh extends GLBasicMesh
     {
         this.morphTargets = morphTargets;
         nrOfMorphTargets = morphTargets.length;
+        morphTargetIndex = new HashMap<String, Integer>();
+        for (int i = nrOfMorphTargets - 1; i >= 0; i--)
+        {
+            morphTargetIndex.put(morphTargets[i], i); // the first occurrence of a name determines its index
+        }
     }
 
     /**
@@ -158,27 +222,80 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public int getMorphTargetIndexFor(String morphTarget)
     {
-        if (morphTargets == null || nrOfMorphTargets == 0)
+        if (morphTargetIndex == null)
             return -1;
-        for (int i = 0; i < nrOfMorphTargets; i++)
-        {
-            if (morphTargets[i].equals(morphTarget))
-                return i;
-        }
-        return -1;
+        Integer index = morphTargetIndex.get(morphTarget);
+        return (index == null) ? -1 : index;
     }
 
     /**
-     * Sets the array of arrays, containing the coord data for all morph targets
+     * Sets the array of arrays, containing the coord data for all morph targets.
+     * The targets are stored as sparse deltas with respect to the current vertex coordinates, which form the base mesh;
+     * vertexCoordMorphData itself is not retained.
      */
     public void setVertexCoordMorphData(float[][] vertexCoordMorphData)
     {
-        this.vertexCoordMorphData = vertexCoordMorphData;
         if (nrOfMorphTargets < 0)
             nrOfMorphTargets = vertexCoordMorphData.length;
-        vertexCoordBaseData = new float[vertexCoordMorphed.length];
-        for (int i = 0; i < vertexCoordBaseData.length; i++)
-            vertexCoordBaseData[i] = vertexCoordMorphed[i];
+        vertexCoordBaseData = Arrays.copyOf(vertexCoordMorphed, vertexCoordMorphed.length);
+        int nrOfTargets = Math.min(nrOfMorphTargets, vertexCoordMorphData.length);
+        morphOffset = new int[nrOfMorphTargets + 1];
+        int nrOfDeltas = 0;
+        for (int t = 0; t < nrOfMorphTargets; t++)
+        {
+            morphOffset[t] = nrOfDeltas;
+            if (t < nrOfTargets)
+                nrOfDeltas += countMovedVertices(vertexCoordMorphData[t]);
+        }
+        morphOffset[nrOfMorphTargets] = nrOfDeltas;
+        morphVertex = new int[nrOfDeltas];
+        morphDelta = new float[3 * nrOfDeltas];
+        int d = 0;
+        for (int t = 0; t < nrOfTargets; t++)
+        {
+            float[] targetData = vertexCoordMorphData[t];
+            for (int i = 0; i < vertexCoordBaseData.length; i += 3)
+            {
+                if (targetData[i] != vertexCoordBaseData[i] || targetData[i + 1] != vertexCoordBaseData[i + 1]
+                        || targetData[i + 2] != vertexCoordBaseData[i + 2])
+                {
+                    morphVertex[d] = i / 3;
+                    morphDelta[3 * d] = targetData[i] - vertexCoordBaseData[i];
+                    morphDelta[3 * d + 1] = targetData[i + 1] - vertexCoordBaseData[i + 1];
+                    morphDelta[3 * d + 2] = targetData[i + 2] - vertexCoordBaseData[i + 2];
+                    d++;
+                }
+            }
+        }
+        morphedTargets = new int[nrOfMorphTargets];
+        morphed = new boolean[nrOfMorphTargets];
+        nrOfMorphedTargets = 0;
+        fullDeformNeeded = true;
+    }
+
+    /*
+     * Returns the number of vertices for which the morph target coordinates differ from the base mesh
+     */
+    private int countMovedVertices(float[] targetData)
+    {
+        int count = 0;
+        for (int i = 0; i < vertexCoordBaseData.length; i += 3)
+        {
+            if (targetData[i] != vertexCoordBaseData[i] || targetData[i + 1] != vertexCoordBaseData[i + 1]
+                    || targetData[i + 2] != vertexCoordBaseData[i + 2])
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of vertices that are moved by the specified morph target, or -1 if there is no such target
+     */
+    public int getNrOfMorphedVertices(int target)
+    {
+        if (morphOffset == null || target < 0 || target >= morphed.length)
+            return -1;
+        return morphOffset[target + 1] - morphOffset[target];
     }
 
     public void setJointSIDs(String[] jointSIDs)
@@ -205,7 +322,115 @@ public class GLSkinnedMesh extends GLBasicMesh
             jointMatrices[m] = vjoints[m].getGlobalMatrix();
             transformMatrices[m] = Mat4f.getIdentity();
         }
+        skinningData.matrices = new float[12 * vjoints.length];
+        skinningData.dualQuaternions = new float[DualQuat.DUALQUAT_SIZE * vjoints.length];
+        for (int m = 0; m < vjoints.length; m++)
+        {
+            System.arraycopy(transformMatrices[m], 0, skinningData.matrices, 12 * m, 12);
+            DualQuat.setIdentity(skinningData.dualQuaternions, DualQuat.DUALQUAT_SIZE * m);
+        }
+        previousJointMatrices = new float[Mat4f.MAT4F_SIZE * vjoints.length];
+        changedJoints = new int[vjoints.length];
+        nrOfChangedJoints = 0;
+        fullDeformNeeded = true;
+    }
+
+    /**
+     * Sets the skinning method. Linear blending is the default. Dual quaternion skinning avoids the collapse of
+     * twisted and strongly bent joints (&quot;candy wrapper&quot; effect), but assumes that the joint transforms do not include scaling.
+     */
+    public void setSkinningMode(SkinningMode skinningMode)
+    {
+        if (this.skinningMode != skinningMode)
+            fullDeformNeeded = true;
+        this.skinningMode = skinningMode;
+        skinningData.useDualQuaternions = (skinningMode == SkinningMode.DualQuaternion);
+    }
+
+    /**
+     * Returns the current skinning method.
+     */
+    public SkinningMode getSkinningMode()
+    {
+        return skinningMode;
+    }
+
+    /**
+     * Sets the SkinningEngine that is used by deform(). By default, a shared ParallelSkinningEngine is used.
+     */
+    public void setSkinningEngine(SkinningEngine skinningEngine)
+    {
+        this.skinningEngine = skinningEngine;
+    }
+
+    /**
+     * Returns the SkinningEngine that is used by deform().
+     */
+    public SkinningEngine getSkinningEngine()
+    {
+        return skinningEngine;
+    }
+
+    /**
+     * Enables or disables change tracking, which is enabled by default. With change tracking, deform() only re-skins
+     * the vertices influenced by joints whose matrices have changed, by FAPs whose amplitudes have changed, or by morph targets
+     * whose weights have changed, and it does nothing at all when nothing has changed.
+     * Without change tracking, every deform() re-skins all vertices.
+     */
+    public void setChangeTracking(boolean changeTracking)
+    {
+        this.changeTracking = changeTracking;
+        fullDeformNeeded = true;
+    }
+
+    /**
+     * Returns whether change tracking is enabled.
+     */
+    public boolean isChangeTracking()
+    {
+        return changeTracking;
+    }
 
+    /**
+     * Returns the number of deforms that re-skinned all vertices, since the last resetDeformCounts.
+     */
+    public int getFullDeformCount()
+    {
+        return fullDeformCount;
+    }
+
+    /**
+     * Returns the number of deforms that re-skinned part of the vertices, since the last resetDeformCounts.
+     */
+    public int getPartialDeformCount()
+    {
+        return partialDeformCount;
+    }
+
+    /**
+     * Returns the number of deforms that were skipped because nothing had changed, since the last resetDeformCounts.
+     */
+    public int getSkippedDeformCount()
+    {
+        return skippedDeformCount;
+    }
+
+    /**
+     * Returns the number of vertices that were skinned by the last deform.
+     */
+    public int getLastSkinnedVertexCount()
+    {
+        return lastSkinnedVertexCount;
+    }
+
+    /**
+     * Resets the full, partial, and skipped deform counts, typically once per frame.
+     */
+    public void resetDeformCounts()
+    {
+        fullDeformCount = 0;
+        partialDeformCount = 0;
+        skippedDeformCount = 0;
     }
 
     /**
@@ -221,12 +446,19 @@ public class GLSkinnedMesh extends GLBasicMesh
             vertexCoordAttrIndex = attrIndex;
             vertexCoordMorphed = getVertexData(vertexCoordAttrIndex, null); // will *copy* data from the attribute
             vertexCoordCurrent = getVertexData(vertexCoordAttrIndex, null); // will copy data from the attribute
+            skinningData.coords = vertexCoordMorphed;
+            skinningData.coordsOut = vertexCoordCurrent;
+            skinningData.setNrOfVertices(nrOfVertices);
+            fullDeformNeeded = true;
         }
         else if (attrName.equals("mcNormal"))
         {
             normalAttrIndex = attrIndex;
             normalOriginal = getVertexData(normalAttrIndex, null); // will copy data from the attribute
             normalCurrent = getVertexData(normalAttrIndex, null); // will copy data from the attribute
+            skinningData.normals = normalOriginal;
+            skinningData.normalsOut = normalCurrent;
+            fullDeformNeeded = true;
         } // else: no special action needed. (in particular, tangents and binormals need NO special treatment)
         return attrIndex;
     }
@@ -240,6 +472,12 @@ public class GLSkinnedMesh extends GLBasicMesh
         this.jointCount = Arrays.copyOf(jointCount, jointCount.length);
         this.jointIndex = Arrays.copyOf(jointIndex, jointIndex.length);
         this.jointWeight = Arrays.copyOf(jointWeight, jointWeight.length);
+        skinningData.jointOffset = SkinningData.toOffsets(this.jointCount);
+        skinningData.jointIndex = this.jointIndex;
+        skinningData.jointWeight = this.jointWeight;
+        skinningData.jointVertexOffset = SkinningData.inverseOffsets(this.jointIndex);
+        skinningData.jointVertex = SkinningData.inverseIndex(skinningData.jointOffset, this.jointIndex, skinningData.jointVertexOffset);
+        fullDeformNeeded = true;
     }
 
     /**
@@ -251,6 +489,12 @@ public class GLSkinnedMesh extends GLBasicMesh
         this.fapCount = Arrays.copyOf(fapCount, fapCount.length);
         this.fapIndex = Arrays.copyOf(fapIndex, fapIndex.length);
         this.fapWeight = Arrays.copyOf(fapWeight, fapWeight.length);
+        skinningData.fapOffset = SkinningData.toOffsets(this.fapCount);
+        skinningData.fapIndex = this.fapIndex;
+        skinningData.fapWeight = this.fapWeight;
+        skinningData.fapVertexOffset = SkinningData.inverseOffsets(this.fapIndex);
+        skinningData.fapVertex = SkinningData.inverseIndex(skinningData.fapOffset, this.fapIndex, skinningData.fapVertexOffset);
+        fullDeformNeeded = true;
     }
 
     /**
@@ -264,6 +508,7 @@ public class GLSkinnedMesh extends GLBasicMesh
         {
             Mat4f.set(inverseBindMatrices[i], invBindMatrices[i]);
         }
+        fullDeformNeeded = true;
     }
 
     /**
@@ -280,7 +525,8 @@ public class GLSkinnedMesh extends GLBasicMesh
     private static boolean notshown = true;
 
     /**
-     * (re)calculates the transform matrices: matrices[i] = jointMatrices[i] * inverseBindMatrices[i]
+     * (re)calculates the transform matrices: matrices[i] = jointMatrices[i] * inverseBindMatrices[i],
+     * for the joints with changed joint matrices, and records these joints in changedJoints.
      */
     private void calculateMatricesAndFaps()
     {
@@ -298,7 +544,19 @@ public class GLSkinnedMesh extends GLBasicMesh
                     logger.error("null inversebindmatrix for index " + i);
                 if (jointMatrices[i] == null)
                     logger.error("null jointmatrix for index " + i);
+                if (!fullDeformNeeded && isUnchanged(jointMatrices[i], i))
+                    continue;
+                System.arraycopy(jointMatrices[i], 0, previousJointMatrices, Mat4f.MAT4F_SIZE * i, Mat4f.MAT4F_SIZE);
+                changedJoints[nrOfChangedJoints++] = i;
                 Mat4f.mul(transformMatrices[i], jointMatrices[i], inverseBindMatrices[i]);
+                if (skinningMode == SkinningMode.DualQuaternion)
+                {
+                    DualQuat.setFromMat4f(skinningData.dualQuaternions, DualQuat.DUALQUAT_SIZE * i, transformMatrices[i], 0);
+                }
+                else
+                {
+                    System.arraycopy(transformMatrices[i], 0, skinningData.matrices, 12 * i, 12);
+                }
 
                 if (notshown)
                 {
@@ -329,17 +587,33 @@ public class GLSkinnedMesh extends GLBasicMesh
 
         if (useFaps)
         {
-            for (int fi = 0; fi < fapDisplacements.length; fi++)
+            for (int fi = 0; fi < fapAmplitudes.length; fi++)
             {
-                fapDisplacements[fi][0] = fapDirectionVectors[fi][0] * fapAmplitudes[fi];
-                fapDisplacements[fi][1] = fapDirectionVectors[fi][1] * fapAmplitudes[fi];
-                fapDisplacements[fi][2] = fapDirectionVectors[fi][2] * fapAmplitudes[fi];
+                if (!fullDeformNeeded && !fapChanged[fi])
+                    continue;
+                fapDisplacements[3 * fi] = fapDirectionVectors[fi][0] * fapAmplitudes[fi];
+                fapDisplacements[3 * fi + 1] = fapDirectionVectors[fi][1] * fapAmplitudes[fi];
+                fapDisplacements[3 * fi + 2] = fapDirectionVectors[fi][2] * fapAmplitudes[fi];
             }
 
         }
 
     }
 
+    /*
+     * Checks whether jointMatrix equals the joint matrix of joint i that was used for the last deform
+     */
+    private boolean isUnchanged(float[] jointMatrix, int i)
+    {
+        int offset = Mat4f.MAT4F_SIZE * i;
+        for (int k = 0; k < Mat4f.MAT4F_SIZE; k++)
+        {
+            if (jointMatrix[k] != previousJointMatrices[offset + k])
+                return false;
+        }
+        return true;
+    }
+
     // public void resetSkeleton() {
     // }
 
@@ -408,16 +682,13 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void morph(int target, float weight)
     {
-        if (nrOfMorphTargets <= 0)
+        if (nrOfMorphTargets <= 0 || morphOffset == null)
             return;
-        if (target < 0 || target >= nrOfMorphTargets)
+        if (target < 0 || target >= morphed.length)
             return;
-        float baseWeight = 1.0f - weight;
-        float[] targetData = vertexCoordMorphData[target];
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
-        {
-            vertexCoordMorphed[i] = baseWeight * vertexCoordBaseData[i] + weight * targetData[i];
-        }
+        resetMorph();
+        if (weight != 0.0f)
+            addMorph(target, weight);
     }
 
     /**
@@ -437,136 +708,127 @@ public class GLSkinnedMesh extends GLBasicMesh
     }
 
     /**
-     * Morph the specified morph targets, with specified weights, tohether with the base mesh. The latter receives the remaining weight
+     * Morph the specified morph targets, with specified weights, tohether with the base mesh. The latter receives the remaining weight.
+     * Targets with weight &lt;= 0 are ignored. Only the vertices moved by the current or previous morph targets are updated.
      */
     public void morph(int[] targets, float[] weights)
     {
-        if (nrOfMorphTargets <= 0 || targets == null || weights == null)
+        if (nrOfMorphTargets <= 0 || morphOffset == null || targets == null || weights == null)
             return;
         int tlen = targets.length < weights.length ? targets.length : weights.length;
         if (tlen == 0)
             return;
-        // first, set all to zero
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
+        resetMorph();
+        for (int ti = 0; ti < tlen; ti++)
         {
-            vertexCoordMorphed[i] = 0;
+            int target = targets[ti];
+            if (target < 0 || target >= morphed.length || weights[ti] <= 0.0f) // don't morph: too small target, or no valid target
+                continue;
+            addMorph(target, weights[ti]);
         }
-        // then, add all targets that are valid
-        float totalWeight = 0.0f;
-        for (int ti = 0; ti < tlen; ti++)
+    }
+
+    /*
+     * Restores the base mesh coordinates for the vertices moved by the previously morphed targets
+     */
+    private void resetMorph()
+    {
+        for (int mt = 0; mt < nrOfMorphedTargets; mt++)
         {
-            float weight = weights[ti];
-            if ((targets[ti] == -1) || (weight <= 0.0f)) // don't morph: too small target, or no valid target
+            int target = morphedTargets[mt];
+            for (int d = morphOffset[target]; d < morphOffset[target + 1]; d++)
             {
+                int i = 3 * morphVertex[d];
+                vertexCoordMorphed[i] = vertexCoordBaseData[i];
+                vertexCoordMorphed[i + 1] = vertexCoordBaseData[i + 1];
+                vertexCoordMorphed[i + 2] = vertexCoordBaseData[i + 2];
+                skinningData.selectVertex(morphVertex[d]);
             }
-            else
-            // do morph;
-            {
-                totalWeight += weight; // to later adjust base weight
-                float[] targetData = vertexCoordMorphData[targets[ti]];
-                for (int i = 0; i < vertexCoordMorphed.length; i++)
-                {
-                    vertexCoordMorphed[i] += weight * targetData[i];
-                }
-            }
+            morphed[target] = false;
         }
-        float baseWeight = 1.0f - totalWeight; // NB could become negative!
-        // always use remainder of base
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
+        nrOfMorphedTargets = 0;
+    }
+
+    /*
+     * Adds weight times the deltas of the specified target to the morphed vertex coordinates
+     */
+    private void addMorph(int target, float weight)
+    {
+        if (!morphed[target])
+        {
+            morphed[target] = true;
+            morphedTargets[nrOfMorphedTargets++] = target;
+        }
+        for (int d = morphOffset[target]; d < morphOffset[target + 1]; d++)
         {
-            vertexCoordMorphed[i] += baseWeight * vertexCoordBaseData[i];
+            int i = 3 * morphVertex[d];
+            vertexCoordMorphed[i] += weight * morphDelta[3 * d];
+            vertexCoordMorphed[i + 1] += weight * morphDelta[3 * d + 1];
+            vertexCoordMorphed[i + 2] += weight * morphDelta[3 * d + 2];
+            skinningData.selectVertex(morphVertex[d]);
         }
     }
 
     /**
-     * Transforms the mesh attributes.
+     * Transforms the mesh attributes. The vertices are skinned by the current SkinningEngine.
+     * With change tracking enabled, only the vertices affected by changed joints, FAPs or morphs are skinned,
+     * and deform() does nothing when nothing has changed since the last deform.
      */
     public void deform()
     {
         // hmi.util.Console.println("Deform...");
+        if (!changeTracking)
+            fullDeformNeeded = true;
         calculateMatricesAndFaps();
-        deformCN();
-    }
-
-    /**
-     * transforms vertex coordinates and vertex normals
-     */
-    private void deformCN()
-    {
-        int jointIndexBase = 0; // index in jointIndex and jointWeight arrays
-        int fapIndexBase = 0;
-        for (int v = 0; v < nrOfVertices; v++)
-        { // transform vertex coordinates for vertex v
-            int vertexBase = 3 * v; // index in vertexDataOriginal and vertexData arrays.
-            float fvx = vertexCoordMorphed[vertexBase];
-            float fvy = vertexCoordMorphed[vertexBase + 1];
-            float fvz = vertexCoordMorphed[vertexBase + 2];
-            float nx = normalOriginal[vertexBase];
-            float ny = normalOriginal[vertexBase + 1];
-            float nz = normalOriginal[vertexBase + 2];
-            // modified vertex coordinates:
-            float mvx = 0.0f;
-            float mvy = 0.0f;
-            float mvz = 0.0f;
-            // modified normal:
-            float mnx = 0.0f;
-            float mny = 0.0f;
-            float mnz = 0.0f;
-
-            // First apply FAPS displacements (if enabled)
-            float vx = fvx;
-            float vy = fvy;
-            float vz = fvz;
+        boolean full = fullDeformNeeded;
+        if (!full)
+        {
+            int limit = (int) (PARTIAL_DEFORM_LIMIT * nrOfVertices);
+            for (int c = 0; c < nrOfChangedJoints && skinningData.nrOfSelectedVertices <= limit; c++)
+            {
+                skinningData.selectJointVertices(changedJoints[c]);
+            }
             if (useFaps)
             {
-                for (int p = fapIndexBase; p < fapIndexBase + fapCount[v]; p++)
+                for (int c = 0; c < nrOfChangedFaps && skinningData.nrOfSelectedVertices <= limit; c++)
                 {
-                    int fi = fapIndex[p];
-                    float[] fapDisplacement = fapDisplacements[fi];
-                    float fw = fapWeight[p];
-                    vx += fw * fapDisplacement[0];
-                    vy += fw * fapDisplacement[1];
-                    vz += fw * fapDisplacement[2];
+                    skinningData.selectFapVertices(changedFaps[c]);
                 }
-                fapIndexBase += fapCount[v];
             }
-
-            // Next, apply skeleton based transformations
-            float accumulatedWeight = 0.0f;
-            for (int p = jointIndexBase; p < jointIndexBase + jointCount[v]; p++)
-            {
-                int ji = jointIndex[p];
-
-                float[] mat = transformMatrices[ji]; // add: if jointIndex ==-1, mat = Id
-                float jw = jointWeight[p];
-
-                mvx += jw * (mat[0] * vx + mat[1] * vy + mat[2] * vz + mat[3]);
-                mvy += jw * (mat[4] * vx + mat[5] * vy + mat[6] * vz + mat[7]);
-                mvz += jw * (mat[8] * vx + mat[9] * vy + mat[10] * vz + mat[11]);
-
-                mnx += jw * (mat[0] * nx + mat[1] * ny + mat[2] * nz);
-                mny += jw * (mat[4] * nx + mat[5] * ny + mat[6] * nz);
-                mnz += jw * (mat[8] * nx + mat[9] * ny + mat[10] * nz);
-
-                accumulatedWeight += jw;
-                // if (accumulatedWeight >= blendWeightLimit) break;
-            }
-            jointIndexBase += jointCount[v];
-            // if (accumulatedWeight < 0.9f) hmi.util.Console.println("accumulatedWeight for vertex " + v + " = " + accumulatedWeight);
-            vertexCoordCurrent[vertexBase] = mvx;
-            vertexCoordCurrent[vertexBase + 1] = mvy;
-            vertexCoordCurrent[vertexBase + 2] = mvz;
-
-            // (re)normalize the normal vector:
-            double mnLenSq = mnx * mnx + mny * mny + mnz * mnz;
-            float mnfactor = (mnLenSq == 0.0) ? 1.0f : (float) (1.0 / Math.sqrt(mnLenSq));
-            normalCurrent[vertexBase] = mnx * mnfactor;
-            normalCurrent[vertexBase + 1] = mny * mnfactor;
-            normalCurrent[vertexBase + 2] = mnz * mnfactor;
-
+            full = skinningData.nrOfSelectedVertices > limit;
+        }
+        if (full)
+        {
+            skinningEngine.skin(skinningData);
+            fullDeformCount++;
+            lastSkinnedVertexCount = nrOfVertices;
+        }
+        else if (skinningData.nrOfSelectedVertices > 0)
+        {
+            skinningData.partial = true;
+            skinningEngine.skin(skinningData);
+            skinningData.partial = false;
+            partialDeformCount++;
+            lastSkinnedVertexCount = skinningData.nrOfSelectedVertices;
+        }
+        else
+        {
+            skippedDeformCount++;
+            lastSkinnedVertexCount = 0;
+        }
+        skinningData.clearSelection();
+        nrOfChangedJoints = 0;
+        for (int c = 0; c < nrOfChangedFaps; c++)
+        {
+            fapChanged[changedFaps[c]] = false;
+        }
+        nrOfChangedFaps = 0;
+        fullDeformNeeded = false;
+        if (lastSkinnedVertexCount > 0)
+        {
+            setVertexData(vertexCoordAttrIndex, vertexCoordCurrent);
+            setVertexData(normalAttrIndex, normalCurrent);
         }
-        setVertexData(vertexCoordAttrIndex, vertexCoordCurrent);
-        setVertexData(normalAttrIndex, normalCurrent);
     }
 
     /**
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Skins a mesh in chunks of consecutive vertices on a fork-join pool. Meshes that fit in a single
+ * chunk are skinned on the calling thread.
+ */
+public class ParallelSkinningEngine implements SkinningEngine
+{
+    /** default number of vertices per chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Creates an engine that uses the common fork-join pool, with the default chunk size
+     */
+    public ParallelSkinningEngine()
+    {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelSkinningEngine(ForkJoinPool pool, int chunkSize)
+    {
+        if (chunkSize <= 0) throw new IllegalArgumentException("ParallelSkinningEngine: chunk size must be positive");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void skin(SkinningData data)
+    {
+        int n = data.getNrOfVertices();
+        if (n <= chunkSize)
+        {
+            data.skin(0, n);
+        }
+        else
+        {
+            pool.invoke(new SkinTask(data, 0, n));
+        }
+    }
+
+    /*
+     * Skins vertices from .. to-1, splitting in halves down to chunkSize vertices.
+     */
+    private final class SkinTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final SkinningData data;
+        private final int from, to;
+
+        SkinTask(SkinningData data, int from, int to)
+        {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= chunkSize)
+            {
+                data.skin(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SkinTask(data, from, mid), new SkinTask(data, mid, to));
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import java.util.Arrays;
+
+/**
+ * The vertex data of a GLSkinnedMesh that is needed for skinning, kept in flat arrays, together with
+ * the skinning computation itself. skin(from, to) deforms a range of vertices without allocating
+ * anything, so a SkinningEngine may call it for disjoint vertex ranges from several threads.
+ * For a partial deform, the range refers to a selection of vertices, rather than to all vertices.
+ */
+public class SkinningData
+{
+    int nrOfVertices;
+    float[] coords; // input vertex coordinates (the morphed mesh), 3 floats per vertex
+    float[] normals; // input normals, 3 floats per vertex
+    float[] coordsOut; // skinned vertex coordinates
+    float[] normalsOut; // skinned normals
+
+    // The joints influencing vertex v are jointIndex[jointOffset[v]] .. jointIndex[jointOffset[v+1]-1],
+    // with corresponding weights in jointWeight.
+    int[] jointOffset;
+    int[] jointIndex;
+    float[] jointWeight;
+    float[] matrices; // 12 floats per joint: the first three rows of the joint's Mat4f transform matrix
+
+    boolean useDualQuaternions; // dual quaternion skinning, rather than linear blend skinning
+    float[] dualQuaternions; // 8 floats per joint: the joint transform as a DualQuat
+
+    boolean useFaps;
+    int[] fapOffset; // as jointOffset, for fapIndex and fapWeight
+    int[] fapIndex;
+    float[] fapWeight;
+    float[] fapDisplacements; // current FAP displacement vectors, 3 floats per FAP
+
+    // The vertices influenced by joint j are jointVertex[jointVertexOffset[j]] .. jointVertex[jointVertexOffset[j+1]-1],
+    // and similar for FAPs.
+    int[] jointVertexOffset;
+    int[] jointVertex;
+    int[] fapVertexOffset;
+    int[] fapVertex;
+
+    // When partial is set, only the selected vertices, selectedVertices[0] .. selectedVertices[nrOfSelectedVertices-1], are skinned.
+    boolean partial;
+    int[] selectedVertices;
+    int nrOfSelectedVertices;
+    private boolean[] selected;
+
+    /**
+     * Returns the number of vertices to be skinned: all vertices, or, for a partial deform, the number of selected vertices
+     */
+    public int getNrOfVertices()
+    {
+        return partial ? nrOfSelectedVertices : nrOfVertices;
+    }
+
+    /*
+     * Sets the number of vertices, and clears the selection
+     */
+    void setNrOfVertices(int n)
+    {
+        nrOfVertices = n;
+        selected = new boolean[n];
+        selectedVertices = new int[n];
+        nrOfSelectedVertices = 0;
+    }
+
+    /*
+     * Adds vertex v to the selection
+     */
+    void selectVertex(int v)
+    {
+        if (!selected[v])
+        {
+            selected[v] = true;
+            selectedVertices[nrOfSelectedVertices++] = v;
+        }
+    }
+
+    /*
+     * Adds the vertices influenced by joint j to the selection
+     */
+    void selectJointVertices(int j)
+    {
+        if (j + 1 >= jointVertexOffset.length) return;
+        for (int p = jointVertexOffset[j]; p < jointVertexOffset[j + 1]; p++)
+        {
+            selectVertex(jointVertex[p]);
+        }
+    }
+
+    /*
+     * Adds the vertices influenced by FAP f to the selection
+     */
+    void selectFapVertices(int f)
+    {
+        if (fapVertexOffset == null || f + 1 >= fapVertexOffset.length) return;
+        for (int p = fapVertexOffset[f]; p < fapVertexOffset[f + 1]; p++)
+        {
+            selectVertex(fapVertex[p]);
+        }
+    }
+
+    /*
+     * Clears the selection
+     */
+    void clearSelection()
+    {
+        for (int k = 0; k < nrOfSelectedVertices; k++)
+        {
+            selected[selectedVertices[k]] = false;
+        }
+        nrOfSelectedVertices = 0;
+    }
+
+    /*
+     * Converts per-vertex counts into offsets: offset[v] = count[0] + .. + count[v-1]
+     */
+    static int[] toOffsets(int[] count)
+    {
+        int[] offset = new int[count.length + 1];
+        for (int v = 0; v < count.length; v++)
+        {
+            offset[v + 1] = offset[v] + count[v];
+        }
+        return offset;
+    }
+
+    /*
+     * Counts, for the joints (or FAPs) occurring in index, the number of influenced vertices,
+     * and returns these counts as offsets for inverseIndex.
+     */
+    static int[] inverseOffsets(int[] index)
+    {
+        int max = -1;
+        for (int i : index)
+        {
+            if (i > max) max = i;
+        }
+        int[] count = new int[max + 1];
+        for (int i : index)
+        {
+            if (i >= 0) count[i]++;
+        }
+        return toOffsets(count);
+    }
+
+    /*
+     * Inverts the relation between vertices and joints (or FAPs) defined by offset and index:
+     * returns the vertices per joint, in increasing order, with joint j's vertices starting at inverseOffset[j].
+     */
+    static int[] inverseIndex(int[] offset, int[] index, int[] inverseOffset)
+    {
+        int[] next = Arrays.copyOf(inverseOffset, inverseOffset.length);
+        int[] vertex = new int[inverseOffset[inverseOffset.length - 1]];
+        for (int v = 0; v + 1 < offset.length; v++)
+        {
+            for (int p = offset[v]; p < offset[v + 1]; p++)
+            {
+                if (index[p] >= 0) vertex[next[index[p]]++] = v;
+            }
+        }
+        return vertex;
+    }
+
+    /**
+     * Skins vertices from .. to-1: applies the FAP displacements, if enabled, and then the weighted
+     * joint transforms, either by linear blending of the joint matrices, or by blending the joint
+     * dual quaternions.
+     */
+    public void skin(int from, int to)
+    {
+        if (useDualQuaternions)
+        {
+            skinDualQuaternion(from, to);
+        }
+        else
+        {
+            skinLinear(from, to);
+        }
+    }
+
+    /*
+     * Linear blend skinning: weighted sum of the transformed vertices, followed by renormalization of the normal.
+     */
+    private void skinLinear(int from, int to)
+    {
+        final float[] mats = matrices;
+        final int[] selection = partial ? selectedVertices : null;
+        for (int k = from; k < to; k++)
+        {
+            int v = (selection == null) ? k : selection[k];
+            int vertexBase = 3 * v;
+            float vx = coords[vertexBase];
+            float vy = coords[vertexBase + 1];
+            float vz = coords[vertexBase + 2];
+            float nx = normals[vertexBase];
+            float ny = normals[vertexBase + 1];
+            float nz = normals[vertexBase + 2];
+
+            // First apply FAPS displacements (if enabled)
+            if (useFaps)
+            {
+                for (int p = fapOffset[v]; p < fapOffset[v + 1]; p++)
+                {
+                    int d = 3 * fapIndex[p];
+                    float fw = fapWeight[p];
+                    vx += fw * fapDisplacements[d];
+                    vy += fw * fapDisplacements[d + 1];
+                    vz += fw * fapDisplacements[d + 2];
+                }
+            }
+
+            // Next, apply skeleton based transformations
+            float mvx = 0.0f, mvy = 0.0f, mvz = 0.0f;
+            float mnx = 0.0f, mny = 0.0f, mnz = 0.0f;
+            for (int p = jointOffset[v]; p < jointOffset[v + 1]; p++)
+            {
+                int m = 12 * jointIndex[p];
+                float jw = jointWeight[p];
+                mvx += jw * (mats[m] * vx + mats[m + 1] * vy + mats[m + 2] * vz + mats[m + 3]);
+                mvy += jw * (mats[m + 4] * vx + mats[m + 5] * vy + mats[m + 6] * vz + mats[m + 7]);
+                mvz += jw * (mats[m + 8] * vx + mats[m + 9] * vy + mats[m + 10] * vz + mats[m + 11]);
+
+                mnx += jw * (mats[m] * nx + mats[m + 1] * ny + mats[m + 2] * nz);
+                mny += jw * (mats[m + 4] * nx + mats[m + 5] * ny + mats[m + 6] * nz);
+                mnz += jw * (mats[m + 8] * nx + mats[m + 9] * ny + mats[m + 10] * nz);
+            }
+            coordsOut[vertexBase] = mvx;
+            coordsOut[vertexBase + 1] = mvy;
+            coordsOut[vertexBase + 2] = mvz;
+
+            // (re)normalize the normal vector:
+            float mnLenSq = mnx * mnx + mny * mny + mnz * mnz;
+            float mnfactor = (mnLenSq == 0.0f) ? 1.0f : 1.0f / (float) Math.sqrt(mnLenSq);
+            normalsOut[vertexBase] = mnx * mnfactor;
+            normalsOut[vertexBase + 1] = mny * mnfactor;
+            normalsOut[vertexBase + 2] = mnz * mnfactor;
+        }
+    }
+
+    /*
+     * Dual quaternion skinning: the joint dual quaternions are blended into a single unit dual quaternion,
+     * which is then applied to the vertex and its normal. The sign of each joint dual quaternion is chosen
+     * such that it lies in the same hemisphere as the first joint of the vertex.
+     */
+    private void skinDualQuaternion(int from, int to)
+    {
+        final float[] dqs = dualQuaternions;
+        final int[] selection = partial ? selectedVertices : null;
+        for (int k = from; k < to; k++)
+        {
+            int v = (selection == null) ? k : selection[k];
+            int vertexBase = 3 * v;
+            float vx = coords[vertexBase];
+            float vy = coords[vertexBase + 1];
+            float vz = coords[vertexBase + 2];
+            float nx = normals[vertexBase];
+            float ny = normals[vertexBase + 1];
+            float nz = normals[vertexBase + 2];
+
+            if (useFaps)
+            {
+                for (int p = fapOffset[v]; p < fapOffset[v + 1]; p++)
+                {
+                    int d = 3 * fapIndex[p];
+                    float fw = fapWeight[p];
+                    vx += fw * fapDisplacements[d];
+                    vy += fw * fapDisplacements[d + 1];
+                    vz += fw * fapDisplacements[d + 2];
+                }
+            }
+
+            // blend the dual quaternions (qs, qx, qy, qz) + eps (ds, dx, dy, dz)
+            float qs = 0.0f, qx = 0.0f, qy = 0.0f, qz = 0.0f;
+            float ds = 0.0f, dx = 0.0f, dy = 0.0f, dz = 0.0f;
+            int first = jointOffset[v];
+            int last = jointOffset[v + 1];
+            if (first == last)
+            { // no joints: identity
+                coordsOut[vertexBase] = vx;
+                coordsOut[vertexBase + 1] = vy;
+                coordsOut[vertexBase + 2] = vz;
+                normalsOut[vertexBase] = nx;
+                normalsOut[vertexBase + 1] = ny;
+                normalsOut[vertexBase + 2] = nz;
+                continue;
+            }
+            int pivot = 8 * jointIndex[first];
+            for (int p = first; p < last; p++)
+            {
+                int d = 8 * jointIndex[p];
+                float jw = jointWeight[p];
+                if (dqs[pivot] * dqs[d] + dqs[pivot + 1] * dqs[d + 1] + dqs[pivot + 2] * dqs[d + 2] + dqs[pivot + 3] * dqs[d + 3] < 0.0f)
+                {
+                    jw = -jw;
+                }
+                qs += jw * dqs[d];
+                qx += jw * dqs[d + 1];
+                qy += jw * dqs[d + 2];
+                qz += jw * dqs[d + 3];
+                ds += jw * dqs[d + 4];
+                dx += jw * dqs[d + 5];
+                dy += jw * dqs[d + 6];
+                dz += jw * dqs[d + 7];
+            }
+            float lenSq = qs * qs + qx * qx + qy * qy + qz * qz;
+            if (lenSq == 0.0f)
+            {
+                qs = 1.0f; // zero weights: identity
+            }
+            else
+            {
+                float f = 1.0f / (float) Math.sqrt(lenSq);
+                qs *= f;
+                qx *= f;
+                qy *= f;
+                qz *= f;
+                ds *= f;
+                dx *= f;
+                dy *= f;
+                dz *= f;
+            }
+
+            // translation t = 2 * dual * conjugate(real)
+            float tx = 2.0f * (qs * dx - ds * qx + qy * dz - qz * dy);
+            float ty = 2.0f * (qs * dy - ds * qy + qz * dx - qx * dz);
+            float tz = 2.0f * (qs * dz - ds * qz + qx * dy - qy * dx);
+
+            // rotate: v + 2 * q X (q X v + qs * v)
+            float cx = qy * vz - qz * vy + qs * vx;
+            float cy = qz * vx - qx * vz + qs * vy;
+            float cz = qx * vy - qy * vx + qs * vz;
+            coordsOut[vertexBase] = vx + 2.0f * (qy * cz - qz * cy) + tx;
+            coordsOut[vertexBase + 1] = vy + 2.0f * (qz * cx - qx * cz) + ty;
+            coordsOut[vertexBase + 2] = vz + 2.0f * (qx * cy - qy * cx) + tz;
+
+            // the rotated normal keeps its length
+            cx = qy * nz - qz * ny + qs * nx;
+            cy = qz * nx - qx * nz + qs * ny;
+            cz = qx * ny - qy * nx + qs * nz;
+            normalsOut[vertexBase] = nx + 2.0f * (qy * cz - qz * cy);
+            normalsOut[vertexBase + 1] = ny + 2.0f * (qz * cx - qx * cz);
+            normalsOut[vertexBase + 2] = nz + 2.0f * (qx * cy - qy * cx);
+        }
+    }
+}
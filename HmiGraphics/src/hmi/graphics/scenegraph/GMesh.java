@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -908,6 +909,7 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
          * common indices [0..i-1]. If it actualy equals vertex k, we set indexData[i] to indexData[k]. Otherwise, that is, if it is new, we set
          * indexData[i] = nrOfTuples, and we add map[attr][nrOfTuples] = indices[attr][i] The map[attr] arrays are passed on to the remapData method
          * of the VertexAttribute instances, which will actually replace the vertexData arrays by vertexData' arrays.
+         * Vertex i is looked up in a hash table of the tuples found thus far (see TupleTable), rather than compared with all of them.
          */
         if (hasUnifiedIndexData())
         {
@@ -922,6 +924,17 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
 
     private static final double TUPLEINDEX_GROW_GUESTIMATE = 1.5;
 
+    private static ForkJoinPool unifyIndicesPool = ForkJoinPool.commonPool();
+
+    /**
+     * Sets the pool on which unifyIndices processes large meshes in parallel; null means that all meshes are processed sequentially.
+     * By default, the common fork-join pool is used.
+     */
+    public static void setUnifyIndicesPool(ForkJoinPool pool)
+    {
+        unifyIndicesPool = pool;
+    }
+
     /**
      * calculates tuples for all new indices, together with the data remapping tables. The remapping for vertexData is returned (for usage within the
      * GSkinnedMesh class)
@@ -956,7 +969,6 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
         }
         int tupleIndexSize = (int) (TUPLEINDEX_GROW_GUESTIMATE * maxVertexDataSize); // guestimate
 
-        int nrOfTuples = 0;
         int[][] indices = new int[nrOfAttributes][]; // arrays with existing attribute-specific indices, one array for each attribute
 
         int vertexCoordIndex = 0; // needed for remapping vertexweights
@@ -965,47 +977,16 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
         {
             VertexAttribute attr = attributeList.get(att);
             indices[att] = attr.getIndexData();
-            map[att] = new int[tupleIndexSize];
             if (attr.getName().equals("mcPosition")) vertexCoordIndex = att;
         }
-        for (int i = 0; i < indexLength; i++)
-        { // create tuple for common index i
-            if (nrOfTuples >= tupleIndexSize)
-            {
-                tupleIndexSize = 2 * tupleIndexSize;
-                for (int attr = 0; attr < nrOfAttributes; attr++)
-                {
-                    int[] oldTupleIndices = map[attr];
-
-                    map[attr] = new int[tupleIndexSize];
-                    System.arraycopy(oldTupleIndices, 0, map, 0, nrOfTuples);
-                }
-            }
-            for (int attr = 0; attr < nrOfAttributes; attr++)
-            {
-                map[attr][nrOfTuples] = indices[attr][i];
-            }
-            boolean isNew = true;
-            int tuple = 0;
-            for (tuple = 0; tuple < nrOfTuples; tuple++)
-            { // compare tuple at index "tuple" with new tuple at top
-                boolean tupleDiffers = false;
-                for (int attr = 0; attr < nrOfAttributes; attr++)
-                {
-                    tupleDiffers = (map[attr][tuple] != map[attr][nrOfTuples]);
-                    if (tupleDiffers) break;
-                }
-                isNew = tupleDiffers;
-                if (!isNew) break; // already prsesent, at index "tuple"
-            }
-            indexData[i] = tuple; // if new, tuple = nrOfTuples, else it is the number of the tuple found above.
-
-            if (isNew)
-            { // really new tuple: increase tuple count
-                nrOfTuples++;
-            }
-            unifiedIndexData = true;
+        // distinct tuples are numbered in order of first occurrence, using a hash table of tuples
+        TupleTable tupleTable = TupleTable.unify(indices, indexData, Math.min(tupleIndexSize, indexLength), unifyIndicesPool);
+        int nrOfTuples = tupleTable.size();
+        for (int att = 0; att < nrOfAttributes; att++)
+        {
+            map[att] = tupleTable.getTuples(att);
         }
+        if (indexLength > 0) unifiedIndexData = true;
         nrOfVertices = nrOfTuples; // i.e. the number of *distinct* vertices, not the number of indexed Mesh vertices
         // hmi.util.Console.println("GMesh.calculateTuples, remapData nrOfTuples= " + nrOfTuples);
         for (int att = 0; att < nrOfAttributes; att++)
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.scenegraph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An open addressing hash table of distinct index tuples, used by GMesh.unifyIndices. Tuples are stored column wise, in one int array per
+ * attribute, and are numbered in order of insertion. The table itself holds tuple numbers + 1, where 0 denotes an empty slot.
+ */
+final class TupleTable
+{
+    /** meshes with at least this number of indices are unified in parallel, in chunks */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final int nrOfAttributes;
+    private int[][] tuples; // tuples[attr][t], for t in [0..size-1]
+    private int[] slots; // tuple number + 1, or 0
+    private int size = 0;
+
+    TupleTable(int nrOfAttributes, int expectedSize)
+    {
+        this.nrOfAttributes = nrOfAttributes;
+        int capacity = Math.max(expectedSize, 16);
+        tuples = new int[nrOfAttributes][capacity];
+        int nrOfSlots = Integer.highestOneBit(capacity - 1) << 2; // load factor at most 0.5
+        slots = new int[nrOfSlots];
+    }
+
+    /**
+     * The number of distinct tuples
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * The tuple elements for the specified attribute, in the first size() elements of the result.
+     */
+    int[] getTuples(int attr)
+    {
+        return tuples[attr];
+    }
+
+    private static int hash(int[][] keys, int column)
+    {
+        int h = 0;
+        for (int[] key : keys)
+        {
+            h = 31 * h + key[column];
+        }
+        return h ^ (h >>> 16) ^ (h >>> 7);
+    }
+
+    /**
+     * Returns the number of the tuple (keys[0][column], keys[1][column], ...), after adding it, when not yet present.
+     */
+    int add(int[][] keys, int column)
+    {
+        int mask = slots.length - 1;
+        int slot = hash(keys, column) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0)
+        {
+            int t = entry - 1;
+            int attr = 0;
+            while (attr < nrOfAttributes && tuples[attr][t] == keys[attr][column])
+            {
+                attr++;
+            }
+            if (attr == nrOfAttributes) return t;
+            slot = (slot + 1) & mask;
+        }
+        int t = size;
+        if (t == tuples[0].length)
+        {
+            for (int attr = 0; attr < nrOfAttributes; attr++)
+            {
+                int[] grown = new int[2 * t];
+                System.arraycopy(tuples[attr], 0, grown, 0, t);
+                tuples[attr] = grown;
+            }
+        }
+        for (int attr = 0; attr < nrOfAttributes; attr++)
+        {
+            tuples[attr][t] = keys[attr][column];
+        }
+        size++;
+        slots[slot] = size;
+        if (2 * size > slots.length) rehash();
+        return t;
+    }
+
+    private void rehash()
+    {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int t = 0; t < size; t++)
+        {
+            int slot = hash(tuples, t) & mask;
+            while (slots[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = t + 1;
+        }
+    }
+
+    /**
+     * Numbers the distinct tuples (indices[0][i], indices[1][i], ...) in order of first occurrence, and sets indexData[i] to the number of the
+     * tuple at i. Meshes with at least PARALLEL_THRESHOLD indices are numbered in chunks on the specified pool, and then merged in order, which
+     * yields the same numbering. The pool can be null, for sequential numbering.
+     */
+    static TupleTable unify(int[][] indices, int[] indexData, int expectedSize, ForkJoinPool pool)
+    {
+        int n = indexData.length;
+        if (pool == null || n < PARALLEL_THRESHOLD || pool.getParallelism() < 2)
+        {
+            TupleTable table = new TupleTable(indices.length, expectedSize);
+            for (int i = 0; i < n; i++)
+            {
+                indexData[i] = table.add(indices, i);
+            }
+            return table;
+        }
+        int nrOfChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        TupleTable[] chunkTables = new TupleTable[nrOfChunks];
+        pool.invoke(new ChunkTask(indices, indexData, chunkTables, 0, nrOfChunks));
+        // merge the chunk tables in order; local tuple numbers are in order of first occurrence within the chunk
+        TupleTable table = new TupleTable(indices.length, expectedSize);
+        int[][] toGlobal = new int[nrOfChunks][];
+        for (int c = 0; c < nrOfChunks; c++)
+        {
+            TupleTable chunkTable = chunkTables[c];
+            toGlobal[c] = new int[chunkTable.size()];
+            for (int t = 0; t < chunkTable.size(); t++)
+            {
+                toGlobal[c][t] = table.add(chunkTable.tuples, t);
+            }
+        }
+        pool.invoke(new RenumberTask(indexData, toGlobal, 0, nrOfChunks));
+        return table;
+    }
+
+    /*
+     * Numbers the tuples within chunks from .. to-1 locally, splitting in halves down to single chunks.
+     */
+    private static final class ChunkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final int[][] indices;
+        private final int[] indexData;
+        private final TupleTable[] chunkTables;
+        private final int from, to;
+
+        ChunkTask(int[][] indices, int[] indexData, TupleTable[] chunkTables, int from, int to)
+        {
+            this.indices = indices;
+            this.indexData = indexData;
+            this.chunkTables = chunkTables;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(indices, indexData, chunkTables, from, mid), new ChunkTask(indices, indexData, chunkTables, mid, to));
+                return;
+            }
+            int start = from * CHUNK_SIZE;
+            int end = Math.min(start + CHUNK_SIZE, indexData.length);
+            TupleTable table = new TupleTable(indices.length, end - start);
+            for (int i = start; i < end; i++)
+            {
+                indexData[i] = table.add(indices, i);
+            }
+            chunkTables[from] = table;
+        }
+    }
+
+    /*
+     * Replaces local tuple numbers within chunks from .. to-1 by global ones, splitting in halves down to single chunks.
+     */
+    private static final class RenumberTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final int[] indexData;
+        private final int[][] toGlobal;
+        private final int from, to;
+
+        RenumberTask(int[] indexData, int[][] toGlobal, int from, int to)
+        {
+            this.indexData = indexData;
+            this.toGlobal = toGlobal;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RenumberTask(indexData, toGlobal, from, mid), new RenumberTask(indexData, toGlobal, mid, to));
+                return;
+            }
+            int[] map = toGlobal[from];
+            int end = Math.min((from + 1) * CHUNK_SIZE, indexData.length);
+            for (int i = from * CHUNK_SIZE; i < end; i++)
+            {
+                indexData[i] = map[indexData[i]];
+            }
+        }
+    }
+}
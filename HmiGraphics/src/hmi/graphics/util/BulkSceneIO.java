@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.util;
+
+import hmi.graphics.scenegraph.GScene;
+import hmi.util.ByteBufferDataInput;
+import hmi.util.ByteBufferDataOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The bulk variant of the GScene binary format. The encoding is the GScene.writeBinary encoding, written
+ * to a ByteBufferDataOutput: int and float arrays, like vertex attributes, index data and vertex weights, are
+ * contiguous 4 byte aligned blocks, in the native byte order of the writer. The file starts with an 8 byte
+ * header: &quot;GSBK&quot;, followed by 'L' or 'B' for the byte order, and three zero bytes, followed by a version int.
+ * Reading maps the file into memory, and copies the arrays in bulk.
+ * Since plain .bin files start with the int -1 or +1, both variants can be read from .bin files.
+ */
+public final class BulkSceneIO
+{
+    private static final byte[] MAGIC = { 'G', 'S', 'B', 'K' };
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    /* Disable creation of BulkSceneIO objects */
+    private BulkSceneIO()
+    {
+    }
+
+    /**
+     * Returns a new output, with native byte order, with the header already written.
+     */
+    public static ByteBufferDataOutput createOutput()
+    {
+        ByteBufferDataOutput dataOut = new ByteBufferDataOutput();
+        dataOut.write(MAGIC);
+        dataOut.writeByte(dataOut.order() == ByteOrder.LITTLE_ENDIAN ? 'L' : 'B');
+        dataOut.align(8);
+        dataOut.writeInt(VERSION);
+        return dataOut;
+    }
+
+    /**
+     * Checks whether buf, from its current position, starts with a bulk format header.
+     */
+    public static boolean isBulkFormat(ByteBuffer buf)
+    {
+        if (buf.remaining() < HEADER_SIZE) return false;
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (buf.get(buf.position() + i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an input for the bulk format data within buf, positioned after the header.
+     * buf should start at position 0, since array blocks are aligned relative to the start of buf.
+     */
+    public static ByteBufferDataInput createInput(ByteBuffer buf) throws IOException
+    {
+        if (!isBulkFormat(buf)) throw new IOException("BulkSceneIO: not a bulk format scene");
+        byte order = buf.get(buf.position() + MAGIC.length);
+        buf.order(order == 'L' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        buf.position(buf.position() + 8);
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("BulkSceneIO: unsupported version " + version);
+        return new ByteBufferDataInput(buf);
+    }
+
+    /**
+     * Maps a file into memory, read only.
+     */
+    public static ByteBuffer map(File file) throws IOException
+    {
+        FileInputStream inps = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = inps.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            inps.close(); // the mapping remains valid
+        }
+    }
+
+    /**
+     * Returns the File for a file: URL, or null for other URLs
+     */
+    public static File toFile(URL source)
+    {
+        if (!source.getProtocol().equals("file")) return null;
+        try
+        {
+            return new File(source.toURI());
+        }
+        catch (URISyntaxException e)
+        {
+            return null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a stream completely, for resources that cannot be mapped, like those within jar files.
+     */
+    public static ByteBuffer readFully(InputStream inps) throws IOException
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(1 << 16);
+        byte[] chunk = new byte[1 << 16];
+        int n;
+        while ((n = inps.read(chunk)) > 0)
+        {
+            data.write(chunk, 0, n);
+        }
+        return ByteBuffer.wrap(data.toByteArray());
+    }
+
+    /**
+     * Reads a GScene from dataIn, either a plain DataInput or a ByteBufferDataInput, and collects and resolves
+     * its skinned meshes.
+     */
+    public static GScene readGScene(DataInput dataIn) throws IOException
+    {
+        GScene gscene = new GScene("");
+        gscene.readBinary(dataIn);
+        gscene.collectSkinnedMeshes();
+        gscene.resolveSkinnedMeshJoints(); // resolve skeleton roots and skeleton joints
+        return gscene;
+    }
+
+    /**
+     * Reads a GScene in bulk format from buf
+     */
+    public static GScene readGScene(ByteBuffer buf) throws IOException
+    {
+        return readGScene(createInput(buf));
+    }
+
+    /**
+     * Writes a GScene in bulk format to file
+     */
+    public static void writeGScene(File file, GScene gscene) throws IOException
+    {
+        ByteBufferDataOutput dataOut = createOutput();
+        gscene.writeBinary(dataOut);
+        write(dataOut, file);
+    }
+
+    /**
+     * Writes the data written to dataOut to file
+     */
+    public static void write(ByteBufferDataOutput dataOut, File file) throws IOException
+    {
+        FileOutputStream outps = new FileOutputStream(file);
+        try
+        {
+            dataOut.writeTo(outps.getChannel());
+        }
+        finally
+        {
+            outps.close();
+        }
+    }
+}
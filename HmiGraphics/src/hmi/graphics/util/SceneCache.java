@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.util;
+
+import hmi.graphics.scenegraph.GScene;
+import hmi.util.ByteBufferDataInput;
+import hmi.util.ByteBufferDataOutput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A directory with binary versions of translated Collada scenes, in the bulk format of BulkSceneIO.
+ * A cache file is keyed by the URL of the Collada source and the adjustBindPoses setting of the
+ * translation; its header records the modification time and length of the source, or a CRC32 of the
+ * source content when the modification time is unknown, as in some jar files. A cache file
+ * is used only when this header still matches the source.
+ * Cached scenes are stored before postprocessing, just like .bin scenes.
+ */
+public class SceneCache
+{
+    private static final int MAGIC = 0x47534342; // "GSCB"
+    private static final int VERSION = 2;
+
+    private final File dir;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Creates a SceneCache that keeps its files in the specified directory, which is created when needed.
+     */
+    public SceneCache(File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the cache directory
+     */
+    public File getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * The number of scenes that were read from the cache
+     */
+    public synchronized int getNrOfHits()
+    {
+        return hits;
+    }
+
+    /**
+     * The number of scenes that were not available or not valid in the cache
+     */
+    public synchronized int getNrOfMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the cache file for the specified source.
+     */
+    public File getCacheFile(URL source, boolean adjustBindPoses)
+    {
+        String path = source.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9_.-]", "_");
+        String key = source.toExternalForm() + (adjustBindPoses ? "|adjusted" : "|unadjusted");
+        return new File(dir, name + "-" + Long.toHexString(hash(key)) + ".bin");
+    }
+
+    /**
+     * Reads the scene for the specified source from the cache. Returns null when there is no valid
+     * cache file for the source, in which case the caller should translate the source, and call write.
+     * The scene has its skinned meshes collected and resolved, like a scene read by SceneIO from a .bin file.
+     */
+    public GScene read(URL source, boolean adjustBindPoses)
+    {
+        File cacheFile = getCacheFile(source, adjustBindPoses);
+        if (!cacheFile.isFile())
+        {
+            countMiss();
+            return null;
+        }
+        long start = System.nanoTime();
+        try
+        {
+            Stamp stamp = getStamp(source);
+            ByteBufferDataInput dataIn = BulkSceneIO.createInput(BulkSceneIO.map(cacheFile));
+            if (dataIn.readInt() != MAGIC || dataIn.readInt() != VERSION
+                    || !dataIn.readUTF().equals(source.toExternalForm())
+                    || dataIn.readBoolean() != adjustBindPoses
+                    || dataIn.readLong() != stamp.modified || dataIn.readLong() != stamp.length)
+            {
+                logger.info("SceneCache: " + cacheFile + " is out of date");
+                countMiss();
+                return null;
+            }
+            GScene gscene = BulkSceneIO.readGScene(dataIn);
+            countHit();
+            logger.info("SceneCache: read " + source + " from " + cacheFile + " in " + millis(start) + " ms");
+            return gscene;
+        }
+        catch (Exception e)
+        {
+            logger.warn("SceneCache: could not read " + cacheFile + ": " + e);
+            countMiss();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the scene, translated from the specified source, to the cache.
+     * The scene should not be postprocessed yet. Failures are logged, and otherwise ignored.
+     */
+    public void write(URL source, boolean adjustBindPoses, GScene gscene)
+    {
+        File cacheFile = getCacheFile(source, adjustBindPoses);
+        long start = System.nanoTime();
+        File tmpFile = null;
+        try
+        {
+            Stamp stamp = getStamp(source);
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                throw new IOException("could not create directory " + dir);
+            }
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+            ByteBufferDataOutput dataOut = BulkSceneIO.createOutput();
+            dataOut.writeInt(MAGIC);
+            dataOut.writeInt(VERSION);
+            dataOut.writeUTF(source.toExternalForm());
+            dataOut.writeBoolean(adjustBindPoses);
+            dataOut.writeLong(stamp.modified);
+            dataOut.writeLong(stamp.length);
+            gscene.writeBinary(dataOut);
+            BulkSceneIO.write(dataOut, tmpFile);
+            // rename, so that concurrent readers never see a partially written cache file
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tmpFile = null;
+            logger.info("SceneCache: wrote " + cacheFile + " in " + millis(start) + " ms");
+        }
+        catch (Exception e)
+        {
+            logger.warn("SceneCache: could not write " + cacheFile + ": " + e);
+        }
+        finally
+        {
+            if (tmpFile != null && !tmpFile.delete())
+            {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+    private synchronized void countHit()
+    {
+        hits++;
+    }
+
+    private synchronized void countMiss()
+    {
+        misses++;
+    }
+
+    private static long millis(long startNanos)
+    {
+        return (System.nanoTime() - startNanos) / 1000000L;
+    }
+
+    /* modification time and length of a source; modified is a CRC32 of the content when the modification time is unknown */
+    private static final class Stamp
+    {
+        private final long modified;
+        private final long length;
+
+        private Stamp(long modified, long length)
+        {
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+
+    private static Stamp getStamp(URL source) throws IOException
+    {
+        File file = BulkSceneIO.toFile(source);
+        if (file != null)
+        {
+            if (!file.isFile()) throw new IOException("no such file: " + file);
+            return new Stamp(file.lastModified(), file.length());
+        }
+        URLConnection connection = source.openConnection();
+        connection.setUseCaches(false);
+        long modified = connection.getLastModified();
+        InputStream inps = connection.getInputStream();
+        try
+        {
+            if (modified > 0L)
+            {
+                return new Stamp(modified, connection.getContentLengthLong());
+            }
+            CRC32 crc = new CRC32();
+            byte[] buf = new byte[1 << 16];
+            long length = 0L;
+            int n;
+            while ((n = inps.read(buf)) > 0)
+            {
+                crc.update(buf, 0, n);
+                length += n;
+            }
+            return new Stamp(-crc.getValue() - 1L, length); // negative, so never equal to a modification time
+        }
+        finally
+        {
+            inps.close();
+        }
+    }
+
+    /* 64 bit FNV-1a hash */
+    private static long hash(String s)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++)
+        {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static Logger logger = LoggerFactory.getLogger("hmi.graphics.scenegraph");
+}
@@ -29,12 +29,16 @@ import hmi.graphics.scenegraph.GScene;
 import hmi.graphics.scenegraph.Skeletons;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +65,24 @@ public final class SceneIO
 
     private static boolean throwExceptions = false;
 
+    /**
+     * The system property that specifies the scene cache directory. The cache is used only when this property is set,
+     * or when a SceneCache is set explicitly; the value &quot;none&quot; disables the cache as well.
+     */
+    public static final String SCENE_CACHE_PROPERTY = "hmi.graphics.scenecache";
+
+    private static volatile SceneCache sceneCache = createDefaultSceneCache(System.getProperty(SCENE_CACHE_PROPERTY));
+
+    /* The SceneCache for the specified value of the scene cache property, or null when the cache is not enabled */
+    static SceneCache createDefaultSceneCache(String dir)
+    {
+        if (dir == null || dir.equals("") || dir.equals("none"))
+        {
+            return null;
+        }
+        return new SceneCache(new File(dir));
+    }
+
     /**
      * Sets the status of &quot;throwExceptions&quot;
      * When false (the default) IOExceptions are caught and logged, and null results are returned.
@@ -71,6 +93,24 @@ public final class SceneIO
         throwExceptions = te;
     }
 
+    /**
+     * Sets the SceneCache for translated Collada scenes; null disables caching.
+     * By default, caching is disabled, unless the hmi.graphics.scenecache system property specifies
+     * a cache directory. Cache files are never removed, so the directory should be cleaned up by the caller.
+     */
+    public static void setSceneCache(SceneCache cache)
+    {
+        sceneCache = cache;
+    }
+
+    /**
+     * Returns the current SceneCache, possibly null.
+     */
+    public static SceneCache getSceneCache()
+    {
+        return sceneCache;
+    }
+
     /**
      * Reads a VGLNode from the specified file, within the specified resource directory
      */
@@ -142,7 +182,8 @@ public final class SceneIO
      * Reads a GScene from the specified file.
      * postProcess can be one of the predefined processing modes, for setting HAnim poses.
      * The file type, derived from the postfix, determines whether to read a Collada file
-     * (.dae or .DAE) or a binaray file (.bin)
+     * (.dae or .DAE) or a binaray file (.bin), in plain or bulk format (see BulkSceneIO).
+     * Translated Collada scenes are cached in binary format, see setSceneCache.
      */
     public static GScene readGScene(String file, String postProcess, boolean adjustBindPoses)
     {
@@ -151,40 +192,26 @@ public final class SceneIO
         {
             if (file.endsWith(".dae") || file.endsWith(".DAE"))
             {
-                Collada col = null;
-                if (file.startsWith("file:"))
+                SceneCache cache = sceneCache;
+                URL source = (cache == null) ? null : getSourceURL(file);
+                if (source != null)
                 {
-                    col = Collada.forURL(file);
+                    gscene = cache.read(source, adjustBindPoses);
                 }
-                else
+                if (gscene == null)
                 {
-                    col = Collada.forResource(file);
+                    gscene = translateCollada(file, adjustBindPoses);
+                    if (source != null)
+                    {
+                        cache.write(source, adjustBindPoses, gscene);
+                    }
                 }
-                if (col == null) throw new RuntimeException("SceneIO.readGScene: null Collada input");
-                gscene = ColladaTranslator.colladaToGSkinnedMeshScene(col, adjustBindPoses);
-
             }
             else if (file.endsWith(".bin"))
             {
-                InputStream inps = null;
-                if (file.startsWith("file:"))
-                {
-                    URL url = new URL(file);
-                    inps = url.openStream();
-                }
-                else
-                {
-                    inps = hmi.graphics.util.SceneIO.class.getClassLoader().getResourceAsStream(file);
-                }
-
-                if (inps == null) throw new RuntimeException("SceneIO.readGScene: null binary input");
-                DataInputStream dataIn = new DataInputStream(new BufferedInputStream(inps));
-                // DataInputStream dataIn = new DataInputStream(inps);
-                gscene = new GScene("");
-                gscene.readBinary(dataIn);
-                dataIn.close();
-                gscene.collectSkinnedMeshes();
-                gscene.resolveSkinnedMeshJoints(); // resolve skeleton roots and skeleton joints
+                URL source = getSourceURL(file);
+                if (source == null) throw new RuntimeException("SceneIO.readGScene: null binary input");
+                gscene = readBinary(source);
             }
             else
             {
@@ -232,20 +259,110 @@ public final class SceneIO
         return gscene;
     }
 
+    /* Reads a Collada file or resource, and translates it into a GScene */
+    private static GScene translateCollada(String file, boolean adjustBindPoses) throws IOException
+    {
+        long start = System.nanoTime();
+        Collada col = null;
+        if (file.startsWith("file:"))
+        {
+            col = Collada.forURL(file);
+        }
+        else
+        {
+            col = Collada.forResource(file);
+        }
+        if (col == null) throw new RuntimeException("SceneIO.readGScene: null Collada input");
+        GScene gscene = ColladaTranslator.colladaToGSkinnedMeshScene(col, adjustBindPoses);
+        logger.info("SceneIO.readGScene: translated " + file + " in " + (System.nanoTime() - start) / 1000000L + " ms");
+        return gscene;
+    }
+
+    /* Reads a .bin file, in plain or bulk format; files are mapped into memory */
+    private static GScene readBinary(URL source) throws IOException
+    {
+        long start = System.nanoTime();
+        File binFile = BulkSceneIO.toFile(source);
+        ByteBuffer buf = null;
+        if (binFile != null)
+        {
+            buf = BulkSceneIO.map(binFile);
+        }
+        else
+        {
+            InputStream inps = source.openStream();
+            try
+            {
+                buf = BulkSceneIO.readFully(inps);
+            }
+            finally
+            {
+                inps.close();
+            }
+        }
+        GScene gscene = null;
+        if (BulkSceneIO.isBulkFormat(buf))
+        {
+            gscene = BulkSceneIO.readGScene(buf);
+        }
+        else
+        {
+            InputStream inps = (binFile != null) ? new FileInputStream(binFile) : new ByteArrayInputStream(buf.array());
+            DataInputStream dataIn = new DataInputStream(new BufferedInputStream(inps));
+            try
+            {
+                gscene = BulkSceneIO.readGScene(dataIn);
+            }
+            finally
+            {
+                dataIn.close();
+            }
+        }
+        logger.info("SceneIO.readGScene: read " + source + " in " + (System.nanoTime() - start) / 1000000L + " ms");
+        return gscene;
+    }
+
+    /* The URL of a file: URL or resource file, or null when the resource cannot be found */
+    private static URL getSourceURL(String file) throws IOException
+    {
+        if (file.startsWith("file:"))
+        {
+            return new URL(file);
+        }
+        return SceneIO.class.getClassLoader().getResource(file);
+    }
+
     /**
      * Writes a GScene to file, where the file format is determined by the postfix.
      * For the time being, only .bin files are allowed
      */
     public static void writeGScene(String fileName, GScene gscene)
+    {
+        writeGScene(fileName, gscene, false);
+    }
+
+    /**
+     * Writes a GScene to file, where the file format is determined by the postfix.
+     * For the time being, only .bin files are allowed, in plain format, or, when bulk is true,
+     * in the bulk format of BulkSceneIO, which loads much faster.
+     */
+    public static void writeGScene(String fileName, GScene gscene, boolean bulk)
     {
         if (fileName.endsWith(".bin"))
         {
             File outFile = new File(fileName);
             try
             {
-                DataOutputStream outps = new DataOutputStream(new FileOutputStream(outFile));
-                gscene.writeBinary(outps);
-                outps.close();
+                if (bulk)
+                {
+                    BulkSceneIO.writeGScene(outFile, gscene);
+                }
+                else
+                {
+                    DataOutputStream outps = new DataOutputStream(new FileOutputStream(outFile));
+                    gscene.writeBinary(outps);
+                    outps.close();
+                }
             }
             catch (Exception e)
             {
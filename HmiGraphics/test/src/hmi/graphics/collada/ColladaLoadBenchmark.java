@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.collada;
+
+import hmi.util.Resources;
+import hmi.xml.XMLTokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/**
+ * Measures loading the Collada test assets, and decoding the (already tokenized) float_array of a 50k vertex
+ * mesh with takeCharData plus StringTokenizer (the former FloatArray decoding) and with
+ * XMLTokenizer.takeFloatCharData.
+ * 
+ * Usage: ColladaLoadBenchmark [dae files in the dae resource directory...]
+ */
+public class ColladaLoadBenchmark
+{
+    private static final int RUNS = 20;
+    private static final int VERTICES = 50000;
+
+    public static void main(String[] args) throws IOException
+    {
+        String[] files = (args.length > 0) ? args : new String[] { "woman23.dae", "avatar.dae",
+                "actor_wim_meters_3dsexport.dae" };
+        Resources resources = new Resources("dae");
+        for (String file : files)
+        {
+            String xml = read(resources.getReader(file));
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++)
+            {
+                long time = System.nanoTime();
+                new Collada(new XMLTokenizer(xml));
+                best = Math.min(best, System.nanoTime() - time);
+            }
+            System.out.printf("%-32s %8d chars %8.2f ms%n", file, xml.length(), best / 1e6);
+        }
+
+        Random random = new Random(1);
+        StringBuilder buf = new StringBuilder("<float_array count=\"" + 3 * VERTICES + "\">");
+        for (int i = 0; i < 3 * VERTICES; i++)
+        {
+            buf.append(random.nextFloat() * 100 - 50).append(i % 3 == 2 ? '\n' : ' ');
+        }
+        String floatArray = buf.append("</float_array>").toString();
+        long tokenized = Long.MAX_VALUE;
+        long scanned = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++)
+        {
+            XMLTokenizer tokenizer = new XMLTokenizer(floatArray);
+            tokenizer.takeSTag("float_array");
+            tokenizer.atCharData(); // reads the char data, which is excluded from the measurement
+            long time = System.nanoTime();
+            float[] floats = new float[3 * VERTICES];
+            StringTokenizer tokens = new StringTokenizer(tokenizer.takeCharData(), " \t\n\r\f");
+            int decode = 0;
+            while (tokens.hasMoreTokens())
+            {
+                floats[decode++] = Float.parseFloat(tokens.nextToken());
+            }
+            tokenized = Math.min(tokenized, System.nanoTime() - time);
+
+            tokenizer = new XMLTokenizer(floatArray);
+            tokenizer.takeSTag("float_array");
+            tokenizer.atCharData();
+            time = System.nanoTime();
+            float[] scannedFloats = new float[3 * VERTICES];
+            tokenizer.takeFloatCharData(scannedFloats);
+            scanned = Math.min(scanned, System.nanoTime() - time);
+            if (Float.floatToIntBits(floats[decode - 1]) != Float.floatToIntBits(scannedFloats[decode - 1]))
+            {
+                throw new IllegalStateException();
+            }
+        }
+        System.out.printf("float_array, %d floats: StringTokenizer %.2f ms, takeFloatCharData %.2f ms%n", 3 * VERTICES,
+                tokenized / 1e6, scanned / 1e6);
+    }
+
+    private static String read(BufferedReader reader) throws IOException
+    {
+        StringBuilder buf = new StringBuilder();
+        char[] chars = new char[8192];
+        int n;
+        while ((n = reader.read(chars)) >= 0)
+        {
+            buf.append(chars, 0, n);
+        }
+        reader.close();
+        return buf.toString();
+    }
+}
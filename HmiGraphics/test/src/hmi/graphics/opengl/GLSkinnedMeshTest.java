@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import hmi.animation.VJoint;
+import hmi.graphics.scenegraph.VertexAttribute;
+import hmi.math.Mat4f;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for the morph targets of GLSkinnedMesh
+ */
+public class GLSkinnedMeshTest
+{
+    private static final float PRECISION = 1E-5f;
+    private static final int NR_OF_VERTICES = 100;
+    private static final String[] TARGET_NAMES = { "smile", "blink", "jaw", "blink" };
+
+    private float[] base;
+    private float[][] targets;
+    private GLSkinnedMesh mesh;
+
+    @Before
+    public void setUp()
+    {
+        base = new float[3 * NR_OF_VERTICES];
+        for (int i = 0; i < base.length; i++)
+        {
+            base[i] = i * 0.01f;
+        }
+        // target t moves every (t+2)th vertex, starting at vertex t
+        targets = new float[TARGET_NAMES.length][];
+        for (int t = 0; t < targets.length; t++)
+        {
+            targets[t] = base.clone();
+            for (int v = t; v < NR_OF_VERTICES; v += t + 2)
+            {
+                targets[t][3 * v] += 0.1f * (t + 1);
+                targets[t][3 * v + 2] -= 0.05f;
+            }
+        }
+
+        // a single identity joint, so that deform() yields the morphed coordinates
+        mesh = new GLSkinnedMesh();
+        mesh.addGLVertexAttribute(new VertexAttribute("mcPosition", 3, base.clone()));
+        mesh.addGLVertexAttribute(new VertexAttribute("mcNormal", 3, new float[3 * NR_OF_VERTICES]));
+        mesh.setVJoints(new VJoint[] { new VJoint("root", "root") });
+        mesh.setInverseBindMatrices(new float[][] { Mat4f.getIdentity() });
+        int[] jointCount = new int[NR_OF_VERTICES];
+        int[] jointIndex = new int[NR_OF_VERTICES];
+        float[] jointWeight = new float[NR_OF_VERTICES];
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            jointCount[v] = 1;
+            jointWeight[v] = 1f;
+        }
+        mesh.setJointVertexWeights(jointCount, jointIndex, jointWeight);
+        mesh.setMorphTargets(TARGET_NAMES);
+        mesh.setVertexCoordMorphData(targets);
+    }
+
+    /*
+     * The morph as defined by a weighted sum of the absolute target coordinates
+     */
+    private float[] expectedMorph(int[] ts, float[] weights)
+    {
+        float[] result = new float[base.length];
+        float totalWeight = 0f;
+        for (int ti = 0; ti < ts.length; ti++)
+        {
+            if (ts[ti] < 0 || weights[ti] <= 0f) continue;
+            totalWeight += weights[ti];
+            for (int i = 0; i < result.length; i++)
+                result[i] += weights[ti] * targets[ts[ti]][i];
+        }
+        for (int i = 0; i < result.length; i++)
+            result[i] += (1f - totalWeight) * base[i];
+        return result;
+    }
+
+    private float[] morphedCoords()
+    {
+        mesh.deform();
+        return mesh.getVertexData(0, null);
+    }
+
+    @Test
+    public void testMorphTargetIndex()
+    {
+        assertEquals(0, mesh.getMorphTargetIndexFor("smile"));
+        assertEquals(1, mesh.getMorphTargetIndexFor("blink"));
+        assertEquals(2, mesh.getMorphTargetIndexFor("jaw"));
+        assertEquals(-1, mesh.getMorphTargetIndexFor("frown"));
+        assertEquals(-1, new GLSkinnedMesh().getMorphTargetIndexFor("smile"));
+    }
+
+    @Test
+    public void testNrOfMorphedVertices()
+    {
+        assertEquals(50, mesh.getNrOfMorphedVertices(0));
+        assertEquals(33, mesh.getNrOfMorphedVertices(1));
+        assertEquals(-1, mesh.getNrOfMorphedVertices(4));
+    }
+
+    @Test
+    public void testMorphSingle()
+    {
+        mesh.morph("jaw", 0.7f);
+        assertArrayEquals(expectedMorph(new int[] { 2 }, new float[] { 0.7f }), morphedCoords(), PRECISION);
+        mesh.morph(0, 0.4f);
+        assertArrayEquals(expectedMorph(new int[] { 0 }, new float[] { 0.4f }), morphedCoords(), PRECISION);
+        mesh.morph("smile", 0f);
+        assertArrayEquals(base, morphedCoords(), PRECISION);
+    }
+
+    @Test
+    public void testMorphMultiple()
+    {
+        int[] ts = { 0, 1, 2 };
+        float[] weights = { 0.3f, 0.5f, 0.9f };
+        mesh.morph(ts, weights);
+        assertArrayEquals(expectedMorph(ts, weights), morphedCoords(), PRECISION);
+
+        // the previous targets must be undone
+        int[] ts2 = { 3, -1, 1 };
+        float[] weights2 = { 0.6f, 0.5f, 0f };
+        mesh.morph(ts2, weights2);
+        assertArrayEquals(expectedMorph(ts2, weights2), morphedCoords(), PRECISION);
+
+        mesh.morph(new String[] { "jaw", "frown", "smile" }, new float[] { 0.2f, 0.9f, 0.1f });
+        assertArrayEquals(expectedMorph(new int[] { 2, -1, 0 }, new float[] { 0.2f, 0.9f, 0.1f }), morphedCoords(), PRECISION);
+    }
+
+    @Test
+    public void testMorphSameTargetTwice()
+    {
+        mesh.morph(new int[] { 2, 2 }, new float[] { 0.25f, 0.5f });
+        assertArrayEquals(expectedMorph(new int[] { 2 }, new float[] { 0.75f }), morphedCoords(), PRECISION);
+        mesh.morph(new int[] { 1 }, new float[] { 0.5f });
+        assertArrayEquals(expectedMorph(new int[] { 1 }, new float[] { 0.5f }), morphedCoords(), PRECISION);
+    }
+
+    @Test
+    public void testMorphNegativeWeightsIgnored()
+    {
+        mesh.morph(new int[] { 0, 1 }, new float[] { -0.5f, 0.5f });
+        assertArrayEquals(expectedMorph(new int[] { 1 }, new float[] { 0.5f }), morphedCoords(), PRECISION);
+    }
+
+    @Test
+    public void testMorphDeformsMovedVertices()
+    {
+        mesh.deform();
+        mesh.deform();
+        assertEquals(1, mesh.getSkippedDeformCount());
+        mesh.morph("blink", 0.5f);
+        assertArrayEquals(expectedMorph(new int[] { 1 }, new float[] { 0.5f }), morphedCoords(), PRECISION);
+        assertEquals(1, mesh.getPartialDeformCount());
+        assertEquals(mesh.getNrOfMorphedVertices(1), mesh.getLastSkinnedVertexCount());
+
+        // undoing blink, and adding jaw
+        mesh.morph("jaw", 0.5f);
+        assertArrayEquals(expectedMorph(new int[] { 2 }, new float[] { 0.5f }), morphedCoords(), PRECISION);
+        assertEquals(2, mesh.getPartialDeformCount());
+    }
+}
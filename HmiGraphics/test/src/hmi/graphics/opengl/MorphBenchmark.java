@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import hmi.graphics.scenegraph.VertexAttribute;
+
+import java.util.Random;
+
+/**
+ * Measures GLSkinnedMesh.morph(int[], float[]) on a synthetic head mesh, with many small morph targets,
+ * against a dense accumulation over the absolute target coordinates, as morphing was done before.
+ * Usage: MorphBenchmark [nrOfVertices nrOfTargets movedVerticesPerTarget activeTargets]
+ */
+public final class MorphBenchmark
+{
+    private MorphBenchmark()
+    {
+    }
+
+    /*
+     * Dense morph: weighted sum of base and absolute target coordinates, over all vertices
+     */
+    private static void denseMorph(float[] morphed, float[] base, float[][] targetData, int[] targets, float[] weights)
+    {
+        for (int i = 0; i < morphed.length; i++)
+            morphed[i] = 0;
+        float totalWeight = 0.0f;
+        for (int ti = 0; ti < targets.length; ti++)
+        {
+            float weight = weights[ti];
+            if (weight <= 0.0f) continue;
+            totalWeight += weight;
+            float[] data = targetData[targets[ti]];
+            for (int i = 0; i < morphed.length; i++)
+                morphed[i] += weight * data[i];
+        }
+        float baseWeight = 1.0f - totalWeight;
+        for (int i = 0; i < morphed.length; i++)
+            morphed[i] += baseWeight * base[i];
+    }
+
+    public static void main(String[] args)
+    {
+        int nrOfVertices = args.length > 3 ? Integer.parseInt(args[0]) : 20000;
+        int nrOfTargets = args.length > 3 ? Integer.parseInt(args[1]) : 40;
+        int moved = args.length > 3 ? Integer.parseInt(args[2]) : 300;
+        int active = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+        int iterations = 2000;
+
+        Random random = new Random(1);
+        float[] base = new float[3 * nrOfVertices];
+        for (int i = 0; i < base.length; i++)
+            base[i] = random.nextFloat();
+        float[][] targetData = new float[nrOfTargets][];
+        String[] names = new String[nrOfTargets];
+        for (int t = 0; t < nrOfTargets; t++)
+        {
+            names[t] = "target" + t;
+            targetData[t] = base.clone();
+            int first = random.nextInt(nrOfVertices - moved);
+            for (int v = first; v < first + moved; v++)
+                targetData[t][3 * v + 1] += 0.01f * random.nextFloat();
+        }
+        GLSkinnedMesh mesh = new GLSkinnedMesh();
+        mesh.addGLVertexAttribute(new VertexAttribute("mcPosition", 3, base.clone()));
+        mesh.setMorphTargets(names);
+        mesh.setVertexCoordMorphData(targetData);
+
+        int[][] targets = new int[iterations][active];
+        float[][] weights = new float[iterations][active];
+        for (int i = 0; i < iterations; i++)
+        {
+            for (int a = 0; a < active; a++)
+            {
+                targets[i][a] = random.nextInt(nrOfTargets);
+                weights[i][a] = random.nextFloat() / active;
+            }
+        }
+        System.out.println(nrOfVertices + " vertices, " + nrOfTargets + " targets of " + moved + " vertices, " + active + " active");
+        float[] morphed = new float[base.length];
+        for (int round = 0; round < 3; round++)
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                denseMorph(morphed, base, targetData, targets[i], weights[i]);
+            double dense = (System.nanoTime() - start) / 1E3 / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                mesh.morph(targets[i], weights[i]);
+            double sparse = (System.nanoTime() - start) / 1E3 / iterations;
+            System.out.printf("dense %8.1f us/morph   sparse %8.1f us/morph%n", dense, sparse);
+        }
+    }
+}
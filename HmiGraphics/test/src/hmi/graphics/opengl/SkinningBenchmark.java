@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import hmi.animation.VJoint;
+import hmi.graphics.opengl.scenegraph.GLScene;
+import hmi.graphics.util.SceneIO;
+import hmi.math.Quat4f;
+
+import java.util.List;
+
+/**
+ * Measures GLSkinnedMesh.deform() on the character meshes from the HmiGraphics resources, for the
+ * sequential and parallel SkinningEngines, and for both skinning modes, and the effect of change
+ * tracking when the skeleton is idle or a single joint moves. Runs on the CPU only; no OpenGL
+ * context is needed.
+ * Usage: SkinningBenchmark [resourceDir fileName [iterations]]
+ */
+public final class SkinningBenchmark
+{
+    private SkinningBenchmark()
+    {
+    }
+
+    private static double run(List<GLSkinnedMesh> meshes, int iterations)
+    {
+        return run(meshes, iterations, null, null);
+    }
+
+    /*
+     * Deforms the meshes, after rotating the moving joint, if not null, and recalculating the skeleton matrices
+     */
+    private static double run(List<GLSkinnedMesh> meshes, int iterations, VJoint skeleton, VJoint moving)
+    {
+        float[] q = Quat4f.getQuat4f();
+        long start = 0;
+        for (int i = -iterations / 10; i < iterations; i++) // first iterations/10 iterations are warm up
+        {
+            if (i == 0) start = System.nanoTime();
+            if (moving != null)
+            {
+                Quat4f.setFromAxisAngleDegrees(q, 1f, 0f, 0f, i % 40);
+                moving.setRotation(q);
+            }
+            if (skeleton != null) skeleton.calculateMatrices();
+            for (GLSkinnedMesh mesh : meshes) mesh.deform();
+        }
+        return (System.nanoTime() - start) / 1E3 / iterations;
+    }
+
+    public static void main(String[] args)
+    {
+        String resourceDir = args.length > 1 ? args[0] : "dae";
+        String fileName = args.length > 1 ? args[1] : "woman23.dae";
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        GLScene scene = SceneIO.readGLScene(resourceDir, fileName);
+        List<GLSkinnedMesh> meshes = scene.getGLSkinnedMeshList();
+        int nrOfVertices = 0;
+        for (GLSkinnedMesh mesh : meshes) nrOfVertices += mesh.getNrOfVertices();
+        System.out.println(fileName + ": " + meshes.size() + " skinned meshes, " + nrOfVertices + " vertices, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        if (meshes.isEmpty()) return;
+
+        SkinningEngine[] engines = { new SequentialSkinningEngine(), new ParallelSkinningEngine() };
+        for (int round = 0; round < 3; round++)
+        {
+            for (GLSkinnedMesh.SkinningMode mode : GLSkinnedMesh.SkinningMode.values())
+            {
+                for (SkinningEngine engine : engines)
+                {
+                    for (GLSkinnedMesh mesh : meshes)
+                    {
+                        mesh.setSkinningEngine(engine);
+                        mesh.setSkinningMode(mode);
+                        mesh.setChangeTracking(false);
+                    }
+                    System.out.printf("%-14s %-26s %8.1f us/deform%n", mode, engine.getClass().getSimpleName(), run(meshes, iterations));
+                }
+            }
+        }
+
+        // change tracking, for an idle skeleton, and for a skeleton where only a hand moves
+        VJoint skeleton = scene.getVJointRoots().get(scene.getVJointRoots().size() - 1);
+        VJoint moving = skeleton;
+        for (VJoint joint : skeleton.getParts())
+        {
+            if (joint.getId() != null && joint.getId().contains("R_Hand")) moving = joint;
+        }
+        for (int round = 0; round < 3; round++)
+        {
+            for (boolean tracking : new boolean[] { false, true })
+            {
+                for (GLSkinnedMesh mesh : meshes)
+                {
+                    mesh.setSkinningEngine(engines[0]);
+                    mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.LinearBlend);
+                    mesh.setChangeTracking(tracking);
+                }
+                String label = tracking ? "tracking" : "no tracking";
+                System.out.printf("%-14s %-26s %8.1f us/deform%n", label, "idle", run(meshes, iterations, skeleton, null));
+                double movingTime = run(meshes, iterations, skeleton, moving);
+                int skinned = 0;
+                for (GLSkinnedMesh mesh : meshes) skinned += mesh.getLastSkinnedVertexCount();
+                System.out.printf("%-14s %-26s %8.1f us/deform (%d vertices)%n", label, "joint " + moving.getId(), movingTime, skinned);
+            }
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.opengl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import hmi.animation.VJoint;
+import hmi.graphics.scenegraph.VertexAttribute;
+import hmi.math.DualQuat;
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
+import hmi.math.Vec3f;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for the SkinningEngines used by GLSkinnedMesh
+ */
+public class SkinningEngineTest
+{
+    private static final float PRECISION = 1E-5f;
+    private static final int NR_OF_VERTICES = 1000;
+    private static final int NR_OF_JOINTS = 3;
+    private static final int NR_OF_FAPS = 2;
+
+    private VJoint[] joints;
+    private float[] coords;
+    private float[] normals;
+    private int[] jointCount;
+    private int[] jointIndex;
+    private float[] jointWeight;
+    private int[] fapCount;
+    private int[] fapIndex;
+    private float[] fapWeight;
+    private float[][] fapDirections;
+    private float[] fapAmplitudes;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp()
+    {
+        pool = new ForkJoinPool(4);
+        joints = new VJoint[NR_OF_JOINTS];
+        joints[0] = new VJoint("j0", "j0");
+        for (int j = 1; j < NR_OF_JOINTS; j++)
+        {
+            joints[j] = new VJoint("j" + j, "j" + j);
+            joints[j].setTranslation(0f, 0.5f, 0f);
+            joints[j - 1].addChild(joints[j]);
+        }
+        coords = new float[3 * NR_OF_VERTICES];
+        normals = new float[3 * NR_OF_VERTICES];
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            coords[3 * v] = (v % 10) * 0.1f;
+            coords[3 * v + 1] = (v / 10) * 0.01f;
+            coords[3 * v + 2] = (v % 7) * 0.05f;
+            normals[3 * v] = (v % 3) - 1f;
+            normals[3 * v + 1] = 1f;
+            normals[3 * v + 2] = (v % 5) * 0.2f;
+            Vec3f.normalize(normals, 3 * v);
+        }
+        // vertex v is influenced by one joint when v is even, and by two joints when v is odd
+        jointCount = new int[NR_OF_VERTICES];
+        int nrOfInfluences = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            jointCount[v] = 1 + v % 2;
+            nrOfInfluences += jointCount[v];
+        }
+        jointIndex = new int[nrOfInfluences];
+        jointWeight = new float[nrOfInfluences];
+        int p = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            if (jointCount[v] == 1)
+            {
+                jointIndex[p] = v % NR_OF_JOINTS;
+                jointWeight[p++] = 1f;
+            }
+            else
+            {
+                jointIndex[p] = v % NR_OF_JOINTS;
+                jointWeight[p++] = 0.25f;
+                jointIndex[p] = (v + 1) % NR_OF_JOINTS;
+                jointWeight[p++] = 0.75f;
+            }
+        }
+        // every third vertex is displaced by the first FAP
+        fapCount = new int[NR_OF_VERTICES];
+        int nrOfFapInfluences = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v += 3)
+        {
+            fapCount[v] = 1;
+            nrOfFapInfluences++;
+        }
+        fapIndex = new int[nrOfFapInfluences];
+        fapWeight = new float[nrOfFapInfluences];
+        for (int i = 0; i < nrOfFapInfluences; i++)
+        {
+            fapWeight[i] = 0.5f;
+        }
+        fapDirections = new float[][] { { 0f, 0f, 1f }, { 1f, 0f, 0f } };
+        fapAmplitudes = new float[] { 0.2f, 0.7f };
+    }
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    private GLSkinnedMesh createMesh(boolean useFaps)
+    {
+        GLSkinnedMesh mesh = new GLSkinnedMesh();
+        mesh.addGLVertexAttribute(new VertexAttribute("mcPosition", 3, coords.clone()));
+        mesh.addGLVertexAttribute(new VertexAttribute("mcNormal", 3, normals.clone()));
+        mesh.setVJoints(joints);
+        float[][] invBindMatrices = new float[NR_OF_JOINTS][];
+        for (int j = 0; j < NR_OF_JOINTS; j++)
+        {
+            invBindMatrices[j] = Mat4f.getIdentity();
+        }
+        mesh.setInverseBindMatrices(invBindMatrices);
+        mesh.setJointVertexWeights(jointCount, jointIndex, jointWeight);
+        if (useFaps)
+        {
+            mesh.setFapDirectionVectors(fapDirections);
+            mesh.setFapVertexWeights(fapCount, fapIndex, fapWeight);
+            mesh.setFapAmplitudes(fapAmplitudes);
+            mesh.setUseFaps(true);
+        }
+        return mesh;
+    }
+
+    private void pose()
+    {
+        float[] q = Quat4f.getQuat4f();
+        for (int j = 0; j < NR_OF_JOINTS; j++)
+        {
+            Quat4f.setFromAxisAngleDegrees(q, 0.3f, 1f, 0.2f * j, 20f + 15f * j);
+            joints[j].setRotation(q);
+        }
+        joints[0].setTranslation(0.1f, -0.2f, 0.3f);
+        joints[0].calculateMatrices();
+    }
+
+    /*
+     * Straightforward skinning of the test mesh
+     */
+    private void skin(boolean useFaps, float[] coordsOut, float[] normalsOut)
+    {
+        float[] point = Vec3f.getVec3f();
+        float[] tmp = Vec3f.getVec3f();
+        int p = 0;
+        int fp = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            float[] vertex = Vec3f.getVec3f(coords[3 * v], coords[3 * v + 1], coords[3 * v + 2]);
+            float[] normal = Vec3f.getVec3f(normals[3 * v], normals[3 * v + 1], normals[3 * v + 2]);
+            if (useFaps)
+            {
+                for (int i = 0; i < fapCount[v]; i++, fp++)
+                {
+                    int f = fapIndex[fp];
+                    Vec3f.scaleAdd(vertex, fapWeight[fp] * fapAmplitudes[f], fapDirections[f], vertex);
+                }
+            }
+            float[] skinnedVertex = Vec3f.getZero();
+            float[] skinnedNormal = Vec3f.getZero();
+            for (int i = 0; i < jointCount[v]; i++, p++)
+            {
+                float[] m = joints[jointIndex[p]].getGlobalMatrix();
+                Mat4f.transformPoint(m, point, vertex);
+                Vec3f.scaleAdd(skinnedVertex, jointWeight[p], point, skinnedVertex);
+                Mat4f.transformVector(m, tmp, normal);
+                Vec3f.scaleAdd(skinnedNormal, jointWeight[p], tmp, skinnedNormal);
+            }
+            Vec3f.normalize(skinnedNormal);
+            Vec3f.set(coordsOut, 3 * v, skinnedVertex, 0);
+            Vec3f.set(normalsOut, 3 * v, skinnedNormal, 0);
+        }
+    }
+
+    private void testEngine(SkinningEngine engine, boolean useFaps)
+    {
+        GLSkinnedMesh mesh = createMesh(useFaps);
+        mesh.setSkinningEngine(engine);
+        pose();
+        mesh.deform();
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skin(useFaps, expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+        assertArrayEquals(expectedNormals, mesh.getVertexData(1, null), PRECISION);
+    }
+
+    @Test
+    public void testSequential()
+    {
+        testEngine(new SequentialSkinningEngine(), false);
+        testEngine(new SequentialSkinningEngine(), true);
+    }
+
+    @Test
+    public void testParallel()
+    {
+        testEngine(new ParallelSkinningEngine(pool, 64), false);
+        testEngine(new ParallelSkinningEngine(pool, 64), true);
+        testEngine(new ParallelSkinningEngine(pool, 7), true);
+    }
+
+    @Test
+    public void testDefaultEngine()
+    {
+        testEngine(createMesh(false).getSkinningEngine(), true);
+    }
+
+    @Test
+    public void testParallelSmallMesh()
+    {
+        // the mesh fits within a single chunk, and is skinned on the calling thread
+        testEngine(new ParallelSkinningEngine(pool, NR_OF_VERTICES), true);
+    }
+
+    @Test
+    public void testDeformTwice()
+    {
+        GLSkinnedMesh mesh = createMesh(true);
+        mesh.setSkinningEngine(new ParallelSkinningEngine(pool, 100));
+        mesh.deform();
+        pose();
+        mesh.deform();
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skin(true, expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+        assertEquals(NR_OF_VERTICES, mesh.getNrOfVertices());
+    }
+
+    /*
+     * Straightforward dual quaternion skinning of the test mesh, without FAPs
+     */
+    private void skinDualQuaternion(float[] coordsOut, float[] normalsOut)
+    {
+        float[][] dqs = new float[NR_OF_JOINTS][];
+        for (int j = 0; j < NR_OF_JOINTS; j++)
+        {
+            dqs[j] = DualQuat.getDualQuat();
+            DualQuat.setFromMat4f(dqs[j], joints[j].getGlobalMatrix());
+        }
+        int p = 0;
+        float[] blend = DualQuat.getDualQuat();
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            if (jointCount[v] == 0)
+            { // no joints: bind pose
+                Vec3f.set(coordsOut, 3 * v, coords, 3 * v);
+                Vec3f.set(normalsOut, 3 * v, normals, 3 * v);
+                continue;
+            }
+            Arrays.fill(blend, 0f);
+            for (int i = 0; i < jointCount[v]; i++, p++)
+            {
+                DualQuat.blend(blend, jointWeight[p], dqs[jointIndex[p]]);
+            }
+            DualQuat.normalize(blend);
+            DualQuat.transformPoint(blend, 0, coords, 3 * v, coordsOut, 3 * v);
+            DualQuat.transformVector(blend, 0, normals, 3 * v, normalsOut, 3 * v);
+        }
+    }
+
+    @Test
+    public void testDualQuaternion()
+    {
+        GLSkinnedMesh mesh = createMesh(false);
+        mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.DualQuaternion);
+        assertEquals(GLSkinnedMesh.SkinningMode.DualQuaternion, mesh.getSkinningMode());
+        mesh.setSkinningEngine(new ParallelSkinningEngine(pool, 64));
+        pose();
+        mesh.deform();
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skinDualQuaternion(expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+        assertArrayEquals(expectedNormals, mesh.getVertexData(1, null), PRECISION);
+
+        // vertices with a single joint are skinned rigidly, and are equal for both skinning modes
+        float[] linearCoords = new float[3 * NR_OF_VERTICES];
+        skin(false, linearCoords, expectedNormals);
+        float[] dqCoords = mesh.getVertexData(0, null);
+        for (int v = 0; v < NR_OF_VERTICES; v += 2)
+        {
+            for (int k = 0; k < 3; k++)
+            {
+                assertEquals(linearCoords[3 * v + k], dqCoords[3 * v + k], PRECISION);
+            }
+        }
+    }
+
+    /*
+     * Removes all joint influences of the specified vertices
+     */
+    private void removeJointInfluences(int... vertices)
+    {
+        int[] newCount = jointCount.clone();
+        for (int v : vertices)
+        {
+            newCount[v] = 0;
+        }
+        int nrOfInfluences = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            nrOfInfluences += newCount[v];
+        }
+        int[] newIndex = new int[nrOfInfluences];
+        float[] newWeight = new float[nrOfInfluences];
+        int p = 0;
+        int q = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            for (int i = 0; i < jointCount[v]; i++, p++)
+            {
+                if (newCount[v] > 0)
+                {
+                    newIndex[q] = jointIndex[p];
+                    newWeight[q++] = jointWeight[p];
+                }
+            }
+        }
+        jointCount = newCount;
+        jointIndex = newIndex;
+        jointWeight = newWeight;
+    }
+
+    @Test
+    public void testDualQuaternionWithoutJoints()
+    {
+        // a vertex without joints in the middle, and as last vertex
+        removeJointInfluences(NR_OF_VERTICES / 2, NR_OF_VERTICES - 1);
+        GLSkinnedMesh mesh = createMesh(false);
+        mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.DualQuaternion);
+        mesh.setSkinningEngine(new SequentialSkinningEngine());
+        pose();
+        mesh.deform();
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skinDualQuaternion(expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+        assertArrayEquals(expectedNormals, mesh.getVertexData(1, null), PRECISION);
+        float[] dqCoords = mesh.getVertexData(0, null);
+        for (int k = 0; k < 3; k++)
+        {
+            assertEquals(coords[3 * (NR_OF_VERTICES - 1) + k], dqCoords[3 * (NR_OF_VERTICES - 1) + k], PRECISION);
+        }
+    }
+
+    @Test
+    public void testSkinningModeSwitch()
+    {
+        GLSkinnedMesh mesh = createMesh(true);
+        mesh.setSkinningEngine(new SequentialSkinningEngine());
+        pose();
+        mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.DualQuaternion);
+        mesh.deform();
+        mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.LinearBlend);
+        mesh.deform();
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skin(true, expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+        assertArrayEquals(expectedNormals, mesh.getVertexData(1, null), PRECISION);
+    }
+
+    @Test
+    public void testChangeTracking()
+    {
+        GLSkinnedMesh mesh = createMesh(true);
+        mesh.setSkinningEngine(new ParallelSkinningEngine(pool, 64));
+        GLSkinnedMesh reference = createMesh(true);
+        reference.setChangeTracking(false);
+        pose();
+        mesh.deform();
+        assertEquals(1, mesh.getFullDeformCount());
+        assertEquals(NR_OF_VERTICES, mesh.getLastSkinnedVertexCount());
+
+        mesh.deform();
+        assertEquals(1, mesh.getSkippedDeformCount());
+        assertEquals(0, mesh.getLastSkinnedVertexCount());
+
+        // only the vertices influenced by the last joint are re-skinned
+        float[] q = Quat4f.getQuat4f();
+        Quat4f.setFromAxisAngleDegrees(q, 1f, 0f, 0f, 40f);
+        joints[NR_OF_JOINTS - 1].setRotation(q);
+        joints[0].calculateMatrices();
+        mesh.deform();
+        reference.deform();
+        assertEquals(1, mesh.getPartialDeformCount());
+        int expected = 0;
+        for (int v = 0; v < NR_OF_VERTICES; v++)
+        {
+            if (v % NR_OF_JOINTS == NR_OF_JOINTS - 1 || (v % 2 == 1 && (v + 1) % NR_OF_JOINTS == NR_OF_JOINTS - 1)) expected++;
+        }
+        assertEquals(expected, mesh.getLastSkinnedVertexCount());
+        assertArrayEquals(reference.getVertexData(0, null), mesh.getVertexData(0, null), 0f);
+        assertArrayEquals(reference.getVertexData(1, null), mesh.getVertexData(1, null), 0f);
+
+        // FAP changes re-skin the vertices influenced by that FAP
+        mesh.setFapAmplitudes(new float[] { 0.5f, 0.7f });
+        reference.setFapAmplitudes(new float[] { 0.5f, 0.7f });
+        mesh.deform();
+        reference.deform();
+        assertEquals(2, mesh.getPartialDeformCount());
+        assertEquals(fapIndex.length, mesh.getLastSkinnedVertexCount());
+        assertArrayEquals(reference.getVertexData(0, null), mesh.getVertexData(0, null), 0f);
+
+        // moving the root joint moves everything
+        joints[0].setTranslation(1f, 2f, 3f);
+        joints[0].calculateMatrices();
+        mesh.deform();
+        reference.deform();
+        assertEquals(2, mesh.getFullDeformCount());
+        assertArrayEquals(reference.getVertexData(0, null), mesh.getVertexData(0, null), 0f);
+        assertArrayEquals(reference.getVertexData(1, null), mesh.getVertexData(1, null), 0f);
+
+        mesh.resetDeformCounts();
+        assertEquals(0, mesh.getFullDeformCount());
+        assertEquals(0, mesh.getPartialDeformCount());
+        assertEquals(0, mesh.getSkippedDeformCount());
+    }
+
+    @Test
+    public void testChangeTrackingDisabled()
+    {
+        GLSkinnedMesh mesh = createMesh(false);
+        mesh.setChangeTracking(false);
+        mesh.deform();
+        mesh.deform();
+        assertEquals(2, mesh.getFullDeformCount());
+        assertEquals(0, mesh.getSkippedDeformCount());
+    }
+
+    @Test
+    public void testSkinningModeChangeDeformsAll()
+    {
+        GLSkinnedMesh mesh = createMesh(false);
+        pose();
+        mesh.deform();
+        mesh.setSkinningMode(GLSkinnedMesh.SkinningMode.DualQuaternion);
+        mesh.deform();
+        assertEquals(2, mesh.getFullDeformCount());
+        float[] expectedCoords = new float[3 * NR_OF_VERTICES];
+        float[] expectedNormals = new float[3 * NR_OF_VERTICES];
+        skinDualQuaternion(expectedCoords, expectedNormals);
+        assertArrayEquals(expectedCoords, mesh.getVertexData(0, null), PRECISION);
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.scenegraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the TupleTable used by GMesh.unifyIndices
+ */
+public class TupleTableTest
+{
+    private static int[][] randomIndices(int nrOfAttributes, int n, int range, long seed)
+    {
+        Random random = new Random(seed);
+        int[][] indices = new int[nrOfAttributes][n];
+        for (int i = 0; i < n; i++)
+        {
+            int base = random.nextInt(range);
+            for (int attr = 0; attr < nrOfAttributes; attr++)
+            {
+                indices[attr][i] = (attr == 0) ? base : (base + random.nextInt(2)) % range; // many repeated tuples
+            }
+        }
+        return indices;
+    }
+
+    /* the straightforward numbering: compare with all earlier tuples */
+    private static int linearUnify(int[][] indices, int[] indexData, int[][] tuples)
+    {
+        int nrOfTuples = 0;
+        for (int i = 0; i < indexData.length; i++)
+        {
+            int tuple = 0;
+            for (; tuple < nrOfTuples; tuple++)
+            {
+                int attr = 0;
+                while (attr < indices.length && tuples[attr][tuple] == indices[attr][i])
+                    attr++;
+                if (attr == indices.length) break;
+            }
+            if (tuple == nrOfTuples)
+            {
+                for (int attr = 0; attr < indices.length; attr++)
+                    tuples[attr][tuple] = indices[attr][i];
+                nrOfTuples++;
+            }
+            indexData[i] = tuple;
+        }
+        return nrOfTuples;
+    }
+
+    private static void checkAgainstLinear(int[][] indices, TupleTable table, int[] indexData)
+    {
+        int n = indexData.length;
+        int[] expectedIndexData = new int[n];
+        int[][] expectedTuples = new int[indices.length][n];
+        int expectedSize = linearUnify(indices, expectedIndexData, expectedTuples);
+        assertEquals(expectedSize, table.size());
+        assertArrayEquals(expectedIndexData, indexData);
+        for (int attr = 0; attr < indices.length; attr++)
+        {
+            for (int t = 0; t < expectedSize; t++)
+            {
+                assertEquals(expectedTuples[attr][t], table.getTuples(attr)[t]);
+            }
+        }
+    }
+
+    @Test
+    public void testSmall()
+    {
+        int[][] indices = { { 0, 1, 2, 0, 1, 2, 0 }, { 5, 6, 7, 5, 7, 6, 5 } };
+        int[] indexData = new int[7];
+        TupleTable table = TupleTable.unify(indices, indexData, 2, null); // forces growing and rehashing
+        assertEquals(5, table.size());
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 3, 4, 0 }, indexData);
+    }
+
+    @Test
+    public void testSequential()
+    {
+        int[][] indices = randomIndices(3, 20000, 3000, 1L);
+        int[] indexData = new int[indices[0].length];
+        checkAgainstLinear(indices, TupleTable.unify(indices, indexData, 100, null), indexData);
+    }
+
+    @Test
+    public void testParallelEqualsSequential()
+    {
+        int n = 3 * TupleTable.PARALLEL_THRESHOLD + 17;
+        int[][] indices = randomIndices(4, n, 20000, 2L);
+        int[] sequential = new int[n];
+        TupleTable sequentialTable = TupleTable.unify(indices, sequential, 1000, null);
+        int[] parallel = new int[n];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            TupleTable parallelTable = TupleTable.unify(indices, parallel, 1000, pool);
+            assertEquals(sequentialTable.size(), parallelTable.size());
+            assertArrayEquals(sequential, parallel);
+            for (int attr = 0; attr < indices.length; attr++)
+            {
+                for (int t = 0; t < sequentialTable.size(); t++)
+                {
+                    assertEquals(sequentialTable.getTuples(attr)[t], parallelTable.getTuples(attr)[t]);
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.scenegraph;
+
+import hmi.graphics.collada.Collada;
+import hmi.graphics.collada.scenegraph.ColladaTranslator;
+import hmi.xml.XMLTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the tuple numbering of GMesh.unifyIndices, by means of a TupleTable, sequentially and in parallel, with the former
+ * implementation, that compared every vertex with all distinct vertices found before, on the meshes of the Collada character
+ * resources, and on a large synthetic mesh.
+ * Usage: UnifyIndicesBenchmark [daeResource ...]
+ */
+public final class UnifyIndicesBenchmark
+{
+    private UnifyIndicesBenchmark()
+    {
+    }
+
+    /* the former implementation */
+    private static int linearUnify(int[][] indices, int[] indexData)
+    {
+        int nrOfAttributes = indices.length;
+        int[][] map = new int[nrOfAttributes][indexData.length];
+        int nrOfTuples = 0;
+        for (int i = 0; i < indexData.length; i++)
+        {
+            for (int attr = 0; attr < nrOfAttributes; attr++)
+            {
+                map[attr][nrOfTuples] = indices[attr][i];
+            }
+            boolean isNew = true;
+            int tuple = 0;
+            for (tuple = 0; tuple < nrOfTuples; tuple++)
+            {
+                boolean tupleDiffers = false;
+                for (int attr = 0; attr < nrOfAttributes; attr++)
+                {
+                    tupleDiffers = (map[attr][tuple] != map[attr][nrOfTuples]);
+                    if (tupleDiffers) break;
+                }
+                isNew = tupleDiffers;
+                if (!isNew) break;
+            }
+            indexData[i] = tuple;
+            if (isNew) nrOfTuples++;
+        }
+        return nrOfTuples;
+    }
+
+    /* collects the attribute index arrays of all meshes, before unification */
+    private static void collectIndices(GNode gnode, List<int[][]> meshIndices)
+    {
+        for (GShape gshape : gnode.getGShapes())
+        {
+            List<VertexAttribute> attributes = gshape.getGMesh().getVertexAttributeList();
+            if (attributes.isEmpty() || attributes.get(0).getIndexData() == null) continue;
+            int[][] indices = new int[attributes.size()][];
+            for (int attr = 0; attr < indices.length; attr++)
+            {
+                indices[attr] = attributes.get(attr).getIndexData();
+            }
+            meshIndices.add(indices);
+        }
+        for (GNode child : gnode.getChildNodes())
+        {
+            collectIndices(child, meshIndices);
+        }
+    }
+
+    private static double runLinear(List<int[][]> meshIndices, int iterations)
+    {
+        long start = 0;
+        for (int it = -Math.max(1, iterations / 10); it < iterations; it++)
+        {
+            if (it == 0) start = System.nanoTime();
+            for (int[][] indices : meshIndices)
+            {
+                linearUnify(indices, new int[indices[0].length]);
+            }
+        }
+        return (System.nanoTime() - start) / 1E6 / iterations;
+    }
+
+    private static double runTable(List<int[][]> meshIndices, int iterations, ForkJoinPool pool)
+    {
+        long start = 0;
+        for (int it = -Math.max(1, iterations / 10); it < iterations; it++)
+        {
+            if (it == 0) start = System.nanoTime();
+            for (int[][] indices : meshIndices)
+            {
+                TupleTable.unify(indices, new int[indices[0].length], indices[0].length / 2, pool);
+            }
+        }
+        return (System.nanoTime() - start) / 1E6 / iterations;
+    }
+
+    private static void compare(String name, List<int[][]> meshIndices, int iterations)
+    {
+        int nrOfIndices = 0;
+        for (int[][] indices : meshIndices) nrOfIndices += indices[0].length;
+        System.out.println(name + ": " + meshIndices.size() + " meshes, " + nrOfIndices + " indices");
+        System.out.printf("  linear:           %.3f ms%n", runLinear(meshIndices, iterations));
+        System.out.printf("  table:            %.3f ms%n", runTable(meshIndices, iterations, null));
+        System.out.printf("  table (parallel): %.3f ms%n", runTable(meshIndices, iterations, ForkJoinPool.commonPool()));
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        String[] resources = args.length > 0 ? args : new String[] { "dae/woman23.dae", "dae/avatar.dae", "dae/actor_wim_meters_3dsexport.dae" };
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+        for (String resource : resources)
+        {
+            Collada collada = new Collada(XMLTokenizer.forResource(resource));
+            GScene gscene = ColladaTranslator.colladaSceneToGScene(collada, collada.getScene());
+            List<int[][]> meshIndices = new ArrayList<int[][]>();
+            for (GNode root : gscene.getRootNodes())
+            {
+                collectIndices(root, meshIndices);
+            }
+            compare(resource, meshIndices, 50);
+        }
+
+        // a synthetic high-poly head: a 128 x 128 vertex grid, with positions, normals, texcoords and a morph target
+        int size = 128;
+        int n = 6 * (size - 1) * (size - 1);
+        int[][] indices = new int[4][n];
+        int i = 0;
+        for (int y = 0; y < size - 1; y++)
+        {
+            for (int x = 0; x < size - 1; x++)
+            {
+                int v = y * size + x;
+                int[] corners = { v, v + 1, v + size, v + 1, v + size + 1, v + size };
+                for (int c : corners)
+                {
+                    indices[0][i] = c;
+                    indices[1][i] = c;
+                    indices[2][i] = (x == size / 2) ? n + c : c; // a texture seam
+                    indices[3][i] = c;
+                    i++;
+                }
+            }
+        }
+        List<int[][]> synthetic = new ArrayList<int[][]>();
+        synthetic.add(indices);
+        compare("synthetic grid", synthetic, 1);
+    }
+}
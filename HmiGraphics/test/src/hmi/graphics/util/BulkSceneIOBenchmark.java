@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.util;
+
+import hmi.graphics.scenegraph.GScene;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares reading a scene from a plain .bin file, through a DataInputStream, with reading it from a bulk format
+ * .bin file, mapped into memory.
+ * Usage: BulkSceneIOBenchmark [resourceDir fileName [iterations]]
+ */
+public final class BulkSceneIOBenchmark
+{
+    private BulkSceneIOBenchmark()
+    {
+    }
+
+    private static double run(String url, int iterations)
+    {
+        long start = 0;
+        for (int i = -iterations / 10; i < iterations; i++) // first iterations/10 iterations are warm up
+        {
+            if (i == 0) start = System.nanoTime();
+            if (SceneIO.readGScene(url, SceneIO.NONE, true) == null) throw new RuntimeException("could not read " + url);
+        }
+        return (System.nanoTime() - start) / 1E6 / iterations;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        String resourceDir = args.length > 1 ? args[0] : "dae";
+        String fileName = args.length > 1 ? args[1] : "woman23.dae";
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        SceneIO.setSceneCache(null);
+        GScene gscene = SceneIO.readGScene(resourceDir, fileName, SceneIO.NONE, true);
+        File plain = File.createTempFile("plainscene", ".bin");
+        File bulk = File.createTempFile("bulkscene", ".bin");
+        plain.deleteOnExit();
+        bulk.deleteOnExit();
+        SceneIO.writeGScene(plain.getPath(), gscene, false);
+        SceneIO.writeGScene(bulk.getPath(), gscene, true);
+        System.out.println(fileName + ": plain " + plain.length() + " bytes, bulk " + bulk.length() + " bytes");
+        System.out.printf("plain .bin: %.2f ms per scene%n", run(plain.toURI().toString(), iterations));
+        System.out.printf("bulk .bin:  %.2f ms per scene%n", run(bulk.toURI().toString(), iterations));
+    }
+}
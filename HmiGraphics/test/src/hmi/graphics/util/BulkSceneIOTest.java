@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import hmi.graphics.scenegraph.GScene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the bulk GScene binary format
+ */
+public class BulkSceneIOTest
+{
+    private File dir;
+    private GScene translated;
+
+    @Before
+    public void setup() throws IOException
+    {
+        dir = Files.createTempDirectory("bulksceneiotest").toFile();
+        SceneCache previousCache = SceneIO.getSceneCache();
+        SceneIO.setSceneCache(null);
+        translated = SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, true);
+        SceneIO.setSceneCache(previousCache);
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testBulkRoundTrip() throws IOException
+    {
+        File file = new File(dir, "avatar.bin");
+        SceneIO.writeGScene(file.getPath(), translated, true);
+        assertTrue(BulkSceneIO.isBulkFormat(BulkSceneIO.map(file)));
+        GScene read = SceneIO.readGScene(file.toURI().toString(), SceneIO.NONE, true);
+        assertNotNull(read);
+        assertEquals("", translated.showDiff(read));
+        assertEquals(translated.getSkinnedMeshes().size(), read.getSkinnedMeshes().size());
+    }
+
+    @Test
+    public void testPlainBinStillReadable() throws IOException
+    {
+        File file = new File(dir, "avatar.bin");
+        SceneIO.writeGScene(file.getPath(), translated);
+        assertFalse(BulkSceneIO.isBulkFormat(BulkSceneIO.map(file)));
+        GScene read = SceneIO.readGScene(file.toURI().toString(), SceneIO.NONE, true);
+        assertNotNull(read);
+        assertEquals("", translated.showDiff(read));
+    }
+
+    @Test
+    public void testBulkFromStream() throws IOException
+    {
+        File file = new File(dir, "avatar.bin");
+        BulkSceneIO.writeGScene(file, translated);
+        InputStream inps = new FileInputStream(file);
+        try
+        {
+            GScene read = BulkSceneIO.readGScene(BulkSceneIO.readFully(inps));
+            assertEquals("", translated.showDiff(read));
+        }
+        finally
+        {
+            inps.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.graphics.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hmi.graphics.scenegraph.GScene;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the SceneCache, used by SceneIO
+ */
+public class SceneCacheTest
+{
+    private File dir;
+    private SceneCache previousCache;
+
+    @Before
+    public void setup() throws IOException
+    {
+        dir = Files.createTempDirectory("scenecachetest").toFile();
+        previousCache = SceneIO.getSceneCache();
+    }
+
+    @After
+    public void tearDown()
+    {
+        SceneIO.setSceneCache(previousCache);
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testCachedResource()
+    {
+        SceneCache cache = new SceneCache(dir);
+        SceneIO.setSceneCache(cache);
+        GScene translated = SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, true);
+        assertNotNull(translated);
+        assertEquals(0, cache.getNrOfHits());
+        assertEquals(1, cache.getNrOfMisses());
+        assertEquals(1, dir.listFiles().length);
+
+        GScene cached = SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, true);
+        assertNotNull(cached);
+        assertEquals(1, cache.getNrOfHits());
+        assertEquals(1, cache.getNrOfMisses());
+        assertEquals("", translated.showDiff(cached));
+        assertEquals(translated.getSkinnedMeshes().size(), cached.getSkinnedMeshes().size());
+    }
+
+    @Test
+    public void testAdjustBindPosesIsPartOfKey()
+    {
+        SceneCache cache = new SceneCache(dir);
+        SceneIO.setSceneCache(cache);
+        SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, true);
+        SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, false);
+        assertEquals(0, cache.getNrOfHits());
+        assertEquals(2, cache.getNrOfMisses());
+        assertEquals(2, dir.listFiles().length);
+        SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, false);
+        assertEquals(1, cache.getNrOfHits());
+    }
+
+    @Test
+    public void testModifiedSource() throws IOException
+    {
+        File source = new File(dir, "avatar.dae");
+        InputStream inps = SceneCacheTest.class.getClassLoader().getResourceAsStream("dae/avatar.dae");
+        try
+        {
+            Files.copy(inps, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            inps.close();
+        }
+        assertTrue(source.setLastModified(1000000000000L));
+        String url = source.toURI().toString();
+
+        SceneCache cache = new SceneCache(new File(dir, "cache"));
+        SceneIO.setSceneCache(cache);
+        assertNotNull(SceneIO.readGScene(url, SceneIO.NONE, true));
+        assertNotNull(SceneIO.readGScene(url, SceneIO.NONE, true));
+        assertEquals(1, cache.getNrOfHits());
+
+        assertTrue(source.setLastModified(2000000000000L));
+        assertNotNull(SceneIO.readGScene(url, SceneIO.NONE, true));
+        assertEquals(1, cache.getNrOfHits());
+        assertEquals(2, cache.getNrOfMisses());
+        assertNotNull(SceneIO.readGScene(url, SceneIO.NONE, true));
+        assertEquals(2, cache.getNrOfHits());
+        for (File f : cache.getDir().listFiles()) f.delete();
+        assertTrue(cache.getDir().delete());
+    }
+
+    @Test
+    public void testDisabledCache()
+    {
+        SceneIO.setSceneCache(null);
+        assertNotNull(SceneIO.readGScene("dae", "avatar.dae", SceneIO.NONE, true));
+        assertFalse(new SceneCache(dir).getCacheFile(
+                SceneCacheTest.class.getClassLoader().getResource("dae/avatar.dae"), true).exists());
+    }
+
+    @Test
+    public void testDefaultSceneCache()
+    {
+        assertNull(SceneIO.createDefaultSceneCache(null));
+        assertNull(SceneIO.createDefaultSceneCache(""));
+        assertNull(SceneIO.createDefaultSceneCache("none"));
+        assertEquals(dir, SceneIO.createDefaultSceneCache(dir.getPath()).getDir());
+    }
+}
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.math;
+
+/**
+ * A collection of static methods for unit dual quaternions, represented by float arrays of length eight.
+ * The first four elements are the real part, a Quat4f rotation q, the last four elements are the dual part,
+ * equal to 0.5 * (0, t) * q for a translation t. Together they encode the rigid transform that
+ * first rotates by q, then translates by t. Dual quaternions cannot represent scaling.
+ */
+public final class DualQuat
+{
+
+    /* Prevent creation of DualQuat Objects. */
+    private DualQuat()
+    {
+    }
+
+    /**
+     * Length of DualQuat arrays is 8
+     */
+    public static final int DUALQUAT_SIZE = 8;
+
+    /**
+     * Offset of the real part, a Quat4f rotation
+     */
+    public static final int REAL = 0;
+
+    /**
+     * Offset of the dual part
+     */
+    public static final int DUAL = 4;
+
+    /**
+     * Returns a new float[8] array with zero components Note that this is NOT the identity dual quaternion.
+     */
+    public static float[] getDualQuat()
+    {
+        return new float[DUALQUAT_SIZE];
+    }
+
+    /**
+     * Returns a new float[8] array initialized to the identity DualQuat values: (1, 0, 0, 0, 0, 0, 0, 0)
+     */
+    public static float[] getIdentity()
+    {
+        return new float[] { 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f };
+    }
+
+    /**
+     * Returns a new DualQuat for rotation q, followed by translation t
+     */
+    public static float[] getDualQuatFromRotationTranslation(float[] q, float[] t)
+    {
+        float[] dq = new float[DUALQUAT_SIZE];
+        setFromRotationTranslation(dq, 0, q, 0, t, 0);
+        return dq;
+    }
+
+    /**
+     * Sets dq to the identity dual quaternion
+     */
+    public static void setIdentity(float[] dq, int dqIndex)
+    {
+        dq[dqIndex] = 1.0f;
+        for (int i = 1; i < DUALQUAT_SIZE; i++)
+            dq[dqIndex + i] = 0.0f;
+    }
+
+    /**
+     * Sets dq to the identity dual quaternion
+     */
+    public static void setIdentity(float[] dq)
+    {
+        setIdentity(dq, 0);
+    }
+
+    /**
+     * Copies src into dst
+     */
+    public static void set(float[] dst, int dstIndex, float[] src, int srcIndex)
+    {
+        System.arraycopy(src, srcIndex, dst, dstIndex, DUALQUAT_SIZE);
+    }
+
+    /**
+     * Copies src into dst
+     */
+    public static void set(float[] dst, float[] src)
+    {
+        System.arraycopy(src, 0, dst, 0, DUALQUAT_SIZE);
+    }
+
+    /**
+     * Sets dq to rotation q, followed by translation t. q is assumed to be a unit quaternion.
+     */
+    public static void setFromRotationTranslation(float[] dq, int dqIndex, float[] q, int qIndex, float[] t, int tIndex)
+    {
+        setFromRotationTranslation(dq, dqIndex, q[qIndex + Quat4f.S], q[qIndex + Quat4f.X], q[qIndex + Quat4f.Y], q[qIndex + Quat4f.Z],
+                t[tIndex], t[tIndex + 1], t[tIndex + 2]);
+    }
+
+    /**
+     * Sets dq to rotation q, followed by translation t. q is assumed to be a unit quaternion.
+     */
+    public static void setFromRotationTranslation(float[] dq, float[] q, float[] t)
+    {
+        setFromRotationTranslation(dq, 0, q, 0, t, 0);
+    }
+
+    /*
+     * Sets dq to rotation (qs, qx, qy, qz), followed by translation (tx, ty, tz); dual part = 0.5 * (0, t) * q
+     */
+    private static void setFromRotationTranslation(float[] dq, int dqIndex, float qs, float qx, float qy, float qz, float tx, float ty,
+            float tz)
+    {
+        dq[dqIndex] = qs;
+        dq[dqIndex + 1] = qx;
+        dq[dqIndex + 2] = qy;
+        dq[dqIndex + 3] = qz;
+        dq[dqIndex + 4] = -0.5f * (tx * qx + ty * qy + tz * qz);
+        dq[dqIndex + 5] = 0.5f * (qs * tx + ty * qz - tz * qy);
+        dq[dqIndex + 6] = 0.5f * (qs * ty + tz * qx - tx * qz);
+        dq[dqIndex + 7] = 0.5f * (qs * tz + tx * qy - ty * qx);
+    }
+
+    /**
+     * Sets dq from the rotation and translation part of a 4X4 (or 3X4) matrix m, assuming that the latter does not include scaling and/or
+     * skewing.
+     */
+    public static void setFromMat4f(float[] dq, int dqIndex, float[] m, int mIndex)
+    {
+        Quat4f.setFromMat4f(dq, dqIndex, m, mIndex);
+        setFromRotationTranslation(dq, dqIndex, dq[dqIndex], dq[dqIndex + 1], dq[dqIndex + 2], dq[dqIndex + 3], m[mIndex + Mat4f.M03],
+                m[mIndex + Mat4f.M13], m[mIndex + Mat4f.M23]);
+    }
+
+    /**
+     * Sets dq from the rotation and translation part of a 4X4 (or 3X4) matrix m, assuming that the latter does not include scaling and/or
+     * skewing.
+     */
+    public static void setFromMat4f(float[] dq, float[] m)
+    {
+        setFromMat4f(dq, 0, m, 0);
+    }
+
+    /**
+     * Sets the rotation and translation parts of the 4X4 (or 3X4) matrix m from the unit dual quaternion dq.
+     * For a 4X4 matrix, the last row is not modified.
+     */
+    public static void setMat4f(float[] m, int mIndex, float[] dq, int dqIndex)
+    {
+        Mat4f.setRotation(m, mIndex, dq, dqIndex);
+        float qs = dq[dqIndex], qx = dq[dqIndex + 1], qy = dq[dqIndex + 2], qz = dq[dqIndex + 3];
+        float ds = dq[dqIndex + 4], dx = dq[dqIndex + 5], dy = dq[dqIndex + 6], dz = dq[dqIndex + 7];
+        m[mIndex + Mat4f.M03] = 2.0f * (qs * dx - ds * qx + qy * dz - qz * dy);
+        m[mIndex + Mat4f.M13] = 2.0f * (qs * dy - ds * qy + qz * dx - qx * dz);
+        m[mIndex + Mat4f.M23] = 2.0f * (qs * dz - ds * qz + qx * dy - qy * dx);
+    }
+
+    /**
+     * Sets the rotation and translation parts of the 4X4 matrix m from the unit dual quaternion dq.
+     */
+    public static void setMat4f(float[] m, float[] dq)
+    {
+        setMat4f(m, 0, dq, 0);
+        m[Mat4f.M30] = 0.0f;
+        m[Mat4f.M31] = 0.0f;
+        m[Mat4f.M32] = 0.0f;
+        m[Mat4f.M33] = 1.0f;
+    }
+
+    /**
+     * Calculates the translation t of the unit dual quaternion dq: (0, t) = 2 * dual * conjugate(real)
+     */
+    public static void getTranslation(float[] dq, int dqIndex, float[] t, int tIndex)
+    {
+        float qs = dq[dqIndex], qx = dq[dqIndex + 1], qy = dq[dqIndex + 2], qz = dq[dqIndex + 3];
+        float ds = dq[dqIndex + 4], dx = dq[dqIndex + 5], dy = dq[dqIndex + 6], dz = dq[dqIndex + 7];
+        t[tIndex] = 2.0f * (qs * dx - ds * qx + qy * dz - qz * dy);
+        t[tIndex + 1] = 2.0f * (qs * dy - ds * qy + qz * dx - qx * dz);
+        t[tIndex + 2] = 2.0f * (qs * dz - ds * qz + qx * dy - qy * dx);
+    }
+
+    /**
+     * Calculates the translation t of the unit dual quaternion dq
+     */
+    public static void getTranslation(float[] dq, float[] t)
+    {
+        getTranslation(dq, 0, t, 0);
+    }
+
+    /**
+     * Multiplies two dual quaternions, and puts the result in c: c = a * b. For unit dual quaternions, c is the transform that
+     * first applies b, then a.
+     */
+    public static void mul(float[] c, int ci, float[] a, int ai, float[] b, int bi)
+    {
+        // dual part: a.real * b.dual + a.dual * b.real, computed before c's real part is overwritten
+        float as = a[ai], ax = a[ai + 1], ay = a[ai + 2], az = a[ai + 3];
+        float ads = a[ai + 4], adx = a[ai + 5], ady = a[ai + 6], adz = a[ai + 7];
+        float bs = b[bi], bx = b[bi + 1], by = b[bi + 2], bz = b[bi + 3];
+        float bds = b[bi + 4], bdx = b[bi + 5], bdy = b[bi + 6], bdz = b[bi + 7];
+
+        c[ci] = as * bs - ax * bx - ay * by - az * bz;
+        c[ci + 1] = as * bx + bs * ax + ay * bz - az * by;
+        c[ci + 2] = as * by + bs * ay + az * bx - ax * bz;
+        c[ci + 3] = as * bz + bs * az + ax * by - ay * bx;
+
+        c[ci + 4] = as * bds - ax * bdx - ay * bdy - az * bdz + ads * bs - adx * bx - ady * by - adz * bz;
+        c[ci + 5] = as * bdx + bds * ax + ay * bdz - az * bdy + ads * bx + bs * adx + ady * bz - adz * by;
+        c[ci + 6] = as * bdy + bds * ay + az * bdx - ax * bdz + ads * by + bs * ady + adz * bx - adx * bz;
+        c[ci + 7] = as * bdz + bds * az + ax * bdy - ay * bdx + ads * bz + bs * adz + adx * by - ady * bx;
+    }
+
+    /**
+     * Multiplies two dual quaternions, and puts the result in c: c = a * b
+     */
+    public static void mul(float[] c, float[] a, float[] b)
+    {
+        mul(c, 0, a, 0, b, 0);
+    }
+
+    /**
+     * Normalizes dq, by dividing both the real and the dual part by the length of the real part.
+     */
+    public static void normalize(float[] dq, int dqIndex)
+    {
+        float lenSq = dq[dqIndex] * dq[dqIndex] + dq[dqIndex + 1] * dq[dqIndex + 1] + dq[dqIndex + 2] * dq[dqIndex + 2] + dq[dqIndex + 3]
+                * dq[dqIndex + 3];
+        if (lenSq == 0.0f) return;
+        float factor = 1.0f / (float) Math.sqrt(lenSq);
+        for (int i = 0; i < DUALQUAT_SIZE; i++)
+            dq[dqIndex + i] *= factor;
+    }
+
+    /**
+     * Normalizes dq, by dividing both the real and the dual part by the length of the real part.
+     */
+    public static void normalize(float[] dq)
+    {
+        normalize(dq, 0);
+    }
+
+    /**
+     * Adds weight * a to dst. When the real parts of dst and a lie in opposite hemispheres, -a is added instead,
+     * so that blending takes the shortest path. Blending several unit dual quaternions this way, followed by
+     * normalize, is dual quaternion linear blending.
+     */
+    public static void blend(float[] dst, int dstIndex, float weight, float[] a, int aIndex)
+    {
+        float dot = dst[dstIndex] * a[aIndex] + dst[dstIndex + 1] * a[aIndex + 1] + dst[dstIndex + 2] * a[aIndex + 2] + dst[dstIndex + 3]
+                * a[aIndex + 3];
+        float w = (dot < 0.0f) ? -weight : weight;
+        for (int i = 0; i < DUALQUAT_SIZE; i++)
+            dst[dstIndex + i] += w * a[aIndex + i];
+    }
+
+    /**
+     * Adds weight * a to dst, taking the shortest path, see blend(float[], int, float, float[], int)
+     */
+    public static void blend(float[] dst, float weight, float[] a)
+    {
+        blend(dst, 0, weight, a, 0);
+    }
+
+    /**
+     * Transforms point src with the unit dual quaternion dq, and puts the result in dst. src and dst may be the same array.
+     */
+    public static void transformPoint(float[] dq, int dqIndex, float[] src, int srcIndex, float[] dst, int dstIndex)
+    {
+        float qs = dq[dqIndex], qx = dq[dqIndex + 1], qy = dq[dqIndex + 2], qz = dq[dqIndex + 3];
+        float ds = dq[dqIndex + 4], dx = dq[dqIndex + 5], dy = dq[dqIndex + 6], dz = dq[dqIndex + 7];
+        float px = src[srcIndex], py = src[srcIndex + 1], pz = src[srcIndex + 2];
+        // rotated p = p + 2 * qv X (qv X p + qs * p)
+        float cx = qy * pz - qz * py + qs * px;
+        float cy = qz * px - qx * pz + qs * py;
+        float cz = qx * py - qy * px + qs * pz;
+        dst[dstIndex] = px + 2.0f * (qy * cz - qz * cy) + 2.0f * (qs * dx - ds * qx + qy * dz - qz * dy);
+        dst[dstIndex + 1] = py + 2.0f * (qz * cx - qx * cz) + 2.0f * (qs * dy - ds * qy + qz * dx - qx * dz);
+        dst[dstIndex + 2] = pz + 2.0f * (qx * cy - qy * cx) + 2.0f * (qs * dz - ds * qz + qx * dy - qy * dx);
+    }
+
+    /**
+     * Transforms point p with the unit dual quaternion dq
+     */
+    public static void transformPoint(float[] dq, float[] p)
+    {
+        transformPoint(dq, 0, p, 0, p, 0);
+    }
+
+    /**
+     * Rotates vector src with the real part of the unit dual quaternion dq, and puts the result in dst. The translation is not applied.
+     */
+    public static void transformVector(float[] dq, int dqIndex, float[] src, int srcIndex, float[] dst, int dstIndex)
+    {
+        Quat4f.transformVec3f(dq, dqIndex, src, srcIndex, dst, dstIndex);
+    }
+
+    /**
+     * Rotates vector v with the real part of the unit dual quaternion dq.
+     */
+    public static void transformVector(float[] dq, float[] v)
+    {
+        Quat4f.transformVec3f(dq, 0, v, 0);
+    }
+
+    /**
+     * Tests for equality of two dual quaternions, within epsilon, componentwise.
+     * Note that dq and -dq represent the same transform, but are not epsilonEqual.
+     */
+    public static boolean epsilonEquals(float[] a, float[] b, float epsilon)
+    {
+        for (int i = 0; i < DUALQUAT_SIZE; i++)
+        {
+            float diff = a[i] - b[i];
+            if (Float.isNaN(diff)) return false;
+            if ((diff < 0 ? -diff : diff) > epsilon) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a String of the form ((s, x, y, z), (s, x, y, z)), representing the real and dual part of dq.
+     */
+    public static String toString(float[] dq)
+    {
+        return "(" + Quat4f.toString(dq, REAL) + ", " + Quat4f.toString(dq, DUAL) + ")";
+    }
+}
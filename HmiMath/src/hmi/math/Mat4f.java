@@ -882,6 +882,51 @@ public final class Mat4f
         dest[M33] = mt33;
     }
 
+    /**
+     * Multiplies Mat4f matrix a with Mat4f matrix b and stores the result in Mat4f matrix dest. The three matrices start at offsets destIndex,
+     * aIndex, and bIndex, for instance inside an array holding a sequence of matrices. dest is allowed to be aliased with a and/or b: dest = a * b
+     */
+    public static void mul(float[] dest, int destIndex, float[] a, int aIndex, float[] b, int bIndex)
+    {
+        int ai = aIndex;
+        int bi = bIndex;
+        float mt00 = a[ai + M00] * b[bi + M00] + a[ai + M01] * b[bi + M10] + a[ai + M02] * b[bi + M20] + a[ai + M03] * b[bi + M30];
+        float mt01 = a[ai + M00] * b[bi + M01] + a[ai + M01] * b[bi + M11] + a[ai + M02] * b[bi + M21] + a[ai + M03] * b[bi + M31];
+        float mt02 = a[ai + M00] * b[bi + M02] + a[ai + M01] * b[bi + M12] + a[ai + M02] * b[bi + M22] + a[ai + M03] * b[bi + M32];
+        float mt03 = a[ai + M00] * b[bi + M03] + a[ai + M01] * b[bi + M13] + a[ai + M02] * b[bi + M23] + a[ai + M03] * b[bi + M33];
+
+        float mt10 = a[ai + M10] * b[bi + M00] + a[ai + M11] * b[bi + M10] + a[ai + M12] * b[bi + M20] + a[ai + M13] * b[bi + M30];
+        float mt11 = a[ai + M10] * b[bi + M01] + a[ai + M11] * b[bi + M11] + a[ai + M12] * b[bi + M21] + a[ai + M13] * b[bi + M31];
+        float mt12 = a[ai + M10] * b[bi + M02] + a[ai + M11] * b[bi + M12] + a[ai + M12] * b[bi + M22] + a[ai + M13] * b[bi + M32];
+        float mt13 = a[ai + M10] * b[bi + M03] + a[ai + M11] * b[bi + M13] + a[ai + M12] * b[bi + M23] + a[ai + M13] * b[bi + M33];
+
+        float mt20 = a[ai + M20] * b[bi + M00] + a[ai + M21] * b[bi + M10] + a[ai + M22] * b[bi + M20] + a[ai + M23] * b[bi + M30];
+        float mt21 = a[ai + M20] * b[bi + M01] + a[ai + M21] * b[bi + M11] + a[ai + M22] * b[bi + M21] + a[ai + M23] * b[bi + M31];
+        float mt22 = a[ai + M20] * b[bi + M02] + a[ai + M21] * b[bi + M12] + a[ai + M22] * b[bi + M22] + a[ai + M23] * b[bi + M32];
+        float mt23 = a[ai + M20] * b[bi + M03] + a[ai + M21] * b[bi + M13] + a[ai + M22] * b[bi + M23] + a[ai + M23] * b[bi + M33];
+
+        float mt30 = a[ai + M30] * b[bi + M00] + a[ai + M31] * b[bi + M10] + a[ai + M32] * b[bi + M20] + a[ai + M33] * b[bi + M30];
+        float mt31 = a[ai + M30] * b[bi + M01] + a[ai + M31] * b[bi + M11] + a[ai + M32] * b[bi + M21] + a[ai + M33] * b[bi + M31];
+        float mt32 = a[ai + M30] * b[bi + M02] + a[ai + M31] * b[bi + M12] + a[ai + M32] * b[bi + M22] + a[ai + M33] * b[bi + M32];
+        float mt33 = a[ai + M30] * b[bi + M03] + a[ai + M31] * b[bi + M13] + a[ai + M32] * b[bi + M23] + a[ai + M33] * b[bi + M33];
+        dest[destIndex + M00] = mt00;
+        dest[destIndex + M01] = mt01;
+        dest[destIndex + M02] = mt02;
+        dest[destIndex + M03] = mt03;
+        dest[destIndex + M10] = mt10;
+        dest[destIndex + M11] = mt11;
+        dest[destIndex + M12] = mt12;
+        dest[destIndex + M13] = mt13;
+        dest[destIndex + M20] = mt20;
+        dest[destIndex + M21] = mt21;
+        dest[destIndex + M22] = mt22;
+        dest[destIndex + M23] = mt23;
+        dest[destIndex + M30] = mt30;
+        dest[destIndex + M31] = mt31;
+        dest[destIndex + M32] = mt32;
+        dest[destIndex + M33] = mt33;
+    }
+
     /**
      * Multiplies two Mat4f matrices, assuming that the fourth row is of the form (0, 0, 0, 1). Whether the fourth row is actually present or not is
      * not important; The Mat4f coding stores these in the last four elements of a float[16] array. This method does not read nor write these
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.math;
+
+import static hmi.testutil.math.Vec3fTestUtil.assertVec3fEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test cases for DualQuat
+ */
+public class DualQuatTest
+{
+    private static final float PRECISION = 0.00001f;
+
+    private float[] getTransform(float[] q, float[] t)
+    {
+        float[] m = Mat4f.getMat4f();
+        Mat4f.setFromTR(m, t, q);
+        return m;
+    }
+
+    @Test
+    public void testIdentity()
+    {
+        float[] dq = DualQuat.getIdentity();
+        float[] p = Vec3f.getVec3f(1, 2, 3);
+        DualQuat.transformPoint(dq, p);
+        assertVec3fEquals(1, 2, 3, p, PRECISION);
+        float[] dq2 = DualQuat.getDualQuat();
+        DualQuat.setIdentity(dq2);
+        assertArrayEquals(dq, dq2, 0);
+    }
+
+    @Test
+    public void testTransformPoint()
+    {
+        float[] q = Quat4f.getQuat4fFromAxisAngleDegrees(1, 2, 0.5f, 70);
+        float[] t = Vec3f.getVec3f(0.3f, -1f, 2f);
+        float[] dq = DualQuat.getDualQuatFromRotationTranslation(q, t);
+        float[] m = getTransform(q, t);
+
+        float[] p = Vec3f.getVec3f(1, -2, 0.5f);
+        float[] expected = Vec3f.getVec3f();
+        Mat4f.transformPoint(m, expected, p);
+        DualQuat.transformPoint(dq, p);
+        assertVec3fEquals(expected, p, PRECISION);
+
+        float[] v = Vec3f.getVec3f(1, -2, 0.5f);
+        Mat4f.transformVector(m, expected, v);
+        DualQuat.transformVector(dq, v);
+        assertVec3fEquals(expected, v, PRECISION);
+    }
+
+    @Test
+    public void testTranslation()
+    {
+        float[] q = Quat4f.getQuat4fFromAxisAngleDegrees(0, 1, 1, 120);
+        float[] t = Vec3f.getVec3f(4f, 5f, -6f);
+        float[] dq = DualQuat.getDualQuatFromRotationTranslation(q, t);
+        float[] tResult = Vec3f.getVec3f();
+        DualQuat.getTranslation(dq, tResult);
+        assertVec3fEquals(t, tResult, PRECISION);
+    }
+
+    @Test
+    public void testMat4f()
+    {
+        float[] q = Quat4f.getQuat4fFromAxisAngleDegrees(-1, 2, 3, 150);
+        float[] t = Vec3f.getVec3f(0.1f, 0.2f, 0.3f);
+        float[] m = getTransform(q, t);
+        float[] dq = DualQuat.getDualQuat();
+        DualQuat.setFromMat4f(dq, m);
+        assertTrue(DualQuat.epsilonEquals(dq, DualQuat.getDualQuatFromRotationTranslation(q, t), PRECISION)
+                || DualQuat.epsilonEquals(dq, DualQuat.getDualQuatFromRotationTranslation(new float[] { -q[0], -q[1], -q[2], -q[3] }, t),
+                        PRECISION));
+        float[] m2 = Mat4f.getMat4f();
+        DualQuat.setMat4f(m2, dq);
+        assertTrue(Mat4f.epsilonEquals(m, m2, PRECISION));
+
+        // indexed variants
+        float[] ms = new float[20];
+        Mat4f.set(ms, 4, m, 0);
+        float[] dqs = new float[11];
+        DualQuat.setFromMat4f(dqs, 3, ms, 4);
+        float[] dq3 = DualQuat.getDualQuat();
+        DualQuat.set(dq3, 0, dqs, 3);
+        assertTrue(DualQuat.epsilonEquals(dq, dq3, PRECISION));
+    }
+
+    @Test
+    public void testMul()
+    {
+        float[] q1 = Quat4f.getQuat4fFromAxisAngleDegrees(1, 0, 0, 30);
+        float[] t1 = Vec3f.getVec3f(1, 2, 3);
+        float[] q2 = Quat4f.getQuat4fFromAxisAngleDegrees(0, 1, 1, -50);
+        float[] t2 = Vec3f.getVec3f(-2, 0.5f, 1);
+        float[] m = Mat4f.getMat4f();
+        Mat4f.mul(m, getTransform(q1, t1), getTransform(q2, t2));
+
+        float[] dq = DualQuat.getDualQuat();
+        DualQuat.mul(dq, DualQuat.getDualQuatFromRotationTranslation(q1, t1), DualQuat.getDualQuatFromRotationTranslation(q2, t2));
+        float[] m2 = Mat4f.getMat4f();
+        DualQuat.setMat4f(m2, dq);
+        assertTrue(Mat4f.epsilonEquals(m, m2, PRECISION));
+
+        // in place: c = a * c
+        float[] dq2 = DualQuat.getDualQuatFromRotationTranslation(q2, t2);
+        DualQuat.mul(dq2, DualQuat.getDualQuatFromRotationTranslation(q1, t1), dq2);
+        assertTrue(DualQuat.epsilonEquals(dq, dq2, PRECISION));
+    }
+
+    @Test
+    public void testBlend()
+    {
+        float[] q = Quat4f.getQuat4fFromAxisAngleDegrees(0, 0, 1, 90);
+        float[] dq1 = DualQuat.getDualQuatFromRotationTranslation(Quat4f.getIdentity(), Vec3f.getVec3f(1, 0, 0));
+        float[] dq2 = DualQuat.getDualQuatFromRotationTranslation(q, Vec3f.getVec3f(1, 0, 0));
+        // -dq2 encodes the same transform, and should give the same blend
+        float[] dq2neg = DualQuat.getDualQuat();
+        for (int i = 0; i < DualQuat.DUALQUAT_SIZE; i++)
+            dq2neg[i] = -dq2[i];
+
+        float[] blend = DualQuat.getDualQuat();
+        DualQuat.blend(blend, 0.5f, dq1);
+        DualQuat.blend(blend, 0.5f, dq2);
+        DualQuat.normalize(blend);
+        float[] blendNeg = DualQuat.getDualQuat();
+        DualQuat.blend(blendNeg, 0.5f, dq1);
+        DualQuat.blend(blendNeg, 0.5f, dq2neg);
+        DualQuat.normalize(blendNeg);
+        assertTrue(DualQuat.epsilonEquals(blend, blendNeg, PRECISION));
+
+        // halfway: a 45 degree rotation around z, followed by translation (1,0,0)
+        float[] p = Vec3f.getVec3f(1, 0, 0);
+        DualQuat.transformPoint(blend, p);
+        float c = (float) Math.sqrt(0.5);
+        assertVec3fEquals(1 + c, c, 0, p, PRECISION);
+    }
+}
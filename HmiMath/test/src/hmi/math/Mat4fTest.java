@@ -509,6 +509,32 @@ public class Mat4fTest
         assertTrue(Mat4f.epsilonEquals(m1, m2, 0.00001f));
     }
 
+    @Test
+    public void testMulWithOffsets()
+    {
+        float[] m1 = Mat4f.getMat4f();
+        float[] m2 = Mat4f.getMat4f();
+        for (int i = 0; i < 16; i++)
+        {
+            m1[i] = i + 1;
+            m2[i] = 0.5f * i - 3f;
+        }
+        float[] expected = Mat4f.getMat4f();
+        Mat4f.mul(expected, m1, m2);
+
+        float[] buf = new float[3 * 16 + 1];
+        System.arraycopy(m1, 0, buf, 1, 16);
+        System.arraycopy(m2, 0, buf, 17, 16);
+        Mat4f.mul(buf, 33, buf, 1, buf, 17);
+        float[] result = new float[16];
+        System.arraycopy(buf, 33, result, 0, 16);
+        assertTrue(Mat4f.epsilonEquals(expected, result, 1E-6f));
+
+        Mat4f.mul(buf, 1, buf, 1, buf, 17); // aliased
+        System.arraycopy(buf, 1, result, 0, 16);
+        assertTrue(Mat4f.epsilonEquals(expected, result, 1E-6f));
+    }
+
     @Test
     public void testAffineInverse()
     {
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Middleware that can also send and receive binary data packages, next to JSON.
+ * Meant for high-rate streams (e.g. poses) for which formatting and parsing JSON text is too costly.
+ * On the wire, a binary package is distinguished from JSON by a leading BINARY_MARKER byte, which cannot start a JSON text.
+ */
+public interface BinaryMiddleware extends Middleware {
+
+	/** First byte of a binary package on the wire. */
+	public static final byte BINARY_MARKER = 0x01;
+
+	/**
+	 * Send the remaining bytes of data accross the middleware channel. 
+	 * The bytes are copied before this method returns, so the buffer can be reused by the caller.
+	 * @param data the data package, from its position to its limit
+	 */
+	public void sendBinary(ByteBuffer data);
+
+	/**
+	 * Add a listener to this middleware, which is notified via BinaryMiddlewareListener.receiveBinary() when a binary data package is received
+	 * @param bl the listener instance
+	 */
+	public void addBinaryListener(BinaryMiddlewareListener bl);
+
+}
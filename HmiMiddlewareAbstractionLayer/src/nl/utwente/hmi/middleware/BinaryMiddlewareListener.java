@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A binary middleware listener will be notified of any incoming binary data packages from a BinaryMiddleware by the receiveBinary() function
+ */
+public interface BinaryMiddlewareListener {
+
+	/**
+	 * Callback method which is called by the BinaryMiddleware when a new binary data package arrives
+	 * @param data read-only view on the received package, from its position to its limit. 
+	 * The view is only valid during the call, the middleware reuses the underlying memory afterwards.
+	 */
+	public void receiveBinary(ByteBuffer data);
+
+}
@@ -0,0 +1,492 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.utwente.hmi.middleware.BinaryMiddleware;
+import nl.utwente.hmi.middleware.BinaryMiddlewareListener;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * Implements a Middleware interface on a single TCP/IP port that serves any number of clients.
+ * Unlike the TCPIPMiddleware, each client uses one connection for both directions: messages are
+ * newline separated JSON strings (UTF-8). Everything sent with sendData is delivered to all
+ * connected clients; messages received from any client are delivered to the listeners.
+ * 
+ * All sockets are handled by one thread, using a java.nio Selector with non-blocking SocketChannels.
+ * Listeners are called from this thread, so they should not block. A client that does not keep up
+ * with the outgoing data (more than MAX_PENDING_BYTES waiting) is disconnected.
+ * 
+ * Binary packages (see BinaryMiddleware) are sent in between the lines as the BINARY_MARKER byte,
+ * a 4 byte (big endian) length and the data.
+ */
+public final class MultiClientTCPIPMiddleware implements Runnable, BinaryMiddleware
+{
+    private static Logger logger = LoggerFactory.getLogger(MultiClientTCPIPMiddleware.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Size of the (direct) socket read buffer shared by all clients */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** Initial size of the per-client buffer in which incoming lines are assembled */
+    private static final int LINE_BUFFER_SIZE = 4 * 1024;
+
+    /** A client with more outgoing bytes than this waiting is considered dead, and dropped */
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    /** Marker byte plus length */
+    private static final int BINARY_HEADER_SIZE = 5;
+
+    /** A client announcing a larger binary package is considered broken, and dropped */
+    private static final int MAX_BINARY_SIZE = 16 * 1024 * 1024;
+
+    private final int port;
+
+    private final List<MiddlewareListener> listeners = new CopyOnWriteArrayList<MiddlewareListener>();
+
+    private final List<BinaryMiddlewareListener> binaryListeners = new CopyOnWriteArrayList<BinaryMiddlewareListener>();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Selector selector;
+
+    private final ServerSocketChannel serverChannel;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    /** Encoded messages from sendData, waiting to be handed to the clients by the selector thread */
+    private final ConcurrentLinkedQueue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final List<Client> clients = new ArrayList<Client>();
+
+    private volatile int clientCount = 0;
+
+    private volatile boolean mustshutdown = false;
+
+    private final Thread selectorThread;
+
+    /** State of one connected client */
+    private static final class Client
+    {
+        final SocketChannel channel;
+
+        final String name;
+
+        /** bytes of the incoming line (or binary package) that is not complete yet */
+        byte[] line = new byte[LINE_BUFFER_SIZE];
+
+        int lineLength = 0;
+
+        /** 0 while reading a text line, -1 while reading a binary header, otherwise the total size of the binary package */
+        int frameLength = 0;
+
+        /** outgoing messages, shared between clients through read-only duplicates */
+        final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+
+        long pendingBytes = 0;
+
+        Client(SocketChannel channel)
+        {
+            this.channel = channel;
+            this.name = String.valueOf(channel.socket().getRemoteSocketAddress());
+        }
+
+        void append(ByteBuffer src, int length)
+        {
+            if (lineLength + length > line.length)
+            {
+                byte[] newLine = new byte[Math.max(line.length * 2, lineLength + length)];
+                System.arraycopy(line, 0, newLine, 0, lineLength);
+                line = newLine;
+            }
+            src.get(line, lineLength, length);
+            lineLength += length;
+        }
+    }
+
+    /**
+     * Opens the server socket on the given port and starts the selector thread.
+     * @throws IOException when the port cannot be opened
+     */
+    public MultiClientTCPIPMiddleware(int port) throws IOException
+    {
+        this.port = port;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this, "MultiClientTCPIPMiddleware:" + port);
+        selectorThread.start();
+        logger.info("Listening for clients on port {}", port);
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    /** Number of currently connected clients */
+    public int getClientCount()
+    {
+        return clientCount;
+    }
+
+    /**
+     * Instigates total shutdown. May return from this method before shutdown is completed. All
+     * client connections are closed.
+     */
+    public void shutdown()
+    {
+        mustshutdown = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void sendData(JsonNode jn)
+    {
+        sendDataRaw(jn.toString());
+    }
+
+    @Override
+    public void sendDataRaw(String data)
+    {
+        if (data == null) return;
+        byte[] bytes = data.getBytes(UTF8);
+        ByteBuffer msg = ByteBuffer.allocate(bytes.length + 1);
+        msg.put(bytes).put((byte) '\n').flip();
+        outgoing.add(msg);
+        selector.wakeup();
+    }
+
+    @Override
+    public void sendBinary(ByteBuffer data)
+    {
+        ByteBuffer msg = ByteBuffer.allocate(BINARY_HEADER_SIZE + data.remaining());
+        msg.put(BINARY_MARKER).putInt(data.remaining()).put(data.duplicate()).flip();
+        outgoing.add(msg);
+        selector.wakeup();
+    }
+
+    @Override
+    public void addListener(MiddlewareListener ml)
+    {
+        listeners.add(ml);
+    }
+
+    @Override
+    public void addBinaryListener(BinaryMiddlewareListener bl)
+    {
+        binaryListeners.add(bl);
+    }
+
+    /** The selector loop */
+    public void run()
+    {
+        while (!mustshutdown)
+        {
+            try
+            {
+                selector.select();
+            }
+            catch (IOException e)
+            {
+                logger.error("Selector failed, shutting down: {}", e.getMessage());
+                break;
+            }
+            catch (ClosedSelectorException e)
+            {
+                break;
+            }
+            distributeOutgoing();
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext())
+            {
+                SelectionKey key = it.next();
+                it.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable())
+                {
+                    accept();
+                    continue;
+                }
+                Client client = (Client) key.attachment();
+                if (key.isReadable())
+                {
+                    read(key, client);
+                }
+                if (key.isValid() && key.isWritable())
+                {
+                    write(key, client);
+                }
+            }
+        }
+        doshutdown();
+    }
+
+    private void accept()
+    {
+        SocketChannel channel;
+        try
+        {
+            channel = serverChannel.accept();
+            if (channel == null) return;
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Client client = new Client(channel);
+            channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            clientCount = clients.size();
+            logger.info("Client {} connected, {} clients", client.name, clientCount);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to accept client: {}", e.getMessage());
+        }
+    }
+
+    /** Hand the messages queued by sendData to all clients, and register interest in writing */
+    private void distributeOutgoing()
+    {
+        ByteBuffer msg;
+        while ((msg = outgoing.poll()) != null)
+        {
+            for (int i = clients.size() - 1; i >= 0; i--)
+            {
+                Client client = clients.get(i);
+                if (client.pendingBytes + msg.remaining() > MAX_PENDING_BYTES)
+                {
+                    dropClient(client, "too much data pending");
+                    continue;
+                }
+                client.pending.add(msg.asReadOnlyBuffer());
+                client.pendingBytes += msg.remaining();
+            }
+        }
+        for (Client client : clients)
+        {
+            if (!client.pending.isEmpty())
+            {
+                SelectionKey key = client.channel.keyFor(selector);
+                if (key != null && key.isValid())
+                {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+        }
+    }
+
+    private void read(SelectionKey key, Client client)
+    {
+        int n;
+        readBuffer.clear();
+        try
+        {
+            n = client.channel.read(readBuffer);
+        }
+        catch (IOException e)
+        {
+            dropClient(client, e.getMessage());
+            return;
+        }
+        if (n < 0)
+        {
+            dropClient(client, "connection closed by client");
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining())
+        {
+            if (client.frameLength == 0)
+            {
+                if (client.lineLength == 0 && readBuffer.get(readBuffer.position()) == BINARY_MARKER)
+                {
+                    client.frameLength = -1;
+                    continue;
+                }
+                int nl = readBuffer.position();
+                while (nl < readBuffer.limit() && readBuffer.get(nl) != '\n')
+                {
+                    nl++;
+                }
+                if (nl == readBuffer.limit())
+                {
+                    client.append(readBuffer, readBuffer.remaining());
+                    return;
+                }
+                client.append(readBuffer, nl - readBuffer.position());
+                readBuffer.get(); // skip newline
+                deliver(client);
+            }
+            else
+            {
+                int need = (client.frameLength < 0 ? BINARY_HEADER_SIZE : client.frameLength) - client.lineLength;
+                client.append(readBuffer, Math.min(need, readBuffer.remaining()));
+                if (client.frameLength < 0 && client.lineLength == BINARY_HEADER_SIZE)
+                {
+                    int size = ByteBuffer.wrap(client.line, 1, 4).getInt();
+                    if (size < 0 || size > MAX_BINARY_SIZE)
+                    {
+                        dropClient(client, "invalid binary package size " + size);
+                        return;
+                    }
+                    client.frameLength = BINARY_HEADER_SIZE + size;
+                }
+                if (client.lineLength == client.frameLength)
+                {
+                    deliverBinary(client);
+                }
+            }
+        }
+    }
+
+    /** Send the complete binary package in the client's line buffer to the binary listeners */
+    private void deliverBinary(Client client)
+    {
+        ByteBuffer data = ByteBuffer.wrap(client.line, BINARY_HEADER_SIZE, client.frameLength - BINARY_HEADER_SIZE).slice()
+                .asReadOnlyBuffer();
+        client.lineLength = 0;
+        client.frameLength = 0;
+        for (BinaryMiddlewareListener bl : binaryListeners)
+        {
+            try
+            {
+                bl.receiveBinary(data.duplicate());
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Binary listener failed on package from {}", client.name, e);
+            }
+        }
+    }
+
+    /** Parse the complete line in the client's line buffer and send it to the listeners */
+    private void deliver(Client client)
+    {
+        int length = client.lineLength;
+        client.lineLength = 0;
+        if (length > 0 && client.line[length - 1] == '\r') length--;
+        if (length == 0) return;
+        try
+        {
+            JsonParser parser = mapper.getFactory().createParser(client.line, 0, length);
+            JsonNode jn = mapper.readTree(parser);
+            parser.close();
+            if (jn == null) return;
+            logger.debug("Got message from {}: {}", client.name, jn);
+            for (MiddlewareListener ml : listeners)
+            {
+                try
+                {
+                    ml.receiveData(jn);
+                }
+                catch (RuntimeException e)
+                {
+                    logger.error("Listener failed on message from {}: {}", new Object[] { client.name, jn, e });
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Error while parsing JSON string \"{}\" from {}: {}",
+                    new Object[] { new String(client.line, 0, length, UTF8), client.name, e.getMessage() });
+        }
+    }
+
+    private void write(SelectionKey key, Client client)
+    {
+        try
+        {
+            while (!client.pending.isEmpty())
+            {
+                ByteBuffer buf = client.pending.peek();
+                int n = client.channel.write(buf);
+                client.pendingBytes -= n;
+                if (buf.hasRemaining())
+                {
+                    return; // socket buffer full, wait for next OP_WRITE
+                }
+                client.pending.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+        catch (IOException e)
+        {
+            dropClient(client, e.getMessage());
+        }
+    }
+
+    private void dropClient(Client client, String reason)
+    {
+        logger.info("Dropping client {}: {}", client.name, reason);
+        clients.remove(client);
+        clientCount = clients.size();
+        try
+        {
+            client.channel.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("Error closing client channel: {}", e.getMessage());
+        }
+    }
+
+    private void doshutdown()
+    {
+        logger.info("Enter shutdown...");
+        for (Client client : new ArrayList<Client>(clients))
+        {
+            dropClient(client, "server shutdown");
+        }
+        try
+        {
+            serverChannel.close();
+            selector.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Error during shutdown: {}", e.getMessage());
+        }
+        logger.info("Server shutdown finished");
+    }
+}
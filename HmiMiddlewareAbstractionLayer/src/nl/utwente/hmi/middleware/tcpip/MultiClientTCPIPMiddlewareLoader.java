@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.loader.MiddlewareLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MultiClientTCPIPMiddlewareLoader class for one-to-many communication over a single TCP/IP port.
+ * @see MultiClientTCPIPMiddleware
+ */
+public class MultiClientTCPIPMiddlewareLoader implements MiddlewareLoader {
+	private static Logger logger = LoggerFactory.getLogger(MultiClientTCPIPMiddlewareLoader.class.getName());
+
+	/**
+	 * This loads the MultiClientTCPIPMiddleware instance given the supplied properties
+	 * @param ps contains the required property port
+	 */
+	@Override
+	public Middleware loadMiddleware(Properties ps) {
+
+		Middleware m = null;
+		int port = -1;
+		
+		for(Entry<Object, Object> entry : ps.entrySet()){
+			logger.debug("propkey: {}",(String)entry.getKey());
+			logger.debug("propval: {}",(String)entry.getValue());
+			try{
+				if(((String)entry.getKey()).equals("port")){
+					port = Integer.parseInt(((String)entry.getValue()));
+				}
+			} catch(NumberFormatException nfe){
+				logger.error("Error loading the port specification. Please ensure it is numeric.");
+			}
+		}
+		
+		if(port >= 1 && port <= 65535)
+		{
+			try {
+				m = new MultiClientTCPIPMiddleware(port);
+			} catch (IOException e) {
+				logger.error("Could not open port {} for the MultiClientTCPIPMiddleware: {}", port, e.getMessage());
+			}
+		} else {
+			logger.error("Could not load the MultiClientTCPIPMiddleware, need at least property: port. Please ensure it is numeric and within acceptable range [1 .. 65535]. Can be set in the global middleware props or in the load call.");
+		}
+		
+		return m;
+	}
+
+}
@@ -19,6 +19,7 @@
 package nl.utwente.hmi.middleware.tcpip;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -31,7 +32,16 @@ import java.net.SocketTimeoutException;
 import java.nio.channels.IllegalBlockingModeException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,7 +75,10 @@ public final class TCPIPMiddleware implements Runnable, Middleware
      * =========================================================================================
      */
 
-    /** Sleeping time of the RequestRedirector if the readQueue is empty */
+    /**
+     * Maximum time the Redirector blocks on an empty readQueue before checking for shutdown. A
+     * message arriving in the queue wakes it up immediately.
+     */
     private static final long REDIRECT_WAIT_MILLI = 100;
 
     private static final int SOCKET_TIMEOUT = 5000; // wait 5 secs for client, then timeout to allow
@@ -76,6 +89,12 @@ public final class TCPIPMiddleware implements Runnable, Middleware
     // private static final int WAIT_IF_NO_BML = 100;
     private static final int WAIT_AFTER_DROPPED_CLIENT = 1000;
 
+    /** Maximum number of queued messages written to the socket before a flush */
+    private static final int MAX_SEND_BATCH = 256;
+
+    /** Size of the character buffer between the send batch and the socket */
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
     /*
      * =========================================================================================
      * EXTERNAL ACCESS: CONTROLLING THE NETWORK CONNECTION
@@ -138,10 +157,86 @@ public final class TCPIPMiddleware implements Runnable, Middleware
      */
 
     /**
-     * Incoming messages from YARP are stored here. The main networking loop will get
-     * the message and send it to the client if a connection is available.
+     * Incoming messages from YARP are stored here. The main networking loop blocks on this queue
+     * while connected, drains all pending messages at once and sends them to the client as one batch.
      */
-    private ConcurrentLinkedQueue<String> sendQueue = new ConcurrentLinkedQueue<String>();
+    private LinkedBlockingQueue<QueuedMessage> sendQueue = new LinkedBlockingQueue<QueuedMessage>();
+
+    /** A message waiting in the sendQueue, stamped with the time at which it was queued. */
+    private static final class QueuedMessage
+    {
+        final String msg;
+
+        final long queuedAt = System.nanoTime();
+
+        QueuedMessage(String msg)
+        {
+            this.msg = msg;
+        }
+    }
+
+    /*
+     * =========================================================================================
+     * SEND STATISTICS
+     * =========================================================================================
+     */
+
+    private final AtomicLong sentMessages = new AtomicLong();
+
+    private final AtomicLong sentBatches = new AtomicLong();
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    private final AtomicLong totalSendLatencyNanos = new AtomicLong();
+
+    private final AtomicLong maxSendLatencyNanos = new AtomicLong();
+
+    /** Number of messages waiting to be sent to the client */
+    public int getSendQueueDepth()
+    {
+        return sendQueue.size();
+    }
+
+    /** Number of messages written to the client since construction (or the last resetSendStatistics) */
+    public long getSentMessageCount()
+    {
+        return sentMessages.get();
+    }
+
+    /** Number of flushed batches, each containing one or more messages */
+    public long getSentBatchCount()
+    {
+        return sentBatches.get();
+    }
+
+    /** Number of messages dropped because no client was connected, or because the connection broke */
+    public long getDroppedMessageCount()
+    {
+        return droppedMessages.get();
+    }
+
+    /** Average time in milliseconds between queueing a message and flushing it to the socket */
+    public double getAverageSendLatencyMillis()
+    {
+        long n = sentMessages.get();
+        if (n == 0) return 0;
+        return totalSendLatencyNanos.get() / (n * 1000000.0);
+    }
+
+    /** Maximum time in milliseconds between queueing a message and flushing it to the socket */
+    public double getMaxSendLatencyMillis()
+    {
+        return maxSendLatencyNanos.get() / 1000000.0;
+    }
+
+    public void resetSendStatistics()
+    {
+        sentMessages.set(0);
+        sentBatches.set(0);
+        droppedMessages.set(0);
+        totalSendLatencyNanos.set(0);
+        maxSendLatencyNanos.set(0);
+    }
 
     /** Locking object for the states of the main networking loop. */
     private Object connectionLock = new Object();
@@ -254,12 +349,13 @@ public final class TCPIPMiddleware implements Runnable, Middleware
         }
         if (send)
         {
-            logger.debug("Putting feedback on queue: "+ msg);
-            sendQueue.add(msg);
+            logger.debug("Putting feedback on queue: {}", msg);
+            sendQueue.add(new QueuedMessage(msg));
         }
         else
         {
             // log failure; drop feedback
+            droppedMessages.incrementAndGet();
             logger.warn("Dropped feedback, as no client is connected!");
         }
     }
@@ -372,8 +468,8 @@ public final class TCPIPMiddleware implements Runnable, Middleware
                         {
                             String msg = readReader.readLine();
                             if(msg != null){
-                            	logger.debug("Got message: "+ msg);
-                            	readQueue.add(msg);
+                            	logger.debug("Got message: {}", msg);
+                            	readQueue.add(new ReceivedMessage(msg));
                             } else {
                             	throw new IOException("Received TCP msg was null.. socket is broken..?");
                             }
@@ -421,12 +517,17 @@ public final class TCPIPMiddleware implements Runnable, Middleware
      * =========================================================================================
      */
 
-    /** The main loop! */
+    /**
+     * The main loop! While connected it blocks on the sendQueue instead of sleeping, so a queued
+     * message wakes it up immediately; everything that is pending at that moment is sent as one batch.
+     */
     public void run()
     {
         setServerState(ServerState.WAITING);
+        List<QueuedMessage> batch = new ArrayList<QueuedMessage>(MAX_SEND_BATCH);
         while (true)
         {
+            boolean connected;
             synchronized (connectionLock)
             {
                 // if nothing to do, wait a bit before next loop run.
@@ -444,19 +545,36 @@ public final class TCPIPMiddleware implements Runnable, Middleware
                 {
                     doshutdown();
                 }
-                if (isconnected)
-                {
-                    String nextMsg = sendQueue.poll();
-                    if (nextMsg != null)
-                    {
-                        dosend(nextMsg);
-                    }
-                }
+                connected = isconnected;
             }
             if (mustshutdown) break;
             try
             {
-                Thread.sleep(nextMainLoopWait);
+                if (connected)
+                {
+                    QueuedMessage first = sendQueue.poll(nextMainLoopWait, TimeUnit.MILLISECONDS);
+                    if (first != null)
+                    {
+                        batch.add(first);
+                        sendQueue.drainTo(batch, MAX_SEND_BATCH - 1);
+                        synchronized (connectionLock)
+                        {
+                            if (isconnected)
+                            {
+                                dosend(batch);
+                            }
+                            else
+                            {
+                                droppedMessages.addAndGet(batch.size());
+                            }
+                        }
+                        batch.clear();
+                    }
+                }
+                else
+                {
+                    Thread.sleep(nextMainLoopWait);
+                }
             }
             catch (InterruptedException ex)
             {
@@ -478,6 +596,7 @@ public final class TCPIPMiddleware implements Runnable, Middleware
         logger.info("Feedback sender closed");
         mustdisconnect = false;
         isconnected = false;
+        droppedMessages.addAndGet(sendQueue.size());
         sendQueue.clear();
         nextMainLoopWait = 1;
         if (!mustshutdown) setServerState(ServerState.WAITING);
@@ -499,8 +618,11 @@ public final class TCPIPMiddleware implements Runnable, Middleware
         sendSocket = new Socket();
         try
         {
-            sendSocket.connect(sendSocketAddress, SOCKET_TIMEOUT);            
-            sendWriter = new PrintWriter(new OutputStreamWriter(sendSocket.getOutputStream(),"UTF-8"), true);
+            sendSocket.setTcpNoDelay(true);
+            sendSocket.connect(sendSocketAddress, SOCKET_TIMEOUT);
+            // no autoflush: dosend() flushes once per batch
+            sendWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(sendSocket.getOutputStream(), "UTF-8"),
+                    SEND_BUFFER_SIZE), false);
         }
         catch (SocketTimeoutException e)
         {
@@ -563,31 +685,56 @@ public final class TCPIPMiddleware implements Runnable, Middleware
         {
             ex.printStackTrace();
         }
+        if (decoderPool != null)
+        {
+            decoderPool.shutdownNow();
+        }
         logger.info("Shutdown almost done.");
         setServerState(ServerState.NOT_RUNNING);
     }
 
-    /** Send given feedbacki. If fail: drop request, drop client. */
-    private void dosend(String msg)
+    /**
+     * Send a batch of feedback messages, flushing the socket once after the last one. If fail: drop
+     * the batch, drop client.
+     */
+    private void dosend(List<QueuedMessage> batch)
     {
-        // if any next feedback, send it and set sleeptime to 1; upon error, dodisconnect
+        // upon error, dodisconnect
         try
         {
-        	logger.debug("Sending msg: {}", msg);
-            sendWriter.println(msg);
-            
-            //try to detect a broken socket
-            if(sendWriter.checkError()){
-            	throw new IOException("Error while flushing to socket");
+            for (QueuedMessage qm : batch)
+            {
+                logger.debug("Sending msg: {}", qm.msg);
+                sendWriter.println(qm.msg);
+            }
+
+            // checkError flushes; it also detects a broken socket
+            if (sendWriter.checkError())
+            {
+                throw new IOException("Error while flushing to socket");
             }
         }
         catch (Exception e)
         {
-        	logger.error("Error sending feedback; dropping client");
+            logger.error("Error sending feedback; dropping client");
+            droppedMessages.addAndGet(batch.size());
             mustdisconnect = true;
             reader.dropClient("sending channel broken");
+            return;
         }
-        nextMainLoopWait = 1;
+        long now = System.nanoTime();
+        for (QueuedMessage qm : batch)
+        {
+            long latency = now - qm.queuedAt;
+            totalSendLatencyNanos.addAndGet(latency);
+            long max = maxSendLatencyNanos.get();
+            while (latency > max && !maxSendLatencyNanos.compareAndSet(max, latency))
+            {
+                max = maxSendLatencyNanos.get();
+            }
+        }
+        sentMessages.addAndGet(batch.size());
+        sentBatches.incrementAndGet();
     }
 
     /*
@@ -603,10 +750,71 @@ public final class TCPIPMiddleware implements Runnable, Middleware
     private Thread redirectorThread = null;
 
     /**
-     * Incoming messages from the client are stored here. The redirector loop will get them and send
-     * them to the middleware interface listeners.
+     * Incoming messages from the client are stored here, in the order in which they arrived. The
+     * redirector loop blocks on this queue, and sends them to the middleware interface listeners.
      */
-    private ConcurrentLinkedQueue<String> readQueue = new ConcurrentLinkedQueue<String>();
+    private LinkedBlockingQueue<ReceivedMessage> readQueue = new LinkedBlockingQueue<ReceivedMessage>();
+
+    /** Shared between the redirector and the decoder pool; ObjectMapper is thread-safe once configured */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Optional pool that parses incoming JSON in parallel with the redirector. Null if messages are
+     * parsed on the redirector thread.
+     */
+    private ExecutorService decoderPool = null;
+
+    /**
+     * A line read from the client. If a decoderPool is used, parsing starts as soon as the line is
+     * read; the redirector still delivers the results in readQueue order, so listeners see the
+     * messages in the order in which the client sent them.
+     */
+    private final class ReceivedMessage
+    {
+        final String json;
+
+        final Future<JsonNode> decoded;
+
+        ReceivedMessage(final String json)
+        {
+            this.json = json;
+            if (decoderPool == null)
+            {
+                decoded = null;
+            }
+            else
+            {
+                decoded = decoderPool.submit(new Callable<JsonNode>()
+                {
+                    @Override
+                    public JsonNode call() throws IOException
+                    {
+                        return mapper.readTree(json);
+                    }
+                });
+            }
+        }
+
+        JsonNode decode() throws IOException, InterruptedException
+        {
+            if (decoded == null)
+            {
+                return mapper.readTree(json);
+            }
+            try
+            {
+                return decoded.get();
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException)
+                {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
 
     /** The process that reads message from the readQueue, and sends it to the listeners on the middleware. */
     private class Redirector implements Runnable
@@ -616,54 +824,54 @@ public final class TCPIPMiddleware implements Runnable, Middleware
             while (!mustshutdown) // this thread should also stop when the server shuts down, and
                                   // not before.
             {
-                String jsonString = readQueue.poll();
-                if (jsonString != null)
+                ReceivedMessage msg;
+                try
+                {
+                    msg = readQueue.poll(REDIRECT_WAIT_MILLI, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ex)
+                {
+                    // no matter -- just continue with next round :)
+                    continue;
+                }
+                if (msg == null)
+                {
+                    continue;
+                }
+                try
                 {
                     try
                     {
-                		//parse json string and create JsonObject
-                		ObjectMapper mapper = new ObjectMapper();
-                		
-                		try {
-                			JsonNode jn = mapper.readTree(jsonString);
-                			logger.debug("Transformed to json object: {}", jn.toString());
-                			
-                			if(jn != null){
-                				for(MiddlewareListener ml : listeners){
-                					ml.receiveData(jn);
-                				}
-                			}
-                		} catch (JsonProcessingException e) {
-                			logger.warn("Error while parsing JSON string \"{}\": {}", jsonString, e.getMessage());
-                			// TODO Auto-generated catch block
-                			e.printStackTrace();
-                		} catch (IOException e) {
-                			// TODO Auto-generated catch block
-                			e.printStackTrace();
-                		}
-                    	
+                        JsonNode jn = msg.decode();
+                        logger.debug("Transformed to json object: {}", jn);
+
+                        if (jn != null)
+                        {
+                            for (MiddlewareListener ml : listeners)
+                            {
+                                ml.receiveData(jn);
+                            }
+                        }
                     }
-                    catch (Exception ex)
-                    { // failing realizer means the application is down. shutdown server.
-                    	logger.error("Error sending msg to realizer -- shutting down server! {}", ex);
-                        mustshutdown = true;
-                        nextMainLoopWait = 1;
+                    catch (JsonProcessingException e)
+                    {
+                        logger.warn("Error while parsing JSON string \"{}\": {}", msg.json, e.getMessage());
                     }
-                }
-                else
-                {
-                    try
+                    catch (IOException e)
                     {
-                        // nothing to send, let's wait a bit :)
-                        Thread.sleep(REDIRECT_WAIT_MILLI);
+                        logger.warn("Error while reading JSON string \"{}\": {}", msg.json, e.getMessage());
                     }
-                    catch (InterruptedException ex)
+                    catch (InterruptedException e)
                     {
-                        Thread.interrupted();
-                        // no matter -- just continue with next round :) Maybe we were woken up
-                        // because new message is available?
+                        Thread.currentThread().interrupt();
                     }
                 }
+                catch (Exception ex)
+                { // failing realizer means the application is down. shutdown server.
+                    logger.error("Error sending msg to realizer -- shutting down server! {}", ex);
+                    mustshutdown = true;
+                    nextMainLoopWait = 1;
+                }
             }
             logger.info("Shutdown Redirection readQueue");
         }
@@ -682,11 +890,37 @@ public final class TCPIPMiddleware implements Runnable, Middleware
      * waits for new clients to connect.
      */
     public TCPIPMiddleware(int readPort, int sendPort)
+    {
+        this(readPort, sendPort, 0);
+    }
+
+    /**
+     * As TCPIPMiddleware(readPort, sendPort), but parses incoming JSON on a pool of decodeThreads
+     * worker threads. Listeners are still called from a single thread, in the order in which the
+     * messages arrived. With decodeThreads &lt;= 0 all parsing is done on the redirector thread.
+     */
+    public TCPIPMiddleware(int readPort, int sendPort, int decodeThreads)
     {
     	this.listeners = new ArrayList<MiddlewareListener>();
     	
         this.readPort = readPort;
         this.sendPort = sendPort;
+
+        if (decodeThreads > 0)
+        {
+            decoderPool = Executors.newFixedThreadPool(decodeThreads, new ThreadFactory()
+            {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "TCPIPMiddleware decoder " + (count++));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
         
         redirector = new Redirector();
         redirectorThread = new Thread(redirector);
@@ -31,7 +31,8 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 	private static Logger logger = LoggerFactory.getLogger(TCPIPMiddlewareLoader.class.getName());
 
 	/**
-	 * This loads the TCPIPMiddleware instance given the supplied properties
+	 * This loads the TCPIPMiddleware instance given the supplied properties. 
+	 * The optional property decodeThreads sets the number of threads used for parsing incoming JSON (default 0: parse on the redirector thread).
 	 */
 	@Override
 	public Middleware loadMiddleware(Properties ps) {
@@ -39,6 +40,7 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 		Middleware m = null;
 		int readPort = -1;
 		int sendPort = -1;
+		int decodeThreads = 0;
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
 			logger.debug("propkey: {}",(String)entry.getKey());
@@ -50,15 +52,18 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 				if(((String)entry.getKey()).equals("sendPort")){
 					sendPort = Integer.parseInt(((String)entry.getValue()));
 				}
+				if(((String)entry.getKey()).equals("decodeThreads")){
+					decodeThreads = Integer.parseInt(((String)entry.getValue()));
+				}
 			} catch(NumberFormatException nfe){
-				logger.error("Error loading the port specifications. Please ensure these are numeric.");
+				logger.error("Error loading the port or decodeThreads specifications. Please ensure these are numeric.");
 			}
 		}
 		
 		if(		(readPort >= 1 && readPort <= 65535) && 
 				(sendPort >= 1 && sendPort <= 65535))
 		{
-			m = new TCPIPMiddleware(readPort, sendPort);
+			m = new TCPIPMiddleware(readPort, sendPort, decodeThreads);
 		} else {
 			logger.error("Could not load the TCPIPMiddleware, need at least properties: readPort, sendPort. Please ensure these are numeric and within acceptable range [1 .. 65535]. . Can be set in the global middleware props or in the load call.");
 		}
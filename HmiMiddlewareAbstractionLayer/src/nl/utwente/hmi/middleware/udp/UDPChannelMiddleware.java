@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.utwente.hmi.middleware.BinaryMiddleware;
+import nl.utwente.hmi.middleware.BinaryMiddlewareListener;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * DatagramChannel based variant of the UDPMiddleware, for high packet rates (e.g. pose streaming).
+ * Supports the same one-to-one and one-to-many modes, heartbeats and client timeouts as the UDPMiddleware.
+ * 
+ * Instead of a listener thread plus one sender thread per client, a single thread handles the
+ * socket through a Selector. Incoming packets are parsed by Jackson directly from the (reused)
+ * receive buffer, without an intermediate copy or String; outgoing messages are UTF-8 encoded once
+ * into a reused send buffer that is then sent to every client.
+ * Listeners are called from the selector thread, so they should not block.
+ * 
+ * Binary packages (see BinaryMiddleware) are sent as a datagram that starts with the BINARY_MARKER byte.
+ */
+public class UDPChannelMiddleware implements BinaryMiddleware, Runnable {
+	private static Logger logger = LoggerFactory.getLogger(UDPChannelMiddleware.class.getName());
+
+	private static final int MAX_PACKET_SIZE = 65507; // Max UDP packet size.
+	private static final int SOCKET_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024; // absorbs bursts while a packet is parsed; the OS may use less
+	
+	private volatile boolean running; // Worker thread state
+	
+	private final int listenPort;
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final List<MiddlewareListener> mwListeners = new CopyOnWriteArrayList<MiddlewareListener>();
+	private final List<BinaryMiddlewareListener> binaryListeners = new CopyOnWriteArrayList<BinaryMiddlewareListener>();
+	private final ConcurrentLinkedQueue<Object> sendQueue = new ConcurrentLinkedQueue<Object>(); // Strings and (binary) byte[]s
+	
+	/** Remote clients, with the time of the last packet received from them */
+	private final Map<InetSocketAddress, Long> endpoints = new LinkedHashMap<InetSocketAddress, Long>();
+	private final InetSocketAddress defaultRemote; // null in multi client mode
+	private final int timeout;    // Timeout interval length before inactive clients are removed (for multi remote).
+	private final int heartbeat; // Heartbeat interval sent to remote (for single remote).
+	private long lastHeartbeatSent;
+	
+	/** Message currently in the sendBuffer, and the clients it still has to go to when the socket was full */
+	private boolean sendPending = false;
+	private final List<InetSocketAddress> sendTargets = new ArrayList<InetSocketAddress>();
+	private int nextSendTarget = 0;
+	
+	/** Only written by the selector thread */
+	private volatile long receivedPackets = 0;
+	private volatile long sentPackets = 0;
+	
+	/**
+	 * Creates a multi-client UDPChannelMiddleware using the specified local port.
+	 * All UDP clients that send data to this port will receive outgoing data.
+	 * If timeout is set to a positive value, clients from which no packets were received
+	 * since $timeout$ ms are removed from the list.
+	 * Clients can send empty ("" or "{}") messages as "heartbeat" to keep receiving updates.
+	 * @param listenPort the port to listen on incoming data
+	 * @param timeout the timeout in ms 
+	 * @throws IOException if the port cannot be opened
+	 */
+	public UDPChannelMiddleware(int listenPort, int timeout) throws IOException {
+		this(listenPort, null, timeout, -1);
+	}
+	
+	/**
+	 * Creates a single-client UDPChannelMiddleware using the specified local port & remote.
+	 * The default remote does not time out.
+	 * @param listenPort the port to listen on incoming data
+	 * @param defaultRemote the only endpoint that receives outgoing data
+	 * @param heartbeat if > 0, sends a heartbeat to defaultRemote every $heartbeat$ms.
+	 * @throws IOException if the port cannot be opened
+	 */
+	public UDPChannelMiddleware(int listenPort, InetSocketAddress defaultRemote, int heartbeat) throws IOException {
+		this(listenPort, defaultRemote, -1, heartbeat);
+	}
+	
+	private UDPChannelMiddleware(int listenPort, InetSocketAddress defaultRemote, int timeout, int heartbeat) throws IOException {
+		this.listenPort = listenPort;
+		this.defaultRemote = defaultRemote;
+		this.timeout = timeout;
+		this.heartbeat = heartbeat;
+		if (defaultRemote != null) {
+			endpoints.put(defaultRemote, Long.MAX_VALUE);
+		}
+		selector = Selector.open();
+		channel = DatagramChannel.open();
+		channel.socket().setReceiveBufferSize(SOCKET_RECEIVE_BUFFER_SIZE);
+		channel.socket().bind(new InetSocketAddress(listenPort));
+		channel.configureBlocking(false);
+		channel.register(selector, SelectionKey.OP_READ);
+		running = true;
+		new Thread(this, "UDPChannelMiddleware:" + listenPort).start();
+	}
+	
+	public void close() {
+		running = false;
+		selector.wakeup();
+	}
+	
+	/** Number of packets received since construction, including heartbeats */
+	public long getReceivedPacketCount() {
+		return receivedPackets;
+	}
+	
+	/** Number of packets sent since construction, counting one per client */
+	public long getSentPacketCount() {
+		return sentPackets;
+	}
+	
+	@Override
+	public void sendData(JsonNode jn) {
+		sendDataRaw(jn.toString());
+	}
+	
+	@Override
+	public void sendDataRaw(String data) {
+		if (data == null) return;
+		logger.debug("Sending data: {}", data);
+		sendQueue.add(data);
+		selector.wakeup();
+	}
+	
+	@Override
+	public void sendBinary(ByteBuffer data) {
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		sendQueue.add(bytes);
+		selector.wakeup();
+	}
+	
+	@Override
+	public void addListener(MiddlewareListener ml) {
+		mwListeners.add(ml);
+	}
+	
+	@Override
+	public void addBinaryListener(BinaryMiddlewareListener bl) {
+		binaryListeners.add(bl);
+	}
+	
+	public void run() {
+		while (running) {
+			try {
+				if (heartbeat > 0) {
+					selector.select(Math.max(1, lastHeartbeatSent + heartbeat - System.currentTimeMillis()));
+				} else {
+					selector.select();
+				}
+			} catch (IOException e) {
+				logger.error("Selector failed, closing: {}", e.getMessage());
+				break;
+			} catch (ClosedSelectorException e) {
+				break;
+			}
+			Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = it.next();
+				it.remove();
+				if (key.isValid() && key.isReadable()) {
+					receiveAll();
+				}
+			}
+			
+			long now = System.currentTimeMillis();
+			if (heartbeat > 0 && lastHeartbeatSent + heartbeat < now && !sendPending) {
+				lastHeartbeatSent = now;
+				logger.debug("Queueing Heartbeat!");
+				sendQueue.add("");
+			}
+			try {
+				sendAll(now);
+			} catch (IOException e) {
+				logger.error("Failed to send data: {}", e.getMessage());
+			}
+		}
+		try {
+			channel.close();
+			selector.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing: {}", e.getMessage());
+		}
+	}
+	
+	/** Read and handle all packets waiting on the channel */
+	private void receiveAll() {
+		while (true) {
+			receiveBuffer.clear();
+			SocketAddress source;
+			try {
+				source = channel.receive(receiveBuffer);
+			} catch (IOException e) {
+				logger.error("Failed to receive packet: {}", e.getMessage());
+				return;
+			}
+			if (source == null) return;
+			receivedPackets++;
+			int length = receiveBuffer.position();
+			byte[] data = receiveBuffer.array();
+			
+			if (length > 0 && data[0] == BINARY_MARKER) {
+				ByteBuffer view = ByteBuffer.wrap(data, 1, length - 1).slice().asReadOnlyBuffer();
+				for (BinaryMiddlewareListener bl : binaryListeners) {
+					try {
+						bl.receiveBinary(view.duplicate());
+					} catch (RuntimeException e) {
+						logger.error("Binary listener failed on package from {}", source, e);
+					}
+				}
+			} else if (length > 0 && !(length == 2 && data[0] == '{' && data[1] == '}')) {
+				receiveCallback(data, length);
+			} else {
+				logger.debug("Got heartbeat on port {}", listenPort);
+			}
+			
+			if (defaultRemote == null) {
+				// Add client to (or refresh it in) the list of clients that receives data.
+				if (endpoints.put((InetSocketAddress) source, System.currentTimeMillis()) == null) {
+					logger.info("Added remote client at: {}", source);
+				}
+			}
+		}
+	}
+	
+	private void receiveCallback(byte[] data, int length) {
+		try {
+			JsonParser parser = mapper.getFactory().createParser(data, 0, length);
+			JsonNode jn = mapper.readTree(parser);
+			parser.close();
+			if (jn != null) {
+				for (MiddlewareListener ml : mwListeners) {
+					try {
+						ml.receiveData(jn);
+					} catch (RuntimeException e) {
+						logger.error("Listener failed on message {}", jn, e);
+					}
+				}
+			}
+		} catch (IOException e) { // JsonProcessingException, IOException
+			logger.warn("Error while parsing JSON string \"{}\": {}", new String(data, 0, length, StandardCharsets.UTF_8), e.getMessage());
+		}
+	}
+	
+	/**
+	 * Encode queued messages into the sendBuffer one by one, and send each to all endpoints. 
+	 * If the socket buffer is full, stops and resumes at the same endpoint once the channel is writable.
+	 * An endpoint the message cannot be sent to is logged and skipped.
+	 */
+	private void sendAll(long now) throws IOException {
+		while (true) {
+			if (!sendPending) {
+				Object data = sendQueue.poll();
+				if (data == null) break;
+				if (data instanceof byte[]) {
+					byte[] bytes = (byte[]) data;
+					if (bytes.length + 1 > MAX_PACKET_SIZE) {
+						logger.warn("Dropped binary package of {} bytes, as it does not fit in one UDP packet", bytes.length);
+						continue;
+					}
+					sendBuffer.clear();
+					sendBuffer.put(BINARY_MARKER).put(bytes).flip();
+				} else if (!encode((String) data)) {
+					logger.warn("Dropped message of {} characters, as it does not fit in one UDP packet", ((String) data).length());
+					continue;
+				}
+				collectTargets(now);
+				nextSendTarget = 0;
+				sendPending = true;
+			}
+			int size = sendBuffer.limit();
+			while (nextSendTarget < sendTargets.size()) {
+				sendBuffer.rewind();
+				InetSocketAddress target = sendTargets.get(nextSendTarget);
+				try {
+					// send returns 0 both for a full socket buffer and for an (empty) heartbeat packet
+					if (channel.send(sendBuffer, target) == 0 && size > 0) {
+						channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+						return;
+					}
+					sentPackets++;
+				} catch (IOException e) {
+					logger.warn("Failed to send packet to {}: {}", target, e.getMessage());
+				} catch (UnresolvedAddressException e) {
+					logger.warn("Failed to send packet to unresolved address {}", target);
+				}
+				nextSendTarget++;
+			}
+			sendPending = false;
+		}
+		channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+	}
+	
+	/** Encode data as UTF-8 into the sendBuffer. Returns false if it does not fit. */
+	private boolean encode(String data) {
+		sendBuffer.clear();
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(data), sendBuffer, true);
+		if (result.isOverflow() || encoder.flush(sendBuffer).isOverflow()) return false;
+		sendBuffer.flip();
+		return true;
+	}
+	
+	/** Fill sendTargets with the endpoints that should receive the current message, removing timed out clients */
+	private void collectTargets(long now) {
+		sendTargets.clear();
+		Iterator<Map.Entry<InetSocketAddress, Long>> i = endpoints.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<InetSocketAddress, Long> e = i.next();
+			if (defaultRemote == null && timeout > 0 && e.getValue() + timeout < now) {
+				logger.info("Removing client {}. Timed out.", e.getKey());
+				i.remove();
+			} else {
+				sendTargets.add(e.getKey());
+			}
+		}
+	}
+}
@@ -24,6 +24,7 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -104,7 +105,8 @@ public class UDPEndpoint implements Runnable {
 	    			continue;
 	    		}
 	    		
-	    		DatagramPacket sendPacket = new DatagramPacket(data.getBytes(), data.length(), remoteClient);
+	    		byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+	    		DatagramPacket sendPacket = new DatagramPacket(bytes, bytes.length, remoteClient);
 	    		try {
 	    			UDPMiddleware.logger.debug("Sending data to endpoint {}:{} -- {}", new String[] {remoteClient.getAddress().toString(), Integer.toString(remoteClient.getPort()), data});
 	    			sendSocket.send(sendPacket);
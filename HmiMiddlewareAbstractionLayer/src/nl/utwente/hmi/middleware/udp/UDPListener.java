@@ -23,6 +23,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -72,12 +73,10 @@ public class UDPListener implements Runnable {
     			continue;
     		}
     		
-    		byte[] data = new byte[receivePacket.getLength()];
-            System.arraycopy(receivePacket.getData(), receivePacket.getOffset(), data, 0, receivePacket.getLength());
-            
             // Add message to queue.
     		listenQueue.add(new AbstractMap.SimpleEntry<InetSocketAddress, String>
-    				((InetSocketAddress) receivePacket.getSocketAddress(), new String(data)));
+    				((InetSocketAddress) receivePacket.getSocketAddress(), 
+    				 new String(receivePacket.getData(), receivePacket.getOffset(), receivePacket.getLength(), StandardCharsets.UTF_8)));
     		mw.notifyListener();
     	}
 		if (listenSocket != null) listenSocket.close();
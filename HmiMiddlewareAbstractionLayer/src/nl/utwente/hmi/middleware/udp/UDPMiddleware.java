@@ -59,6 +59,7 @@ public class UDPMiddleware implements Middleware, Runnable {
 	private int heartbeat; // Heartbeat interval sent to remote (for single remote).
 	private long lastHeartbeatSent; // ...
 	private ManualResetEvent main_MRE = new ManualResetEvent(false);
+	private final ObjectMapper mapper = new ObjectMapper();
 	
 	
 	/**
@@ -194,7 +195,6 @@ public class UDPMiddleware implements Middleware, Runnable {
 	}
 	
 	public void receiveCallback(String data) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
 			JsonNode jn = mapper.readTree(data);
 			logger.debug("Transformed to json object: {}", jn.toString());
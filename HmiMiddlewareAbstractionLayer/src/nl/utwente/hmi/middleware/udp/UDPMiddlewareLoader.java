@@ -18,6 +18,7 @@
  ******************************************************************************/
 package nl.utwente.hmi.middleware.udp;
 
+import java.io.IOException;
 import java.net.InetAddress;
 
 import java.net.InetSocketAddress;
@@ -41,7 +42,8 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 
 	/**
 	 * This loads the UDPMiddleware instance
-	 * @param ps contains the required properties remoteIP, remotePort and localPort
+	 * @param ps contains the required properties remoteIP, remotePort and localPort, 
+	 * and optionally useChannel (true: use the selector based UDPChannelMiddleware, default: false)
 	 * @see UDPMiddleware
 	 * @author jankolkmeier
 	 */
@@ -52,6 +54,7 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 		int localPort = 0;
 		int remotePort = -1;
 		int heartbeat = -1;
+		boolean useChannel = false;
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
 			logger.debug("propkey: {}",(String)entry.getKey());
@@ -70,6 +73,10 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 			if(((String)entry.getKey()).equals("heartbeat")){
 				heartbeat = Integer.parseInt((String)entry.getValue());
 			}
+
+			if(((String)entry.getKey()).equals("useChannel")){
+				useChannel = Boolean.parseBoolean((String)entry.getValue());
+			}
 		}
 		
 		if (remoteIP.equals("") || remotePort < 1) {
@@ -84,7 +91,15 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 				return null;
 			}
 			
-			m = new UDPMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+			if (useChannel) {
+				try {
+					m = new UDPChannelMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+				} catch (IOException e) {
+					logger.error("Could not open UDPChannelMiddleware on port "+localPort+": "+e.getMessage());
+				}
+			} else {
+				m = new UDPMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+			}
 		}
 		
 		return m;
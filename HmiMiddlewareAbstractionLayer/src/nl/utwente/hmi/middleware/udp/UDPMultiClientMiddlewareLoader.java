@@ -18,6 +18,7 @@
  ******************************************************************************/
 package nl.utwente.hmi.middleware.udp;
 
+import java.io.IOException;
 import java.util.Properties;
 import java.util.Map.Entry;
 
@@ -39,12 +40,14 @@ public class UDPMultiClientMiddlewareLoader implements MiddlewareLoader {
 	@Override
 	/**
 	 * This loads the UDPMiddleware instance with multiple client support
-	 *  @param ps contains the required properties port and optionally timeout (in ms, default: 10000).
+	 *  @param ps contains the required properties port and optionally timeout (in ms, default: 10000)
+	 *  and useChannel (true: use the selector based UDPChannelMiddleware, default: false).
 	 */
 	public Middleware loadMiddleware(Properties ps) {
 		Middleware m = null;
 		int listenPort = -1;
 		int timeout = 10000;
+		boolean useChannel = false;
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
 			logger.debug("propkey: {}",(String)entry.getKey());
@@ -56,12 +59,24 @@ public class UDPMultiClientMiddlewareLoader implements MiddlewareLoader {
 			if(((String)entry.getKey()).equals("timeout")){
 				timeout = Integer.parseInt((String)entry.getValue());
 			}
+
+			if(((String)entry.getKey()).equals("useChannel")){
+				useChannel = Boolean.parseBoolean((String)entry.getValue());
+			}
 		}
 		
 		if (listenPort < 1) {
 			logger.error("Could not load the UDPMiddleware, need at least properties: port. Can be set in the global middleware props or in the load call.");
 		} else {
-			m = new UDPMiddleware(listenPort, timeout);
+			if (useChannel) {
+				try {
+					m = new UDPChannelMiddleware(listenPort, timeout);
+				} catch (IOException e) {
+					logger.error("Could not open UDPChannelMiddleware on port "+listenPort+": "+e.getMessage());
+				}
+			} else {
+				m = new UDPMiddleware(listenPort, timeout);
+			}
 		}
 		
 		return m;
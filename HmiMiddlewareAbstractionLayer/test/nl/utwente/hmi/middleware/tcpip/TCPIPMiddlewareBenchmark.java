@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * Loopback benchmark for the TCPIPMiddleware. A client connects to the middleware, sends numbered
+ * JSON messages and receives them back through a listener that echoes every message with sendData.
+ * Reports the average round trip latency of single messages and the throughput of bursts.
+ * 
+ * Usage: TCPIPMiddlewareBenchmark [readPort sendPort decodeThreads messages]
+ */
+public class TCPIPMiddlewareBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int readPort = args.length > 0 ? Integer.parseInt(args[0]) : 7510;
+        int sendPort = args.length > 1 ? Integer.parseInt(args[1]) : 7511;
+        int decodeThreads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int messages = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+
+        final TCPIPMiddleware middleware = new TCPIPMiddleware(readPort, sendPort, decodeThreads);
+        middleware.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                middleware.sendData(jn);
+            }
+        });
+
+        ServerSocket feedbackServer = new ServerSocket(sendPort);
+        Socket out = null;
+        for (int i = 0; i < 50 && out == null; i++)
+        {
+            try
+            {
+                out = new Socket("localhost", readPort);
+            }
+            catch (java.io.IOException e)
+            {
+                Thread.sleep(100);
+            }
+        }
+        if (out == null)
+        {
+            System.err.println("Could not connect to the middleware on port " + readPort);
+            System.exit(1);
+        }
+        out.setTcpNoDelay(true);
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out.getOutputStream(), "UTF-8")));
+        Socket in = feedbackServer.accept();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in.getInputStream(), "UTF-8"));
+        while (!middleware.isConnectedToClient())
+        {
+            Thread.sleep(10);
+        }
+
+        // latency: one message in flight at a time
+        int pings = Math.min(messages, 2000);
+        long start = System.nanoTime();
+        for (int i = 0; i < pings; i++)
+        {
+            writer.println("{\"seq\":" + i + ",\"bml\":\"<bml id=\\\"bml" + i + "\\\"/>\"}");
+            writer.flush();
+            reader.readLine();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Round trip latency: %.3f ms average over %d messages%n", elapsed / (pings * 1000000.0), pings);
+
+        // throughput: burst of messages, reading the echoes on a separate thread
+        final int burst = messages;
+        final BufferedReader burstReader = reader;
+        Thread drain = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for (int i = 0; i < burst; i++)
+                    {
+                        burstReader.readLine();
+                    }
+                }
+                catch (java.io.IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        };
+        middleware.resetSendStatistics();
+        start = System.nanoTime();
+        drain.start();
+        for (int i = 0; i < burst; i++)
+        {
+            writer.println("{\"seq\":" + i + ",\"bml\":\"<bml id=\\\"bml" + i + "\\\"/>\"}");
+        }
+        writer.flush();
+        drain.join();
+        elapsed = System.nanoTime() - start;
+        System.out.printf("Throughput: %.0f messages/s (%d messages, %d decode threads)%n", burst / (elapsed / 1e9), burst,
+                decodeThreads);
+        System.out.printf("Send batches: %d, average queue latency %.3f ms, max %.3f ms%n", middleware.getSentBatchCount(),
+                middleware.getAverageSendLatencyMillis(), middleware.getMaxSendLatencyMillis());
+
+        writer.close();
+        in.close();
+        feedbackServer.close();
+        middleware.shutdown();
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.udp;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * Receive throughput of the UDPMiddleware and the UDPChannelMiddleware, for JSON packets of 1 kB
+ * and 16 kB. A client socket sends packets as fast as it can; the benchmark reports how many packets
+ * per second reached the middleware listener, measured between the first and the last packet that
+ * arrived. UDP drops packets the receiver cannot keep up with, so the number of received packets is
+ * reported as well.
+ * 
+ * Usage: UDPMiddlewareBenchmark [port packets]
+ */
+public class UDPMiddlewareBenchmark
+{
+    private static final AtomicLong received = new AtomicLong();
+
+    private static volatile long firstReceived;
+
+    private static volatile long lastReceived;
+
+    public static void main(String[] args) throws Exception
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7520;
+        int packets = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        MiddlewareListener counter = new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                long now = System.nanoTime();
+                if (received.getAndIncrement() == 0) firstReceived = now;
+                lastReceived = now;
+            }
+        };
+
+        // UDPMiddleware.close() does not release its port right away, so each run gets its own port
+        for (int size : new int[] { 1024, 16 * 1024 })
+        {
+            UDPMiddleware udp = new UDPMiddleware(port, -1);
+            udp.addListener(counter);
+            run("UDPMiddleware", port++, size, packets);
+            udp.close();
+
+            UDPChannelMiddleware channel = new UDPChannelMiddleware(port, -1);
+            channel.addListener(counter);
+            run("UDPChannelMiddleware", port++, size, packets);
+            channel.close();
+        }
+        System.exit(0);
+    }
+
+    private static void run(String name, int port, int size, int packets) throws Exception
+    {
+        byte[] data = createPacket(size);
+        DatagramSocket client = new DatagramSocket();
+        DatagramPacket packet = new DatagramPacket(data, data.length, new InetSocketAddress("localhost", port));
+        // warm up
+        for (int i = 0; i < packets / 10; i++)
+        {
+            client.send(packet);
+        }
+        Thread.sleep(500);
+        received.set(0);
+
+        for (int i = 0; i < packets; i++)
+        {
+            client.send(packet);
+            if (i % 64 == 0) Thread.yield();
+        }
+        long last = -1;
+        while (received.get() != last)
+        {
+            last = received.get();
+            Thread.sleep(100);
+        }
+        double seconds = (lastReceived - firstReceived) / 1e9;
+        System.out.printf("%-22s %6d byte packets: %8.0f packets/s (%d of %d received)%n", name, data.length, last / seconds, last,
+                packets);
+        client.close();
+    }
+
+    /** A JSON object with a float array, padded to the given number of bytes */
+    private static byte[] createPacket(int size)
+    {
+        StringBuilder buf = new StringBuilder("{\"pose\":[");
+        int i = 0;
+        while (buf.length() < size - 16)
+        {
+            if (i++ > 0) buf.append(',');
+            buf.append(0.123456f * i);
+        }
+        buf.append("]}");
+        while (buf.length() < size)
+        {
+            buf.insert(1, ' ');
+        }
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
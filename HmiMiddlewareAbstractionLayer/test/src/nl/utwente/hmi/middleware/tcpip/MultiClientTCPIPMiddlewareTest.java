@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.tcpip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * Loopback test for MultiClientTCPIPMiddleware
+ */
+public class MultiClientTCPIPMiddlewareTest
+{
+    private static final int TIMEOUT = 5000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final LinkedBlockingQueue<JsonNode> received = new LinkedBlockingQueue<JsonNode>();
+
+    private MultiClientTCPIPMiddleware middleware;
+
+    private Socket client1;
+
+    private Socket client2;
+
+    @Before
+    public void setup() throws IOException, InterruptedException
+    {
+        int port;
+        ServerSocket probe = new ServerSocket(0);
+        try
+        {
+            port = probe.getLocalPort();
+        }
+        finally
+        {
+            probe.close();
+        }
+        middleware = new MultiClientTCPIPMiddleware(port);
+        middleware.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                received.add(jn);
+            }
+        });
+        client1 = connect(port);
+        client2 = connect(port);
+        waitForClientCount(2);
+    }
+
+    @After
+    public void cleanup() throws IOException
+    {
+        client1.close();
+        client2.close();
+        middleware.shutdown();
+    }
+
+    private Socket connect(int port) throws IOException
+    {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(TIMEOUT);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private void waitForClientCount(int count) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (middleware.getClientCount() != count && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(count, middleware.getClientCount());
+    }
+
+    private JsonNode readLine(Socket socket) throws IOException
+    {
+        // read byte by byte, so nothing is buffered beyond the line
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = socket.getInputStream().read()) != '\n')
+        {
+            assertTrue("connection closed before end of line", c >= 0);
+            line.append((char) c);
+        }
+        return mapper.readTree(line.toString());
+    }
+
+    @Test
+    public void testMessageSplitAcrossWrites() throws IOException, InterruptedException
+    {
+        OutputStream out = client1.getOutputStream();
+        out.write("{\"id\":1,\"text\":\"sp".getBytes("UTF-8"));
+        out.flush();
+        Thread.sleep(50);
+        out.write("lit\"}\n{\"id\":".getBytes("UTF-8"));
+        out.flush();
+        Thread.sleep(50);
+        out.write("2}\n".getBytes("UTF-8"));
+        out.flush();
+
+        JsonNode first = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+        assertEquals(1, first.get("id").asInt());
+        assertEquals("split", first.get("text").asText());
+        JsonNode second = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(second);
+        assertEquals(2, second.get("id").asInt());
+    }
+
+    @Test
+    public void testBroadcast() throws IOException
+    {
+        middleware.sendDataRaw("{\"broadcast\":true}");
+        assertEquals(mapper.readTree("{\"broadcast\":true}"), readLine(client1));
+        assertEquals(mapper.readTree("{\"broadcast\":true}"), readLine(client2));
+    }
+
+    @Test
+    public void testDisconnect() throws IOException, InterruptedException
+    {
+        client2.close();
+        waitForClientCount(1);
+        middleware.sendDataRaw("{\"after\":\"disconnect\"}");
+        assertEquals(mapper.readTree("{\"after\":\"disconnect\"}"), readLine(client1));
+
+        client1.getOutputStream().write("{\"still\":\"connected\"}\n".getBytes("UTF-8"));
+        client1.getOutputStream().flush();
+        JsonNode jn = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(jn);
+        assertEquals("connected", jn.get("still").asText());
+    }
+
+    @Test
+    public void testFailingListener() throws IOException, InterruptedException
+    {
+        middleware.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                throw new IllegalStateException("failing listener");
+            }
+        });
+        OutputStream out = client1.getOutputStream();
+        out.write("{\"id\":1}\n".getBytes("UTF-8"));
+        out.flush();
+        JsonNode first = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+        assertEquals(1, first.get("id").asInt());
+
+        // the selector thread still serves both clients
+        client2.getOutputStream().write("{\"id\":2}\n".getBytes("UTF-8"));
+        client2.getOutputStream().flush();
+        JsonNode second = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(second);
+        assertEquals(2, second.get("id").asInt());
+        middleware.sendDataRaw("{\"still\":\"running\"}");
+        assertEquals(mapper.readTree("{\"still\":\"running\"}"), readLine(client1));
+    }
+}
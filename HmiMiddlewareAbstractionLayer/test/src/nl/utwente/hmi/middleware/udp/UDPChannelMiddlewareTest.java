@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package nl.utwente.hmi.middleware.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+/**
+ * Loopback test for UDPChannelMiddleware
+ */
+public class UDPChannelMiddlewareTest
+{
+    private static final int TIMEOUT = 5000;
+
+    private final LinkedBlockingQueue<JsonNode> received = new LinkedBlockingQueue<JsonNode>();
+
+    private UDPChannelMiddleware middleware;
+
+    private DatagramSocket client;
+
+    private int port;
+
+    @Before
+    public void setup() throws IOException
+    {
+        DatagramSocket probe = new DatagramSocket(0);
+        try
+        {
+            port = probe.getLocalPort();
+        }
+        finally
+        {
+            probe.close();
+        }
+        client = new DatagramSocket();
+        client.setSoTimeout(TIMEOUT);
+    }
+
+    @After
+    public void cleanup()
+    {
+        client.close();
+        if (middleware != null)
+        {
+            middleware.close();
+        }
+    }
+
+    private void addListener()
+    {
+        middleware.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                received.add(jn);
+            }
+        });
+    }
+
+    private void send(String message) throws IOException
+    {
+        byte[] data = message.getBytes("UTF-8");
+        client.send(new DatagramPacket(data, data.length, InetAddress.getLoopbackAddress(), port));
+    }
+
+    private JsonNode receive() throws InterruptedException
+    {
+        JsonNode jn = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(jn);
+        return jn;
+    }
+
+    @Test
+    public void testFailingListener() throws IOException, InterruptedException
+    {
+        middleware = new UDPChannelMiddleware(port, 0);
+        addListener();
+        middleware.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                throw new IllegalStateException("failing listener");
+            }
+        });
+        send("{\"id\":1}");
+        assertEquals(1, receive().get("id").asInt());
+        send("{\"id\":2}");
+        assertEquals(2, receive().get("id").asInt());
+        assertEquals(2, middleware.getReceivedPacketCount());
+    }
+
+    @Test
+    public void testUnresolvedRemote() throws IOException, InterruptedException
+    {
+        middleware = new UDPChannelMiddleware(port, InetSocketAddress.createUnresolved("unresolved.invalid", 1), 0);
+        addListener();
+        middleware.sendDataRaw("{\"dropped\":1}");
+        middleware.sendDataRaw("{\"dropped\":2}");
+        send("{\"id\":1}");
+        assertEquals(1, receive().get("id").asInt());
+        // handled after the selector thread tried to send the queued messages
+        send("{\"id\":2}");
+        assertEquals(2, receive().get("id").asInt());
+        assertEquals(0, middleware.getSentPacketCount());
+    }
+}
@@ -67,10 +67,14 @@ public class BinUtil  {
    /**
     * Writes the length of the int array &quot;data&quot; followed by its elements
     * to dataOut. A null array is allowed, and writes only a length value equal to -1
+    * For a ByteBufferDataOutput, the elements are written as an aligned block.
     */
    public static void writeIntArray(DataOutput dataOut, int[] data) throws IOException {
       if (data == null) {
           dataOut.writeInt(-1);
+      } else if (dataOut instanceof ByteBufferDataOutput) {
+          dataOut.writeInt(data.length); 
+          ((ByteBufferDataOutput) dataOut).writeInts(data);
       } else {
           dataOut.writeInt(data.length); 
           for (int i=0; i< data.length; i++) dataOut.writeInt(data[i]); 
@@ -85,7 +89,10 @@ public class BinUtil  {
    public static int[] readIntArray(DataInput dataIn) throws IOException  {
       int[] data = null;
       int size = dataIn.readInt();
-      if (size >= 0) {
+      if (size >= 0 && dataIn instanceof ByteBufferDataInput) {
+         data = new int[size];
+         ((ByteBufferDataInput) dataIn).readInts(data);
+      } else if (size >= 0) {
          data = new int[size];
          for (int i=0; i<size; i++) data[i] = dataIn.readInt();
       }
@@ -96,10 +103,14 @@ public class BinUtil  {
     /**
     * Writes the length of the float array &quot;data&quot; followed by its elements
     * to dataOut. A null array is allowed, and writes only a length value equal to -1
+    * For a ByteBufferDataOutput, the elements are written as an aligned block.
     */
    public static void writeFloatArray(DataOutput dataOut, float[] data) throws IOException {
       if (data == null) {
           dataOut.writeInt(-1);
+      } else if (dataOut instanceof ByteBufferDataOutput) {
+          dataOut.writeInt(data.length); 
+          ((ByteBufferDataOutput) dataOut).writeFloats(data);
       } else {
           dataOut.writeInt(data.length); 
           for (int i=0; i< data.length; i++) dataOut.writeFloat(data[i]); 
@@ -114,7 +125,10 @@ public class BinUtil  {
    public static float[] readFloatArray(DataInput dataIn) throws IOException  {
       float[] data = null;
       int size = dataIn.readInt();
-      if (size >= 0) {
+      if (size >= 0 && dataIn instanceof ByteBufferDataInput) {
+         data = new float[size];
+         ((ByteBufferDataInput) dataIn).readFloats(data);
+      } else if (size >= 0) {
          data = new float[size];
          for (int i=0; i<size; i++) data[i] = dataIn.readFloat();
       }
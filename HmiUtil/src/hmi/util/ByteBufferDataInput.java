@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.util;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DataInput that reads from a ByteBuffer, typically a MappedByteBuffer, using the byte order of that buffer.
+ * Besides the DataInput methods, it reads int and float arrays in bulk; BinUtil uses these for
+ * int and float arrays written by a ByteBufferDataOutput. Such arrays start at a 4 byte aligned position,
+ * relative to the start of the buffer.
+ */
+public class ByteBufferDataInput implements DataInput {
+
+   private final ByteBuffer buf;
+
+   /**
+    * Creates a ByteBufferDataInput that reads from the current position of buf.
+    */
+   public ByteBufferDataInput(ByteBuffer buf) {
+      this.buf = buf;
+   }
+
+   /**
+    * Returns the underlying buffer.
+    */
+   public ByteBuffer getBuffer() {
+      return buf;
+   }
+
+   /**
+    * Skips bytes until the position is a multiple of alignment.
+    */
+   public void align(int alignment) throws IOException {
+      int rem = buf.position() % alignment;
+      if (rem != 0) skipBytes(alignment - rem);
+   }
+
+   /**
+    * Reads data.length ints in bulk, after aligning to 4 bytes.
+    */
+   public void readInts(int[] data) throws IOException {
+      align(4);
+      require(4L * data.length);
+      buf.asIntBuffer().get(data);
+      buf.position(buf.position() + 4 * data.length);
+   }
+
+   /**
+    * Reads data.length floats in bulk, after aligning to 4 bytes.
+    */
+   public void readFloats(float[] data) throws IOException {
+      align(4);
+      require(4L * data.length);
+      buf.asFloatBuffer().get(data);
+      buf.position(buf.position() + 4 * data.length);
+   }
+
+   private void require(long n) throws EOFException {
+      if (buf.remaining() < n) throw new EOFException("ByteBufferDataInput: " + n + " bytes required, " + buf.remaining() + " remaining");
+   }
+
+   @Override
+   public void readFully(byte[] b) throws IOException {
+      readFully(b, 0, b.length);
+   }
+
+   @Override
+   public void readFully(byte[] b, int off, int len) throws IOException {
+      require(len);
+      buf.get(b, off, len);
+   }
+
+   @Override
+   public int skipBytes(int n) throws IOException {
+      int skip = Math.min(Math.max(n, 0), buf.remaining());
+      buf.position(buf.position() + skip);
+      return skip;
+   }
+
+   @Override
+   public boolean readBoolean() throws IOException {
+      return readByte() != 0;
+   }
+
+   @Override
+   public byte readByte() throws IOException {
+      try {
+         return buf.get();
+      } catch (BufferUnderflowException e) {
+         throw new EOFException("ByteBufferDataInput: end of buffer");
+      }
+   }
+
+   @Override
+   public int readUnsignedByte() throws IOException {
+      return readByte() & 0xFF;
+   }
+
+   @Override
+   public short readShort() throws IOException {
+      require(2);
+      return buf.getShort();
+   }
+
+   @Override
+   public int readUnsignedShort() throws IOException {
+      return readShort() & 0xFFFF;
+   }
+
+   @Override
+   public char readChar() throws IOException {
+      require(2);
+      return buf.getChar();
+   }
+
+   @Override
+   public int readInt() throws IOException {
+      require(4);
+      return buf.getInt();
+   }
+
+   @Override
+   public long readLong() throws IOException {
+      require(8);
+      return buf.getLong();
+   }
+
+   @Override
+   public float readFloat() throws IOException {
+      require(4);
+      return buf.getFloat();
+   }
+
+   @Override
+   public double readDouble() throws IOException {
+      require(8);
+      return buf.getDouble();
+   }
+
+   /**
+    * Reads bytes up to the next newline, carriage return, or carriage return newline pair,
+    * converting each byte into a char, as specified for DataInput.
+    */
+   @Override
+   public String readLine() throws IOException {
+      if (!buf.hasRemaining()) return null;
+      StringBuilder line = new StringBuilder();
+      while (buf.hasRemaining()) {
+         char c = (char) (buf.get() & 0xFF);
+         if (c == '\n') break;
+         if (c == '\r') {
+            if (buf.hasRemaining() && buf.get(buf.position()) == '\n') buf.get();
+            break;
+         }
+         line.append(c);
+      }
+      return line.toString();
+   }
+
+   @Override
+   public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+   }
+
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A DataOutput that writes into a growing ByteBuffer, with a specified byte order.
+ * Besides the DataOutput methods, it writes int and float arrays in bulk, at 4 byte aligned positions;
+ * see ByteBufferDataInput.
+ */
+public class ByteBufferDataOutput implements DataOutput {
+
+   private ByteBuffer buf;
+
+   /**
+    * Creates a ByteBufferDataOutput with the specified byte order and initial capacity.
+    */
+   public ByteBufferDataOutput(ByteOrder order, int initialCapacity) {
+      buf = ByteBuffer.allocate(Math.max(initialCapacity, 16)).order(order);
+   }
+
+   /**
+    * Creates a ByteBufferDataOutput with native byte order, so that bulk reads by a ByteBufferDataInput
+    * reduce to a memory copy.
+    */
+   public ByteBufferDataOutput() {
+      this(ByteOrder.nativeOrder(), 1 << 16);
+   }
+
+   /**
+    * The byte order.
+    */
+   public ByteOrder order() {
+      return buf.order();
+   }
+
+   /**
+    * The number of bytes written so far.
+    */
+   public int size() {
+      return buf.position();
+   }
+
+   /**
+    * Returns a read-only buffer with the bytes written so far.
+    */
+   public ByteBuffer getBuffer() {
+      ByteBuffer result = buf.duplicate();
+      result.flip();
+      return result.asReadOnlyBuffer().order(buf.order());
+   }
+
+   /**
+    * Writes all bytes written so far to the specified channel.
+    */
+   public void writeTo(WritableByteChannel channel) throws IOException {
+      ByteBuffer data = getBuffer();
+      while (data.hasRemaining()) channel.write(data);
+   }
+
+   private void ensure(int n) {
+      if (buf.remaining() >= n) return;
+      long capacity = Math.max(2L * buf.capacity(), (long) buf.position() + n);
+      if (capacity > Integer.MAX_VALUE) throw new IllegalStateException("ByteBufferDataOutput: more than 2GB");
+      ByteBuffer grown = ByteBuffer.allocate((int) capacity).order(buf.order());
+      buf.flip();
+      grown.put(buf);
+      buf = grown;
+   }
+
+   /**
+    * Writes zero bytes until the position is a multiple of alignment.
+    */
+   public void align(int alignment) {
+      int rem = buf.position() % alignment;
+      if (rem != 0) {
+         ensure(alignment - rem);
+         for (int i = rem; i < alignment; i++) buf.put((byte) 0);
+      }
+   }
+
+   /**
+    * Writes the ints in bulk, after aligning to 4 bytes.
+    */
+   public void writeInts(int[] data) {
+      align(4);
+      ensure(4 * data.length);
+      buf.asIntBuffer().put(data);
+      buf.position(buf.position() + 4 * data.length);
+   }
+
+   /**
+    * Writes the floats in bulk, after aligning to 4 bytes.
+    */
+   public void writeFloats(float[] data) {
+      align(4);
+      ensure(4 * data.length);
+      buf.asFloatBuffer().put(data);
+      buf.position(buf.position() + 4 * data.length);
+   }
+
+   @Override
+   public void write(int b) {
+      ensure(1);
+      buf.put((byte) b);
+   }
+
+   @Override
+   public void write(byte[] b) {
+      write(b, 0, b.length);
+   }
+
+   @Override
+   public void write(byte[] b, int off, int len) {
+      ensure(len);
+      buf.put(b, off, len);
+   }
+
+   @Override
+   public void writeBoolean(boolean v) {
+      write(v ? 1 : 0);
+   }
+
+   @Override
+   public void writeByte(int v) {
+      write(v);
+   }
+
+   @Override
+   public void writeShort(int v) {
+      ensure(2);
+      buf.putShort((short) v);
+   }
+
+   @Override
+   public void writeChar(int v) {
+      ensure(2);
+      buf.putChar((char) v);
+   }
+
+   @Override
+   public void writeInt(int v) {
+      ensure(4);
+      buf.putInt(v);
+   }
+
+   @Override
+   public void writeLong(long v) {
+      ensure(8);
+      buf.putLong(v);
+   }
+
+   @Override
+   public void writeFloat(float v) {
+      ensure(4);
+      buf.putFloat(v);
+   }
+
+   @Override
+   public void writeDouble(double v) {
+      ensure(8);
+      buf.putDouble(v);
+   }
+
+   @Override
+   public void writeBytes(String s) {
+      ensure(s.length());
+      for (int i = 0; i < s.length(); i++) buf.put((byte) s.charAt(i));
+   }
+
+   @Override
+   public void writeChars(String s) {
+      for (int i = 0; i < s.length(); i++) writeChar(s.charAt(i));
+   }
+
+   /**
+    * Writes s in modified UTF-8, preceded by its length in bytes as an unsigned short, as specified for DataOutput.
+    */
+   @Override
+   public void writeUTF(String s) throws IOException {
+      int utfLength = 0;
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         utfLength += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF) ? 2 : 3;
+      }
+      if (utfLength > 0xFFFF) throw new UTFDataFormatException("ByteBufferDataOutput: encoded string too long: " + utfLength + " bytes");
+      ensure(2 + utfLength);
+      buf.putShort((short) utfLength);
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         if (c >= 0x0001 && c <= 0x007F) {
+            buf.put((byte) c);
+         } else if (c <= 0x07FF) {
+            buf.put((byte) (0xC0 | (c >> 6)));
+            buf.put((byte) (0x80 | (c & 0x3F)));
+         } else {
+            buf.put((byte) (0xE0 | (c >> 12)));
+            buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buf.put((byte) (0x80 | (c & 0x3F)));
+         }
+      }
+   }
+
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for ByteBufferDataInput and ByteBufferDataOutput
+ */
+public class ByteBufferDataInputTest
+{
+    private static final String TEXT = "vertex é€\u0000";
+
+    private void writeScalars(ByteBufferDataOutput out) throws IOException
+    {
+        out.writeBoolean(true);
+        out.writeByte(-3);
+        out.writeShort(-1234);
+        out.writeChar('x');
+        out.writeInt(123456789);
+        out.writeLong(-1234567890123L);
+        out.writeFloat(1.5f);
+        out.writeDouble(-2.25);
+        out.writeUTF(TEXT);
+    }
+
+    private void checkScalars(ByteBufferDataInput in) throws IOException
+    {
+        assertTrue(in.readBoolean());
+        assertEquals(-3, in.readByte());
+        assertEquals(-1234, in.readShort());
+        assertEquals('x', in.readChar());
+        assertEquals(123456789, in.readInt());
+        assertEquals(-1234567890123L, in.readLong());
+        assertEquals(1.5f, in.readFloat(), 0f);
+        assertEquals(-2.25, in.readDouble(), 0);
+        assertEquals(TEXT, in.readUTF());
+    }
+
+    @Test
+    public void testScalars() throws IOException
+    {
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN })
+        {
+            ByteBufferDataOutput out = new ByteBufferDataOutput(order, 4); // forces growing
+            writeScalars(out);
+            checkScalars(new ByteBufferDataInput(out.getBuffer()));
+        }
+    }
+
+    @Test
+    public void testBigEndianEqualsDataOutputStream() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(bytes);
+        dataOut.writeBoolean(true);
+        dataOut.writeByte(-3);
+        dataOut.writeShort(-1234);
+        dataOut.writeChar('x');
+        dataOut.writeInt(123456789);
+        dataOut.writeLong(-1234567890123L);
+        dataOut.writeFloat(1.5f);
+        dataOut.writeDouble(-2.25);
+        dataOut.writeUTF(TEXT);
+        dataOut.close();
+
+        ByteBufferDataOutput out = new ByteBufferDataOutput(ByteOrder.BIG_ENDIAN, 16);
+        writeScalars(out);
+        ByteBuffer buf = out.getBuffer();
+        byte[] written = new byte[buf.remaining()];
+        buf.get(written);
+        assertArrayEquals(bytes.toByteArray(), written);
+        checkScalars(new ByteBufferDataInput(ByteBuffer.wrap(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testBulkArrays() throws IOException
+    {
+        float[] floats = new float[1001];
+        int[] ints = new int[333];
+        for (int i = 0; i < floats.length; i++) floats[i] = i * 0.25f - 7f;
+        for (int i = 0; i < ints.length; i++) ints[i] = i * 31 - 1000;
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN })
+        {
+            ByteBufferDataOutput out = new ByteBufferDataOutput(order, 16);
+            out.writeByte(1); // misaligns the arrays
+            BinUtil.writeFloatArray(out, floats);
+            out.writeUTF("abc");
+            BinUtil.writeIntArray(out, ints);
+            BinUtil.writeFloatArray(out, null);
+            BinUtil.writeIntArray(out, new int[0]);
+            ByteBufferDataInput in = new ByteBufferDataInput(out.getBuffer());
+            assertEquals(1, in.readByte());
+            assertArrayEquals(floats, BinUtil.readFloatArray(in), 0f);
+            assertEquals("abc", in.readUTF());
+            assertArrayEquals(ints, BinUtil.readIntArray(in));
+            assertNull(BinUtil.readFloatArray(in));
+            assertEquals(0, BinUtil.readIntArray(in).length);
+            assertEquals(0, in.getBuffer().remaining());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testEndOfBuffer() throws IOException
+    {
+        ByteBufferDataOutput out = new ByteBufferDataOutput(ByteOrder.BIG_ENDIAN, 16);
+        out.writeShort(1);
+        new ByteBufferDataInput(out.getBuffer()).readInt();
+    }
+}
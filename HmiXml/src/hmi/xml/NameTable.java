@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.xml;
+
+/**
+ * A small symbol table that maps char sequences, like the tag and attribute names in an XMLTokenizer input window,
+ * to Strings, without creating a new String for every occurrence. The table uses open addressing with linear probing,
+ * and the same hash function as String.hashCode(). Strings are interned when they are first added, so names obtained
+ * from a NameTable can be compared by means of ==, like interned Strings. The table is cleared when it holds more than
+ * MAXSIZE names, so input with many distinct names does not make it grow without bounds.
+ * 
+ * A NameTable is not thread safe; XMLTokenizer uses one per tokenizer.
+ */
+final class NameTable
+{
+    static final int MAXSIZE = 4096;
+    private static final int INITIALCAPACITY = 64; // power of two
+
+    private String[] names;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Creates an empty NameTable
+     */
+    NameTable()
+    {
+        clear();
+    }
+
+    /**
+     * Removes all names.
+     */
+    void clear()
+    {
+        names = new String[INITIALCAPACITY];
+        hashes = new int[INITIALCAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns the number of names in the table.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the (interned) String for chars[offset] .. chars[offset+len-1], adding it to the table if necessary.
+     */
+    String get(char[] chars, int offset, int len)
+    {
+        int hash = 0;
+        for (int i = offset; i < offset + len; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = names.length - 1;
+        int index = mix(hash) & mask;
+        String name;
+        while ((name = names[index]) != null)
+        {
+            if (hashes[index] == hash && matches(name, chars, offset, len))
+            {
+                return name;
+            }
+            index = (index + 1) & mask;
+        }
+        name = new String(chars, offset, len).intern();
+        if (size >= MAXSIZE)
+        {
+            clear();
+        }
+        else if (2 * (size + 1) > names.length)
+        {
+            rehash();
+        }
+        insert(name, hash);
+        size++;
+        return name;
+    }
+
+    /* spreads the String hash, since names often differ only in their last characters */
+    private static int mix(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, char[] chars, int offset, int len)
+    {
+        if (name.length() != len)
+            return false;
+        for (int i = 0; i < len; i++)
+        {
+            if (name.charAt(i) != chars[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /* inserts a name that is known to be absent */
+    private void insert(String name, int hash)
+    {
+        int mask = names.length - 1;
+        int index = mix(hash) & mask;
+        while (names[index] != null)
+        {
+            index = (index + 1) & mask;
+        }
+        names[index] = name;
+        hashes[index] = hash;
+    }
+
+    private void rehash()
+    {
+        String[] oldNames = names;
+        int[] oldHashes = hashes;
+        names = new String[2 * oldNames.length];
+        hashes = new int[2 * oldNames.length];
+        for (int i = 0; i < oldNames.length; i++)
+        {
+            if (oldNames[i] != null)
+            {
+                insert(oldNames[i], oldHashes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.xml;
+
+/**
+ * Scans numbers (ints, floats, doubles) directly from a char array, without creating a String per
+ * token like StringTokenizer plus Float.parseFloat does. Tokens are separated by white space
+ * (any character &lt;= ' '), or by a specified set of delimiter characters.
+ * 
+ * Numbers with at most 15 significant digits and a decimal exponent within [-22, 22] are converted
+ * exactly by a single double multiplication or division, which covers the output of Float.toString
+ * and Double.toString for normal animation and mesh data. Other tokens (long mantissas, large
+ * exponents, NaN, Infinity) fall back to Double.parseDouble. Floats are obtained by rounding the
+ * double value, or by Float.parseFloat in the rare case that the double lies exactly halfway between two
+ * floats, so they equal the result of Float.parseFloat.
+ * 
+ * A NumberScanner is not thread safe, but cheap to create; use one per thread.
+ */
+public final class NumberScanner
+{
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+            1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private char[] chars;
+
+    private int pos;
+
+    private int end;
+
+    private String delimiters = null; // null: white space
+
+    /**
+     * Creates a scanner for chars[start] .. chars[end-1]
+     */
+    public NumberScanner(char[] chars, int start, int end)
+    {
+        reset(chars, start, end);
+    }
+
+    /**
+     * Creates a scanner for the characters of a String. (This copies the characters once)
+     */
+    public NumberScanner(String s)
+    {
+        this(s.toCharArray(), 0, s.length());
+    }
+
+    /**
+     * Continues scanning in chars[start] .. chars[end-1]
+     */
+    public void reset(char[] chars, int start, int end)
+    {
+        this.chars = chars;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * Sets the characters that separate tokens, for instance XMLStructureAdapter.COMMA_SEPARATOR.
+     * null (the default) means: white space.
+     */
+    public void setDelimiters(String delimiters)
+    {
+        this.delimiters = delimiters;
+    }
+
+    /**
+     * The index of the next character to scan
+     */
+    public int getPosition()
+    {
+        return pos;
+    }
+
+    private boolean isDelimiter(char c)
+    {
+        return (delimiters == null) ? c <= ' ' : delimiters.indexOf(c) >= 0;
+    }
+
+    /**
+     * Skips delimiters, and returns true iff there is another token.
+     */
+    public boolean hasNext()
+    {
+        while (pos < end && isDelimiter(chars[pos]))
+        {
+            pos++;
+        }
+        return pos < end;
+    }
+
+    /**
+     * Counts the remaining tokens, without consuming them
+     */
+    public int countTokens()
+    {
+        int count = 0;
+        boolean inToken = false;
+        for (int i = pos; i < end; i++)
+        {
+            boolean delim = isDelimiter(chars[i]);
+            if (!delim && !inToken) count++;
+            inToken = !delim;
+        }
+        return count;
+    }
+
+    private int tokenEnd(int from)
+    {
+        int i = from;
+        while (i < end && !isDelimiter(chars[i]))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Scans the next token as a float
+     * @throws NumberFormatException if the next token is not a number, or if there is no next token
+     */
+    public float nextFloat()
+    {
+        if (!hasNext()) throw new NumberFormatException("No more tokens");
+        int start = pos;
+        double value = nextDouble();
+        float f = (float) value;
+        if (f != value && !Double.isNaN(value))
+        {
+            // rounding the double again is only wrong if it lies exactly halfway between two floats,
+            // or halfway between Float.MAX_VALUE and the next power of two
+            float neighbour = Math.nextAfter(f, value);
+            if (Float.isInfinite(f) || ((double) f + (double) neighbour) * 0.5 == value)
+            {
+                return Float.parseFloat(new String(chars, start, pos - start));
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Scans the next token as a double
+     * @throws NumberFormatException if the next token is not a number, or if there is no next token
+     */
+    public double nextDouble()
+    {
+        if (!hasNext()) throw new NumberFormatException("No more tokens");
+        int start = pos;
+        int p = pos;
+        boolean negative = false;
+        if (chars[p] == '-')
+        {
+            negative = true;
+            p++;
+        }
+        else if (chars[p] == '+')
+        {
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0; // significant digits in mantissa
+        int exp10 = 0;
+        boolean truncated = false;
+        boolean anyDigit = false;
+        char c;
+        while (p < end && (c = chars[p]) >= '0' && c <= '9')
+        {
+            anyDigit = true;
+            if (digits < 18)
+            {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            }
+            else
+            {
+                exp10++;
+                truncated |= c != '0';
+            }
+            p++;
+        }
+        if (p < end && chars[p] == '.')
+        {
+            p++;
+            while (p < end && (c = chars[p]) >= '0' && c <= '9')
+            {
+                anyDigit = true;
+                if (digits < 18)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exp10--;
+                }
+                else
+                {
+                    truncated |= c != '0';
+                }
+                p++;
+            }
+        }
+        if (anyDigit && p < end && (chars[p] == 'e' || chars[p] == 'E'))
+        {
+            p++;
+            boolean negativeExp = false;
+            if (p < end && chars[p] == '-')
+            {
+                negativeExp = true;
+                p++;
+            }
+            else if (p < end && chars[p] == '+')
+            {
+                p++;
+            }
+            int exp = 0;
+            boolean expDigit = false;
+            while (p < end && (c = chars[p]) >= '0' && c <= '9')
+            {
+                expDigit = true;
+                if (exp < 100000) exp = exp * 10 + (c - '0');
+                p++;
+            }
+            if (!expDigit) anyDigit = false; // malformed, let the fallback report it
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (!anyDigit || (p < end && !isDelimiter(chars[p])) || truncated || digits > MAX_FAST_DIGITS
+                || (mantissa != 0 && (exp10 < -22 || exp10 > 22)))
+        {
+            pos = tokenEnd(p);
+            return Double.parseDouble(new String(chars, start, pos - start));
+        }
+        pos = p;
+        double value = (exp10 < 0) ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Scans the next token as an int
+     * @throws NumberFormatException if the next token is not an int, or if there is no next token
+     */
+    public int nextInt()
+    {
+        if (!hasNext()) throw new NumberFormatException("No more tokens");
+        int start = pos;
+        int p = pos;
+        boolean negative = false;
+        if (chars[p] == '-')
+        {
+            negative = true;
+            p++;
+        }
+        else if (chars[p] == '+')
+        {
+            p++;
+        }
+        long value = 0;
+        int digits = 0;
+        char c;
+        while (p < end && (c = chars[p]) >= '0' && c <= '9' && digits < 11)
+        {
+            value = value * 10 + (c - '0');
+            digits++;
+            p++;
+        }
+        if (negative) value = -value;
+        if (digits == 0 || digits == 11 || (p < end && !isDelimiter(chars[p])) || value < Integer.MIN_VALUE
+                || value > Integer.MAX_VALUE)
+        {
+            pos = tokenEnd(p);
+            return Integer.parseInt(new String(chars, start, pos - start));
+        }
+        pos = p;
+        return (int) value;
+    }
+}
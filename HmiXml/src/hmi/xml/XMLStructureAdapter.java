@@ -2301,15 +2301,15 @@ public class XMLStructureAdapter implements XMLStructure
     public final static int[] decodeIntArray(String encoding, int[] ints, String delimiters)
     {
         int decode = 0;
-        StringTokenizer tokenizer = new StringTokenizer(encoding, delimiters);
-        if (ints == null) ints = new int[tokenizer.countTokens()];
-        while (tokenizer.hasMoreTokens())
+        NumberScanner scanner = getNumberScanner(encoding, delimiters);
+        if (ints == null) ints = new int[scanner.countTokens()];
+        while (scanner.hasNext())
         {
             if (decode >= ints.length)
             {
                 throw new RuntimeException("More ints than expected: " + decode);
             }
-            ints[decode++] = Integer.parseInt(tokenizer.nextToken());
+            ints[decode++] = scanner.nextInt();
         }
         return ints;
     }
@@ -2351,15 +2351,15 @@ public class XMLStructureAdapter implements XMLStructure
     public final static float[] decodeFloatArray(String encoding, float[] floats, String delimiters)
     {
         int decode = 0;
-        StringTokenizer tokenizer = new StringTokenizer(encoding, delimiters);
-        if (floats == null) floats = new float[tokenizer.countTokens()];
-        while (tokenizer.hasMoreTokens())
+        NumberScanner scanner = getNumberScanner(encoding, delimiters);
+        if (floats == null) floats = new float[scanner.countTokens()];
+        while (scanner.hasNext())
         {
             if (decode >= floats.length)
             {
                 throw new RuntimeException("More floats than expected: " + decode);
             }
-            floats[decode++] = Float.parseFloat(tokenizer.nextToken());
+            floats[decode++] = scanner.nextFloat();
         }
         return floats;
     }
@@ -2401,19 +2401,32 @@ public class XMLStructureAdapter implements XMLStructure
     public final static double[] decodeDoubleArray(String encoding, double[] doubles, String delimiters)
     {
         int decode = 0;
-        StringTokenizer tokenizer = new StringTokenizer(encoding, delimiters);
-        if (doubles == null) doubles = new double[tokenizer.countTokens()];
-        while (tokenizer.hasMoreTokens())
+        NumberScanner scanner = getNumberScanner(encoding, delimiters);
+        if (doubles == null) doubles = new double[scanner.countTokens()];
+        while (scanner.hasNext())
         {
             if (decode >= doubles.length)
             {
                 throw new RuntimeException("More doubles than expected: " + decode);
             }
-            doubles[decode++] = Double.parseDouble(tokenizer.nextToken());
+            doubles[decode++] = scanner.nextDouble();
         }
         return doubles;
     }
 
+    /*
+     * Scanner for numbers separated by delimiters, which parses the numbers without creating a String per token.
+     */
+    private static NumberScanner getNumberScanner(String encoding, String delimiters)
+    {
+        NumberScanner scanner = new NumberScanner(encoding);
+        if (!delimiters.equals(ATTRIBUTE_TOKEN_DELIMITERS))
+        {
+            scanner.setDelimiters(delimiters);
+        }
+        return scanner;
+    }
+
     /**
      * decodes a string array, encoded as String of the form value0 value1 ..... value-n
      */
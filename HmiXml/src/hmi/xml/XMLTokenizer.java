@@ -29,6 +29,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Set;
@@ -452,10 +453,17 @@ public class XMLTokenizer
      * If the specified Reader is not already a BufferedReader, it will be wrapped
      * inside a new BufferedReader.
      * The previous Reader is returned, which could be null.
+     * Note that the tokenizer reads characters from the Reader in blocks, so the previous Reader 
+     * is not positioned directly after the last token that was read from it.
      */
     public final BufferedReader setReader(Reader in)
     {
         BufferedReader oldreader = this.in;
+        window = new char[WINDOWSIZE]; // the old window might still be referred to by a saved TokenizerState
+        windowPos = 0;
+        windowLimit = 0;
+        windowMark = -1;
+        windowKeep = -1;
         if (in == null)
         {
             this.in = null;
@@ -474,6 +482,7 @@ public class XMLTokenizer
 
     /**
      * Gets the Reader that this tokenizer is currently using.
+     * Since characters are read from this Reader in blocks, it is in general positioned beyond the current token. 
      */
     public final Reader getReader()
     {
@@ -865,7 +874,7 @@ public class XMLTokenizer
 
 
     private void setupSectionBuffer() throws IOException {
-        in.reset(); // we are about to begin the first character after the '<'. 
+        resetWindow(); // we are about to begin the first character after the '<'. 
         setSectionBuffering(true);
         clearSectionBuffer();
         sectionBuffer.append('<');
@@ -1032,7 +1041,7 @@ public class XMLTokenizer
                 nextParsedChar();
             }
             setTokenPos();
-            in.mark(4096);
+            markWindow();
             // use ci, not ch, for classification; ch could be '<' because of an &lt; pattern in input stream)
             if (ci == '<')
             { // STAG, ETAG, PI, or decl
@@ -1063,6 +1072,7 @@ public class XMLTokenizer
                 while (ci != '<' && ci != EOS)
                 {
                     charDataBuffer.append(ch);
+                    appendPlainChars(charDataBuffer, '<');
                     nextParsedChar();
                 }
                 token = CHARDATA;
@@ -1114,7 +1124,6 @@ public class XMLTokenizer
      */
     private int parseSTag() throws IOException
     {
-        clearBuffer(tagNameBuffer);
         tagPrefix = null;
         // tagNamespace = defaultNamespace;
         namespaceStack.pushMark();
@@ -1123,24 +1132,14 @@ public class XMLTokenizer
         attributes.clear();
         // attributeNamespaces.clear();
 
-        while (isNameChar())
-        {
-            tagNameBuffer.append((char) ci);
-            nextChar();
-        }
+        tagName = scanName();
         if (isNamespaceSepChar())
         {
-            tagPrefix = tagNameBuffer.toString().intern();
+            tagPrefix = tagName;
             // tagNamespace = namespaceMap.get(tagPrefix); // could result in null namespace
-            clearBuffer(tagNameBuffer);
             nextChar();
-            while (isNameChar())
-            {
-                tagNameBuffer.append((char) ci);
-                nextChar();
-            }
+            tagName = scanName();
         }
-        tagName = tagNameBuffer.toString();
 
         skipSpaceChars();
         // parse attributes
@@ -1261,26 +1260,16 @@ public class XMLTokenizer
 
     private int parseETag() throws IOException
     {
-        clearBuffer(tagNameBuffer);
         tagPrefix = null;
         tagNamespace = defaultNamespace;
         nextChar(); // consume '/' char. assume next char is a legal start of tag name.
-        while (isNameChar())
-        {
-            tagNameBuffer.append((char) ci);
-            nextChar();
-        }
+        String name = scanName();
         if (isNamespaceSepChar())
         {
-            tagPrefix = tagNameBuffer.toString().intern();
+            tagPrefix = name;
             tagNamespace = namespaceStack.getNameSpace(tagPrefix);
-            clearBuffer(tagNameBuffer);
             nextChar();
-            while (isNameChar())
-            {
-                tagNameBuffer.append((char) ci);
-                nextChar();
-            }
+            name = scanName();
         }
 
         if (ci != '>') {
@@ -1289,7 +1278,7 @@ public class XMLTokenizer
         ci = CONSUMED;
         token = ETAG;
         // tokenMode remains CHARDATA_MODE
-        tagName = tagNameBuffer.toString();
+        tagName = name;
         popTag(tagName);
         return token;
     }
@@ -1300,26 +1289,15 @@ public class XMLTokenizer
      */
     private void parseAttribute() throws IOException
     {
-        clearBuffer(attributeNameBuffer);
         clearBuffer(attributeValueBuffer);
         attributePrefix = null;
-        while (isNameChar())
-        {
-            attributeNameBuffer.append((char) ci);
-            nextChar();
-        }
+        attributeName = scanName();
         if (isNamespaceSepChar())
         {
-            attributePrefix = attributeNameBuffer.toString().intern();
-            clearBuffer(attributeNameBuffer);
+            attributePrefix = attributeName;
             nextChar();
-            while (isNameChar())
-            {
-                attributeNameBuffer.append((char) ci);
-                nextChar();
-            }
+            attributeName = scanName();
         }
-        attributeName = attributeNameBuffer.toString();
         skipSpaceChars();
         if (ci != '=')
             throw getXMLScanException("\'=\' character expected in XML attribute instead of '" + (char) ci + "'");
@@ -1343,19 +1321,20 @@ public class XMLTokenizer
         if (ci != '"' && ci != '\'')
             return -1;
         boolean aposmode = (ci == '\'');
+        char quote = (char) ci;
         nextParsedChar();
-        int len = 0;
+        int start = buf.length();
         while ((aposmode || ci != '"') && (!aposmode || ci != '\'') && ci != EOS)
         {
             buf.append(ch);
-            len++;
+            appendPlainChars(buf, quote);
             nextParsedChar();
         }
         if (ci == EOS)
             throw getXMLScanException("missing \" or \': end-of-data reached");
         // else, if ci == '"' or ci == '\'',
         nextChar();
-        return len;
+        return buf.length() - start;
     }
 
     /*
@@ -2241,6 +2220,89 @@ public class XMLTokenizer
         return result;
     }
 
+    /**
+     * Takes the current CHARDATA, and parses the white space separated floats that it contains into floats,
+     * directly from the character buffer of this tokenizer, without creating a String per number or for the
+     * CHARDATA as a whole. Returns the number of floats parsed.
+     */
+    public final int takeFloatCharData(float[] floats) throws IOException
+    {
+        NumberScanner scanner = getCharDataScanner();
+        int decode = 0;
+        while (scanner.hasNext())
+        {
+            if (decode >= floats.length)
+            {
+                throw new RuntimeException("More floats than expected: " + decode);
+            }
+            floats[decode++] = scanner.nextFloat();
+        }
+        tokenConsumed = true;
+        return decode;
+    }
+
+    /**
+     * Takes the current CHARDATA, and parses the white space separated ints that it contains into ints,
+     * like takeFloatCharData. Returns the number of ints parsed.
+     */
+    public final int takeIntCharData(int[] ints) throws IOException
+    {
+        NumberScanner scanner = getCharDataScanner();
+        int decode = 0;
+        while (scanner.hasNext())
+        {
+            if (decode >= ints.length)
+            {
+                throw new RuntimeException("More ints than expected: " + decode);
+            }
+            ints[decode++] = scanner.nextInt();
+        }
+        tokenConsumed = true;
+        return decode;
+    }
+
+    /**
+     * Takes the current CHARDATA, and returns the white space separated ints that it contains,
+     * for CHARDATA with an unknown number of ints.
+     */
+    public final int[] takeIntArrayCharData() throws IOException
+    {
+        NumberScanner scanner = getCharDataScanner();
+        int[] ints = new int[scanner.countTokens()];
+        for (int i = 0; i < ints.length; i++)
+        {
+            ints[i] = scanner.nextInt();
+        }
+        tokenConsumed = true;
+        return ints;
+    }
+
+    /*
+     * Copies the current CHARDATA into charDataChars, and returns a scanner over it.
+     */
+    private NumberScanner getCharDataScanner() throws IOException
+    {
+        if (!atCharData())
+        {
+            throw getXMLScanException("The XMLTokenizer was not at an CHARDATA token");
+        }
+        int length = charDataBuffer.length();
+        if (charDataChars.length < length)
+        {
+            charDataChars = new char[Math.max(length, 2 * charDataChars.length)];
+        }
+        charDataBuffer.getChars(0, length, charDataChars, 0);
+        if (charDataScanner == null)
+        {
+            charDataScanner = new NumberScanner(charDataChars, 0, length);
+        }
+        else
+        {
+            charDataScanner.reset(charDataChars, 0, length);
+        }
+        return charDataScanner;
+    }
+
     public final String takeOptionalCharData() throws IOException
     {
         if (atCharData())
@@ -2442,7 +2504,14 @@ public class XMLTokenizer
      */
     private int nextChar() throws IOException
     {
-        ci = in.read();
+        if (windowPos < windowLimit || fillWindow())
+        {
+            ci = window[windowPos++];
+        }
+        else
+        {
+            ci = EOS;
+        }
         charPos++;
         if (sectionBuffering)
         {
@@ -2456,6 +2525,121 @@ public class XMLTokenizer
         return ci;
     }
 
+    /*
+     * refills the window with the next block of characters from "in", keeping the characters from windowMark and windowKeep onwards.
+     * Returns false if no more characters are available.
+     */
+    private boolean fillWindow() throws IOException
+    {
+        if (in == null)
+            return false;
+        if (windowMark >= 0 && windowPos - windowMark > MARKLIMIT)
+        {
+            windowMark = -1;
+        }
+        int keep = windowPos;
+        if (windowMark >= 0 && windowMark < keep)
+            keep = windowMark;
+        if (windowKeep >= 0 && windowKeep < keep)
+            keep = windowKeep;
+        if (keep > 0)
+        {
+            System.arraycopy(window, keep, window, 0, windowLimit - keep);
+            windowPos -= keep;
+            windowLimit -= keep;
+            if (windowMark >= 0)
+                windowMark -= keep;
+            if (windowKeep >= 0)
+                windowKeep -= keep;
+        }
+        else if (windowLimit == window.length)
+        { // a name that does not fit within the window
+            window = Arrays.copyOf(window, 2 * window.length);
+        }
+        int n = 0;
+        while (n == 0)
+        {
+            n = in.read(window, windowLimit, window.length - windowLimit);
+        }
+        if (n < 0)
+            return false;
+        windowLimit += n;
+        return true;
+    }
+
+    /*
+     * marks the current input position, so that resetWindow can return to it.
+     */
+    private void markWindow()
+    {
+        windowMark = windowPos;
+    }
+
+    /*
+     * returns to the input position of the last markWindow call.
+     */
+    private void resetWindow() throws IOException
+    {
+        if (windowMark < 0)
+            throw new IOException("Mark invalid");
+        windowPos = windowMark;
+    }
+
+    /*
+     * scans a name, starting at the current character ci, and returns it as a String from the nameTable. The empty String is returned when ci is not
+     * a name character. Afterwards, ci is the first character following the name.
+     */
+    private String scanName() throws IOException
+    {
+        if (!isNameChar())
+            return "";
+        windowKeep = windowPos - 1; // ci == window[windowPos-1]
+        do
+        {
+            nextChar();
+        }
+        while (isNameChar());
+        int end = (ci == EOS) ? windowPos : windowPos - 1;
+        String name = nameTable.get(window, windowKeep, end - windowKeep);
+        windowKeep = -1;
+        return name;
+    }
+
+    /*
+     * appends the characters that are already in the window to buf, up to but not including the first stop character or '&', as if they were read
+     * by nextParsedChar and appended one by one. Afterwards, ci and ch contain the last appended character, if any. This is a fast path for the
+     * loops that collect CHARDATA and attribute values.
+     */
+    private void appendPlainChars(StringBuilder buf, char stop)
+    {
+        int start = windowPos;
+        int pos = start;
+        int newline = -1;
+        while (pos < windowLimit)
+        {
+            char c = window[pos];
+            if (c == stop || c == '&')
+                break;
+            if (c == '\n')
+            {
+                line++;
+                newline = pos;
+            }
+            pos++;
+        }
+        if (pos == start)
+            return;
+        buf.append(window, start, pos - start);
+        if (sectionBuffering)
+        {
+            sectionBuffer.append(window, start, pos - start);
+        }
+        charPos = (newline < 0) ? charPos + pos - start : pos - newline - 1;
+        windowPos = pos;
+        ci = window[pos - 1];
+        ch = (char) ci;
+    }
+
     /*
      * reads the ci character from the input stream, translates entity references like &lt; and fills the character ch. ci contains the last raw
      * character from "in"; ch contains the last parsed character, so for instance, when the input contains &gt;, ci contains ';', and ch contains
@@ -2728,12 +2912,8 @@ public class XMLTokenizer
     private boolean recognizeNamespaces;
 
     /*
-     * "in" is the current input stream, in Reader format. It might actually be a PushbackReader, which is denoted by the value of the boolean
-     * "isPushbackReader". The amount of buffering for "in" is kept to a minimum, so as to allow other processes (i.e. outside this XMLTokenizer) to
-     * share access to the "in" Reader. For STAG and ETAG tokens, only the characters belonging properly to the token are read from "in". For names
-     * and for CHARDATA, the character immediately following the token is necesarily read also. It is possible to set "in" to a PushbackReader. In
-     * this case, pushback() can be called, which will push back the last character read, or, after reading an OPENSTAG token, pushbackOpenSTag() will
-     * push back the complete "<tagName " String, (including the character following the OPENSTAG).
+     * "in" is the current input stream, in Reader format. Characters are read from "in" in blocks, into the window buffer (see below), so other
+     * processes cannot share access to the "in" Reader while this XMLTokenizer is reading from it.
      */
     private BufferedReader in; // the "current input stream", in Reader format.
 
@@ -2758,11 +2938,26 @@ public class XMLTokenizer
      * ci is a one-place buffer, containing the "current" unparsed character. It has int type, rather than char type, since reading the input stream
      * yields ints, which can be negative: EOS (= -1) denotes end-of-stream reached, CONSUMED (=-2) means that the current ci value is considered
      * "consumed". When "consumed", the one place buffer is considered "empty", and a new value for ci should be read from "in" before further
-     * processing. The "consumed" state allows for other processes than the process running this XMLTokenizer object to start reading from the same
-     * Reader, without losing even a single character, since no character is buffered in the XMLTokenizer when ci is CONSUMED.
+     * processing.
      */
     private int ci; // the "current character", in int format.
 
+    /*
+     * The input characters are read from "in" in blocks, into the window char array. window[windowPos] is the next character to be read by nextChar,
+     * window[windowLimit-1] is the last character read from "in". windowMark is the position after the '<' of the last markup, used by
+     * getXMLSection to read an STag once more, or -1 if there is no mark. The mark is dropped when more than MARKLIMIT characters have been read
+     * after it, like the mark of a BufferedReader. windowKeep is the start of the name that is being scanned, or -1. Characters from windowMark
+     * or windowKeep onwards are kept in the window when it is refilled.
+     */
+    private static final int WINDOWSIZE = 16384;
+    private static final int MARKLIMIT = 4096;
+    private char[] window;
+    private int windowPos;
+    private int windowLimit;
+    private int windowMark;
+    private int windowKeep;
+    private NameTable nameTable = new NameTable(); // resolves tag names, attribute names and prefixes
+
     /*
      * ch is the current parsed character. It is used inside CHARDATA sections, and is normally just ci converted to char type. "Parsed" implies that
      * entity references (like "&lt;") that occur in the "raw" input, will end up as a single ch value. For instance, the ci character sequence "&lt";
@@ -2785,15 +2980,14 @@ public class XMLTokenizer
 
     /*
      * the current token can be "consumed", which means that getX and takeX methods will first read a new token, when they are called. However,
-     * "consumed" does not mean that the input Reader has advanced as yet. This allows for other processes to read from the same Reader, without
-     * "missing" input that is buffered by this XMLTokenizer.
+     * "consumed" does not mean that the input has advanced as yet.
      */
 
     private boolean tokenConsumed; // denotes whether the current token has been "consumed".
     private int tokenMode; // the "current (tag) mode ", indicates position within STags.
 
     /* buffers for collecting tag names, attribute names, attribute values, char data, comments, pi's */
-    private String tagName; // tagNames and attributeNames are immediately converted to Strings.
+    private String tagName; // tagNames and attributeNames are resolved to Strings via the nameTable.
     private String tagPrefix; // optional namespace label (i.e the prefix before the :) for tagName
     private String tagNamespace; // optional namespace for tagName
     private String defaultNamespace = null; // default namespace
@@ -2808,11 +3002,11 @@ public class XMLTokenizer
     private static final int BUFSIZESMALL = 16;
     private static final int BUFSIZELARGE = 128;
 
-    private StringBuilder tagNameBuffer = new StringBuilder(BUFSIZESMALL);
     // private StringBuilder namespaceBuffer = new StringBuilder(BUFSIZESMALL);
-    private StringBuilder attributeNameBuffer = new StringBuilder(BUFSIZESMALL);
     private StringBuilder attributeValueBuffer = new StringBuilder(BUFSIZELARGE);
     private StringBuilder charDataBuffer = new StringBuilder(BUFSIZELARGE);
+    private char[] charDataChars = new char[BUFSIZELARGE]; // copy of charDataBuffer, for number scanning
+    private NumberScanner charDataScanner;
     private StringBuilder cDataBuffer = new StringBuilder(BUFSIZELARGE);
     private StringBuilder piDataBuffer = new StringBuilder(BUFSIZESMALL);
     private StringBuilder commentDataBuffer = new StringBuilder(BUFSIZELARGE);
@@ -2938,6 +3132,10 @@ public class XMLTokenizer
     private class TokenizerState
     {
         private BufferedReader inState;
+        private char[] windowState;
+        private int windowPosState;
+        private int windowLimitState;
+        private int windowMarkState;
         private URL urlState;
         private File fileState;
         private String resourceRootState;
@@ -2959,6 +3157,10 @@ public class XMLTokenizer
         void copyState()
         {
             inState = in;
+            windowState = window;
+            windowPosState = windowPos;
+            windowLimitState = windowLimit;
+            windowMarkState = windowMark;
             urlState = url;
             fileState = file;
             resourceRootState = resourceRoot;
@@ -2981,6 +3183,10 @@ public class XMLTokenizer
         public void restoreState()
         {
             in = inState;
+            window = windowState;
+            windowPos = windowPosState;
+            windowLimit = windowLimitState;
+            windowMark = windowMarkState;
             url = urlState;
             file = fileState;
             resourceRoot = resourceRootState;
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.xml;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * JUnit test for hmi.xml.NameTable
+ */
+public class NameTableTest
+{
+    @Test
+    public void testGet()
+    {
+        NameTable table = new NameTable();
+        char[] chars = "xx:abc:abc:ab".toCharArray();
+        String abc = table.get(chars, 3, 3);
+        assertEquals("abc", abc);
+        assertSame(abc, table.get(chars, 7, 3));
+        assertSame("abc", abc);
+        assertEquals("ab", table.get(chars, 11, 2));
+        assertEquals("", table.get(chars, 0, 0));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testGrow()
+    {
+        NameTable table = new NameTable();
+        for (int i = 0; i < 1000; i++)
+        {
+            char[] chars = ("name" + i).toCharArray();
+            assertEquals("name" + i, table.get(chars, 0, chars.length));
+        }
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++)
+        {
+            char[] chars = ("name" + i).toCharArray();
+            assertSame(("name" + i).intern(), table.get(chars, 0, chars.length));
+        }
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        NameTable table = new NameTable();
+        for (int i = 0; i < 3 * NameTable.MAXSIZE; i++)
+        {
+            char[] chars = ("n" + i).toCharArray();
+            assertEquals("n" + i, table.get(chars, 0, chars.length));
+            assertTrue(table.size() <= NameTable.MAXSIZE);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for hmi.xml.NumberScanner
+ */
+public class NumberScannerTest
+{
+    @Test
+    public void testDoubles()
+    {
+        String[] tokens = { "0", "-0.0", "1", "-1.5", "+2.25", "0.000123", "123456.789", "1e3", "1.5E-7", "-3.25e+2", ".5", "5.",
+                "1.2345678901234567890", "12345678901234567890123", "1e-300", "4.9E-324", "NaN", "-Infinity", "0.1234567" };
+        StringBuilder buf = new StringBuilder();
+        for (String t : tokens)
+        {
+            buf.append(t).append(" \n\t");
+        }
+        NumberScanner scanner = new NumberScanner(buf.toString());
+        assertEquals(tokens.length, scanner.countTokens());
+        for (String t : tokens)
+        {
+            assertTrue(scanner.hasNext());
+            assertEquals(t, Double.doubleToLongBits(Double.parseDouble(t)), Double.doubleToLongBits(scanner.nextDouble()));
+        }
+        assertFalse(scanner.hasNext());
+    }
+
+    @Test
+    public void testRandomFloats()
+    {
+        Random random = new Random(42);
+        StringBuilder buf = new StringBuilder();
+        float[] expected = new float[10000];
+        for (int i = 0; i < expected.length; i++)
+        {
+            float f = (float) ((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6));
+            buf.append(Float.toString(f)).append(' ');
+            expected[i] = Float.parseFloat(Float.toString(f));
+        }
+        NumberScanner scanner = new NumberScanner(buf.toString());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals(expected[i], scanner.nextFloat(), 0f);
+        }
+    }
+
+    @Test
+    public void testFloatsRoundedOnce()
+    {
+        // doubles exactly halfway between two floats, and decimals just beyond such a halfway point
+        String[] tokens = { "1.00000005960464477539062500", "1.0000000596046448", "1.00000017881393432617187500",
+                "3.4028235677973366E38", "7.006492321624085e-46", "0.1", "16777217", "16777219" };
+        for (String t : tokens)
+        {
+            assertEquals(t, Float.floatToIntBits(Float.parseFloat(t)), Float.floatToIntBits(new NumberScanner(t).nextFloat()));
+        }
+    }
+
+    @Test
+    public void testInts()
+    {
+        NumberScanner scanner = new NumberScanner("0 -12 +7 2147483647 -2147483648");
+        assertEquals(0, scanner.nextInt());
+        assertEquals(-12, scanner.nextInt());
+        assertEquals(7, scanner.nextInt());
+        assertEquals(Integer.MAX_VALUE, scanner.nextInt());
+        assertEquals(Integer.MIN_VALUE, scanner.nextInt());
+        assertFalse(scanner.hasNext());
+    }
+
+    @Test
+    public void testDelimiters()
+    {
+        NumberScanner scanner = new NumberScanner("1.5, 2,3 ,4");
+        scanner.setDelimiters(XMLStructureAdapter.COMMA_SEPARATOR);
+        assertEquals(4, scanner.countTokens());
+        assertEquals(1.5f, scanner.nextFloat(), 0f);
+        assertEquals(2, scanner.nextInt());
+        assertEquals(3, scanner.nextInt());
+        assertEquals(4.0, scanner.nextDouble(), 0);
+    }
+
+    @Test
+    public void testRange()
+    {
+        char[] chars = "xx 1 2 3 yy".toCharArray();
+        NumberScanner scanner = new NumberScanner(chars, 2, 8);
+        assertEquals(3, scanner.countTokens());
+        assertEquals(1, scanner.nextInt());
+        assertEquals(2, scanner.nextInt());
+        assertEquals(3, scanner.nextInt());
+        assertFalse(scanner.hasNext());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIllegalToken()
+    {
+        NumberScanner scanner = new NumberScanner("1.0 abc");
+        scanner.nextDouble();
+        scanner.nextDouble();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testTrailingGarbage()
+    {
+        new NumberScanner("1.0x").nextFloat();
+    }
+}
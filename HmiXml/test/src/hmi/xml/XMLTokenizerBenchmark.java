@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (C) 2009-2020 Human Media Interaction, University of Twente, the Netherlands
+ *
+ * This file is part of the Articulated Social Agents Platform BML realizer (ASAPRealizer).
+ *
+ * ASAPRealizer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License (LGPL) as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASAPRealizer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ASAPRealizer.  If not, see http://www.gnu.org/licenses/.
+ ******************************************************************************/
+package hmi.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the number of XML tokens per second that the XMLTokenizer produces, for a corpus of XML files. All tokens are taken, including the
+ * attributes of STags and the content of CharData tokens. The files are read into memory first, so only the tokenizing is measured.
+ * Usage: XMLTokenizerBenchmark file-or-directory ... (directories are searched for .dae and .xml files), for instance, from the HmiXml
+ * directory: XMLTokenizerBenchmark ../HmiGraphics/resource/dae ../HmiGraphics/resource ../HmiAnimation/resource
+ */
+public final class XMLTokenizerBenchmark
+{
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private XMLTokenizerBenchmark()
+    {
+    }
+
+    private static void collect(File file, List<File> files)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            for (File child : children)
+            {
+                collect(child, files);
+            }
+        }
+        else if (file.getName().endsWith(".dae") || file.getName().endsWith(".xml"))
+        {
+            files.add(file);
+        }
+    }
+
+    /* takes all tokens of the xml document, and returns the number of tokens */
+    private static int tokenize(String xml) throws IOException
+    {
+        XMLTokenizer tokenizer = new XMLTokenizer(xml);
+        int nrOfTokens = 0;
+        while (!tokenizer.atEndOfDocument())
+        {
+            if (tokenizer.atSTag())
+            {
+                tokenizer.getAttributes();
+                tokenizer.takeSTag();
+            }
+            else if (tokenizer.atETag())
+            {
+                tokenizer.takeETag();
+            }
+            else if (tokenizer.atCharData())
+            {
+                tokenizer.takeCharData();
+            }
+            else if (tokenizer.atCDSect())
+            {
+                tokenizer.takeCDSect();
+            }
+            else if (tokenizer.atComment())
+            {
+                tokenizer.takeComment();
+            }
+            else if (tokenizer.atPI())
+            {
+                tokenizer.takePI();
+            }
+            else
+            {
+                throw new IOException("unexpected token " + tokenizer.getTokenString());
+            }
+            nrOfTokens++;
+        }
+        return nrOfTokens;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.out.println("Usage: XMLTokenizerBenchmark file-or-directory ...");
+            return;
+        }
+        List<File> files = new ArrayList<File>();
+        for (String arg : args)
+        {
+            collect(new File(arg), files);
+        }
+        List<String> documents = new ArrayList<String>();
+        long nrOfChars = 0;
+        for (File file : files)
+        {
+            String xml = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            try
+            {
+                tokenize(xml);
+            }
+            catch (Exception e)
+            {
+                System.out.println("skipping " + file + ": " + e);
+                continue;
+            }
+            documents.add(xml);
+            nrOfChars += xml.length();
+        }
+        System.out.println(documents.size() + " documents, " + nrOfChars / 1024 + " K chars");
+        for (int r = 0; r < WARMUP_ROUNDS; r++)
+        {
+            for (String xml : documents)
+            {
+                tokenize(xml);
+            }
+        }
+        long nrOfTokens = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++)
+        {
+            for (String xml : documents)
+            {
+                nrOfTokens += tokenize(xml);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d tokens in %.3f s: %.0f tokens/s, %.1f M chars/s%n", nrOfTokens, seconds, nrOfTokens / seconds, ROUNDS * nrOfChars
+                / seconds / 1e6);
+    }
+}
@@ -664,4 +664,123 @@ public class XMLTokenizerTest
         tokenizer.takeSTag("test");
         assertEquals("", tokenizer.getXMLSectionContent());
     }
+
+    @Test
+    public void testTakeFloatCharData() throws IOException
+    {
+        XMLTokenizer tokenizer = new XMLTokenizer("<a>\n 1.5 -2 3e2\n\t0.1 </a><b>4</b>");
+        tokenizer.takeSTag("a");
+        float[] floats = new float[5];
+        assertEquals(4, tokenizer.takeFloatCharData(floats));
+        assertEquals(1.5f, floats[0], 0);
+        assertEquals(-2f, floats[1], 0);
+        assertEquals(300f, floats[2], 0);
+        assertEquals(0.1f, floats[3], 0);
+        tokenizer.takeETag("a");
+        tokenizer.takeSTag("b");
+        assertEquals(1, tokenizer.takeFloatCharData(floats));
+        assertEquals(4f, floats[0], 0);
+        tokenizer.takeETag("b");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testTakeFloatCharDataTooMany() throws IOException
+    {
+        XMLTokenizer tokenizer = new XMLTokenizer("<a>1 2 3</a>");
+        tokenizer.takeSTag("a");
+        tokenizer.takeFloatCharData(new float[2]);
+    }
+
+    @Test
+    public void testTakeIntCharData() throws IOException
+    {
+        XMLTokenizer tokenizer = new XMLTokenizer("<a>1 -2 3</a><b> 4 5 </b>");
+        tokenizer.takeSTag("a");
+        int[] ints = new int[3];
+        assertEquals(3, tokenizer.takeIntCharData(ints));
+        assertArrayEquals(new int[] { 1, -2, 3 }, ints);
+        tokenizer.takeETag("a");
+        tokenizer.takeSTag("b");
+        assertArrayEquals(new int[] { 4, 5 }, tokenizer.takeIntArrayCharData());
+        tokenizer.takeETag("b");
+    }
+
+    @Test
+    public void testLongInput() throws IOException
+    {
+        // more than one input window, so names, attribute values and char data cross window boundaries
+        StringBuilder xml = new StringBuilder("<list>\n");
+        for (int i = 0; i < 5000; i++)
+        {
+            xml.append("<item nr=\"" + i + "\" txt='a&amp;b'>value &lt;" + i + "&gt;</item>\n");
+        }
+        xml.append("</list>");
+        XMLTokenizer tokenizer = new XMLTokenizer(new StringReader(xml.toString()));
+        tokenizer.takeSTag("list");
+        for (int i = 0; i < 5000; i++)
+        {
+            assertTrue(tokenizer.atSTag("item"));
+            assertEquals(i + 2, tokenizer.getTokenLine());
+            assertEquals(String.valueOf(i), tokenizer.getAttributes().get("nr"));
+            assertEquals("a&b", tokenizer.getAttributes().get("txt"));
+            tokenizer.takeSTag("item");
+            assertEquals("value <" + i + ">", tokenizer.takeCharData());
+            tokenizer.takeETag("item");
+        }
+        tokenizer.takeETag("list");
+        assertTrue(tokenizer.atEndOfDocument());
+    }
+
+    @Test
+    public void testLongName() throws IOException
+    {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 40000; i++)
+        {
+            name.append((char) ('a' + i % 26));
+        }
+        XMLTokenizer tokenizer = new XMLTokenizer(new StringReader("<" + name + " x='1'>text</" + name + ">"));
+        assertEquals(name.toString(), tokenizer.getTagName());
+        tokenizer.takeSTag(name.toString());
+        assertEquals("text", tokenizer.takeCharData());
+        tokenizer.takeETag(name.toString());
+        assertTrue(tokenizer.atEndOfDocument());
+    }
+
+    @Test
+    public void testSharedNames() throws IOException
+    {
+        XMLTokenizer tokenizer = new XMLTokenizer("<a><b id='1'/><b id='2'/></a>");
+        tokenizer.takeSTag("a");
+        String tagName = tokenizer.getTagName();
+        tokenizer.takeSTag("b");
+        tokenizer.takeETag("b");
+        assertSame(tagName.intern(), tagName);
+        assertSame("b", tokenizer.getTagName());
+        tokenizer.takeSTag("b");
+        tokenizer.takeETag("b");
+        tokenizer.takeETag("a");
+    }
+
+    @Test
+    public void testXMLSectionAfterRefill() throws IOException
+    {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < 3000; i++)
+        {
+            xml.append("<x>").append(i).append("</x>");
+        }
+        xml.append("<sec a='1'><y>text</y></sec></root>");
+        XMLTokenizer tokenizer = new XMLTokenizer(new StringReader(xml.toString()));
+        tokenizer.takeSTag("root");
+        for (int i = 0; i < 3000; i++)
+        {
+            tokenizer.takeSTag("x");
+            tokenizer.takeCharData();
+            tokenizer.takeETag("x");
+        }
+        assertTrue(tokenizer.atSTag("sec"));
+        assertEquals("<sec a='1'><y>text</y></sec>", tokenizer.getXMLSection());
+        tokenizer.takeETag("root");
+    }
 }